@@ -0,0 +1,129 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.benchmarks;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.CharStreams;
+import com.google.errorprone.ErrorProneOptions;
+import com.google.errorprone.SubContext;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.tools.javac.api.JavacTaskImpl;
+import com.sun.tools.javac.api.JavacTool;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import com.sun.tools.javac.util.Context;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+
+/**
+ * Sources that have been parsed and attributed by javac, in the state that Error Prone sees them in
+ * when it analyzes a compilation unit.
+ */
+public final class CompiledCorpus {
+
+  /** Compiles the corpus called {@code name}. */
+  public static CompiledCorpus compile(String name) {
+    return compile(Corpus.sources(name));
+  }
+
+  /**
+   * Parses and attributes {@code sources} with the classpath of the benchmarks.
+   *
+   * @throws IllegalArgumentException if the sources don't compile
+   */
+  public static CompiledCorpus compile(List<JavaFileObject> sources) {
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    JavacTool tool = JavacTool.create();
+    JavacTaskImpl task =
+        (JavacTaskImpl)
+            tool.getTask(
+                CharStreams.nullWriter(),
+                tool.getStandardFileManager(diagnostics, Locale.ENGLISH, UTF_8),
+                diagnostics,
+                ImmutableList.of("-classpath", System.getProperty("java.class.path"), "-proc:none"),
+                /* classes= */ null,
+                sources);
+    ImmutableList.Builder<JCCompilationUnit> compilationUnits = ImmutableList.builder();
+    for (CompilationUnitTree tree : task.parse()) {
+      compilationUnits.add((JCCompilationUnit) tree);
+    }
+    task.analyze();
+    List<String> errors = new ArrayList<>();
+    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+      if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+        errors.add(diagnostic.toString());
+      }
+    }
+    if (!errors.isEmpty()) {
+      throw new IllegalArgumentException("The corpus doesn't compile:\n" + errors);
+    }
+    return new CompiledCorpus(task.getContext(), compilationUnits.build());
+  }
+
+  private final Context context;
+  private final ImmutableList<JCCompilationUnit> compilationUnits;
+
+  private CompiledCorpus(Context context, ImmutableList<JCCompilationUnit> compilationUnits) {
+    this.context = context;
+    this.compilationUnits = compilationUnits;
+  }
+
+  /** The context of the javac task that compiled the corpus. */
+  public Context context() {
+    return context;
+  }
+
+  public ImmutableList<JCCompilationUnit> compilationUnits() {
+    return compilationUnits;
+  }
+
+  /**
+   * Returns a new context for analyzing one compilation unit, as {@code ErrorProneAnalyzer} creates
+   * for each compilation unit it scans.
+   */
+  public Context subContext() {
+    Context subContext = new SubContext(context);
+    subContext.put(ErrorProneOptions.class, ErrorProneOptions.empty());
+    return subContext;
+  }
+
+  /** Returns the paths to every tree in the corpus that satisfies {@code predicate}. */
+  public ImmutableList<TreePath> paths(Predicate<? super Tree> predicate) {
+    List<TreePath> paths = new ArrayList<>();
+    for (JCCompilationUnit compilationUnit : compilationUnits) {
+      new TreePathScanner<Void, Void>() {
+        @Override
+        public Void scan(Tree tree, Void unused) {
+          if (tree != null && predicate.test(tree)) {
+            paths.add(new TreePath(getCurrentPath(), tree));
+          }
+          return super.scan(tree, null);
+        }
+      }.scan(new TreePath(compilationUnit), null);
+    }
+    return ImmutableList.copyOf(paths);
+  }
+}
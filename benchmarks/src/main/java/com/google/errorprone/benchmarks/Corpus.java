@@ -0,0 +1,415 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.benchmarks;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Resources;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+
+/**
+ * The sources that the benchmarks analyze.
+ *
+ * <p>The {@code real} corpus is a handful of checked-in files that look like ordinary application
+ * code. The other corpora are generated by this class, so that they are the same on every run, and
+ * each is deliberately pathological in one way that has made builds slow before:
+ *
+ * <ul>
+ *   <li>{@code hugeSwitch}: switch statements with thousands of cases
+ *   <li>{@code deepLambdas}: lambdas nested dozens of levels deep
+ *   <li>{@code manyFields}: a class with thousands of fields
+ *   <li>{@code suppressed}: declarations that are almost all annotated with
+ *       {@code @SuppressWarnings}
+ *   <li>{@code callHeavy}: methods that consist mostly of method invocations
+ *   <li>{@code manyImports}: a file with a long list of imports
+ * </ul>
+ */
+public final class Corpus {
+
+  /** Returns the sources of the corpus called {@code name}. */
+  public static ImmutableList<JavaFileObject> sources(String name) {
+    switch (name) {
+      case "real":
+        return ImmutableList.of(
+            resource("Inventory.java"), resource("Tokenizer.java"), resource("TaskScheduler.java"));
+      case "hugeSwitch":
+        return ImmutableList.of(source("HugeSwitch", hugeSwitch(2000)));
+      case "deepLambdas":
+        return ImmutableList.of(source("DeepLambdas", deepLambdas(64)));
+      case "manyFields":
+        return ImmutableList.of(source("ManyFields", manyFields(5000)));
+      case "suppressed":
+        return ImmutableList.of(source("Suppressed", suppressed(500)));
+      case "callHeavy":
+        return ImmutableList.of(source("CallHeavy", callHeavy(200)));
+      case "manyImports":
+        return ImmutableList.of(source("ManyImports", manyImports()));
+      default:
+        throw new IllegalArgumentException("Unknown corpus: " + name);
+    }
+  }
+
+  /** Returns a file of Refaster rules to match against the corpora. */
+  public static JavaFileObject refasterRules() {
+    return resource("RefasterRules.java");
+  }
+
+  private static JavaFileObject resource(String fileName) {
+    try {
+      return new Source(
+          fileName,
+          Resources.toString(Resources.getResource(Corpus.class, "corpus/" + fileName), UTF_8));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static JavaFileObject source(String className, String text) {
+    return new Source(className + ".java", text);
+  }
+
+  static String hugeSwitch(int cases) {
+    Lines out = new Lines();
+    out.add("package corpus;");
+    out.add("public class HugeSwitch {");
+    out.add("  public static String name(int code) {");
+    out.add("    switch (code) {");
+    for (int i = 0; i < cases; i++) {
+      out.add("      case %d:", i);
+      out.add("        return \"name%d\";", i);
+    }
+    out.add("      default:");
+    out.add("        return null;");
+    out.add("    }");
+    out.add("  }");
+    out.add("  public static int code(String name) {");
+    out.add("    switch (name) {");
+    for (int i = 0; i < cases; i++) {
+      out.add("      case \"name%d\":", i);
+      out.add("        return %d;", i);
+    }
+    out.add("      default:");
+    out.add("        return -1;");
+    out.add("    }");
+    out.add("  }");
+    out.add("  public static int weight(int code) {");
+    out.add("    int weight = 0;");
+    out.add("    switch (code) {");
+    for (int i = 0; i < cases; i++) {
+      out.add("      case %d:", i);
+      out.add("        weight += %d;", i % 7);
+      out.add("        // fall through");
+    }
+    out.add("      default:");
+    out.add("        weight++;");
+    out.add("    }");
+    out.add("    return weight;");
+    out.add("  }");
+    out.add("}");
+    return out.toString();
+  }
+
+  static String deepLambdas(int depth) {
+    Lines out = new Lines();
+    out.add("package corpus;");
+    out.add("import java.util.function.Function;");
+    out.add("import java.util.function.Supplier;");
+    out.add("public class DeepLambdas {");
+    out.add("  public static Runnable nested(String s0) {");
+    out.add("    return () -> {");
+    for (int i = 1; i <= depth; i++) {
+      out.add("String s%d = s%d + %d;", i, i - 1, i);
+      out.add("Runnable r%d = () -> {", i);
+    }
+    out.add("System.out.println(s%d);", depth);
+    for (int i = depth; i >= 1; i--) {
+      out.add("};");
+      out.add("r%d.run();", i);
+    }
+    out.add("    };");
+    out.add("  }");
+    // nested generic lambdas make inference work harder than nested statement lambdas do
+    int inferenceDepth = Math.min(depth, 24);
+    StringBuilder type = new StringBuilder("String");
+    StringBuilder body = new StringBuilder("x");
+    for (int i = 0; i < inferenceDepth; i++) {
+      type.insert(0, "Supplier<").append('>');
+      body.insert(0, "() -> ");
+    }
+    out.add("  public static Function<String, %s> curried() {", type);
+    out.add("    return x -> %s;", body);
+    out.add("  }");
+    out.add("}");
+    return out.toString();
+  }
+
+  static String manyFields(int count) {
+    Lines out = new Lines();
+    out.add("package corpus;");
+    out.add("import java.util.ArrayList;");
+    out.add("import java.util.List;");
+    out.add("import javax.annotation.Nullable;");
+    out.add("public class ManyFields {");
+    for (int i = 0; i < count; i++) {
+      switch (i % 4) {
+        case 0:
+          out.add("  private int f%d = %d;", i, i);
+          break;
+        case 1:
+          out.add("  private String f%d = \"f%d\";", i, i);
+          break;
+        case 2:
+          out.add("  private final List<String> f%d = new ArrayList<>();", i);
+          break;
+        default:
+          out.add("  @Nullable private Object f%d;", i);
+          break;
+      }
+    }
+    out.add("  public int sum() {");
+    out.add("    int sum = 0;");
+    for (int i = 0; i < count; i += 4) {
+      out.add("    sum += f%d;", i);
+    }
+    out.add("    return sum;");
+    out.add("  }");
+    out.add("  public String describe() {");
+    out.add("    StringBuilder sb = new StringBuilder();");
+    for (int i = 1; i < count; i += 4) {
+      out.add("    sb.append(f%d).append(f%d.size()).append(f%d);", i, i + 1, i + 2);
+    }
+    out.add("    return sb.toString();");
+    out.add("  }");
+    out.add("}");
+    return out.toString();
+  }
+
+  static String suppressed(int classes) {
+    Lines out = new Lines();
+    out.add("package corpus;");
+    out.add("@SuppressWarnings(\"unchecked\")");
+    out.add("public class Suppressed {");
+    for (int i = 0; i < classes; i++) {
+      out.add("  @SuppressWarnings({\"rawtypes\", \"ReferenceEquality\", \"Custom%d\"})", i);
+      out.add("  static class Nested%d {", i);
+      out.add("    private int value = %d;", i);
+      out.add("    @SuppressWarnings(\"StringEquality\")");
+      out.add("    boolean same(String a, String b) {");
+      out.add("      return a == b;");
+      out.add("    }");
+      out.add("    @SuppressWarnings({\"SelfAssignment\", \"unused\"})");
+      out.add("    int reassign(int x) {");
+      out.add("      int y = x;");
+      out.add("      y = y;");
+      out.add("      return y;");
+      out.add("    }");
+      out.add("    @SuppressWarnings(\"OperatorPrecedence\")");
+      out.add("    boolean mixed(boolean a, boolean b, boolean c) {");
+      out.add("      return a && b || c;");
+      out.add("    }");
+      out.add("    int plain(int x) {");
+      out.add("      return x + value;");
+      out.add("    }");
+      out.add("  }");
+    }
+    out.add("}");
+    return out.toString();
+  }
+
+  static String callHeavy(int methods) {
+    Lines out = new Lines();
+    out.add("package corpus;");
+    out.add("import java.util.Iterator;");
+    out.add("import java.util.List;");
+    out.add("import java.util.Map;");
+    out.add("import java.util.Objects;");
+    out.add("import java.util.Optional;");
+    out.add("public class CallHeavy {");
+    for (int i = 0; i < methods; i++) {
+      out.add("  int calls%d(", i);
+      out.add("      List<String> list, Map<String, Integer> map, Optional<String> optional) {");
+      out.add("    int n = 0;");
+      out.add("    StringBuilder sb = new StringBuilder();");
+      out.add("    for (int i = 0; i < list.size(); i++) {");
+      out.add("      String s = list.get(i);");
+      out.add("      if (map.containsKey(s)) {");
+      out.add("        n += map.get(s);");
+      out.add("      }");
+      out.add("      sb.append(s.trim().toLowerCase()).append(',');");
+      out.add("      if (s.length() == 0 || map.keySet().contains(s)) {");
+      out.add("        sb.append(String.valueOf(s));");
+      out.add("      }");
+      out.add("      if (Objects.equals(s, optional.orElse(null))) {");
+      out.add("        n++;");
+      out.add("      }");
+      out.add("    }");
+      out.add("    if (optional.isPresent()) {");
+      out.add("      n += optional.get().length();");
+      out.add("    }");
+      out.add("    if (list.size() == 0) {");
+      out.add("      return n;");
+      out.add("    }");
+      out.add("    map.put(String.valueOf(%d), n);", i);
+      out.add("    Iterator<String> it = list.iterator();");
+      out.add("    while (it.hasNext()) {");
+      out.add("      if (it.next().isEmpty()) {");
+      out.add("        it.remove();");
+      out.add("      }");
+      out.add("    }");
+      out.add(
+          "    n += (int) list.stream().map(s -> map.get(s)).filter(Objects::nonNull).count();");
+      out.add("    return n + sb.toString().hashCode() + list.indexOf(\"x%d\");", i);
+      out.add("  }");
+    }
+    out.add("}");
+    return out.toString();
+  }
+
+  /** Classes for {@code manyImports} to import, chosen so that no two simple names clash. */
+  private static final ImmutableList<String> IMPORTED_CLASSES =
+      ImmutableList.of(
+          "java.io.BufferedReader",
+          "java.io.BufferedWriter",
+          "java.io.File",
+          "java.io.IOException",
+          "java.io.InputStream",
+          "java.io.OutputStream",
+          "java.io.PrintStream",
+          "java.io.Reader",
+          "java.io.UncheckedIOException",
+          "java.io.Writer",
+          "java.math.BigDecimal",
+          "java.math.BigInteger",
+          "java.net.InetAddress",
+          "java.net.URI",
+          "java.net.URL",
+          "java.nio.charset.Charset",
+          "java.nio.file.Files",
+          "java.nio.file.Path",
+          "java.nio.file.Paths",
+          "java.text.DateFormat",
+          "java.text.NumberFormat",
+          "java.time.Duration",
+          "java.time.Instant",
+          "java.time.LocalDate",
+          "java.time.ZoneId",
+          "java.util.ArrayDeque",
+          "java.util.ArrayList",
+          "java.util.BitSet",
+          "java.util.Collections",
+          "java.util.Comparator",
+          "java.util.Deque",
+          "java.util.EnumMap",
+          "java.util.HashMap",
+          "java.util.HashSet",
+          "java.util.Iterator",
+          "java.util.LinkedHashMap",
+          "java.util.LinkedList",
+          "java.util.List",
+          "java.util.Locale",
+          "java.util.Map",
+          "java.util.Objects",
+          "java.util.Optional",
+          "java.util.PriorityQueue",
+          "java.util.Random",
+          "java.util.Set",
+          "java.util.SortedMap",
+          "java.util.TreeMap",
+          "java.util.TreeSet",
+          "java.util.UUID",
+          "java.util.concurrent.Callable",
+          "java.util.concurrent.ConcurrentHashMap",
+          "java.util.concurrent.ConcurrentMap",
+          "java.util.concurrent.CountDownLatch",
+          "java.util.concurrent.ExecutorService",
+          "java.util.concurrent.Executors",
+          "java.util.concurrent.Future",
+          "java.util.concurrent.TimeUnit",
+          "java.util.concurrent.atomic.AtomicInteger",
+          "java.util.concurrent.atomic.AtomicLong",
+          "java.util.concurrent.atomic.AtomicReference",
+          "java.util.function.BiFunction",
+          "java.util.function.Consumer",
+          "java.util.function.Function",
+          "java.util.function.Predicate",
+          "java.util.function.Supplier",
+          "java.util.regex.Matcher",
+          "java.util.regex.Pattern",
+          "java.util.stream.Collectors",
+          "java.util.stream.IntStream",
+          "java.util.stream.Stream");
+
+  static String manyImports() {
+    Lines out = new Lines();
+    out.add("package corpus;");
+    out.add("import static java.nio.charset.StandardCharsets.UTF_8;");
+    out.add("import static java.util.Objects.requireNonNull;");
+    out.add("import static java.util.concurrent.TimeUnit.SECONDS;");
+    out.add("import static java.util.stream.Collectors.toList;");
+    for (String className : IMPORTED_CLASSES) {
+      out.add("import %s;", className);
+    }
+    out.add("public class ManyImports {");
+    for (int i = 0; i < IMPORTED_CLASSES.size(); i++) {
+      String className = IMPORTED_CLASSES.get(i);
+      out.add(
+          "  private Class<?> c%d = %s.class;",
+          i, className.substring(className.lastIndexOf('.') + 1));
+    }
+    out.add("  public Object statics() {");
+    out.add("    return requireNonNull(Stream.of(UTF_8, SECONDS).collect(toList()));");
+    out.add("  }");
+    out.add("}");
+    return out.toString();
+  }
+
+  /** Accumulates the lines of a generated source file. */
+  private static final class Lines {
+    private final StringBuilder text = new StringBuilder();
+
+    void add(String format, Object... args) {
+      text.append(String.format(format, args)).append('\n');
+    }
+
+    @Override
+    public String toString() {
+      return text.toString();
+    }
+  }
+
+  /** An in-memory source file. */
+  private static final class Source extends SimpleJavaFileObject {
+    private final String text;
+
+    Source(String fileName, String text) {
+      super(URI.create("string:///corpus/" + fileName), Kind.SOURCE);
+      this.text = text;
+    }
+
+    @Override
+    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+      return text;
+    }
+  }
+
+  private Corpus() {}
+}
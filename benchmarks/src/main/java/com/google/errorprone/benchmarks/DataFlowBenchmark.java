@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.errorprone.dataflow.DataFlow;
+import com.google.errorprone.dataflow.nullnesspropagation.NullnessAnalysis;
+import com.google.errorprone.util.ASTHelpers;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreePath;
+import com.sun.tools.javac.code.Symbol.VarSymbol;
+import com.sun.tools.javac.util.Context;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Computes the nullness of every method invocation and variable reference in a corpus with {@code
+ * DataFlow.expressionDataflow}, starting from empty caches as the analysis of each compilation unit
+ * does.
+ *
+ * <p>{@code sourceOrder} queries the expressions in the order they appear, so all of the queries
+ * for a method are made together. {@code alternatingMethods} takes one expression from each of a
+ * few neighbouring methods in turn, the way checks that look at a lambda and then at the method
+ * that encloses it do, and so depends on the dataflow cache holding several methods at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DataFlowBenchmark {
+
+  /** The number of methods that {@code alternatingMethods} alternates between. */
+  private static final int NEIGHBOURING_METHODS = 8;
+
+  @Param({"real", "deepLambdas", "callHeavy", "hugeSwitch"})
+  public String corpus;
+
+  private CompiledCorpus compiled;
+  private ImmutableList<TreePath> sourceOrder;
+  private ImmutableList<TreePath> alternatingMethods;
+
+  @Setup
+  public void setUp() {
+    compiled = CompiledCorpus.compile(corpus);
+    sourceOrder = compiled.paths(DataFlowBenchmark::isNullnessQuery);
+
+    Map<Tree, List<TreePath>> byMethod = new LinkedHashMap<>();
+    for (TreePath path : sourceOrder) {
+      MethodTree method = ASTHelpers.findEnclosingNode(path, MethodTree.class);
+      byMethod.computeIfAbsent(method, m -> new ArrayList<>()).add(path);
+    }
+    List<TreePath> alternating = new ArrayList<>();
+    for (List<List<TreePath>> neighbours :
+        Iterables.partition(byMethod.values(), NEIGHBOURING_METHODS)) {
+      int size = neighbours.stream().mapToInt(List::size).sum();
+      for (int i = 0; size > 0; i++) {
+        for (List<TreePath> paths : neighbours) {
+          if (i < paths.size()) {
+            alternating.add(paths.get(i));
+            size--;
+          }
+        }
+      }
+    }
+    alternatingMethods = ImmutableList.copyOf(alternating);
+  }
+
+  private static boolean isNullnessQuery(Tree tree) {
+    return tree instanceof MethodInvocationTree
+        || (tree instanceof IdentifierTree && ASTHelpers.getSymbol(tree) instanceof VarSymbol);
+  }
+
+  @Benchmark
+  public void sourceOrder(Blackhole blackhole) {
+    nullness(sourceOrder, blackhole);
+  }
+
+  @Benchmark
+  public void alternatingMethods(Blackhole blackhole) {
+    nullness(alternatingMethods, blackhole);
+  }
+
+  private void nullness(List<TreePath> paths, Blackhole blackhole) {
+    DataFlow.clearCaches();
+    Context context = compiled.subContext();
+    NullnessAnalysis analysis = NullnessAnalysis.instance(context);
+    for (TreePath path : paths) {
+      blackhole.consume(analysis.getNullness(path, context));
+    }
+  }
+}
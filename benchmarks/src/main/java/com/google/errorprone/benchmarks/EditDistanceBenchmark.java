@@ -0,0 +1,166 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.benchmarks;
+
+import com.google.common.base.Ascii;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
+import com.google.errorprone.names.LevenshteinEditDistance;
+import com.google.errorprone.names.NeedlemanWunschEditDistance;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.TreePath;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Computes the edit distance between every pair of a set of names, as checks that look for a
+ * similarly named variable or parameter do.
+ *
+ * <p>{@code matrix} is the textbook algorithm that fills in the whole matrix, which {@code
+ * LevenshteinEditDistance} used to implement; {@code levenshtein} and {@code bounded} are the
+ * current unbounded and bounded versions. {@code needlemanWunsch} is the gap-penalty distance that
+ * {@code ArgumentSelectionDefectChecker} uses.
+ *
+ * <p>The {@code real} names are those of the variables and methods declared in the real corpus; the
+ * {@code long} names are longer than the 64 characters that fit in a bit vector.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EditDistanceBenchmark {
+
+  private static final int MAX_NAMES = 200;
+
+  @Param({"real", "long"})
+  public String names;
+
+  private ImmutableList<String> namesList;
+
+  @Setup
+  public void setUp() {
+    Set<String> names = new LinkedHashSet<>();
+    if (this.names.equals("real")) {
+      for (TreePath path :
+          CompiledCorpus.compile("real")
+              .paths(t -> t instanceof VariableTree || t instanceof MethodTree)) {
+        names.add(
+            path.getLeaf() instanceof VariableTree
+                ? ((VariableTree) path.getLeaf()).getName().toString()
+                : ((MethodTree) path.getLeaf()).getName().toString());
+      }
+    } else {
+      Random random = new Random(42);
+      while (names.size() < MAX_NAMES) {
+        StringBuilder name = new StringBuilder();
+        int length = 65 + random.nextInt(40);
+        while (name.length() < length) {
+          name.append((char) ('a' + random.nextInt(6)));
+        }
+        names.add(name.toString());
+      }
+    }
+    namesList = ImmutableList.copyOf(names).subList(0, Math.min(names.size(), MAX_NAMES));
+  }
+
+  @Benchmark
+  public int matrix() {
+    int total = 0;
+    for (String source : namesList) {
+      for (String target : namesList) {
+        total += matrixEditDistance(source, target, /* caseSensitive= */ false);
+      }
+    }
+    return total;
+  }
+
+  @Benchmark
+  public int levenshtein() {
+    int total = 0;
+    for (String source : namesList) {
+      for (String target : namesList) {
+        total +=
+            LevenshteinEditDistance.getEditDistance(source, target, /* caseSensitive= */ false);
+      }
+    }
+    return total;
+  }
+
+  @Benchmark
+  public int bounded() {
+    int total = 0;
+    for (String source : namesList) {
+      for (String target : namesList) {
+        total +=
+            LevenshteinEditDistance.getBoundedEditDistance(
+                source, target, /* caseSensitive= */ false, /* maxDistance= */ 4);
+      }
+    }
+    return total;
+  }
+
+  @Benchmark
+  public int needlemanWunsch() {
+    int total = 0;
+    for (String source : namesList) {
+      for (String target : namesList) {
+        total +=
+            NeedlemanWunschEditDistance.getEditDistance(
+                source, target, /* caseSensitive= */ false, 8, 8, 1);
+      }
+    }
+    return total;
+  }
+
+  private static int matrixEditDistance(String source, String target, boolean caseSensitive) {
+    if (!caseSensitive) {
+      source = Ascii.toLowerCase(source);
+      target = Ascii.toLowerCase(target);
+    }
+    int[][] matrix = new int[source.length() + 1][target.length() + 1];
+    for (int i = 0; i <= source.length(); i++) {
+      matrix[i][0] = i;
+    }
+    for (int j = 0; j <= target.length(); j++) {
+      matrix[0][j] = j;
+    }
+    for (int i = 1; i <= source.length(); i++) {
+      for (int j = 1; j <= target.length(); j++) {
+        int cost = source.charAt(i - 1) == target.charAt(j - 1) ? 0 : 1;
+        matrix[i][j] =
+            Ints.min(cost + matrix[i - 1][j - 1], matrix[i - 1][j] + 1, matrix[i][j - 1] + 1);
+      }
+    }
+    return matrix[source.length()][target.length()];
+  }
+}
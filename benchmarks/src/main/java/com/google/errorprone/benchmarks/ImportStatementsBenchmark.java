@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.errorprone.apply.ImportOrganizer;
+import com.google.errorprone.apply.ImportStatements;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import com.sun.tools.javac.tree.JCTree.JCImport;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Adds and removes imports in every compilation unit of a corpus, and renders the new imports, as
+ * applying a fix that changes imports does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ImportStatementsBenchmark {
+
+  private static final ImmutableList<String> ADDED =
+      ImmutableList.of(
+          "import com.google.common.base.Verify",
+          "import com.google.common.collect.ImmutableSet",
+          "import java.util.Arrays",
+          "import java.util.zip.ZipFile",
+          "import static com.google.common.base.Preconditions.checkState",
+          "import static java.util.Collections.emptyList");
+
+  @Param({"real", "manyImports"})
+  public String corpus;
+
+  @Param({"STATIC_FIRST", "STATIC_LAST", "ANDROID_STATIC_FIRST", "ANDROID_STATIC_LAST"})
+  public String organizer;
+
+  private ImmutableList<JCCompilationUnit> compilationUnits;
+  private ImmutableList<ImmutableList<String>> removed;
+  private ImportOrganizer importOrganizer;
+
+  @Setup
+  public void setUp() {
+    compilationUnits = CompiledCorpus.compile(corpus).compilationUnits();
+    ImmutableList.Builder<ImmutableList<String>> removed = ImmutableList.builder();
+    for (JCCompilationUnit compilationUnit : compilationUnits) {
+      // remove every third import
+      ImmutableList.Builder<String> imports = ImmutableList.builder();
+      int i = 0;
+      for (JCImport importTree : compilationUnit.getImports()) {
+        if (i++ % 3 == 0) {
+          imports.add(
+              (importTree.isStatic() ? "import static " : "import ")
+                  + importTree.getQualifiedIdentifier());
+        }
+      }
+      removed.add(imports.build());
+    }
+    this.removed = removed.build();
+    importOrganizer = importOrganizer(organizer);
+  }
+
+  private static ImportOrganizer importOrganizer(String organizer) {
+    switch (organizer) {
+      case "STATIC_FIRST":
+        return ImportOrganizer.STATIC_FIRST_ORGANIZER;
+      case "STATIC_LAST":
+        return ImportOrganizer.STATIC_LAST_ORGANIZER;
+      case "ANDROID_STATIC_FIRST":
+        return ImportOrganizer.ANDROID_STATIC_FIRST_ORGANIZER;
+      case "ANDROID_STATIC_LAST":
+        return ImportOrganizer.ANDROID_STATIC_LAST_ORGANIZER;
+      default:
+        throw new IllegalArgumentException("Unknown import organizer: " + organizer);
+    }
+  }
+
+  @Benchmark
+  public void addAndRemove(Blackhole blackhole) {
+    for (int i = 0; i < compilationUnits.size(); i++) {
+      ImportStatements imports = ImportStatements.create(compilationUnits.get(i), importOrganizer);
+      imports.addAll(ADDED);
+      imports.removeAll(removed.get(i));
+      blackhole.consume(imports.toString());
+    }
+  }
+}
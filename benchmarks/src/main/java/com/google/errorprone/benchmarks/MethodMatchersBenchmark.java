@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.benchmarks;
+
+import static com.google.errorprone.matchers.Matchers.anyOf;
+import static com.google.errorprone.matchers.method.MethodMatchers.constructor;
+import static com.google.errorprone.matchers.method.MethodMatchers.instanceMethod;
+import static com.google.errorprone.matchers.method.MethodMatchers.staticMethod;
+
+import com.google.common.collect.ImmutableList;
+import com.google.errorprone.VisitorState;
+import com.google.errorprone.matchers.Matcher;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.util.TreePath;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Evaluates a set of method matchers, like those that checks declare, against every method
+ * invocation and constructor call in a corpus.
+ *
+ * <p>{@code sequential} runs the matchers one after the other, as a check that tests them in turn
+ * does; {@code indexed} runs them through {@code Matchers.anyOf}, which indexes them by method
+ * name.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MethodMatchersBenchmark {
+
+  private static final ImmutableList<Matcher<ExpressionTree>> MATCHERS =
+      ImmutableList.of(
+          instanceMethod().onDescendantOf("java.util.Collection").named("contains"),
+          instanceMethod().onDescendantOf("java.util.Collection").named("remove"),
+          instanceMethod().onDescendantOf("java.util.List").namedAnyOf("get", "indexOf"),
+          instanceMethod().onDescendantOf("java.util.Map").namedAnyOf("get", "containsKey"),
+          instanceMethod().onDescendantOf("java.util.Map").named("put"),
+          instanceMethod().onDescendantOf("java.util.Iterator").named("next"),
+          instanceMethod().onExactClass("java.util.Optional").named("get"),
+          instanceMethod().onExactClass("java.util.Optional").named("orElse"),
+          instanceMethod().onExactClass("java.lang.String").named("trim"),
+          instanceMethod().onExactClass("java.lang.String").withSignature("toLowerCase()"),
+          instanceMethod().onExactClass("java.lang.StringBuilder").named("append"),
+          instanceMethod().onDescendantOf("java.lang.Object").named("hashCode"),
+          instanceMethod().anyClass().named("equals").withParameters("java.lang.Object"),
+          instanceMethod().onDescendantOf("java.util.concurrent.Future").named("get"),
+          instanceMethod().onDescendantOf("java.util.stream.Stream").named("map"),
+          instanceMethod().onDescendantOf("java.util.stream.Stream").named("filter"),
+          staticMethod().onClass("java.util.Objects").named("equals"),
+          staticMethod().onClass("java.util.Objects").named("hash"),
+          staticMethod().onClass("java.lang.String").named("valueOf"),
+          staticMethod().onClass("java.lang.String").named("format"),
+          staticMethod().onClass("com.google.common.base.Preconditions").named("checkNotNull"),
+          staticMethod().onClass("com.google.common.base.Preconditions").named("checkArgument"),
+          constructor().forClass("java.lang.StringBuilder"),
+          constructor().forClass("java.util.ArrayList"));
+
+  @Param({"real", "callHeavy"})
+  public String corpus;
+
+  private VisitorState state;
+  private ImmutableList<ExpressionTree> invocations;
+  private Matcher<ExpressionTree> indexedMatcher;
+
+  @Setup
+  public void setUp() {
+    CompiledCorpus compiled = CompiledCorpus.compile(corpus);
+    ImmutableList.Builder<ExpressionTree> invocations = ImmutableList.builder();
+    for (TreePath path :
+        compiled.paths(t -> t instanceof MethodInvocationTree || t instanceof NewClassTree)) {
+      invocations.add((ExpressionTree) path.getLeaf());
+    }
+    this.invocations = invocations.build();
+    this.state = new VisitorState(compiled.subContext());
+    this.indexedMatcher = anyOf(MATCHERS);
+  }
+
+  @Benchmark
+  public int sequential() {
+    int matches = 0;
+    for (ExpressionTree invocation : invocations) {
+      for (Matcher<ExpressionTree> matcher : MATCHERS) {
+        if (matcher.matches(invocation, state)) {
+          matches++;
+          break;
+        }
+      }
+    }
+    return matches;
+  }
+
+  @Benchmark
+  public int indexed() {
+    int matches = 0;
+    for (ExpressionTree invocation : invocations) {
+      if (indexedMatcher.matches(invocation, state)) {
+        matches++;
+      }
+    }
+    return matches;
+  }
+}
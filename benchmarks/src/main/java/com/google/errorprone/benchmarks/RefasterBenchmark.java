@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.errorprone.CodeTransformer;
+import com.google.errorprone.refaster.RefasterRule;
+import com.google.errorprone.refaster.RefasterRuleBuilderScanner;
+import com.google.errorprone.refaster.RefasterRuleIndex;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreePath;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Matches the Refaster rules in {@code corpus/RefasterRules.java} against every compilation unit of
+ * a corpus.
+ *
+ * <p>{@code indexed} applies all of the rules in a single traversal with a {@code
+ * RefasterRuleIndex}; {@code oneRuleAtATime} applies each rule on its own, traversing the
+ * compilation unit once per rule.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RefasterBenchmark {
+
+  @Param({"real", "callHeavy", "manyFields"})
+  public String corpus;
+
+  private CompiledCorpus compiled;
+  private ImmutableList<RefasterRule<?, ?>> rules;
+  private CodeTransformer index;
+
+  @Setup
+  public void setUp() {
+    CompiledCorpus rulesCorpus = CompiledCorpus.compile(ImmutableList.of(Corpus.refasterRules()));
+    ImmutableList.Builder<RefasterRule<?, ?>> rules = ImmutableList.builder();
+    for (JCCompilationUnit compilationUnit : rulesCorpus.compilationUnits()) {
+      for (Tree typeDecl : compilationUnit.getTypeDecls()) {
+        for (Tree member : ((ClassTree) typeDecl).getMembers()) {
+          if (member instanceof ClassTree) {
+            for (CodeTransformer rule :
+                RefasterRuleBuilderScanner.extractRules(
+                    (ClassTree) member, rulesCorpus.context())) {
+              rules.add((RefasterRule<?, ?>) rule);
+            }
+          }
+        }
+      }
+    }
+    this.rules = rules.build();
+    this.index = RefasterRuleIndex.create(this.rules);
+    this.compiled = CompiledCorpus.compile(corpus);
+  }
+
+  @Benchmark
+  public void indexed(Blackhole blackhole) {
+    for (JCCompilationUnit compilationUnit : compiled.compilationUnits()) {
+      index.apply(new TreePath(compilationUnit), compiled.subContext(), blackhole::consume);
+    }
+  }
+
+  @Benchmark
+  public void oneRuleAtATime(Blackhole blackhole) {
+    for (JCCompilationUnit compilationUnit : compiled.compilationUnits()) {
+      for (RefasterRule<?, ?> rule : rules) {
+        rule.apply(new TreePath(compilationUnit), compiled.subContext(), blackhole::consume);
+      }
+    }
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.benchmarks;
+
+import com.google.errorprone.CodeTransformer;
+import com.google.errorprone.bugpatterns.FieldCanBeFinal;
+import com.google.errorprone.bugpatterns.MethodCanBeStatic;
+import com.google.errorprone.bugpatterns.RemoveUnusedImports;
+import com.google.errorprone.bugpatterns.Unused;
+import com.google.errorprone.bugpatterns.nullness.EqualsBrokenForNull;
+import com.google.errorprone.bugpatterns.nullness.FieldMissingNullable;
+import com.google.errorprone.bugpatterns.nullness.NullableDereference;
+import com.google.errorprone.bugpatterns.nullness.ParameterNotNullable;
+import com.google.errorprone.bugpatterns.nullness.ReturnMissingNullable;
+import com.google.errorprone.bugpatterns.threadsafety.ImmutableRefactoring;
+import com.google.errorprone.dataflow.DataFlow;
+import com.google.errorprone.scanner.BuiltInCheckerSuppliers;
+import com.google.errorprone.scanner.ErrorProneScannerTransformer;
+import com.google.errorprone.scanner.ScannerSupplier;
+import com.sun.source.util.TreePath;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Runs the {@code ErrorProneScanner} over every compilation unit of a corpus, the way {@code
+ * ErrorProneAnalyzer} does during a compilation.
+ *
+ * <p>The {@code checks} parameter selects the checks that run:
+ *
+ * <ul>
+ *   <li>{@code default}: every check that is enabled by default
+ *   <li>{@code wholeFile}: checks that inspect the whole compilation unit at once
+ *   <li>{@code nullness}: the checks that run the nullness dataflow analysis
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ScannerBenchmark {
+
+  @Param({
+    "real",
+    "hugeSwitch",
+    "deepLambdas",
+    "manyFields",
+    "suppressed",
+    "callHeavy",
+    "manyImports"
+  })
+  public String corpus;
+
+  @Param({"default", "wholeFile", "nullness"})
+  public String checks;
+
+  private CompiledCorpus compiled;
+  private CodeTransformer scanner;
+
+  @Setup
+  public void setUp() {
+    compiled = CompiledCorpus.compile(corpus);
+    scanner = ErrorProneScannerTransformer.create(scannerSupplier(checks).get());
+  }
+
+  static ScannerSupplier scannerSupplier(String checks) {
+    switch (checks) {
+      case "default":
+        return BuiltInCheckerSuppliers.defaultChecks();
+      case "wholeFile":
+        return ScannerSupplier.fromBugCheckerClasses(
+            RemoveUnusedImports.class,
+            ImmutableRefactoring.class,
+            Unused.class,
+            FieldCanBeFinal.class,
+            MethodCanBeStatic.class);
+      case "nullness":
+        return ScannerSupplier.fromBugCheckerClasses(
+            NullableDereference.class,
+            ReturnMissingNullable.class,
+            FieldMissingNullable.class,
+            ParameterNotNullable.class,
+            EqualsBrokenForNull.class);
+      default:
+        throw new IllegalArgumentException("Unknown checks: " + checks);
+    }
+  }
+
+  @Benchmark
+  public void scan(Blackhole blackhole) {
+    for (JCCompilationUnit compilationUnit : compiled.compilationUnits()) {
+      try {
+        scanner.apply(new TreePath(compilationUnit), compiled.subContext(), blackhole::consume);
+      } finally {
+        DataFlow.clearCaches();
+      }
+    }
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.errorprone.apply.DescriptionBasedDiff;
+import com.google.errorprone.apply.ImportOrganizer;
+import com.google.errorprone.apply.SourceFile;
+import com.google.errorprone.fixes.AppliedFix;
+import com.google.errorprone.fixes.Fix;
+import com.google.errorprone.fixes.SuggestedFix;
+import com.sun.source.tree.LiteralTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import com.sun.tools.javac.util.Position;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Applies a fix to every method invocation and string literal in a corpus.
+ *
+ * <p>{@code applyEach} applies each fix to the original source on its own, as a fix is rendered for
+ * its diagnostic. {@code applyAll} merges the fixes and applies them together with the import
+ * changes, as a patch or in-place refactoring does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SuggestedFixBenchmark {
+
+  @Param({"real", "callHeavy", "manyFields", "hugeSwitch"})
+  public String corpus;
+
+  private ImmutableList<Unit> units;
+
+  /** A compilation unit, its source, and the fixes to apply to it. */
+  private static final class Unit {
+    final JCCompilationUnit tree;
+    final String source;
+    final ImmutableList<Fix> fixes;
+
+    Unit(JCCompilationUnit tree, String source, ImmutableList<Fix> fixes) {
+      this.tree = tree;
+      this.source = source;
+      this.fixes = fixes;
+    }
+  }
+
+  @Setup
+  public void setUp() throws IOException {
+    ImmutableList.Builder<Unit> units = ImmutableList.builder();
+    for (JCCompilationUnit compilationUnit : CompiledCorpus.compile(corpus).compilationUnits()) {
+      units.add(
+          new Unit(
+              compilationUnit,
+              compilationUnit.getSourceFile().getCharContent(false).toString(),
+              fixes(compilationUnit)));
+    }
+    this.units = units.build();
+  }
+
+  private static ImmutableList<Fix> fixes(JCCompilationUnit compilationUnit) {
+    ImmutableList.Builder<Fix> fixes = ImmutableList.builder();
+    new TreePathScanner<Void, Void>() {
+      private int count;
+
+      @Override
+      public Void scan(Tree tree, Void unused) {
+        SuggestedFix.Builder fix = SuggestedFix.builder();
+        if (tree == null
+            || ((JCTree) tree).getEndPosition(compilationUnit.endPositions) == Position.NOPOS) {
+          // e.g. the implicit super() call in a default constructor
+        } else if (tree instanceof MethodInvocationTree) {
+          fix.postfixWith(tree, " /* checked */");
+        } else if (tree instanceof LiteralTree && tree.getKind() == Tree.Kind.STRING_LITERAL) {
+          fix.replace(tree, tree.toString().toUpperCase());
+        }
+        if (!fix.isEmpty()) {
+          if (count++ % 10 == 0) {
+            fix.addImport("com.google.common.base.Verify");
+          }
+          fixes.add(fix.build());
+        }
+        return super.scan(tree, null);
+      }
+    }.scan(new TreePath(compilationUnit), null);
+    return fixes.build();
+  }
+
+  @Benchmark
+  public void applyEach(Blackhole blackhole) {
+    for (Unit unit : units) {
+      AppliedFix.Applier applier = AppliedFix.fromSource(unit.source, unit.tree.endPositions);
+      for (Fix fix : unit.fixes) {
+        blackhole.consume(applier.apply(fix));
+      }
+    }
+  }
+
+  @Benchmark
+  public void applyAll(Blackhole blackhole) {
+    for (Unit unit : units) {
+      DescriptionBasedDiff diff =
+          DescriptionBasedDiff.create(unit.tree, ImportOrganizer.STATIC_FIRST_ORGANIZER);
+      for (Fix fix : unit.fixes) {
+        diff.handleFix(fix);
+      }
+      SourceFile sourceFile = new SourceFile(diff.getRelevantFileName(), unit.source);
+      diff.applyDifferences(sourceFile);
+      blackhole.consume(sourceFile.getSourceText());
+    }
+  }
+}
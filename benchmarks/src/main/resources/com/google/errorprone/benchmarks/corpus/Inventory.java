@@ -0,0 +1,180 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package corpus;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+
+/** The stock of a warehouse, by item. */
+public class Inventory {
+
+  /** An item that can be stocked. */
+  public static final class Item {
+    private final String sku;
+    private final String description;
+    private final long priceCents;
+    @Nullable private final String category;
+
+    public Item(String sku, String description, long priceCents, @Nullable String category) {
+      this.sku = checkNotNull(sku);
+      this.description = checkNotNull(description);
+      checkArgument(priceCents >= 0, "negative price: %s", priceCents);
+      this.priceCents = priceCents;
+      this.category = category;
+    }
+
+    public String sku() {
+      return sku;
+    }
+
+    public String description() {
+      return description;
+    }
+
+    public long priceCents() {
+      return priceCents;
+    }
+
+    @Nullable
+    public String category() {
+      return category;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof Item)) {
+        return false;
+      }
+      Item that = (Item) other;
+      return sku.equals(that.sku)
+          && description.equals(that.description)
+          && priceCents == that.priceCents
+          && Objects.equals(category, that.category);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(sku, description, priceCents, category);
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%s (%s) at %d.%02d", description, sku, priceCents / 100, priceCents % 100);
+    }
+  }
+
+  private final Map<String, Item> items = new HashMap<>();
+  private final Map<String, Integer> quantities = new HashMap<>();
+  private final List<String> log = new ArrayList<>();
+
+  public void receive(Item item, int quantity) {
+    checkArgument(quantity > 0, "quantity must be positive: %s", quantity);
+    Item existing = items.putIfAbsent(item.sku(), item);
+    if (existing != null && !existing.equals(item)) {
+      throw new IllegalArgumentException("conflicting items for " + item.sku());
+    }
+    quantities.merge(item.sku(), quantity, Integer::sum);
+    log.add("received " + quantity + " of " + item.sku());
+  }
+
+  public boolean ship(String sku, int quantity) {
+    Integer available = quantities.get(sku);
+    if (available == null || available < quantity) {
+      log.add("could not ship " + quantity + " of " + sku);
+      return false;
+    }
+    if (available == quantity) {
+      quantities.remove(sku);
+    } else {
+      quantities.put(sku, available - quantity);
+    }
+    log.add("shipped " + quantity + " of " + sku);
+    return true;
+  }
+
+  public Optional<Item> find(String sku) {
+    return Optional.ofNullable(items.get(sku));
+  }
+
+  public int quantity(String sku) {
+    return quantities.getOrDefault(sku, 0);
+  }
+
+  @Nullable
+  public String categoryOf(String sku) {
+    Item item = items.get(sku);
+    return item != null ? item.category() : null;
+  }
+
+  public long totalValueCents() {
+    long total = 0;
+    for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+      Item item = items.get(entry.getKey());
+      total += item.priceCents() * entry.getValue();
+    }
+    return total;
+  }
+
+  public ImmutableMap<String, Long> valueByCategory() {
+    Map<String, Long> result = new HashMap<>();
+    for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+      Item item = items.get(entry.getKey());
+      String category = item.category() == null ? "uncategorized" : item.category();
+      result.merge(category, item.priceCents() * entry.getValue(), Long::sum);
+    }
+    return ImmutableMap.copyOf(result);
+  }
+
+  public ImmutableList<Item> mostValuable(int limit) {
+    return items.values().stream()
+        .filter(item -> quantity(item.sku()) > 0)
+        .sorted(
+            Comparator.comparingLong((Item item) -> item.priceCents() * quantity(item.sku()))
+                .reversed()
+                .thenComparing(Item::sku))
+        .limit(limit)
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  public List<String> describeLowStock(int threshold) {
+    return quantities.entrySet().stream()
+        .filter(e -> e.getValue() < threshold)
+        .map(e -> find(e.getKey()).map(Item::toString).orElse(e.getKey()) + ": " + e.getValue())
+        .sorted()
+        .collect(Collectors.toList());
+  }
+
+  public String lastLogEntry() {
+    return log.isEmpty() ? "" : log.get(log.size() - 1);
+  }
+}
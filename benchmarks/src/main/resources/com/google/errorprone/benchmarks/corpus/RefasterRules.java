@@ -0,0 +1,148 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package corpus;
+
+import com.google.errorprone.refaster.Refaster;
+import com.google.errorprone.refaster.annotation.AfterTemplate;
+import com.google.errorprone.refaster.annotation.BeforeTemplate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/** Refaster rules of the kind that a large codebase accumulates. */
+class RefasterRules {
+  static class StringIsEmpty {
+    @BeforeTemplate
+    boolean before(String s) {
+      return s.length() == 0;
+    }
+
+    @AfterTemplate
+    boolean after(String s) {
+      return s.isEmpty();
+    }
+  }
+
+  static class CollectionIsEmpty<T> {
+    @BeforeTemplate
+    boolean before(Collection<T> c) {
+      return Refaster.anyOf(c.size() == 0, c.size() <= 0, c.size() < 1);
+    }
+
+    @AfterTemplate
+    boolean after(Collection<T> c) {
+      return c.isEmpty();
+    }
+  }
+
+  static class StringToString {
+    @BeforeTemplate
+    String before(String s) {
+      return s.toString();
+    }
+
+    @AfterTemplate
+    String after(String s) {
+      return s;
+    }
+  }
+
+  static class StringValueOfString {
+    @BeforeTemplate
+    String before(String s) {
+      return String.valueOf(s);
+    }
+
+    @AfterTemplate
+    String after(String s) {
+      return s;
+    }
+  }
+
+  static class NewStringBuilderEmptyString {
+    @BeforeTemplate
+    StringBuilder before() {
+      return new StringBuilder("");
+    }
+
+    @AfterTemplate
+    StringBuilder after() {
+      return new StringBuilder();
+    }
+  }
+
+  static class MapContainsKeyThenGet<K, V> {
+    @BeforeTemplate
+    boolean before(Map<K, V> map, K key) {
+      return map.keySet().contains(key);
+    }
+
+    @AfterTemplate
+    boolean after(Map<K, V> map, K key) {
+      return map.containsKey(key);
+    }
+  }
+
+  static class ObjectsEqualsNull {
+    @BeforeTemplate
+    boolean before(Object o) {
+      return Objects.equals(o, null);
+    }
+
+    @AfterTemplate
+    boolean after(Object o) {
+      return o == null;
+    }
+  }
+
+  static class OptionalOrElseNull<T> {
+    @BeforeTemplate
+    T before(Optional<T> optional) {
+      return optional.isPresent() ? optional.get() : null;
+    }
+
+    @AfterTemplate
+    T after(Optional<T> optional) {
+      return optional.orElse(null);
+    }
+  }
+
+  static class BooleanEqualsTrue {
+    @BeforeTemplate
+    boolean before(boolean b) {
+      return Refaster.anyOf(b == true, true == b);
+    }
+
+    @AfterTemplate
+    boolean after(boolean b) {
+      return b;
+    }
+  }
+
+  static class StringConcatEmpty {
+    @BeforeTemplate
+    String before(String s) {
+      return Refaster.anyOf(s + "", "" + s);
+    }
+
+    @AfterTemplate
+    String after(String s) {
+      return s;
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package corpus;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+
+/** Runs tasks on a thread pool once the tasks they depend on have finished. */
+public class TaskScheduler implements AutoCloseable {
+
+  private static final Logger logger = Logger.getLogger(TaskScheduler.class.getName());
+
+  private final ExecutorService executor;
+  private final Map<String, Supplier<?>> tasks = new HashMap<>();
+  private final Map<String, Set<String>> dependencies = new HashMap<>();
+  private final Map<String, CompletableFuture<Object>> results = new HashMap<>();
+  private final Object lock = new Object();
+
+  public TaskScheduler(int threads) {
+    this.executor = Executors.newFixedThreadPool(threads);
+  }
+
+  public void add(String name, Supplier<?> task, String... dependsOn) {
+    synchronized (lock) {
+      if (tasks.containsKey(name)) {
+        throw new IllegalStateException("duplicate task: " + name);
+      }
+      tasks.put(name, task);
+      Set<String> deps = new HashSet<>();
+      for (String dependency : dependsOn) {
+        deps.add(dependency);
+      }
+      dependencies.put(name, deps);
+    }
+  }
+
+  /** Returns the tasks in an order that respects their dependencies. */
+  public ImmutableList<String> order() {
+    synchronized (lock) {
+      List<String> ordered = new ArrayList<>();
+      Set<String> visited = new HashSet<>();
+      Set<String> visiting = new HashSet<>();
+      for (String name : tasks.keySet()) {
+        visit(name, visited, visiting, ordered);
+      }
+      return ImmutableList.copyOf(ordered);
+    }
+  }
+
+  private void visit(String name, Set<String> visited, Set<String> visiting, List<String> out) {
+    if (visited.contains(name)) {
+      return;
+    }
+    if (!visiting.add(name)) {
+      throw new IllegalStateException("cycle through " + name);
+    }
+    Set<String> deps = dependencies.get(name);
+    if (deps == null) {
+      throw new IllegalStateException("unknown task: " + name);
+    }
+    for (String dependency : deps) {
+      visit(dependency, visited, visiting, out);
+    }
+    visiting.remove(name);
+    visited.add(name);
+    out.add(name);
+  }
+
+  public Map<String, Object> runAll(long timeout, TimeUnit unit)
+      throws InterruptedException, TimeoutException {
+    Deque<String> pending = new ArrayDeque<>(order());
+    synchronized (lock) {
+      while (!pending.isEmpty()) {
+        String name = pending.removeFirst();
+        Supplier<?> task = tasks.get(name);
+        CompletableFuture<?>[] deps =
+            dependencies.get(name).stream().map(results::get).toArray(CompletableFuture<?>[]::new);
+        CompletableFuture<Object> result =
+            CompletableFuture.allOf(deps).thenApplyAsync(unused -> task.get(), executor);
+        results.put(name, result);
+      }
+    }
+    Map<String, Object> values = new HashMap<>();
+    for (Map.Entry<String, CompletableFuture<Object>> entry : results.entrySet()) {
+      values.put(entry.getKey(), await(entry.getKey(), entry.getValue(), timeout, unit));
+    }
+    return values;
+  }
+
+  @Nullable
+  private static Object await(String name, Future<Object> future, long timeout, TimeUnit unit)
+      throws InterruptedException, TimeoutException {
+    try {
+      return future.get(timeout, unit);
+    } catch (ExecutionException e) {
+      logger.log(Level.WARNING, "task " + name + " failed", e.getCause());
+      return null;
+    }
+  }
+
+  @Override
+  public void close() {
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+        executor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+}
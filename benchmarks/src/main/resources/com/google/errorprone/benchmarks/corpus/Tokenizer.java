@@ -0,0 +1,229 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package corpus;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/** Splits arithmetic expressions into tokens. */
+public final class Tokenizer implements Iterator<Tokenizer.Token> {
+
+  /** The kinds of token. */
+  public enum Kind {
+    NUMBER,
+    IDENTIFIER,
+    PLUS,
+    MINUS,
+    TIMES,
+    DIVIDE,
+    LEFT_PAREN,
+    RIGHT_PAREN,
+    COMMA,
+    END
+  }
+
+  /** A token, and its position in the input. */
+  public static final class Token {
+    final Kind kind;
+    final String text;
+    final int position;
+
+    Token(Kind kind, String text, int position) {
+      this.kind = kind;
+      this.text = text;
+      this.position = position;
+    }
+
+    @Override
+    public String toString() {
+      return kind + "(" + text + ")@" + position;
+    }
+  }
+
+  /** Thrown for malformed input. */
+  public static final class SyntaxException extends RuntimeException {
+    SyntaxException(String message, int position) {
+      super(message + " at position " + position);
+    }
+  }
+
+  private final String input;
+  private int position;
+  private boolean done;
+
+  public Tokenizer(String input) {
+    this.input = input;
+  }
+
+  public static List<Token> tokenize(String input) {
+    List<Token> tokens = new ArrayList<>();
+    Tokenizer tokenizer = new Tokenizer(input);
+    while (tokenizer.hasNext()) {
+      tokens.add(tokenizer.next());
+    }
+    return tokens;
+  }
+
+  @Override
+  public boolean hasNext() {
+    return !done;
+  }
+
+  @Override
+  public Token next() {
+    if (done) {
+      throw new NoSuchElementException();
+    }
+    skipWhitespace();
+    if (position >= input.length()) {
+      done = true;
+      return new Token(Kind.END, "", position);
+    }
+    int start = position;
+    char c = input.charAt(position);
+    switch (c) {
+      case '+':
+        position++;
+        return new Token(Kind.PLUS, "+", start);
+      case '-':
+        position++;
+        return new Token(Kind.MINUS, "-", start);
+      case '*':
+        position++;
+        return new Token(Kind.TIMES, "*", start);
+      case '/':
+        position++;
+        return new Token(Kind.DIVIDE, "/", start);
+      case '(':
+        position++;
+        return new Token(Kind.LEFT_PAREN, "(", start);
+      case ')':
+        position++;
+        return new Token(Kind.RIGHT_PAREN, ")", start);
+      case ',':
+        position++;
+        return new Token(Kind.COMMA, ",", start);
+      default:
+        if (Character.isDigit(c) || c == '.') {
+          return number(start);
+        }
+        if (Character.isJavaIdentifierStart(c)) {
+          return identifier(start);
+        }
+        throw new SyntaxException("unexpected character '" + c + "'", start);
+    }
+  }
+
+  private void skipWhitespace() {
+    while (position < input.length() && Character.isWhitespace(input.charAt(position))) {
+      position++;
+    }
+  }
+
+  private Token number(int start) {
+    boolean seenDot = false;
+    StringBuilder text = new StringBuilder();
+    while (position < input.length()) {
+      char c = input.charAt(position);
+      if (c == '.') {
+        if (seenDot) {
+          throw new SyntaxException("second decimal point", position);
+        }
+        seenDot = true;
+      } else if (!Character.isDigit(c)) {
+        break;
+      }
+      text.append(c);
+      position++;
+    }
+    if (text.length() == 1 && seenDot) {
+      throw new SyntaxException("expected a digit", start);
+    }
+    return new Token(Kind.NUMBER, text.toString(), start);
+  }
+
+  private Token identifier(int start) {
+    while (position < input.length() && Character.isJavaIdentifierPart(input.charAt(position))) {
+      position++;
+    }
+    return new Token(Kind.IDENTIFIER, input.substring(start, position), start);
+  }
+
+  /** Evaluates a tokenized expression without variables. */
+  public static double evaluate(List<Token> tokens) {
+    int[] index = {0};
+    double result = sum(tokens, index);
+    if (tokens.get(index[0]).kind != Kind.END) {
+      Token token = tokens.get(index[0]);
+      throw new SyntaxException("unexpected " + token.text, token.position);
+    }
+    return result;
+  }
+
+  private static double sum(List<Token> tokens, int[] index) {
+    double result = product(tokens, index);
+    while (true) {
+      Kind kind = tokens.get(index[0]).kind;
+      if (kind == Kind.PLUS) {
+        index[0]++;
+        result += product(tokens, index);
+      } else if (kind == Kind.MINUS) {
+        index[0]++;
+        result -= product(tokens, index);
+      } else {
+        return result;
+      }
+    }
+  }
+
+  private static double product(List<Token> tokens, int[] index) {
+    double result = atom(tokens, index);
+    while (true) {
+      Kind kind = tokens.get(index[0]).kind;
+      if (kind == Kind.TIMES) {
+        index[0]++;
+        result *= atom(tokens, index);
+      } else if (kind == Kind.DIVIDE) {
+        index[0]++;
+        result /= atom(tokens, index);
+      } else {
+        return result;
+      }
+    }
+  }
+
+  private static double atom(List<Token> tokens, int[] index) {
+    Token token = tokens.get(index[0]++);
+    switch (token.kind) {
+      case NUMBER:
+        return Double.parseDouble(token.text);
+      case MINUS:
+        return -atom(tokens, index);
+      case LEFT_PAREN:
+        double result = sum(tokens, index);
+        Token close = tokens.get(index[0]++);
+        if (close.kind != Kind.RIGHT_PAREN) {
+          throw new SyntaxException("expected )", close.position);
+        }
+        return result;
+      default:
+        throw new SyntaxException("unexpected " + token.text, token.position);
+    }
+  }
+}
@@ -249,20 +249,42 @@ public class BaseErrorProneJavaCompiler implements JavaCompiler {
 
     @Override
     public void finished(TaskEvent event) {
+      if (event.getKind() == Kind.COMPILATION) {
+        try {
+          report(refactoringCollection.finish());
+        } catch (Exception e) {
+          PrintWriter out = Log.instance(context).getWriter(WriterKind.ERROR);
+          out.println("Failed to apply refactoring changes: " + e.getMessage());
+          out.flush();
+        }
+        return;
+      }
       if (event.getKind() != Kind.GENERATE) {
         return;
       }
-      RefactoringResult refactoringResult;
+      ImmutableList<RefactoringResult> refactoringResults;
       try {
-        refactoringResult = refactoringCollection.applyChanges(event.getSourceFile().toUri());
+        refactoringResults = refactoringCollection.applyChanges(event.getSourceFile().toUri());
       } catch (Exception e) {
         PrintWriter out = Log.instance(context).getWriter(WriterKind.ERROR);
         out.println(e.getMessage());
         out.flush();
         return;
       }
-      if (refactoringResult.type() == RefactoringCollection.RefactoringResultType.CHANGED) {
-        PrintWriter out = Log.instance(context).getWriter(WriterKind.NOTICE);
+      report(refactoringResults);
+    }
+
+    private void report(ImmutableList<RefactoringResult> refactoringResults) {
+      for (RefactoringResult refactoringResult : refactoringResults) {
+        if (refactoringResult.type() == RefactoringCollection.RefactoringResultType.NO_CHANGES) {
+          continue;
+        }
+        PrintWriter out =
+            Log.instance(context)
+                .getWriter(
+                    refactoringResult.type() == RefactoringCollection.RefactoringResultType.FAILED
+                        ? WriterKind.ERROR
+                        : WriterKind.NOTICE);
         out.println(refactoringResult.message());
         out.flush();
       }
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone;
+
+import com.google.errorprone.matchers.Suppressible;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.JCDiagnostic;
+import com.sun.tools.javac.util.JCDiagnostic.DiagnosticType;
+import com.sun.tools.javac.util.Log;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Isolates the rest of the compilation from checks that crash or run for too long.
+ *
+ * <p>By default a check that throws an exception aborts the compilation. When a failure limit is
+ * set with {@code -XepCheckFailureLimit:<n>}, the exception is recorded instead and the check keeps
+ * running, until it has thrown {@code n} times; after that the check is disabled for the rest of
+ * the compilation.
+ *
+ * <p>With {@code -XepCheckTimeBudget:<millis>}, a check is disabled for the rest of the compilation
+ * once single invocations of it have taken longer than the budget {@code -XepCheckOverrunLimit:<n>}
+ * times, 3 by default, so that an occasional pause such as a garbage collection doesn't disable a
+ * check. A running check can't be interrupted, so the budget bounds how often a slow check is
+ * allowed to run, not how long one invocation takes. The failure limit and the time budget are
+ * independent: a time budget alone doesn't stop exceptions from aborting the compilation.
+ *
+ * <p>A single circuit breaker is shared by every compilation unit in a javac task, and a summary of
+ * the checks that failed is reported as a note when the compilation finishes, so that it doesn't
+ * fail builds that use {@code -Werror}.
+ */
+public class CheckCircuitBreaker {
+
+  /** A circuit breaker that lets every failure propagate. */
+  private static final CheckCircuitBreaker DISABLED = new CheckCircuitBreaker(0, 0, 0);
+
+  /** Returns a circuit breaker that lets every failure propagate. */
+  public static CheckCircuitBreaker disabled() {
+    return DISABLED;
+  }
+
+  /**
+   * Returns the circuit breaker for the current compilation, or a disabled one if no failure limit
+   * or time budget was set.
+   */
+  public static CheckCircuitBreaker instance(Context context) {
+    CheckCircuitBreaker breaker = context.get(CheckCircuitBreaker.class);
+    return breaker != null ? breaker : DISABLED;
+  }
+
+  /**
+   * Creates a circuit breaker for the given options, and registers it in the context. A failure
+   * limit or time budget of 0 means there is none.
+   */
+  static CheckCircuitBreaker register(
+      Context context, int failureLimit, long timeBudgetMillis, int overrunLimit) {
+    CheckCircuitBreaker breaker =
+        new CheckCircuitBreaker(
+            failureLimit, TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis), overrunLimit);
+    context.put(CheckCircuitBreaker.class, breaker);
+    return breaker;
+  }
+
+  private final int failureLimit;
+  private final long timeBudgetNanos;
+  private final int overrunLimit;
+  private final Map<String, Failures> failures = new TreeMap<>();
+
+  private CheckCircuitBreaker(int failureLimit, long timeBudgetNanos, int overrunLimit) {
+    this.failureLimit = failureLimit;
+    this.timeBudgetNanos = timeBudgetNanos;
+    this.overrunLimit = overrunLimit;
+  }
+
+  /**
+   * Returns true if exceptions thrown by checks are recorded with {@link #recordFailure} instead of
+   * aborting the compilation.
+   */
+  public boolean isolatesExceptions() {
+    return failureLimit > 0;
+  }
+
+  /**
+   * Returns true if {@code check} has been disabled for the rest of the compilation.
+   *
+   * <p>This looks the check up by name, so a scanner should remember the answer rather than ask
+   * before every invocation; it only changes when a failure or overrun of the check is recorded.
+   */
+  public boolean isTripped(Suppressible check) {
+    Failures entry = failures.get(check.canonicalName());
+    return entry != null && entry.isTripped();
+  }
+
+  /**
+   * Returns the time at which an invocation of a check starts, to be passed to {@link #overrun}.
+   */
+  public long start() {
+    return timeBudgetNanos > 0 ? System.nanoTime() : 0;
+  }
+
+  /**
+   * Returns the time taken by an invocation that started at {@code startNanos} if it was longer
+   * than the time budget, or else 0.
+   */
+  public long overrun(long startNanos) {
+    if (timeBudgetNanos <= 0) {
+      return 0;
+    }
+    long elapsedNanos = System.nanoTime() - startNanos;
+    return elapsedNanos > timeBudgetNanos ? elapsedNanos : 0;
+  }
+
+  /** Records that an invocation of {@code check} took longer than the time budget. */
+  public void recordOverrun(Suppressible check, long elapsedNanos, String location) {
+    Failures entry = failures(check);
+    entry.overruns++;
+    entry.describe(
+        location,
+        String.format(
+            "took %dms, over the budget of %dms",
+            TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+            TimeUnit.NANOSECONDS.toMillis(timeBudgetNanos)));
+  }
+
+  /** Records that an invocation of {@code check} threw {@code t}. */
+  public void recordFailure(Suppressible check, Throwable t, String location) {
+    Failures entry = failures(check);
+    entry.exceptions++;
+    entry.describe(location, t.toString());
+  }
+
+  /** Returns true if any check has failed so far. */
+  boolean hasFailures() {
+    return !failures.isEmpty();
+  }
+
+  private Failures failures(Suppressible check) {
+    return failures.computeIfAbsent(check.canonicalName(), k -> new Failures());
+  }
+
+  /** Reports the checks that failed during the compilation as a note, if any did. */
+  void reportSummary(Context context) {
+    if (failures.isEmpty()) {
+      return;
+    }
+    StringBuilder summary =
+        new StringBuilder("[ErrorProne] some checks failed during the compilation:");
+    for (Map.Entry<String, Failures> entry : failures.entrySet()) {
+      Failures f = entry.getValue();
+      summary.append(
+          String.format(
+              "%n  %s: %d exception(s), %d time budget overrun(s)%s; first at %s: %s",
+              entry.getKey(),
+              f.exceptions,
+              f.overruns,
+              f.isTripped() ? ", disabled" : "",
+              f.firstLocation,
+              f.firstMessage));
+    }
+    Log.instance(context)
+        .report(
+            JCDiagnostic.Factory.instance(context)
+                .create(DiagnosticType.NOTE, null, null, "error.prone", summary.toString()));
+  }
+
+  /** The failures of a single check. */
+  private final class Failures {
+    int exceptions;
+    int overruns;
+    String firstLocation;
+    String firstMessage;
+
+    boolean isTripped() {
+      return (failureLimit > 0 && exceptions >= failureLimit)
+          || (timeBudgetNanos > 0 && overruns >= overrunLimit);
+    }
+
+    void describe(String location, String message) {
+      if (firstLocation == null) {
+        firstLocation = location;
+        firstMessage = message;
+      }
+    }
+  }
+}
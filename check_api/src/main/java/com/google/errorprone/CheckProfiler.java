@@ -0,0 +1,277 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Comparator.comparingLong;
+
+import com.google.errorprone.matchers.Suppressible;
+import com.sun.source.tree.Tree;
+import com.sun.tools.javac.util.Context;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the cost of running each check, broken down by the kind of tree the check was invoked
+ * on.
+ *
+ * <p>Profiling is enabled with {@code -XepProfile:<file>}. A single profiler is shared by every
+ * compilation unit in a javac task, and the aggregated results are written to the given file as
+ * CSV when the compilation finishes. The hit and miss counts of the caches shared by checks are
+ * written to a second CSV file next to it, with the suffix {@code .caches.csv}, and any other
+ * counters to a third one with the suffix {@code .counters.csv}.
+ */
+public class CheckProfiler {
+
+  /** A profiler that records nothing. */
+  private static final CheckProfiler DISABLED = new CheckProfiler(null);
+
+  /**
+   * Returns the profiler for the current compilation, or a no-op profiler if profiling was not
+   * requested.
+   */
+  public static CheckProfiler instance(Context context) {
+    CheckProfiler profiler = context.get(CheckProfiler.class);
+    return profiler != null ? profiler : DISABLED;
+  }
+
+  /** Creates a profiler that reports to {@code output}, and registers it in the context. */
+  static CheckProfiler register(Context context, Path output) {
+    CheckProfiler profiler = new CheckProfiler(output);
+    context.put(CheckProfiler.class, profiler);
+    return profiler;
+  }
+
+  private final Path output;
+  private final com.sun.management.ThreadMXBean allocationBean;
+  private final Map<String, Map<Tree.Kind, Stats>> stats = new HashMap<>();
+  private final Map<String, CacheStats> cacheStats = new TreeMap<>();
+  private final Map<String, Counter> counters = new TreeMap<>();
+
+  private CheckProfiler(Path output) {
+    this.output = output;
+    this.allocationBean = output != null ? allocationBean() : null;
+  }
+
+  /** Returns the per-thread allocation counter, if the JVM supports one. */
+  private static com.sun.management.ThreadMXBean allocationBean() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+      return null;
+    }
+    com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) bean;
+    if (!allocationBean.isThreadAllocatedMemorySupported()
+        || !allocationBean.isThreadAllocatedMemoryEnabled()) {
+      return null;
+    }
+    return allocationBean;
+  }
+
+  public boolean isEnabled() {
+    return output != null;
+  }
+
+  /**
+   * Starts timing a single invocation of {@code check} on a tree of the given kind. The returned
+   * span must be closed when the check returns.
+   */
+  public Span span(Suppressible check, Tree.Kind kind) {
+    if (output == null) {
+      return Span.NO_OP;
+    }
+    Stats entry =
+        stats
+            .computeIfAbsent(check.canonicalName(), k -> new EnumMap<>(Tree.Kind.class))
+            .computeIfAbsent(kind, k -> new Stats());
+    return new Span(this, entry, allocatedBytes(), System.nanoTime());
+  }
+
+  /**
+   * Returns the counters for the cache with the given name, which are included in the report. If
+   * profiling is disabled, the counts are discarded.
+   */
+  public CacheStats cacheStats(String cache) {
+    if (output == null) {
+      return new CacheStats();
+    }
+    return cacheStats.computeIfAbsent(cache, k -> new CacheStats());
+  }
+
+  /**
+   * Returns the counter with the given name, which is included in the report. If profiling is
+   * disabled, the counts are discarded.
+   */
+  public Counter counter(String name) {
+    if (output == null) {
+      return new Counter();
+    }
+    return counters.computeIfAbsent(name, k -> new Counter());
+  }
+
+  private long allocatedBytes() {
+    return allocationBean != null
+        ? allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId())
+        : 0;
+  }
+
+  /** Writes the aggregated report, sorted by descending total wall time. */
+  void writeReport() throws IOException {
+    if (output == null) {
+      return;
+    }
+    List<Row> rows = new ArrayList<>();
+    stats.forEach(
+        (check, byKind) -> byKind.forEach((kind, s) -> rows.add(new Row(check, kind, s))));
+    rows.sort(comparingLong((Row r) -> r.stats.wallNanos).reversed());
+    try (Writer writer = Files.newBufferedWriter(output, UTF_8)) {
+      writer.write("check,kind,invocations,wall_nanos,allocated_bytes\n");
+      for (Row row : rows) {
+        writer.write(
+            String.format(
+                "%s,%s,%d,%d,%d\n",
+                row.check,
+                row.kind,
+                row.stats.invocations,
+                row.stats.wallNanos,
+                row.stats.allocatedBytes));
+      }
+    }
+    if (!cacheStats.isEmpty()) {
+      Path cacheOutput = output.resolveSibling(output.getFileName() + ".caches.csv");
+      try (Writer writer = Files.newBufferedWriter(cacheOutput, UTF_8)) {
+        writer.write("cache,hits,misses\n");
+        for (Map.Entry<String, CacheStats> entry : cacheStats.entrySet()) {
+          writer.write(
+              String.format(
+                  "%s,%d,%d\n",
+                  entry.getKey(),
+                  entry.getValue().hits(),
+                  entry.getValue().misses()));
+        }
+      }
+    }
+    if (!counters.isEmpty()) {
+      Path counterOutput = output.resolveSibling(output.getFileName() + ".counters.csv");
+      try (Writer writer = Files.newBufferedWriter(counterOutput, UTF_8)) {
+        writer.write("counter,value\n");
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+          writer.write(String.format("%s,%d\n", entry.getKey(), entry.getValue().value));
+        }
+      }
+    }
+  }
+
+  /** An in-progress measurement of a single check invocation. */
+  public static final class Span implements AutoCloseable {
+
+    static final Span NO_OP = new Span(null, null, 0, 0);
+
+    private final CheckProfiler profiler;
+    private final Stats stats;
+    private final long startBytes;
+    private final long startNanos;
+
+    private Span(CheckProfiler profiler, Stats stats, long startBytes, long startNanos) {
+      this.profiler = profiler;
+      this.stats = stats;
+      this.startBytes = startBytes;
+      this.startNanos = startNanos;
+    }
+
+    @Override
+    public void close() {
+      if (profiler == null) {
+        return;
+      }
+      long endNanos = System.nanoTime();
+      stats.invocations++;
+      stats.wallNanos += endNanos - startNanos;
+      stats.allocatedBytes += profiler.allocatedBytes() - startBytes;
+    }
+  }
+
+  /**
+   * The number of hits and misses of a cache. The counts may be updated concurrently, by caches
+   * that are read from several threads.
+   */
+  public static final class CacheStats {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private CacheStats() {}
+
+    public void hit() {
+      hits.increment();
+    }
+
+    public void miss() {
+      misses.increment();
+    }
+
+    public long hits() {
+      return hits.sum();
+    }
+
+    public long misses() {
+      return misses.sum();
+    }
+  }
+
+  /** A count of something other than check invocations, e.g. the time spent in a shared solver. */
+  public static final class Counter {
+    private long value;
+
+    private Counter() {}
+
+    public void add(long delta) {
+      value += delta;
+    }
+
+    public long value() {
+      return value;
+    }
+  }
+
+  private static final class Stats {
+    long invocations;
+    long wallNanos;
+    long allocatedBytes;
+  }
+
+  private static final class Row {
+    final String check;
+    final Tree.Kind kind;
+    final Stats stats;
+
+    Row(String check, Tree.Kind kind, Stats stats) {
+      this.check = check;
+      this.kind = kind;
+      this.stats = stats;
+    }
+  }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Loads the {@link CodeTransformer}s passed with {@code -XepPatchChecks:refaster:} from a format
+ * other than a single Java-serialized transformer.
+ *
+ * <p>Implementations are discovered with {@link java.util.ServiceLoader}.
+ */
+public interface CodeTransformerLoader {
+
+  /** Returns true if this loader can load the file, directory or archive at {@code path}. */
+  boolean canLoad(Path path) throws IOException;
+
+  /** Loads the transformers at {@code path}, combined into one. */
+  CodeTransformer load(Path path) throws IOException;
+}
@@ -23,6 +23,7 @@ import static com.google.common.base.Verify.verify;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import com.google.errorprone.BugPattern.SeverityLevel;
+import com.google.errorprone.dataflow.DataFlow;
 import com.google.errorprone.scanner.ErrorProneScannerTransformer;
 import com.google.errorprone.scanner.ScannerSupplier;
 import com.google.errorprone.util.ASTHelpers;
@@ -39,7 +40,10 @@ import com.sun.tools.javac.main.JavaCompiler;
 import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
 import com.sun.tools.javac.util.Context;
 import com.sun.tools.javac.util.Log;
+import com.sun.tools.javac.util.Log.WriterKind;
 import com.sun.tools.javac.util.PropagatedException;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -56,6 +60,10 @@ public class ErrorProneAnalyzer implements TaskListener {
   private final ErrorProneOptions errorProneOptions;
   private final Context context;
   private final DescriptionListener.Factory descriptionListenerFactory;
+  private final CheckProfiler profiler;
+  private final CheckCircuitBreaker circuitBreaker;
+  // null unless a cache directory was given; the results of refactoring aren't cached
+  private final ResultCache resultCache;
 
   public static ErrorProneAnalyzer createByScanningForPlugins(
       ScannerSupplier scannerSupplier, ErrorProneOptions errorProneOptions, Context context) {
@@ -104,12 +112,35 @@ public class ErrorProneAnalyzer implements TaskListener {
     this.errorProneOptions = checkNotNull(errorProneOptions);
     this.context = checkNotNull(context);
     this.descriptionListenerFactory = checkNotNull(descriptionListenerFactory);
+    this.profiler =
+        errorProneOptions.getProfilePath() != null
+            ? CheckProfiler.register(context, errorProneOptions.getProfilePath())
+            : CheckProfiler.instance(context);
+    this.circuitBreaker =
+        errorProneOptions.getCheckFailureLimit() > 0
+                || errorProneOptions.getCheckTimeBudgetMillis() > 0
+            ? CheckCircuitBreaker.register(
+                context,
+                errorProneOptions.getCheckFailureLimit(),
+                errorProneOptions.getCheckTimeBudgetMillis(),
+                errorProneOptions.getCheckOverrunLimit())
+            : CheckCircuitBreaker.instance(context);
+    this.resultCache =
+        errorProneOptions.getCacheDir() != null && !errorProneOptions.patchingOptions().doRefactor()
+            ? new ResultCache(errorProneOptions, context)
+            : null;
   }
 
   private int errorProneErrors = 0;
 
   @Override
   public void finished(TaskEvent taskEvent) {
+    if (taskEvent.getKind() == Kind.COMPILATION) {
+      writeProfile();
+      trimResultCache();
+      circuitBreaker.reportSummary(context);
+      return;
+    }
     if (taskEvent.getKind() != Kind.ANALYZE) {
       return;
     }
@@ -144,11 +175,11 @@ public class ErrorProneAnalyzer implements TaskListener {
         // We only get TaskEvents for compilation units if they contain no package declarations
         // (e.g. package-info.java files).  In this case it's safe to analyze the
         // CompilationUnitTree immediately.
-        transformer.get().apply(path, subContext, countingDescriptionListener);
+        scan(path, subContext, countingDescriptionListener);
       } else if (finishedCompilation(path.getCompilationUnit())) {
         // Otherwise this TaskEvent is for a ClassTree, and we can scan the whole
         // CompilationUnitTree once we've seen all the enclosed classes.
-        transformer.get().apply(new TreePath(compilation), subContext, countingDescriptionListener);
+        scan(new TreePath(compilation), subContext, countingDescriptionListener);
       }
     } catch (ErrorProneError e) {
       e.logFatalError(log, context);
@@ -169,10 +200,48 @@ public class ErrorProneAnalyzer implements TaskListener {
       // reported yet, but we don't want to crash javac.
       log.error("proc.cant.access", e.sym, e.getDetailValue(), getStackTraceAsString(e));
     } finally {
+      DataFlow.clearCaches();
       log.useSource(originalSource);
     }
   }
 
+  /** Scans a compilation unit, or replays its cached results if a result cache is enabled. */
+  private void scan(TreePath path, Context subContext, DescriptionListener listener) {
+    // root VisitorStates are also created in the middle of a compilation unit, so failed lookups
+    // are forgotten here rather than whenever one is created
+    ResolutionCache.instance(context).startCompilationUnit();
+    if (resultCache != null) {
+      resultCache.scan(path, transformer.get(), subContext, listener);
+    } else {
+      transformer.get().apply(path, subContext, listener);
+    }
+  }
+
+  /** Evicts old entries from the result cache, if one is enabled. */
+  private void trimResultCache() {
+    if (resultCache == null) {
+      return;
+    }
+    try {
+      resultCache.trim();
+    } catch (IOException e) {
+      PrintWriter out = Log.instance(context).getWriter(WriterKind.ERROR);
+      out.println("Failed to trim the Error Prone result cache: " + e.getMessage());
+      out.flush();
+    }
+  }
+
+  /** Writes the per-check profile aggregated over all compilation units, if one was requested. */
+  private void writeProfile() {
+    try {
+      profiler.writeReport();
+    } catch (IOException e) {
+      PrintWriter out = Log.instance(context).getWriter(WriterKind.ERROR);
+      out.println("Failed to write Error Prone profile: " + e.getMessage());
+      out.flush();
+    }
+  }
+
   /** Returns true if the given source file should be excluded from analysis. */
   private boolean shouldExcludeSourceFile(CompilationUnitTree tree) {
     Pattern excludedPattern = errorProneOptions.getExcludedPattern();
@@ -30,11 +30,13 @@ import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.ServiceLoader;
 import java.util.Set;
 import java.util.regex.Pattern;
 
@@ -59,6 +61,14 @@ public class ErrorProneOptions {
       "-XepDisableWarningsInGeneratedCode";
   private static final String COMPILING_TEST_ONLY_CODE = "-XepCompilingTestOnlyCode";
   private static final String EXCLUDED_PATHS_PREFIX = "-XepExcludedPaths:";
+  private static final String PROFILE_PREFIX = "-XepProfile:";
+  private static final String CHECK_FAILURE_LIMIT_PREFIX = "-XepCheckFailureLimit:";
+  private static final String CHECK_TIME_BUDGET_PREFIX = "-XepCheckTimeBudget:";
+  private static final String CHECK_OVERRUN_LIMIT_PREFIX = "-XepCheckOverrunLimit:";
+  private static final int DEFAULT_CHECK_OVERRUN_LIMIT = 3;
+  private static final String CACHE_DIR_PREFIX = "-XepCacheDir:";
+  private static final String CACHE_MAX_SIZE_PREFIX = "-XepCacheMaxSize:";
+  private static final int DEFAULT_CACHE_MAX_MEGABYTES = 256;
 
   /** see {@link javax.tools.OptionChecker#isSupportedOption(String)} */
   public static int isSupportedOption(String option) {
@@ -68,6 +78,12 @@ public class ErrorProneOptions {
             || option.startsWith(PATCH_OUTPUT_LOCATION)
             || option.startsWith(PATCH_CHECKS_PREFIX)
             || option.startsWith(EXCLUDED_PATHS_PREFIX)
+            || option.startsWith(PROFILE_PREFIX)
+            || option.startsWith(CHECK_FAILURE_LIMIT_PREFIX)
+            || option.startsWith(CHECK_TIME_BUDGET_PREFIX)
+            || option.startsWith(CHECK_OVERRUN_LIMIT_PREFIX)
+            || option.startsWith(CACHE_DIR_PREFIX)
+            || option.startsWith(CACHE_MAX_SIZE_PREFIX)
             || option.equals(IGNORE_UNKNOWN_CHECKS_FLAG)
             || option.equals(DISABLE_WARNINGS_IN_GENERATED_CODE_FLAG)
             || option.equals(ERRORS_AS_WARNINGS_FLAG)
@@ -161,6 +177,12 @@ public class ErrorProneOptions {
   private final ErrorProneFlags flags;
   private final PatchingOptions patchingOptions;
   private final Pattern excludedPattern;
+  private final Path profilePath;
+  private final int checkFailureLimit;
+  private final long checkTimeBudgetMillis;
+  private final int checkOverrunLimit;
+  private final Path cacheDir;
+  private final int cacheMaxMegabytes;
 
   private ErrorProneOptions(
       ImmutableMap<String, Severity> severityMap,
@@ -173,7 +195,13 @@ public class ErrorProneOptions {
       boolean isTestOnlyTarget,
       ErrorProneFlags flags,
       PatchingOptions patchingOptions,
-      Pattern excludedPattern) {
+      Pattern excludedPattern,
+      Path profilePath,
+      int checkFailureLimit,
+      long checkTimeBudgetMillis,
+      int checkOverrunLimit,
+      Path cacheDir,
+      int cacheMaxMegabytes) {
     this.severityMap = severityMap;
     this.remainingArgs = remainingArgs;
     this.ignoreUnknownChecks = ignoreUnknownChecks;
@@ -185,6 +213,12 @@ public class ErrorProneOptions {
     this.flags = flags;
     this.patchingOptions = patchingOptions;
     this.excludedPattern = excludedPattern;
+    this.profilePath = profilePath;
+    this.checkFailureLimit = checkFailureLimit;
+    this.checkTimeBudgetMillis = checkTimeBudgetMillis;
+    this.checkOverrunLimit = checkOverrunLimit;
+    this.cacheDir = cacheDir;
+    this.cacheMaxMegabytes = cacheMaxMegabytes;
   }
 
   public String[] getRemainingArgs() {
@@ -223,6 +257,45 @@ public class ErrorProneOptions {
     return excludedPattern;
   }
 
+  /** Returns the file that per-check profiling results should be written to, or null. */
+  public Path getProfilePath() {
+    return profilePath;
+  }
+
+  /**
+   * Returns the number of exceptions a check may throw before it is disabled for the rest of the
+   * compilation, or 0 if an exception thrown by a check should abort the compilation.
+   */
+  public int getCheckFailureLimit() {
+    return checkFailureLimit;
+  }
+
+  /**
+   * Returns the time a single invocation of a check may take before the check is disabled for the
+   * rest of the compilation, or 0 if checks have no time budget.
+   */
+  public long getCheckTimeBudgetMillis() {
+    return checkTimeBudgetMillis;
+  }
+
+  /**
+   * Returns the number of invocations of a check that may take longer than the time budget before
+   * the check is disabled for the rest of the compilation.
+   */
+  public int getCheckOverrunLimit() {
+    return checkOverrunLimit;
+  }
+
+  /** Returns the directory that the results of each compilation unit are cached in, or null. */
+  public Path getCacheDir() {
+    return cacheDir;
+  }
+
+  /** Returns the size the result cache may grow to before old entries are evicted. */
+  public int getCacheMaxMegabytes() {
+    return cacheMaxMegabytes;
+  }
+
   private static class Builder {
     private boolean ignoreUnknownChecks = false;
     private boolean disableWarningsInGeneratedCode = false;
@@ -234,6 +307,12 @@ public class ErrorProneOptions {
     private final ErrorProneFlags.Builder flagsBuilder = ErrorProneFlags.builder();
     private final PatchingOptions.Builder patchingOptionsBuilder = PatchingOptions.builder();
     private Pattern excludedPattern;
+    private Path profilePath;
+    private int checkFailureLimit;
+    private long checkTimeBudgetMillis;
+    private int checkOverrunLimit = DEFAULT_CHECK_OVERRUN_LIMIT;
+    private Path cacheDir;
+    private int cacheMaxMegabytes = DEFAULT_CACHE_MAX_MEGABYTES;
 
     private void parseSeverity(String arg) {
       // Strip prefix
@@ -310,12 +389,42 @@ public class ErrorProneOptions {
           isTestOnlyTarget,
           flagsBuilder.build(),
           patchingOptionsBuilder.build(),
-          excludedPattern);
+          excludedPattern,
+          profilePath,
+          checkFailureLimit,
+          checkTimeBudgetMillis,
+          checkOverrunLimit,
+          cacheDir,
+          cacheMaxMegabytes);
     }
 
     public void setExcludedPattern(Pattern excludedPattern) {
       this.excludedPattern = excludedPattern;
     }
+
+    public void setProfilePath(Path profilePath) {
+      this.profilePath = profilePath;
+    }
+
+    public void setCheckFailureLimit(int checkFailureLimit) {
+      this.checkFailureLimit = checkFailureLimit;
+    }
+
+    public void setCheckTimeBudgetMillis(long checkTimeBudgetMillis) {
+      this.checkTimeBudgetMillis = checkTimeBudgetMillis;
+    }
+
+    public void setCheckOverrunLimit(int checkOverrunLimit) {
+      this.checkOverrunLimit = checkOverrunLimit;
+    }
+
+    public void setCacheDir(Path cacheDir) {
+      this.cacheDir = cacheDir;
+    }
+
+    public void setCacheMaxMegabytes(int cacheMaxMegabytes) {
+      this.cacheMaxMegabytes = cacheMaxMegabytes;
+    }
   }
 
   private static final ErrorProneOptions EMPTY = new Builder().build(ImmutableList.of());
@@ -386,16 +495,7 @@ public class ErrorProneOptions {
               builder
                   .patchingOptionsBuilder()
                   .customRefactorer(
-                      () -> {
-                        String path = remaining.substring("refaster:".length());
-                        try (InputStream in =
-                                Files.newInputStream(FileSystems.getDefault().getPath(path));
-                            ObjectInputStream ois = new ObjectInputStream(in)) {
-                          return (CodeTransformer) ois.readObject();
-                        } catch (IOException | ClassNotFoundException e) {
-                          throw new RuntimeException("Can't load Refaster rule from " + path, e);
-                        }
-                      });
+                      () -> loadRefasterRules(remaining.substring("refaster:".length())));
             } else {
               Iterable<String> checks = Splitter.on(',').trimResults().split(remaining);
               builder.patchingOptionsBuilder().namedCheckers(ImmutableSet.copyOf(checks));
@@ -407,6 +507,30 @@ public class ErrorProneOptions {
           } else if (arg.startsWith(EXCLUDED_PATHS_PREFIX)) {
             String pathRegex = arg.substring(EXCLUDED_PATHS_PREFIX.length());
             builder.setExcludedPattern(Pattern.compile(pathRegex));
+          } else if (arg.startsWith(PROFILE_PREFIX)) {
+            String remaining = arg.substring(PROFILE_PREFIX.length());
+            if (remaining.isEmpty()) {
+              throw new InvalidCommandLineOptionException("invalid flag: " + arg);
+            }
+            builder.setProfilePath(FileSystems.getDefault().getPath(remaining));
+          } else if (arg.startsWith(CHECK_FAILURE_LIMIT_PREFIX)) {
+            builder.setCheckFailureLimit(
+                parsePositive(arg, arg.substring(CHECK_FAILURE_LIMIT_PREFIX.length())));
+          } else if (arg.startsWith(CHECK_TIME_BUDGET_PREFIX)) {
+            builder.setCheckTimeBudgetMillis(
+                parsePositive(arg, arg.substring(CHECK_TIME_BUDGET_PREFIX.length())));
+          } else if (arg.startsWith(CHECK_OVERRUN_LIMIT_PREFIX)) {
+            builder.setCheckOverrunLimit(
+                parsePositive(arg, arg.substring(CHECK_OVERRUN_LIMIT_PREFIX.length())));
+          } else if (arg.startsWith(CACHE_DIR_PREFIX)) {
+            String remaining = arg.substring(CACHE_DIR_PREFIX.length());
+            if (remaining.isEmpty()) {
+              throw new InvalidCommandLineOptionException("invalid flag: " + arg);
+            }
+            builder.setCacheDir(FileSystems.getDefault().getPath(remaining));
+          } else if (arg.startsWith(CACHE_MAX_SIZE_PREFIX)) {
+            builder.setCacheMaxMegabytes(
+                parsePositive(arg, arg.substring(CACHE_MAX_SIZE_PREFIX.length())));
           } else {
             remainingArgs.add(arg);
           }
@@ -428,4 +552,41 @@ public class ErrorProneOptions {
     Preconditions.checkNotNull(args);
     return processArgs(Arrays.asList(args));
   }
+
+  /** Parses the value of the flag {@code arg}, which must be a positive integer. */
+  private static int parsePositive(String arg, String value) {
+    int result;
+    try {
+      result = Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new InvalidCommandLineOptionException("invalid flag: " + arg);
+    }
+    if (result <= 0) {
+      throw new InvalidCommandLineOptionException("invalid flag: " + arg);
+    }
+    return result;
+  }
+
+  /**
+   * Loads the Refaster rules at {@code path}, with the first {@link CodeTransformerLoader} that
+   * recognizes it, or else as a single Java-serialized {@link CodeTransformer}.
+   */
+  private static CodeTransformer loadRefasterRules(String path) {
+    Path file = FileSystems.getDefault().getPath(path);
+    try {
+      for (CodeTransformerLoader loader :
+          ServiceLoader.load(
+              CodeTransformerLoader.class, ErrorProneOptions.class.getClassLoader())) {
+        if (loader.canLoad(file)) {
+          return loader.load(file);
+        }
+      }
+      try (InputStream in = Files.newInputStream(file);
+          ObjectInputStream ois = new ObjectInputStream(in)) {
+        return (CodeTransformer) ois.readObject();
+      }
+    } catch (IOException | ClassNotFoundException e) {
+      throw new RuntimeException("Can't load Refaster rule from " + path, e);
+    }
+  }
 }
@@ -21,42 +21,48 @@ import static java.nio.file.StandardOpenOption.APPEND;
 import static java.nio.file.StandardOpenOption.CREATE;
 
 import com.google.auto.value.AutoValue;
-import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Multimap;
 import com.google.errorprone.ErrorProneOptions.PatchingOptions;
 import com.google.errorprone.apply.DescriptionBasedDiff;
+import com.google.errorprone.apply.DiffApplier;
 import com.google.errorprone.apply.FileDestination;
-import com.google.errorprone.apply.FileSource;
 import com.google.errorprone.apply.FsFileDestination;
 import com.google.errorprone.apply.FsFileSource;
 import com.google.errorprone.apply.ImportOrganizer;
 import com.google.errorprone.apply.PatchFileDestination;
-import com.google.errorprone.apply.SourceFile;
 import com.google.errorprone.matchers.Description;
 import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
 import com.sun.tools.javac.util.Context;
 import com.sun.tools.javac.util.Log;
 import java.io.IOException;
-import java.io.UncheckedIOException;
 import java.net.URI;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Collection;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.function.Function;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
-/** A container of fixes that have been collected during a single compilation phase. */
+/**
+ * A container of fixes that have been collected during a single compilation phase.
+ *
+ * <p>The fixes for each file are handed off as soon as javac is done with it, and are then applied
+ * in the background by a {@link DiffApplier}, so only the files in flight are held in memory. The
+ * results are reported, and diffs are appended to the patch file, in the order the files were
+ * handed off, once the changes to a file and all the files before it have been applied.
+ */
 class RefactoringCollection implements DescriptionListener.Factory {
 
-  private static final Logger logger = Logger.getLogger(RefactoringCollection.class.getName());
-
-  private final Multimap<URI, DelegatingDescriptionListener> foundSources = HashMultimap.create();
-  private final Path rootPath;
-  private final FileDestination fileDestination;
+  private final Map<URI, DelegatingDescriptionListener> foundSources = new HashMap<>();
+  private final DiffApplier diffApplier;
+  // The files whose changes have been handed off but not reported yet, in the order they were
+  // handed off
+  private final Deque<ScheduledChanges> scheduled = new ArrayDeque<>();
   private final Function<URI, RefactoringResult> postProcess;
   private final DescriptionListener.Factory descriptionsFactory;
   private final ImportOrganizer importOrganizer;
@@ -75,6 +81,7 @@ class RefactoringCollection implements DescriptionListener.Factory {
   enum RefactoringResultType {
     NO_CHANGES,
     CHANGED,
+    FAILED,
   }
 
   static RefactoringCollection refactor(PatchingOptions patchingOptions, Context context) {
@@ -99,12 +106,19 @@ class RefactoringCollection implements DescriptionListener.Factory {
       PatchFileDestination patchFileDestination = new PatchFileDestination(baseDir, rootPath);
       postProcess =
           new Function<URI, RefactoringResult>() {
-            private final AtomicBoolean first = new AtomicBoolean(true);
+            private boolean first = true;
 
             @Override
             public RefactoringResult apply(URI uri) {
               try {
-                writePatchFile(first, uri, patchFileDestination, patchFilePath);
+                String patchFile = patchFileDestination.patchFile(uri);
+                if (patchFile != null) {
+                  if (first) {
+                    Files.deleteIfExists(patchFilePath);
+                    first = false;
+                  }
+                  Files.write(patchFilePath, patchFile.getBytes(UTF_8), APPEND, CREATE);
+                }
                 return RefactoringResult.create(
                     "Changes were written to "
                         + patchFilePath
@@ -119,19 +133,22 @@ class RefactoringCollection implements DescriptionListener.Factory {
       fileDestination = patchFileDestination;
     }
 
+    DiffApplier diffApplier =
+        new DiffApplier(
+            Runtime.getRuntime().availableProcessors(),
+            new FsFileSource(rootPath),
+            fileDestination);
+    diffApplier.startAsync().awaitRunning();
     ImportOrganizer importOrganizer = patchingOptions.importOrganizer();
-    return new RefactoringCollection(
-        rootPath, fileDestination, postProcess, importOrganizer, context);
+    return new RefactoringCollection(diffApplier, postProcess, importOrganizer, context);
   }
 
   private RefactoringCollection(
-      Path rootPath,
-      FileDestination fileDestination,
+      DiffApplier diffApplier,
       Function<URI, RefactoringResult> postProcess,
       ImportOrganizer importOrganizer,
       Context context) {
-    this.rootPath = rootPath;
-    this.fileDestination = fileDestination;
+    this.diffApplier = diffApplier;
     this.postProcess = postProcess;
     this.descriptionsFactory = JavacErrorDescriptionListener.providerForRefactoring(context);
     this.importOrganizer = importOrganizer;
@@ -147,57 +164,71 @@ class RefactoringCollection implements DescriptionListener.Factory {
 
   @Override
   public DescriptionListener getDescriptionListener(Log log, JCCompilationUnit compilation) {
-    URI sourceFile = compilation.getSourceFile().toUri();
-
-    DelegatingDescriptionListener delegate =
-        new DelegatingDescriptionListener(
-            descriptionsFactory.getDescriptionListener(log, compilation),
-            DescriptionBasedDiff.createIgnoringOverlaps(compilation, importOrganizer));
-    foundSources.put(sourceFile, delegate);
-    return delegate;
+    // A listener is requested for each class in the file, but they all contribute to one diff.
+    return foundSources.computeIfAbsent(
+        compilation.getSourceFile().toUri(),
+        uri ->
+            new DelegatingDescriptionListener(
+                descriptionsFactory.getDescriptionListener(log, compilation),
+                DescriptionBasedDiff.createIgnoringOverlaps(compilation, importOrganizer)));
   }
 
-  RefactoringResult applyChanges(URI uri) throws Exception {
-    Collection<DelegatingDescriptionListener> listeners = foundSources.removeAll(uri);
-    if (listeners.isEmpty()) {
-      return RefactoringResult.create("", RefactoringResultType.NO_CHANGES);
+  /**
+   * Schedules the changes to the file at {@code uri} to be applied, and returns the results for the
+   * files whose changes have been applied since the last call.
+   */
+  ImmutableList<RefactoringResult> applyChanges(URI uri) throws Exception {
+    DelegatingDescriptionListener listener = foundSources.remove(uri);
+    if (listener != null && !listener.base.isEmpty()) {
+      Future<?> applied = diffApplier.put(listener.base);
+      if (applied != null) {
+        scheduled.add(new ScheduledChanges(uri, listener.base.getRelevantFileName(), applied));
+      }
     }
+    return appliedChanges(/* waitForAll= */ false);
+  }
 
-    doApplyProcess(fileDestination, new FsFileSource(rootPath), listeners);
-    return postProcess.apply(uri);
+  /**
+   * Waits for all the scheduled changes to be applied, and returns the results for the files that
+   * haven't been reported yet. Changes to files that javac never finished with, e.g. because of
+   * compilation errors, are dropped.
+   */
+  ImmutableList<RefactoringResult> finish() throws Exception {
+    foundSources.clear();
+    diffApplier.stopAsync().awaitTerminated();
+    return appliedChanges(/* waitForAll= */ true);
   }
 
-  private static void writePatchFile(
-      AtomicBoolean first, URI uri, PatchFileDestination fileDestination, Path patchFilePatch)
-      throws IOException {
-    String patchFile = fileDestination.patchFile(uri);
-    if (patchFile != null) {
-      if (first.compareAndSet(true, false)) {
-        try {
-          Files.deleteIfExists(patchFilePatch);
-        } catch (IOException e) {
-          throw new UncheckedIOException(e);
-        }
+  private ImmutableList<RefactoringResult> appliedChanges(boolean waitForAll) throws Exception {
+    ImmutableList.Builder<RefactoringResult> results = ImmutableList.builder();
+    while (!scheduled.isEmpty() && (waitForAll || scheduled.peek().applied.isDone())) {
+      ScheduledChanges changes = scheduled.remove();
+      boolean failed;
+      try {
+        changes.applied.get();
+        failed = diffApplier.failed(changes.path);
+      } catch (ExecutionException e) {
+        failed = true;
       }
-      Files.write(patchFilePatch, patchFile.getBytes(UTF_8), APPEND, CREATE);
+      results.add(
+          failed
+              ? RefactoringResult.create(
+                  "Failed to apply refactoring changes to " + changes.path,
+                  RefactoringResultType.FAILED)
+              : postProcess.apply(changes.uri));
     }
+    return results.build();
   }
 
-  private void doApplyProcess(
-      FileDestination fileDestination,
-      FileSource fileSource,
-      Collection<DelegatingDescriptionListener> listeners) {
-    for (DelegatingDescriptionListener listener : listeners) {
-      try {
-        SourceFile file = fileSource.readFile(listener.base.getRelevantFileName());
-        listener.base.applyDifferences(file);
-        fileDestination.writeFile(file);
-      } catch (IOException e) {
-        logger.log(
-            Level.WARNING,
-            "Failed to apply diff to file " + listener.base.getRelevantFileName(),
-            e);
-      }
+  private static final class ScheduledChanges {
+    final URI uri;
+    final String path;
+    final Future<?> applied;
+
+    ScheduledChanges(URI uri, String path, Future<?> applied) {
+      this.uri = uri;
+      this.path = path;
+      this.applied = applied;
     }
   }
 
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone;
+
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Names;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+
+/**
+ * The types and symbols that {@link VisitorState} has resolved from strings, shared by every
+ * compilation unit in a javac task.
+ *
+ * <p>A class that is found stays the same for the rest of the compilation, so successful lookups
+ * are remembered for the whole task. A class that isn't found may still be loaded later, e.g. when
+ * another compilation unit refers to it, so failed lookups are only remembered until the next
+ * compilation unit starts.
+ *
+ * <p>The cache is stored in the base context of the task, see {@link SubContext#base}. When
+ * profiling is enabled with {@code -XepProfile}, the number of hits and misses is included in the
+ * profile.
+ *
+ * <p>The cache may be read concurrently. Resolving a missing entry calls into javac, which is not
+ * thread-safe, so callers must still make sure only one thread resolves symbols at a time.
+ */
+final class ResolutionCache {
+
+  static ResolutionCache instance(Context context) {
+    Context base = SubContext.base(context);
+    ResolutionCache cache = base.get(ResolutionCache.class);
+    if (cache == null) {
+      cache = new ResolutionCache(Names.instance(base), CheckProfiler.instance(base));
+      base.put(ResolutionCache.class, cache);
+    }
+    return cache;
+  }
+
+  final Names names;
+  final Lookups<Type> types = new Lookups<>();
+  final Lookups<Symbol> symbols = new Lookups<>();
+
+  /** Incremented at the start of each compilation unit, to forget failed lookups. */
+  private final AtomicInteger generation = new AtomicInteger();
+
+  private final CheckProfiler.CacheStats stats;
+
+  private ResolutionCache(Names names, CheckProfiler profiler) {
+    this.names = names;
+    this.stats = profiler.cacheStats("Resolution");
+  }
+
+  /** Forgets the failed lookups, since classes may have been loaded since they were made. */
+  void startCompilationUnit() {
+    generation.incrementAndGet();
+  }
+
+  /** The results of looking up strings with a particular function. */
+  final class Lookups<T> {
+    private final ConcurrentMap<String, T> found = new ConcurrentHashMap<>();
+    /** The generation in which each failed lookup was made. */
+    private final ConcurrentMap<String, Integer> missing = new ConcurrentHashMap<>();
+
+    /** Returns the result of looking up {@code key}, or null if it can't be found. */
+    @Nullable
+    T get(String key, Function<String, T> lookup) {
+      T result = found.get(key);
+      if (result != null) {
+        stats.hit();
+        return result;
+      }
+      int current = generation.get();
+      Integer missingGeneration = missing.get(key);
+      if (missingGeneration != null && missingGeneration == current) {
+        stats.hit();
+        return null;
+      }
+      stats.miss();
+      result = lookup.apply(key);
+      if (result != null) {
+        found.put(key, result);
+        missing.remove(key);
+      } else {
+        missing.put(key, current);
+      }
+      return result;
+    }
+  }
+}
@@ -0,0 +1,635 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Comparator.comparing;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import com.google.errorprone.BugPattern.SeverityLevel;
+import com.google.errorprone.bugpatterns.BugChecker;
+import com.google.errorprone.fixes.Fix;
+import com.google.errorprone.fixes.Replacement;
+import com.google.errorprone.matchers.Description;
+import com.google.errorprone.scanner.ErrorProneScanner;
+import com.google.errorprone.scanner.ErrorProneScannerTransformer;
+import com.google.errorprone.scanner.Scanner;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreePath;
+import com.sun.tools.javac.code.Scope.LookupKind;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.code.Symbol.CompletionFailure;
+import com.sun.tools.javac.code.Symbol.VarSymbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.code.Type.ArrayType;
+import com.sun.tools.javac.code.TypeTag;
+import com.sun.tools.javac.code.Types;
+import com.sun.tools.javac.main.JavaCompiler;
+import com.sun.tools.javac.tree.EndPosTable;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import com.sun.tools.javac.tree.TreeInfo;
+import com.sun.tools.javac.tree.TreeScanner;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.JCDiagnostic.DiagnosticPosition;
+import com.sun.tools.javac.util.Options;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+
+/**
+ * Stores the descriptions reported for each compilation unit on disk, so compilation units that
+ * haven't changed since an earlier build don't have to be scanned again.
+ *
+ * <p>The cache is enabled with {@code -XepCacheDir:<dir>}. Each entry is keyed by a hash of:
+ *
+ * <ul>
+ *   <li>the Error Prone and javac versions, the enabled checks, their severities and class files,
+ *       and the Error Prone and javac options;
+ *   <li>the name and text of the source file; and
+ *   <li>the signatures and annotations of the classes the compilation unit refers to, and of their
+ *       supertypes.
+ * </ul>
+ *
+ * <p>On a hit the cached descriptions are reported again, and the compilation unit isn't scanned.
+ * Checks that look beyond the signatures of the classes a compilation unit refers to, e.g. at the
+ * members of the types of their fields, may report stale results, which is why the cache is opt-in.
+ *
+ * <p>When the compilation finishes, the least recently used entries are deleted until the cache is
+ * no larger than {@code -XepCacheMaxSize:<megabytes>}.
+ */
+final class ResultCache {
+
+  /** The first bytes of each entry, which identify the format. */
+  private static final int MAGIC = 0x45504331;
+
+  private static final HashFunction HASH = Hashing.sha256();
+
+  private final Path directory;
+  private final long maxBytes;
+  private final ErrorProneOptions options;
+  private final CheckCircuitBreaker circuitBreaker;
+  private final CheckProfiler.CacheStats stats;
+
+  /** The hashes of the signatures of the classes that compilation units refer to. */
+  private final Map<ClassSymbol, HashCode> signatures = new HashMap<>();
+
+  /** The hash of the checks and options, computed when the first compilation unit is scanned. */
+  private HashCode configuration;
+
+  ResultCache(ErrorProneOptions options, Context context) {
+    this.directory = options.getCacheDir();
+    this.maxBytes = options.getCacheMaxMegabytes() * 1024L * 1024L;
+    this.options = options;
+    this.circuitBreaker = CheckCircuitBreaker.instance(context);
+    this.stats = CheckProfiler.instance(context).cacheStats("ResultCache");
+  }
+
+  /**
+   * Reports the cached descriptions of the compilation unit at {@code path} to {@code listener}, or
+   * scans it with {@code transformer} and caches the descriptions it reports.
+   */
+  void scan(
+      TreePath path, CodeTransformer transformer, Context context, DescriptionListener listener) {
+    if (!(transformer instanceof ErrorProneScannerTransformer)) {
+      transformer.apply(path, context, listener);
+      return;
+    }
+    JCCompilationUnit compilation = (JCCompilationUnit) path.getCompilationUnit();
+    Path entry;
+    try {
+      entry =
+          directory.resolve(
+              key(compilation, ((ErrorProneScannerTransformer) transformer).scanner(), context));
+    } catch (IOException e) {
+      transformer.apply(path, context, listener);
+      return;
+    }
+    List<Description> cached = read(entry, compilation);
+    if (cached != null) {
+      stats.hit();
+      cached.forEach(listener::onDescribed);
+      return;
+    }
+    stats.miss();
+    List<Description> descriptions = new ArrayList<>();
+    transformer.apply(
+        path,
+        context,
+        description -> {
+          descriptions.add(description);
+          listener.onDescribed(description);
+        });
+    // if a check failed, the results are incomplete
+    if (!circuitBreaker.hasFailures()) {
+      write(entry, descriptions, compilation.endPositions);
+    }
+  }
+
+  private String key(JCCompilationUnit compilation, Scanner scanner, Context context)
+      throws IOException {
+    if (configuration == null) {
+      configuration = configuration(scanner, context);
+    }
+    Hasher hasher = HASH.newHasher().putBytes(configuration.asBytes());
+    putString(hasher, compilation.getSourceFile().getName());
+    putString(hasher, compilation.getSourceFile().getCharContent(true).toString());
+    Types types = Types.instance(context);
+    for (ClassSymbol sym : referencedClasses(compilation, types)) {
+      hasher.putBytes(signature(sym, types).asBytes());
+    }
+    return hasher.hash().toString();
+  }
+
+  private HashCode configuration(Scanner scanner, Context context) throws IOException {
+    Hasher hasher = HASH.newHasher();
+    putString(hasher, ErrorProneVersion.loadVersionFromPom().or("unknown version"));
+    putString(hasher, JavaCompiler.version());
+    for (Map.Entry<String, SeverityLevel> entry : new TreeMap<>(scanner.severityMap()).entrySet()) {
+      putString(hasher, entry.getKey());
+      putString(hasher, entry.getValue().name());
+    }
+    if (scanner instanceof ErrorProneScanner) {
+      List<BugChecker> checkers = new ArrayList<>(((ErrorProneScanner) scanner).getBugCheckers());
+      checkers.sort(comparing(checker -> checker.getClass().getName()));
+      for (BugChecker checker : checkers) {
+        putClassFile(hasher, checker.getClass());
+      }
+    } else {
+      putClassFile(hasher, scanner.getClass());
+    }
+    for (Map.Entry<String, String> entry :
+        new TreeMap<>(options.getFlags().getFlagsMap()).entrySet()) {
+      putString(hasher, entry.getKey());
+      putString(hasher, entry.getValue());
+    }
+    // javac's options, e.g. -source or the classpath, change what the checks see
+    Options javacOptions = Options.instance(context);
+    for (String key : new TreeSet<>(javacOptions.keySet())) {
+      putString(hasher, key);
+      putString(hasher, String.valueOf(javacOptions.get(key)));
+    }
+    hasher
+        .putBoolean(options.disableWarningsInGeneratedCode())
+        .putBoolean(options.isDropErrorsToWarnings())
+        .putBoolean(options.isTestOnlyTarget());
+    return hasher.hash();
+  }
+
+  private static void putClassFile(Hasher hasher, Class<?> clazz) throws IOException {
+    putString(hasher, clazz.getName());
+    try (InputStream in =
+        clazz.getResourceAsStream('/' + clazz.getName().replace('.', '/') + ".class")) {
+      if (in != null) {
+        hasher.putBytes(ByteStreams.toByteArray(in));
+      }
+    }
+  }
+
+  private static void putString(Hasher hasher, String value) {
+    hasher.putInt(value.length()).putUnencodedChars(value);
+  }
+
+  /**
+   * Returns the classes declared outside of {@code compilation} that it refers to, and their
+   * supertypes.
+   */
+  private static Set<ClassSymbol> referencedClasses(JCCompilationUnit compilation, Types types) {
+    Set<ClassSymbol> referenced = new TreeSet<>(comparing(c -> c.flatName().toString()));
+    new TreeScanner() {
+      @Override
+      public void scan(JCTree tree) {
+        if (tree != null) {
+          addType(tree.type);
+          Symbol sym = TreeInfo.symbolFor(tree);
+          if (sym != null) {
+            addClass(sym.enclClass());
+          }
+        }
+        super.scan(tree);
+      }
+
+      private void addType(Type type) {
+        if (type == null) {
+          return;
+        }
+        if (type.hasTag(TypeTag.ARRAY)) {
+          addType(((ArrayType) type).elemtype);
+        } else if (type.hasTag(TypeTag.CLASS)) {
+          addClass((ClassSymbol) type.tsym);
+          type.getTypeArguments().forEach(this::addType);
+        }
+      }
+
+      private void addClass(ClassSymbol sym) {
+        if (sym == null || sym.outermostClass().sourcefile == compilation.getSourceFile()) {
+          return;
+        }
+        if (!referenced.add(sym)) {
+          return;
+        }
+        try {
+          for (Type supertype : types.closure(sym.type)) {
+            addClass((ClassSymbol) supertype.tsym);
+          }
+        } catch (CompletionFailure e) {
+          // the supertypes are missing from the classpath, see signature
+        }
+      }
+    }.scan(compilation);
+    return referenced;
+  }
+
+  /** Returns a hash of the signature of {@code sym} and its members, and their annotations. */
+  private HashCode signature(ClassSymbol sym, Types types) {
+    HashCode result = signatures.get(sym);
+    if (result != null) {
+      return result;
+    }
+    List<String> parts = new ArrayList<>();
+    try {
+      parts.add(
+          String.format(
+              "%s %s %s %s %s %s",
+              sym.flatName(),
+              sym.flags(),
+              sym.type,
+              types.supertype(sym.type),
+              types.interfaces(sym.type),
+              sym.getRawAttributes()));
+      for (Symbol member : sym.members().getSymbols(LookupKind.NON_RECURSIVE)) {
+        parts.add(
+            String.format(
+                "%s %s %s %s %s %s",
+                member.kind,
+                member.name,
+                member.flags(),
+                member.type,
+                member.getRawAttributes(),
+                member instanceof VarSymbol ? ((VarSymbol) member).getConstValue() : null));
+      }
+    } catch (CompletionFailure e) {
+      // the class is missing from the classpath, so only its name is known
+      parts.add("incomplete " + sym.flatName());
+    }
+    Collections.sort(parts);
+    Hasher hasher = HASH.newHasher();
+    parts.forEach(part -> putString(hasher, part));
+    result = hasher.hash();
+    signatures.put(sym, result);
+    return result;
+  }
+
+  /** Returns the descriptions in the cache entry {@code entry}, or null if it can't be read. */
+  @Nullable
+  private static List<Description> read(Path entry, JCCompilationUnit compilation) {
+    List<Description> result;
+    try (EntryInputStream in = EntryInputStream.open(entry)) {
+      if (in.readInt() != MAGIC) {
+        return null;
+      }
+      int count = readCount(in);
+      result = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        result.add(readDescription(in, compilation));
+      }
+      // entries are evicted in least recently used order
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (EOFException e) {
+      // the entry is truncated
+      return null;
+    } catch (IOException | IllegalArgumentException e) {
+      // the entry is missing or corrupt
+      return null;
+    }
+    return result;
+  }
+
+  private static Description readDescription(EntryInputStream in, JCCompilationUnit compilation)
+      throws IOException {
+    String checkName = readString(in);
+    String rawMessage = readString(in);
+    String link = in.readBoolean() ? readString(in) : null;
+    int severity = in.readByte();
+    if (severity < 0 || severity >= SeverityLevel.values().length) {
+      throw new IOException("invalid severity: " + severity);
+    }
+    DiagnosticPosition position =
+        new CachedPosition(
+            in.readBoolean() ? compilation : null, in.readInt(), in.readInt(), in.readInt());
+    Description.Builder builder =
+        Description.builder(
+            position, checkName, link, SeverityLevel.values()[severity], rawMessage);
+    int fixes = readCount(in);
+    for (int i = 0; i < fixes; i++) {
+      String shortDescription = readString(in);
+      int count = readCount(in);
+      ImmutableSet.Builder<Replacement> replacements = ImmutableSet.builder();
+      for (int j = 0; j < count; j++) {
+        replacements.add(Replacement.create(in.readInt(), in.readInt(), readString(in)));
+      }
+      builder.addFix(
+          new CachedFix(shortDescription, replacements.build(), readStrings(in), readStrings(in)));
+    }
+    return builder.build();
+  }
+
+  /** Caches {@code descriptions} in {@code entry}, if it can be written. */
+  private void write(Path entry, List<Description> descriptions, EndPosTable endPositions) {
+    Path temp = null;
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(MAGIC);
+      out.writeInt(descriptions.size());
+      for (Description description : descriptions) {
+        writeDescription(out, description, endPositions);
+      }
+      out.flush();
+      Files.createDirectories(directory);
+      temp = Files.createTempFile(directory, entry.getFileName().toString(), ".tmp");
+      Files.write(temp, bytes.toByteArray());
+      Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+      temp = null;
+    } catch (IOException e) {
+      // the compilation unit will be scanned again by the next build
+    } finally {
+      if (temp != null) {
+        try {
+          Files.deleteIfExists(temp);
+        } catch (IOException e) {
+          // the file will be evicted eventually
+        }
+      }
+    }
+  }
+
+  private static void writeDescription(
+      DataOutputStream out, Description description, EndPosTable endPositions) throws IOException {
+    writeString(out, description.checkName);
+    writeString(out, description.getRawMessage());
+    out.writeBoolean(description.getLink() != null);
+    if (description.getLink() != null) {
+      writeString(out, description.getLink());
+    }
+    out.writeByte(description.severity.ordinal());
+    // JavacErrorDescriptionListener only distinguishes positions without a tree, and imports
+    Tree tree = description.position.getTree();
+    out.writeBoolean(tree != null && tree.getKind() != Tree.Kind.IMPORT);
+    out.writeInt(description.position.getStartPosition());
+    out.writeInt(description.position.getPreferredPosition());
+    out.writeInt(description.position.getEndPosition(endPositions));
+    out.writeInt(description.fixes.size());
+    for (Fix fix : description.fixes) {
+      writeString(out, fix.getShortDescription());
+      Set<Replacement> replacements = fix.getReplacements(endPositions);
+      out.writeInt(replacements.size());
+      for (Replacement replacement : replacements) {
+        out.writeInt(replacement.startPosition());
+        out.writeInt(replacement.endPosition());
+        writeString(out, replacement.replaceWith());
+      }
+      writeStrings(out, fix.getImportsToAdd());
+      writeStrings(out, fix.getImportsToRemove());
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(EntryInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0 || length > in.remaining()) {
+      throw new IOException("invalid string length: " + length);
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  private static void writeStrings(DataOutputStream out, Collection<String> values)
+      throws IOException {
+    out.writeInt(values.size());
+    for (String value : values) {
+      writeString(out, value);
+    }
+  }
+
+  private static ImmutableList<String> readStrings(EntryInputStream in) throws IOException {
+    int count = readCount(in);
+    ImmutableList.Builder<String> result = ImmutableList.builder();
+    for (int i = 0; i < count; i++) {
+      result.add(readString(in));
+    }
+    return result.build();
+  }
+
+  /**
+   * Reads the number of elements that follow. Each element takes at least one byte, so a count
+   * larger than the rest of the entry means that it is corrupt.
+   */
+  private static int readCount(EntryInputStream in) throws IOException {
+    int count = in.readInt();
+    if (count < 0 || count > in.remaining()) {
+      throw new IOException("invalid count: " + count);
+    }
+    return count;
+  }
+
+  /** Reads a cache entry, keeping track of how many of its bytes haven't been read yet. */
+  private static final class EntryInputStream extends DataInputStream {
+    private final CountingInputStream counting;
+    private final long size;
+
+    static EntryInputStream open(Path entry) throws IOException {
+      SeekableByteChannel channel = Files.newByteChannel(entry);
+      try {
+        long size = channel.size();
+        return new EntryInputStream(
+            new CountingInputStream(new BufferedInputStream(Channels.newInputStream(channel))),
+            size);
+      } catch (IOException e) {
+        channel.close();
+        throw e;
+      }
+    }
+
+    private EntryInputStream(CountingInputStream counting, long size) {
+      super(counting);
+      this.counting = counting;
+      this.size = size;
+    }
+
+    /** Returns the number of bytes of the entry that haven't been read yet. */
+    long remaining() {
+      return size - counting.getCount();
+    }
+  }
+
+  /** Deletes the least recently used entries until the cache is no larger than its limit. */
+  void trim() throws IOException {
+    if (!Files.isDirectory(directory)) {
+      return;
+    }
+    Map<Path, BasicFileAttributes> entries = new HashMap<>();
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        if (attributes.isRegularFile()) {
+          entries.put(file, attributes);
+        }
+      }
+    }
+    long size = entries.values().stream().mapToLong(BasicFileAttributes::size).sum();
+    if (size <= maxBytes) {
+      return;
+    }
+    List<Path> oldestFirst = new ArrayList<>(entries.keySet());
+    oldestFirst.sort(comparing(file -> entries.get(file).lastModifiedTime()));
+    for (Path file : oldestFirst) {
+      if (size <= maxBytes) {
+        break;
+      }
+      Files.deleteIfExists(file);
+      size -= entries.get(file).size();
+    }
+  }
+
+  /** The position of a cached description. */
+  private static final class CachedPosition implements DiagnosticPosition {
+    private final JCTree tree;
+    private final int start;
+    private final int preferred;
+    private final int end;
+
+    CachedPosition(@Nullable JCTree tree, int start, int preferred, int end) {
+      this.tree = tree;
+      this.start = start;
+      this.preferred = preferred;
+      this.end = end;
+    }
+
+    @Override
+    public JCTree getTree() {
+      return tree;
+    }
+
+    @Override
+    public int getStartPosition() {
+      return start;
+    }
+
+    @Override
+    public int getPreferredPosition() {
+      return preferred;
+    }
+
+    @Override
+    public int getEndPosition(EndPosTable endPosTable) {
+      return end;
+    }
+  }
+
+  /** A fix of a cached description, with the replacements it made. */
+  private static final class CachedFix implements Fix {
+    private final String shortDescription;
+    private final ImmutableSet<Replacement> replacements;
+    private final ImmutableList<String> importsToAdd;
+    private final ImmutableList<String> importsToRemove;
+
+    CachedFix(
+        String shortDescription,
+        ImmutableSet<Replacement> replacements,
+        ImmutableList<String> importsToAdd,
+        ImmutableList<String> importsToRemove) {
+      this.shortDescription = shortDescription;
+      this.replacements = replacements;
+      this.importsToAdd = importsToAdd;
+      this.importsToRemove = importsToRemove;
+    }
+
+    @Override
+    public String toString(JCCompilationUnit compilationUnit) {
+      StringBuilder result = new StringBuilder("replace ");
+      for (Replacement replacement : replacements) {
+        result.append(
+            String.format(
+                "position %d:%d with \"%s\" ",
+                replacement.startPosition(), replacement.endPosition(), replacement.replaceWith()));
+      }
+      return result.toString();
+    }
+
+    @Override
+    public String getShortDescription() {
+      return shortDescription;
+    }
+
+    @Override
+    public Set<Replacement> getReplacements(EndPosTable endPositions) {
+      return replacements;
+    }
+
+    @Override
+    public Collection<String> getImportsToAdd() {
+      return importsToAdd;
+    }
+
+    @Override
+    public Collection<String> getImportsToRemove() {
+      return importsToRemove;
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return replacements.isEmpty() && importsToAdd.isEmpty() && importsToRemove.isEmpty();
+    }
+  }
+}
@@ -33,6 +33,21 @@ public final class SubContext extends Context {
     this.base = checkNotNull(base);
   }
 
+  /**
+   * Returns the context that {@code context} is a view on, or {@code context} itself if it isn't a
+   * {@link SubContext}.
+   *
+   * <p>Error Prone analyzes each compilation unit in its own {@link SubContext}, so state that
+   * should be shared by every compilation unit in a javac task has to be stored in the base
+   * context.
+   */
+  public static Context base(Context context) {
+    while (context instanceof SubContext) {
+      context = ((SubContext) context).base;
+    }
+    return context;
+  }
+
   @Override
   public <T> T get(Key<T> key) {
     T result = super.get(key);
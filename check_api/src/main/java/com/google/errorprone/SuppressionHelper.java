@@ -16,10 +16,13 @@
 
 package com.google.errorprone;
 
-import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import com.google.errorprone.BugPattern.SeverityLevel;
 import com.google.errorprone.matchers.Suppressible;
 import com.google.errorprone.util.ASTHelpers;
+import com.google.errorprone.util.AnnotationName;
 import com.sun.tools.javac.code.Attribute;
 import com.sun.tools.javac.code.Symbol;
 import com.sun.tools.javac.code.Symbol.MethodSymbol;
@@ -28,6 +31,7 @@ import com.sun.tools.javac.util.Pair;
 import java.lang.annotation.Annotation;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -42,11 +46,17 @@ import java.util.Set;
  */
 public class SuppressionHelper {
 
-  private static final ImmutableSet<String> GENERATED_ANNOTATIONS =
-      ImmutableSet.of("javax.annotation.Generated", "javax.annotation.processing.Generated");
+  private static final ImmutableList<AnnotationName> GENERATED_ANNOTATIONS =
+      ImmutableList.of(
+          AnnotationName.of("javax.annotation.Generated"),
+          AnnotationName.of("javax.annotation.processing.Generated"));
 
-  /** The set of custom suppression annotations that this SuppressionHelper should look for. */
-  private final Set<Class<? extends Annotation>> customSuppressionAnnotations;
+  /**
+   * The custom suppression annotations that this SuppressionHelper should look for, with their
+   * names.
+   */
+  private final ImmutableMap<Class<? extends Annotation>, AnnotationName>
+      customSuppressionAnnotations;
 
   /**
    * @param customSuppressionAnnotations The set of custom suppression annotations that this
@@ -56,7 +66,8 @@ public class SuppressionHelper {
     if (customSuppressionAnnotations == null) {
       throw new IllegalArgumentException("customSuppressionAnnotations must be non-null");
     }
-    this.customSuppressionAnnotations = customSuppressionAnnotations;
+    this.customSuppressionAnnotations =
+        Maps.toMap(customSuppressionAnnotations, AnnotationName::of);
   }
 
   /**
@@ -107,12 +118,13 @@ public class SuppressionHelper {
 
     /** Handle custom suppression annotations. */
     Set<Class<? extends Annotation>> newCustomSuppressions = null;
-    for (Class<? extends Annotation> annotationType : customSuppressionAnnotations) {
-      if (ASTHelpers.hasAnnotation(sym, annotationType, state)) {
+    for (Map.Entry<Class<? extends Annotation>, AnnotationName> annotationType :
+        customSuppressionAnnotations.entrySet()) {
+      if (ASTHelpers.hasAnnotation(sym, annotationType.getValue(), state)) {
         if (newCustomSuppressions == null) {
           newCustomSuppressions = new HashSet<>(customSuppressionsOnCurrentPath);
         }
-        newCustomSuppressions.add(annotationType);
+        newCustomSuppressions.add(annotationType.getKey());
       }
     }
 
@@ -175,7 +187,7 @@ public class SuppressionHelper {
   }
 
   private static boolean isGenerated(Symbol sym, VisitorState state) {
-    for (String annotation : GENERATED_ANNOTATIONS) {
+    for (AnnotationName annotation : GENERATED_ANNOTATIONS) {
       if (ASTHelpers.hasAnnotation(sym, annotation, state)) {
         return true;
       }
@@ -16,16 +16,17 @@
 
 package com.google.errorprone;
 
-import com.google.common.base.Optional;
 import com.google.common.base.Splitter;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
 import com.google.errorprone.BugPattern.SeverityLevel;
 import com.google.errorprone.dataflow.nullnesspropagation.NullnessAnalysis;
+import com.google.errorprone.dataflow.nullnesspropagation.inference.NullnessInferenceCache;
 import com.google.errorprone.matchers.Description;
+import com.google.errorprone.matchers.Suppressible;
 import com.google.errorprone.util.ErrorProneToken;
+import com.google.errorprone.util.ErrorProneTokenIndex;
 import com.google.errorprone.util.ErrorProneTokens;
+import com.google.errorprone.util.OverrideIndex;
 import com.sun.source.tree.Tree;
 import com.sun.source.util.TreePath;
 import com.sun.tools.javac.code.Kinds.Kind;
@@ -45,13 +46,11 @@ import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
 import com.sun.tools.javac.tree.TreeMaker;
 import com.sun.tools.javac.util.Context;
 import com.sun.tools.javac.util.Name;
-import com.sun.tools.javac.util.Names;
 import com.sun.tools.javac.util.Options;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
 
 /** @author alexeagle@google.com (Alex Eagle) */
 public class VisitorState {
@@ -61,7 +60,9 @@ public class VisitorState {
   private final TreePath path;
   private final Map<String, SeverityLevel> severityMap;
   private final ErrorProneOptions errorProneOptions;
-  private final LoadingCache<String, Optional<Type>> typeCache;
+  private final ResolutionCache resolutionCache;
+  private final CheckProfiler profiler;
+  private final TokenCache tokenCache;
 
   // The default no-op implementation of DescriptionListener. We use this instead of null so callers
   // of getDescriptionListener() don't have to do null-checking.
@@ -88,7 +89,15 @@ public class VisitorState {
       DescriptionListener listener,
       Map<String, SeverityLevel> severityMap,
       ErrorProneOptions errorProneOptions) {
-    this(context, null, listener, severityMap, errorProneOptions, null);
+    this(
+        context,
+        null,
+        listener,
+        severityMap,
+        errorProneOptions,
+        null,
+        CheckProfiler.instance(context),
+        new TokenCache());
   }
 
   private VisitorState(
@@ -97,31 +106,30 @@ public class VisitorState {
       DescriptionListener descriptionListener,
       Map<String, SeverityLevel> severityMap,
       ErrorProneOptions errorProneOptions,
-      LoadingCache<String, Optional<Type>> typeCache) {
+      ResolutionCache resolutionCache,
+      CheckProfiler profiler,
+      TokenCache tokenCache) {
     this.context = context;
     this.path = path;
     this.descriptionListener = descriptionListener;
     this.severityMap = severityMap;
     this.errorProneOptions = errorProneOptions;
-    if (typeCache != null) {
-      this.typeCache = typeCache;
-    } else {
-      this.typeCache =
-          CacheBuilder.newBuilder()
-              .concurrencyLevel(1) // resolving symbols in javac is not is not thread-safe
-              .build(
-                  new CacheLoader<String, Optional<Type>>() {
-                    @Override
-                    public Optional<Type> load(String key) throws Exception {
-                      return Optional.fromNullable(getTypeFromStringInternal(key));
-                    }
-                  });
-    }
+    this.profiler = profiler;
+    this.tokenCache = tokenCache;
+    this.resolutionCache =
+        resolutionCache != null ? resolutionCache : ResolutionCache.instance(context);
   }
 
   public VisitorState withPath(TreePath path) {
     return new VisitorState(
-        context, path, descriptionListener, severityMap, errorProneOptions, typeCache);
+        context,
+        path,
+        descriptionListener,
+        severityMap,
+        errorProneOptions,
+        resolutionCache,
+        profiler,
+        tokenCache);
   }
 
   public TreePath getPath() {
@@ -144,10 +152,28 @@ public class VisitorState {
     return NullnessAnalysis.instance(context);
   }
 
+  /** Returns the nullness inference results for the current compilation unit. */
+  public NullnessInferenceCache getNullnessInferenceCache() {
+    return NullnessInferenceCache.instance(context);
+  }
+
+  /** Returns the methods overridden by each method, which are shared by every check. */
+  public OverrideIndex getOverrideIndex() {
+    return OverrideIndex.instance(context);
+  }
+
   public ErrorProneOptions errorProneOptions() {
     return errorProneOptions;
   }
 
+  /**
+   * Starts measuring a single invocation of {@code check} on the current node. The returned span is
+   * a no-op unless profiling was enabled with {@code -XepProfile}.
+   */
+  public CheckProfiler.Span profile(Suppressible check) {
+    return profiler.span(check, path.getLeaf().getKind());
+  }
+
   public void reportMatch(Description description) {
     // TODO(cushon): creating Descriptions with the default severity and updating them here isn't
     // ideal (we could forget to do the update), so consider removing severity from Description.
@@ -162,7 +188,7 @@ public class VisitorState {
   }
 
   public Name getName(String nameStr) {
-    return Names.instance(context).fromString(nameStr);
+    return resolutionCache.names.fromString(nameStr);
   }
 
   /**
@@ -177,11 +203,7 @@ public class VisitorState {
    * @return the {@link Type}, or null if it cannot be found
    */
   public Type getTypeFromString(String typeStr) {
-    try {
-      return typeCache.get(typeStr).orNull();
-    } catch (ExecutionException e) {
-      return null;
-    }
+    return resolutionCache.types.get(typeStr, this::getTypeFromStringInternal);
   }
 
   private Type getTypeFromStringInternal(String typeStr) {
@@ -206,6 +228,10 @@ public class VisitorState {
    */
   // TODO(cushon): deal with binary compat issues and return ClassSymbol
   public Symbol getSymbolFromString(String symStr) {
+    return resolutionCache.symbols.get(symStr, this::getSymbolFromStringInternal);
+  }
+
+  private Symbol getSymbolFromStringInternal(String symStr) {
     symStr = inferBinaryName(symStr);
     Name name = getName(symStr);
     Modules modules = Modules.instance(context);
@@ -355,13 +381,34 @@ public class VisitorState {
   }
 
   /**
-   * Returns the list of {@link Token}s for the given {@link JCTree}.
+   * Returns the list of {@link Token}s for the given {@link JCTree}, with positions relative to the
+   * start of the node.
    *
-   * <p>This is moderately expensive (the source of the node has to be re-lexed), so it should only
-   * be used if a fix is already going to be emitted.
+   * <p>The current compilation unit is lexed the first time tokens are requested, and later calls
+   * only look up the node's range.
    */
   public java.util.List<ErrorProneToken> getTokensForNode(Tree tree) {
-    return ErrorProneTokens.getTokens(getSourceForNode(tree), context);
+    int end = getEndPosition(tree);
+    if (end < 0) {
+      return ErrorProneTokens.getTokens(null, context);
+    }
+    return getTokensForRange(((JCTree) tree).getStartPosition(), end);
+  }
+
+  /**
+   * Returns the list of {@link Token}s for the current compilation unit's source between {@code
+   * start} (inclusive) and {@code end} (exclusive), with positions relative to {@code start}.
+   *
+   * <p>This is equivalent to lexing {@code getSourceCode().subSequence(start, end)}, but the
+   * compilation unit is only lexed once.
+   */
+  public ImmutableList<ErrorProneToken> getTokensForRange(int start, int end) {
+    JCCompilationUnit compilationUnit = (JCCompilationUnit) getPath().getCompilationUnit();
+    if (tokenCache.compilationUnit != compilationUnit) {
+      tokenCache.index = new ErrorProneTokenIndex(getSourceCode(), context);
+      tokenCache.compilationUnit = compilationUnit;
+    }
+    return tokenCache.index.getTokens(start, end);
   }
 
   /** Returns the end position of the node, or -1 if it is not available. */
@@ -373,6 +420,12 @@ public class VisitorState {
     return ((JCTree) node).getEndPosition(compilationUnit.endPositions);
   }
 
+  /** The tokens of the current compilation unit, shared by all states derived from one another. */
+  private static final class TokenCache {
+    JCCompilationUnit compilationUnit;
+    ErrorProneTokenIndex index;
+  }
+
   /** Validates a type string, ensuring it is not generic and not an array type. */
   private static void validateTypeStr(String typeStr) {
     if (typeStr.contains("[") || typeStr.contains("]")) {
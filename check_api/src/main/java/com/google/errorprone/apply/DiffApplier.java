@@ -93,7 +93,7 @@ public class DiffApplier extends AbstractService {
         notifyFailed(e);
       }
       logger.log(
-          Level.INFO, String.format("Completed %d files in %s", completedFiles.get(), stopwatch));
+          Level.FINE, String.format("Completed %d files in %s", completedFiles.get(), stopwatch));
       if (!diffsFailedPaths.isEmpty()) {
         logger.log(
             Level.SEVERE,
@@ -120,7 +120,7 @@ public class DiffApplier extends AbstractService {
 
         int completed = completedFiles.incrementAndGet();
         if (completed % 100 == 0) {
-          logger.log(Level.INFO, String.format("Completed %d files in %s", completed, stopwatch));
+          logger.log(Level.FINE, String.format("Completed %d files in %s", completed, stopwatch));
         }
       } catch (IOException | DiffNotApplicableException e) {
         logger.log(Level.WARNING, "Failed to apply diff to file " + diff.getRelevantFileName(), e);
@@ -131,6 +131,11 @@ public class DiffApplier extends AbstractService {
     }
   }
 
+  /** Returns whether a diff to the file at {@code path} was put, but couldn't be applied. */
+  public boolean failed(String path) {
+    return diffsFailedPaths.contains(path);
+  }
+
   public Future<?> put(Diff diff) {
     if (refactoredPaths.add(diff.getRelevantFileName())) {
       runState.incrementAndGet();
@@ -29,10 +29,13 @@ import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import javax.annotation.Nullable;
 
 /**
  * A {@link FileDestination} that writes a unix-patch file to {@code rootPath} containing the
  * suggested changes.
+ *
+ * <p>It may be written to from several threads, e.g. by a {@link DiffApplier}.
  */
 public final class PatchFileDestination implements FileDestination {
 
@@ -64,7 +67,9 @@ public final class PatchFileDestination implements FileDestination {
           DiffUtils.generateUnifiedDiff(relativePath, relativePath, originalLines, diff, 2);
 
       String diffString = Joiner.on("\n").join(unifiedDiff) + "\n";
-      diffByFile.put(sourceFilePath.toUri(), diffString);
+      synchronized (diffByFile) {
+        diffByFile.put(sourceFilePath.toUri(), diffString);
+      }
     }
   }
 
@@ -72,8 +77,12 @@ public final class PatchFileDestination implements FileDestination {
     return baseDir.relativize(sourceFilePath).toString();
   }
 
+  /** Returns the diff for the file at {@code uri} and forgets it, or null if it's unchanged. */
+  @Nullable
   public String patchFile(URI uri) {
-    return diffByFile.remove(uri);
+    synchronized (diffByFile) {
+      return diffByFile.remove(uri);
+    }
   }
 
   @Override
@@ -19,6 +19,7 @@ package com.google.errorprone.bugpatterns;
 import static com.google.common.base.MoreObjects.firstNonNull;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
 import com.google.errorprone.BugCheckerInfo;
 import com.google.errorprone.BugPattern.SeverityLevel;
 import com.google.errorprone.VisitorState;
@@ -90,6 +91,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * A base class for implementing bug checkers. The {@code BugChecker} supplies a Scanner
@@ -467,6 +469,63 @@ public abstract class BugChecker implements Suppressible, Serializable {
     Description matchWildcard(WildcardTree tree, VisitorState state);
   }
 
+  /**
+   * Matcher for checks that need to see a whole compilation unit before they can report anything.
+   *
+   * <p>Rather than starting a private {@link com.sun.source.util.TreeScanner} over the compilation
+   * unit, the check observes the single traversal of the file that Error Prone already performs:
+   * {@link CompilationUnitTraversal#enter} is called for every tree whose kind is in {@link
+   * #traversalKinds} before its children are scanned, {@link CompilationUnitTraversal#exit} is
+   * called for every tree whose kind is in {@link #exitKinds} after its children are scanned, and
+   * {@link CompilationUnitTraversal#finish} is called once the whole compilation unit has been
+   * visited. Unlike other matchers, traversals are shown the constructors generated by javac.
+   *
+   * <p>The traversal can't skip subtrees, but a check that needs to can pass state down from a tree
+   * to its children by pushing it in {@code enter} and popping it in {@code exit}, and ignore the
+   * trees it would have skipped until it exits the tree it is skipping.
+   */
+  public interface CompilationUnitTraversalMatcher extends Suppressible {
+    /** The kinds of tree that {@link CompilationUnitTraversal#enter} should be called for. */
+    Set<Tree.Kind> traversalKinds();
+
+    /**
+     * The kinds of tree that {@link CompilationUnitTraversal#exit} should be called for. None by
+     * default.
+     */
+    default Set<Tree.Kind> exitKinds() {
+      return ImmutableSet.of();
+    }
+
+    /**
+     * Starts observing a compilation unit. Returns {@code null} if the check has nothing to do in
+     * this compilation unit, in which case no trees will be passed to it.
+     */
+    @Nullable
+    CompilationUnitTraversal startTraversal(CompilationUnitTree tree, VisitorState state);
+  }
+
+  /** The state of a {@link CompilationUnitTraversalMatcher} for a single compilation unit. */
+  public interface CompilationUnitTraversal {
+    /**
+     * Called for each tree of one of the kinds in {@link
+     * CompilationUnitTraversalMatcher#traversalKinds}, in the order of a {@link
+     * com.sun.source.util.TreePathScanner}, before its children are visited. The path of {@code
+     * state} points to {@code tree}. Suppression annotations inside the compilation unit are not
+     * taken into account.
+     */
+    void enter(Tree tree, VisitorState state);
+
+    /**
+     * Called for each tree of one of the kinds in {@link
+     * CompilationUnitTraversalMatcher#exitKinds}, once it and all its children have been visited.
+     * The path of {@code state} points to {@code tree}.
+     */
+    default void exit(Tree tree, VisitorState state) {}
+
+    /** Called once every tree in the compilation unit has been visited. */
+    Description finish(VisitorState state);
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (!(obj instanceof BugChecker)) {
@@ -20,7 +20,9 @@ import com.google.auto.value.AutoValue;
 import com.google.common.base.Preconditions;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalNotification;
 import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.sun.source.tree.BlockTree;
 import com.sun.source.tree.ClassTree;
@@ -59,19 +61,22 @@ public final class DataFlow {
     ControlFlowGraph getControlFlowGraph();
   }
 
+  /**
+   * The maximum number of methods, lambdas and initializers whose control flow graphs (and the
+   * analyses run on them) are cached at a time.
+   */
+  private static final int MAX_CACHED_METHODS = 128;
+
   /*
-   * We cache both the control flow graph and the analyses that are run on it.
-   * We tuned performance to the following assumptions (which are currently true for error-prone):
-   *
-   * <ul>
-   * <li> all dataflow analyses for a method are finished before another method is analyzed
-   * <li> multiple dataflow analyses for the same method are executed in arbitrary order
-   * </ul>
-   *
-   * TODO(user): Write a test that checks these assumptions
+   * We cache both the control flow graph and the analyses that are run on it, for every method in
+   * the compilation unit being checked. Checks visit the tree in order, but e.g. a check on a
+   * lambda may query the enclosing method and the lambda alternately, and several checks may query
+   * the same methods in different orders, so the caches hold every method rather than the most
+   * recent one. Both caches are cleared by clearCaches() once a compilation unit has been checked.
    */
   private static final LoadingCache<AnalysisParams, Analysis<?, ?, ?>> analysisCache =
       CacheBuilder.newBuilder()
+          .recordStats()
           .build(
               new CacheLoader<AnalysisParams, Analysis<?, ?, ?>>() {
                 @Override
@@ -89,7 +94,9 @@ public final class DataFlow {
 
   private static final LoadingCache<CfgParams, ControlFlowGraph> cfgCache =
       CacheBuilder.newBuilder()
-          .maximumSize(1)
+          .maximumSize(MAX_CACHED_METHODS)
+          .recordStats()
+          .removalListener(DataFlow::onCfgRemoved)
           .build(
               new CacheLoader<CfgParams, ControlFlowGraph>() {
                 @Override
@@ -114,13 +121,39 @@ public final class DataFlow {
                   }
                   final ProcessingEnvironment env = key.environment();
 
-                  analysisCache.invalidateAll();
                   CompilationUnitTree root = methodPath.getCompilationUnit();
                   // TODO(user), replace with faster build(bodyPath, env, ast, false, false);
                   return CFGBuilder.build(root, ast, false, false, env);
                 }
               });
 
+  /** Drops the analyses of a control flow graph that was evicted to make room for another. */
+  private static void onCfgRemoved(RemovalNotification<CfgParams, ControlFlowGraph> notification) {
+    if (notification.wasEvicted()) {
+      ControlFlowGraph cfg = notification.getValue();
+      analysisCache.asMap().keySet().removeIf(params -> params.cfg() == cfg);
+    }
+  }
+
+  /**
+   * Discards the cached control flow graphs and analyses. Called once a compilation unit has been
+   * checked, since its trees are not analyzed again.
+   */
+  public static void clearCaches() {
+    cfgCache.invalidateAll();
+    analysisCache.invalidateAll();
+  }
+
+  /** Returns the hit and miss counts of the control flow graph cache. */
+  public static CacheStats cfgCacheStats() {
+    return cfgCache.stats();
+  }
+
+  /** Returns the hit and miss counts of the analysis cache. */
+  public static CacheStats analysisCacheStats() {
+    return analysisCache.stats();
+  }
+
   // TODO(user), remove once we merge jdk8 specific's with core
   private static <T> TreePath findEnclosingMethodOrLambdaOrInitializer(TreePath path) {
     while (path != null) {
@@ -153,8 +186,8 @@ public final class DataFlow {
    * Run the {@code transfer} dataflow analysis over the method or lambda which is the leaf of the
    * {@code methodPath}.
    *
-   * <p>For caching, we make the following assumptions: - if two paths to methods are {@code equal},
-   * their control flow graph is the same. - if two transfer functions are {@code equal}, and are
+   * <p>For caching, we make the following assumptions: - if two paths lead to the same method, their
+   * control flow graph is the same. - if two transfer functions are {@code equal}, and are
    * run over the same control flow graph, the analysis result is the same. - for all contexts, the
    * analysis result is the same.
    */
@@ -228,17 +261,24 @@ public final class DataFlow {
 
   @AutoValue
   abstract static class CfgParams {
-    abstract TreePath methodPath();
+    /** The method, lambda or initializer; trees have identity semantics. */
+    abstract Tree method();
 
     // Should not be used for hashCode or equals
+    private TreePath methodPath;
     private ProcessingEnvironment environment;
 
     private static CfgParams create(TreePath methodPath, ProcessingEnvironment environment) {
-      CfgParams cp = new AutoValue_DataFlow_CfgParams(methodPath);
+      CfgParams cp = new AutoValue_DataFlow_CfgParams(methodPath.getLeaf());
+      cp.methodPath = methodPath;
       cp.environment = environment;
       return cp;
     }
 
+    TreePath methodPath() {
+      return methodPath;
+    }
+
     ProcessingEnvironment environment() {
       return environment;
     }
@@ -46,6 +46,7 @@ import com.google.errorprone.dataflow.AccessPathStore;
 import com.google.errorprone.dataflow.AccessPathValues;
 import com.google.errorprone.dataflow.LocalVariableValues;
 import com.google.errorprone.dataflow.nullnesspropagation.inference.InferredNullability;
+import com.google.errorprone.dataflow.nullnesspropagation.inference.NullnessInferenceCache;
 import com.google.errorprone.dataflow.nullnesspropagation.inference.NullnessQualifierInference;
 import com.google.errorprone.util.MoreAnnotations;
 import com.sun.source.tree.BlockTree;
@@ -297,12 +298,13 @@ class NullnessPropagationTransfer extends AbstractNullnessPropagationTransfer
         procedureTree = enclosingOfClass(pathToNode, VariableTree.class); // field init
       }
 
+      checkNotNull(
+          procedureTree, "Call `%s` is not contained in an lambda, initializer or method.", node);
       inferenceResults =
-          NullnessQualifierInference.getInferredNullability(
-              checkNotNull(
-                  procedureTree,
-                  "Call `%s` is not contained in an lambda, initializer or method.",
-                  node));
+          context != null
+              ? NullnessInferenceCache.instance(context)
+                  .get(pathToNode.getCompilationUnit(), procedureTree)
+              : NullnessQualifierInference.getInferredNullability(procedureTree);
     }
     return inferenceResults.getExprNullness(node.getTree()).orElse(baselineNullness);
   }
@@ -21,6 +21,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.graph.Graph;
 import com.google.common.graph.ImmutableGraph;
+import com.google.errorprone.CheckProfiler;
 import com.google.errorprone.dataflow.nullnesspropagation.Nullness;
 import com.sun.source.tree.ExpressionTree;
 import com.sun.source.tree.MethodInvocationTree;
@@ -30,6 +31,7 @@ import com.sun.tools.javac.tree.TreeInfo;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import javax.annotation.Nullable;
 
 /**
  * Results of running {@code NullnessQualifierInference} over a method. The {@code constraintGraph}
@@ -41,8 +43,22 @@ public class InferredNullability {
 
   private final Map<InferenceVariable, Optional<Nullness>> inferredMemoTable = new HashMap<>();
 
+  /** The time spent solving constraints, if it is being profiled. */
+  @Nullable private final CheckProfiler.Counter solveNanos;
+
   InferredNullability(Graph<InferenceVariable> constraints) {
+    this(constraints, null);
+  }
+
+  InferredNullability(
+      Graph<InferenceVariable> constraints, @Nullable CheckProfiler.Counter solveNanos) {
     this.constraintGraph = ImmutableGraph.copyOf(constraints);
+    this.solveNanos = solveNanos;
+  }
+
+  /** Returns the number of constraints between inference variables. */
+  int constraintCount() {
+    return constraintGraph.edges().size();
   }
 
   /**
@@ -52,19 +68,31 @@ public class InferredNullability {
    */
   public ImmutableMap<TypeVariableSymbol, Nullness> getNullnessGenerics(
       MethodInvocationTree callsite) {
+    long start = solveNanos != null ? System.nanoTime() : 0;
     ImmutableMap.Builder<TypeVariableSymbol, Nullness> result = ImmutableMap.builder();
     for (TypeVariableSymbol tvs :
         TreeInfo.symbol((JCTree) callsite.getMethodSelect()).getTypeParameters()) {
       InferenceVariable iv = TypeVariableInferenceVar.create(tvs, callsite);
       getNullness(iv).ifPresent(nullness -> result.put(tvs, nullness));
     }
+    if (solveNanos != null) {
+      solveNanos.add(System.nanoTime() - start);
+    }
     return result.build();
   }
 
   /** Get inferred nullness qualifier for an expression, if possible. */
   public Optional<Nullness> getExprNullness(ExpressionTree exprTree) {
     InferenceVariable iv = TypeArgInferenceVar.create(ImmutableList.of(), exprTree);
-    return constraintGraph.nodes().contains(iv) ? getNullness(iv) : Optional.empty();
+    if (!constraintGraph.nodes().contains(iv)) {
+      return Optional.empty();
+    }
+    long start = solveNanos != null ? System.nanoTime() : 0;
+    Optional<Nullness> result = getNullness(iv);
+    if (solveNanos != null) {
+      solveNanos.add(System.nanoTime() - start);
+    }
+    return result;
   }
 
   private Optional<Nullness> getNullness(InferenceVariable iv) {
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.dataflow.nullnesspropagation.inference;
+
+import com.google.common.graph.Graph;
+import com.google.errorprone.CheckProfiler;
+import com.google.errorprone.ErrorProneOptions;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.Tree;
+import com.sun.tools.javac.util.Context;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * The results of {@link NullnessQualifierInference} for the methods, lambdas and initializers of
+ * the compilation unit being analyzed, shared by every check.
+ *
+ * <p>Checks often query a lambda and then the method that encloses it, or alternate between a few
+ * methods, so the results for the most recently used {@code -XepOpt:NullnessInference:CacheSize}
+ * trees (16 by default) are kept. Each result solves its constraints lazily, and remembers the
+ * solution for every inference variable it has solved. The cache is cleared when a different
+ * compilation unit is analyzed, so it never retains the trees of an earlier compilation unit.
+ *
+ * <p>When profiling is enabled with {@code -XepProfile}, the number of hits and misses, the number
+ * of constraints generated, and the time spent generating and solving them are included in the
+ * profile.
+ */
+public final class NullnessInferenceCache {
+
+  static final String CACHE_SIZE_FLAG = "NullnessInference:CacheSize";
+
+  private static final int DEFAULT_CACHE_SIZE = 16;
+
+  public static NullnessInferenceCache instance(Context context) {
+    NullnessInferenceCache cache = context.get(NullnessInferenceCache.class);
+    if (cache == null) {
+      ErrorProneOptions options = context.get(ErrorProneOptions.class);
+      int maxSize =
+          options != null
+              ? options.getFlags().getInteger(CACHE_SIZE_FLAG).orElse(DEFAULT_CACHE_SIZE)
+              : DEFAULT_CACHE_SIZE;
+      cache = new NullnessInferenceCache(maxSize, CheckProfiler.instance(context));
+      context.put(NullnessInferenceCache.class, cache);
+    }
+    return cache;
+  }
+
+  private final Map<Tree, InferredNullability> results;
+  private final CheckProfiler.CacheStats stats;
+  private final CheckProfiler.Counter constraints;
+  private final CheckProfiler.Counter buildNanos;
+  /** The time spent solving constraints, or null if profiling is disabled. */
+  @Nullable private final CheckProfiler.Counter solveNanos;
+
+  private CompilationUnitTree compilationUnit;
+
+  private NullnessInferenceCache(int maxSize, CheckProfiler profiler) {
+    this.results =
+        new LinkedHashMap<Tree, InferredNullability>(16, 0.75f, /* accessOrder= */ true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Tree, InferredNullability> eldest) {
+            return size() > maxSize;
+          }
+        };
+    this.stats = profiler.cacheStats("NullnessInference");
+    this.constraints = profiler.counter("NullnessInference.constraints");
+    this.buildNanos = profiler.counter("NullnessInference.build_nanos");
+    this.solveNanos =
+        profiler.isEnabled() ? profiler.counter("NullnessInference.solve_nanos") : null;
+  }
+
+  /**
+   * Returns the inferred nullability of a method, lambda, or initializer in {@code
+   * compilationUnit}.
+   */
+  public InferredNullability get(
+      CompilationUnitTree compilationUnit, Tree methodOrInitializerOrLambda) {
+    if (compilationUnit != this.compilationUnit) {
+      results.clear();
+      this.compilationUnit = compilationUnit;
+    }
+    InferredNullability result = results.get(methodOrInitializerOrLambda);
+    if (result != null) {
+      stats.hit();
+      return result;
+    }
+    stats.miss();
+    long start = System.nanoTime();
+    Graph<InferenceVariable> graph =
+        NullnessQualifierInference.constraints(methodOrInitializerOrLambda);
+    result = new InferredNullability(graph, solveNanos);
+    buildNanos.add(System.nanoTime() - start);
+    constraints.add(result.constraintCount());
+    results.put(methodOrInitializerOrLambda, result);
+    return result;
+  }
+}
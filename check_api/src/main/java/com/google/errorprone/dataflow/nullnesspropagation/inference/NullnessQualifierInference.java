@@ -18,15 +18,12 @@ package com.google.errorprone.dataflow.nullnesspropagation.inference;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Streams;
+import com.google.common.graph.Graph;
 import com.google.common.graph.GraphBuilder;
 import com.google.common.graph.MutableGraph;
-import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.sun.source.tree.ArrayAccessTree;
 import com.sun.source.tree.AssignmentTree;
 import com.sun.source.tree.BlockTree;
@@ -43,7 +40,6 @@ import com.sun.source.tree.Tree;
 import com.sun.source.tree.Tree.Kind;
 import com.sun.source.tree.VariableTree;
 import com.sun.source.util.TreeScanner;
-import com.sun.tools.javac.code.Symbol.CompletionFailure;
 import com.sun.tools.javac.code.Symbol.MethodSymbol;
 import com.sun.tools.javac.code.Symbol.TypeVariableSymbol;
 import com.sun.tools.javac.code.Symbol.VarSymbol;
@@ -68,21 +64,16 @@ import java.util.List;
  */
 public class NullnessQualifierInference extends TreeScanner<Void, Void> {
 
-  private static final LoadingCache<Tree, InferredNullability> inferenceCache =
-      CacheBuilder.newBuilder()
-          .maximumSize(1)
-          .build(
-              new CacheLoader<Tree, InferredNullability>() {
-                @Override
-                public InferredNullability load(Tree methodOrInitializer) {
-                  NullnessQualifierInference inferenceEngine =
-                      new NullnessQualifierInference(methodOrInitializer);
-                  inferenceEngine.scan(methodOrInitializer, null);
-                  return new InferredNullability(inferenceEngine.qualifierConstraints);
-                }
-              });
-
+  /**
+   * Runs inference over a method, lambda, or initializer. The results are not cached; use {@link
+   * NullnessInferenceCache} to share them between queries.
+   */
   public static InferredNullability getInferredNullability(Tree methodOrInitializerOrLambda) {
+    return new InferredNullability(constraints(methodOrInitializerOrLambda));
+  }
+
+  /** Returns the qualifier constraints of a method, lambda, or initializer. */
+  static Graph<InferenceVariable> constraints(Tree methodOrInitializerOrLambda) {
     checkArgument(
         methodOrInitializerOrLambda instanceof MethodTree
             || methodOrInitializerOrLambda instanceof LambdaExpressionTree
@@ -90,11 +81,10 @@ public class NullnessQualifierInference extends TreeScanner<Void, Void> {
             || methodOrInitializerOrLambda instanceof VariableTree,
         "Tree `%s` is not a lambda, initializer, or method.",
         methodOrInitializerOrLambda);
-    try {
-      return inferenceCache.getUnchecked(methodOrInitializerOrLambda);
-    } catch (UncheckedExecutionException e) {
-      throw e.getCause() instanceof CompletionFailure ? (CompletionFailure) e.getCause() : e;
-    }
+    NullnessQualifierInference inferenceEngine =
+        new NullnessQualifierInference(methodOrInitializerOrLambda);
+    inferenceEngine.scan(methodOrInitializerOrLambda, null);
+    return inferenceEngine.qualifierConstraints;
   }
 
   /**
@@ -0,0 +1,422 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.fixes;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Multimaps;
+import com.google.common.hash.Hashing;
+import com.google.common.io.CharStreams;
+import com.google.errorprone.VisitorState;
+import com.google.errorprone.apply.DescriptionBasedDiff;
+import com.google.errorprone.apply.ImportOrganizer;
+import com.google.errorprone.apply.SourceFile;
+import com.sun.source.util.JavacTask;
+import com.sun.tools.javac.api.BasicJavacTask;
+import com.sun.tools.javac.api.JavacTool;
+import com.sun.tools.javac.code.Kinds;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.code.Symtab;
+import com.sun.tools.javac.main.Arguments;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Options;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Compiles the current compilation unit with fixes applied, to check whether they break it. See
+ * {@link SuggestedFixes#compilesWithFix} and {@link SuggestedFixes#compilesWithFixIncrementally}.
+ */
+final class SpeculativeCompiler {
+
+  private static final Context.Key<SpeculativeCompiler> KEY = new Context.Key<>();
+
+  /** Returns the compiler for the compilation {@code state} belongs to. */
+  static SpeculativeCompiler instance(VisitorState state) {
+    BasicJavacTask javacTask = (BasicJavacTask) state.context.get(JavacTask.class);
+    if (javacTask == null) {
+      throw new IllegalArgumentException("No JavacTask in context.");
+    }
+    Context context = javacTask.getContext();
+    SpeculativeCompiler instance = context.get(KEY);
+    if (instance == null) {
+      instance = new SpeculativeCompiler(javacTask);
+      context.put(KEY, instance);
+    }
+    return instance;
+  }
+
+  private final BasicJavacTask javacTask;
+
+  /**
+   * Whether the current compilation unit compiles incrementally with a given fixed source, by the
+   * URI and a hash of the fixed source.
+   */
+  private final Map<String, Boolean> incrementalResults = new HashMap<>();
+
+  /** The sources of the compilation, or null if javac can't look them up by class name. */
+  @Nullable private CompilationSources sources;
+
+  private boolean sourcesComputed = false;
+
+  private SpeculativeCompiler(BasicJavacTask javacTask) {
+    this.javacTask = javacTask;
+  }
+
+  /** Recompiles every source of the compilation, with {@code fix} applied. */
+  boolean compilesWithFix(Fix fix, VisitorState state) {
+    JCCompilationUnit compilationUnit = (JCCompilationUnit) state.getPath().getCompilationUnit();
+    CharSequence fixedSource = applyFixes(ImmutableList.of(fix), compilationUnit);
+    if (fixedSource == null) {
+      return false;
+    }
+    return fullyCompiles(compilationUnit.getSourceFile(), fixedSource, state);
+  }
+
+  /**
+   * Returns, for each fix, whether the current compilation unit compiles with it applied. The
+   * fixes are checked together first, and then by halves until each group either compiles or
+   * contains a single fix.
+   */
+  ImmutableList<Boolean> compilesWithFixesIncrementally(
+      List<? extends Fix> fixes, VisitorState state) {
+    Boolean[] results = new Boolean[fixes.size()];
+    checkIncrementally(fixes, 0, fixes.size(), results, state);
+    return ImmutableList.copyOf(results);
+  }
+
+  private void checkIncrementally(
+      List<? extends Fix> fixes, int from, int to, Boolean[] results, VisitorState state) {
+    List<? extends Fix> group = fixes.subList(from, to);
+    if (group.stream().allMatch(Fix::isEmpty)) {
+      Arrays.fill(results, from, to, true);
+      return;
+    }
+    JCCompilationUnit compilationUnit = (JCCompilationUnit) state.getPath().getCompilationUnit();
+    CharSequence fixedSource;
+    try {
+      fixedSource = applyFixes(group, compilationUnit);
+    } catch (IllegalArgumentException e) {
+      if (group.size() == 1) {
+        throw e;
+      }
+      // the fixes overlap, so they can only be checked separately
+      fixedSource = null;
+    }
+    if (fixedSource != null && compilesIncrementally(compilationUnit, fixedSource, state)) {
+      Arrays.fill(results, from, to, true);
+      return;
+    }
+    if (group.size() == 1) {
+      results[from] = false;
+      return;
+    }
+    int mid = (from + to) >>> 1;
+    checkIncrementally(fixes, from, mid, results, state);
+    checkIncrementally(fixes, mid, to, results, state);
+  }
+
+  /**
+   * Returns the source of the compilation unit with the fixes applied, or null if it can't be read.
+   */
+  @Nullable
+  private static CharSequence applyFixes(
+      List<? extends Fix> fixes, JCCompilationUnit compilationUnit) {
+    DescriptionBasedDiff diff =
+        DescriptionBasedDiff.create(compilationUnit, ImportOrganizer.STATIC_FIRST_ORGANIZER);
+    for (Fix fix : fixes) {
+      diff.handleFix(fix);
+    }
+    JavaFileObject modifiedFile = compilationUnit.getSourceFile();
+    SourceFile fixSource;
+    try {
+      fixSource =
+          new SourceFile(
+              modifiedFile.getName(), modifiedFile.getCharContent(false /*ignoreEncodingErrors*/));
+    } catch (IOException e) {
+      return null;
+    }
+    diff.applyDifferences(fixSource);
+    return fixSource.getAsSequence();
+  }
+
+  private boolean compilesIncrementally(
+      JCCompilationUnit compilationUnit, CharSequence fixedSource, VisitorState state) {
+    JavaFileObject modifiedFile = compilationUnit.getSourceFile();
+    String key =
+        modifiedFile.toUri()
+            + "#"
+            + Hashing.murmur3_128().hashString(fixedSource, UTF_8).toString();
+    Boolean result = incrementalResults.get(key);
+    if (result == null) {
+      result = doCompileIncrementally(modifiedFile, fixedSource, state);
+      incrementalResults.put(key, result);
+    }
+    return result;
+  }
+
+  private boolean doCompileIncrementally(
+      JavaFileObject modifiedFile, CharSequence fixedSource, VisitorState state) {
+    CompilationSources sources = sources();
+    if (sources == null) {
+      return fullyCompiles(modifiedFile, fixedSource, state);
+    }
+    JavaFileObject fixedFile = fixedSourceFile(modifiedFile, fixedSource);
+    DiagnosticCollector<JavaFileObject> diagnosticListener = new DiagnosticCollector<>();
+    JavacTask newTask =
+        newTask(
+            new CompilationSourcesFileManager(
+                state.context.get(JavaFileManager.class), sources, modifiedFile),
+            diagnosticListener,
+            ImmutableList.of(),
+            ImmutableList.of(fixedFile),
+            /* processAnnotations= */ false);
+    try {
+      newTask.analyze();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    boolean errorsOnlyInFixedFile = true;
+    boolean hasErrors = false;
+    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnosticListener.getDiagnostics()) {
+      if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+        hasErrors = true;
+        if (diagnostic.getSource() == null
+            || !diagnostic.getSource().toUri().equals(fixedFile.toUri())) {
+          errorsOnlyInFixedFile = false;
+        }
+      }
+    }
+    if (!hasErrors) {
+      return true;
+    }
+    if (errorsOnlyInFixedFile) {
+      return false;
+    }
+    // an error in another source may mean that it isn't found the same way in the full
+    // compilation, so only a full compilation can tell
+    return fullyCompiles(modifiedFile, fixedSource, state);
+  }
+
+  private boolean fullyCompiles(
+      JavaFileObject modifiedFile, CharSequence fixedSource, VisitorState state) {
+    Arguments arguments = Arguments.instance(javacTask.getContext());
+    List<JavaFileObject> fileObjects = new ArrayList<>(arguments.getFileObjects());
+    for (int i = 0; i < fileObjects.size(); i++) {
+      if (modifiedFile.toUri().equals(fileObjects.get(i).toUri())) {
+        fileObjects.set(i, fixedSourceFile(modifiedFile, fixedSource));
+        break;
+      }
+    }
+    DiagnosticCollector<JavaFileObject> diagnosticListener = new DiagnosticCollector<>();
+    JavacTask newTask =
+        newTask(
+            state.context.get(JavaFileManager.class),
+            diagnosticListener,
+            arguments.getClassNames(),
+            fileObjects,
+            /* processAnnotations= */ true);
+    try {
+      newTask.analyze();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return diagnosticListener.getDiagnostics().stream()
+        .noneMatch(d -> d.getKind() == Diagnostic.Kind.ERROR);
+  }
+
+  private JavacTask newTask(
+      JavaFileManager fileManager,
+      DiagnosticCollector<JavaFileObject> diagnosticListener,
+      Iterable<String> classNames,
+      Iterable<? extends JavaFileObject> fileObjects,
+      boolean processAnnotations) {
+    Context context = new Context();
+    Options options = Options.instance(context);
+    Options originalOptions = Options.instance(javacTask.getContext());
+    for (String key : originalOptions.keySet()) {
+      String value = originalOptions.get(key);
+      if (key.equals("-Xplugin:") && value.startsWith("ErrorProne")) {
+        // When using the -Xplugin Error Prone integration, disable Error Prone for speculative
+        // recompiles to avoid infinite recurison.
+        continue;
+      }
+      options.put(key, value);
+    }
+    if (!processAnnotations) {
+      // sources generated by the original compilation are found with the other sources
+      options.put("-proc:", "none");
+      options.put("-proc:none", "-proc:none");
+    }
+    return JavacTool.create()
+        .getTask(
+            CharStreams.nullWriter(),
+            fileManager,
+            diagnosticListener,
+            ImmutableList.of(),
+            classNames,
+            fileObjects,
+            context);
+  }
+
+  private static JavaFileObject fixedSourceFile(
+      JavaFileObject modifiedFile, CharSequence fixedSource) {
+    return new SimpleJavaFileObject(SuggestedFixes.sourceURI(modifiedFile.toUri()), Kind.SOURCE) {
+      @Override
+      public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+        return fixedSource;
+      }
+    };
+  }
+
+  @Nullable
+  private CompilationSources sources() {
+    if (!sourcesComputed) {
+      sources = CompilationSources.create(javacTask.getContext());
+      sourcesComputed = true;
+    }
+    return sources;
+  }
+
+  /** The source files of the compilation, by package and with the name of their class. */
+  private static final class CompilationSources {
+    final ImmutableListMultimap<String, JavaFileObject> filesByPackage;
+    final Map<JavaFileObject, String> binaryNames;
+
+    CompilationSources(
+        ImmutableListMultimap<String, JavaFileObject> filesByPackage,
+        Map<JavaFileObject, String> binaryNames) {
+      this.filesByPackage = filesByPackage;
+      this.binaryNames = binaryNames;
+    }
+
+    /**
+     * Returns the sources of the classes that were compiled from source, or null if javac
+     * couldn't look one of them up by class name, because it doesn't declare exactly one top-level
+     * class with the same name as the file.
+     */
+    @Nullable
+    static CompilationSources create(Context context) {
+      ListMultimap<JavaFileObject, ClassSymbol> classesByFile = ArrayListMultimap.create();
+      for (ClassSymbol sym : Symtab.instance(context).getAllClasses()) {
+        if (sym.owner.kind == Kinds.Kind.PCK
+            && sym.sourcefile != null
+            && (sym.classfile == null || sym.classfile.getKind() == Kind.SOURCE)) {
+          classesByFile.put(sym.sourcefile, sym);
+        }
+      }
+      ImmutableListMultimap.Builder<String, JavaFileObject> filesByPackage =
+          ImmutableListMultimap.builder();
+      Map<JavaFileObject, String> binaryNames = new HashMap<>();
+      Map<URI, JavaFileObject> filesByUri = new HashMap<>();
+      for (Map.Entry<JavaFileObject, List<ClassSymbol>> entry :
+          Multimaps.asMap(classesByFile).entrySet()) {
+        JavaFileObject file = entry.getKey();
+        if (entry.getValue().size() != 1) {
+          return null;
+        }
+        ClassSymbol sym = entry.getValue().get(0);
+        if (!file.isNameCompatible(sym.getSimpleName().toString(), Kind.SOURCE)) {
+          return null;
+        }
+        filesByPackage.put(sym.packge().getQualifiedName().toString(), file);
+        binaryNames.put(file, sym.flatName().toString());
+        filesByUri.put(file.toUri(), file);
+      }
+      for (JavaFileObject file : Arguments.instance(context).getFileObjects()) {
+        if (!filesByUri.containsKey(file.toUri())
+            && !file.isNameCompatible("package-info", Kind.SOURCE)) {
+          // e.g. module-info.java
+          return null;
+        }
+      }
+      return new CompilationSources(filesByPackage.build(), binaryNames);
+    }
+  }
+
+  /**
+   * Makes the sources of the compilation available on the source path, so that a compilation of
+   * one of them can find the others.
+   */
+  private static final class CompilationSourcesFileManager
+      extends ForwardingJavaFileManager<JavaFileManager> {
+    private final CompilationSources sources;
+    private final URI excluded;
+
+    CompilationSourcesFileManager(
+        JavaFileManager fileManager, CompilationSources sources, JavaFileObject excluded) {
+      super(fileManager);
+      this.sources = sources;
+      this.excluded = excluded.toUri();
+    }
+
+    @Override
+    public boolean hasLocation(Location location) {
+      return location == StandardLocation.SOURCE_PATH || super.hasLocation(location);
+    }
+
+    @Override
+    public Iterable<JavaFileObject> list(
+        Location location, String packageName, Set<Kind> kinds, boolean recurse)
+        throws IOException {
+      Iterable<JavaFileObject> listed = super.list(location, packageName, kinds, recurse);
+      if (location != StandardLocation.SOURCE_PATH || !kinds.contains(Kind.SOURCE)) {
+        return listed;
+      }
+      List<JavaFileObject> files = new ArrayList<>();
+      for (String pkg : sources.filesByPackage.keySet()) {
+        if (pkg.equals(packageName)
+            || (recurse && (packageName.isEmpty() || pkg.startsWith(packageName + ".")))) {
+          for (JavaFileObject file : sources.filesByPackage.get(pkg)) {
+            if (!file.toUri().equals(excluded)) {
+              files.add(file);
+            }
+          }
+        }
+      }
+      return Iterables.concat(files, listed);
+    }
+
+    @Override
+    public String inferBinaryName(Location location, JavaFileObject file) {
+      String binaryName = sources.binaryNames.get(file);
+      return binaryName != null ? binaryName : super.inferBinaryName(location, file);
+    }
+  }
+}
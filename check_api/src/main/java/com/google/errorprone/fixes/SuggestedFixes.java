@@ -38,15 +38,10 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
-import com.google.common.io.CharStreams;
 import com.google.errorprone.VisitorState;
-import com.google.errorprone.apply.DescriptionBasedDiff;
-import com.google.errorprone.apply.ImportOrganizer;
-import com.google.errorprone.apply.SourceFile;
 import com.google.errorprone.fixes.SuggestedFix.Builder;
 import com.google.errorprone.util.ASTHelpers;
 import com.google.errorprone.util.ErrorProneToken;
-import com.google.errorprone.util.ErrorProneTokens;
 import com.google.errorprone.util.FindIdentifiers;
 import com.sun.source.doctree.DocTree;
 import com.sun.source.tree.AnnotationTree;
@@ -62,25 +57,19 @@ import com.sun.source.tree.NewArrayTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.tree.VariableTree;
 import com.sun.source.util.DocTreePath;
-import com.sun.source.util.JavacTask;
 import com.sun.source.util.TreePath;
-import com.sun.tools.javac.api.BasicJavacTask;
-import com.sun.tools.javac.api.JavacTool;
 import com.sun.tools.javac.api.JavacTrees;
 import com.sun.tools.javac.code.BoundKind;
 import com.sun.tools.javac.code.Kinds.KindSelector;
 import com.sun.tools.javac.code.Symbol;
 import com.sun.tools.javac.code.Type;
 import com.sun.tools.javac.code.Types.DefaultTypeVisitor;
-import com.sun.tools.javac.main.Arguments;
 import com.sun.tools.javac.parser.Tokens;
 import com.sun.tools.javac.parser.Tokens.TokenKind;
 import com.sun.tools.javac.tree.DCTree;
 import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
 import com.sun.tools.javac.tree.TreeScanner;
-import com.sun.tools.javac.util.Context;
-import com.sun.tools.javac.util.Options;
 import com.sun.tools.javac.util.Position;
 import java.io.IOException;
 import java.io.UncheckedIOException;
@@ -92,6 +81,7 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.List;
 import java.util.Map;
@@ -108,12 +98,7 @@ import javax.lang.model.type.ArrayType;
 import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.SimpleTypeVisitor8;
-import javax.tools.Diagnostic;
-import javax.tools.DiagnosticCollector;
-import javax.tools.JavaFileManager;
-import javax.tools.JavaFileObject;
 import javax.tools.JavaFileObject.Kind;
-import javax.tools.SimpleJavaFileObject;
 
 /** Factories for constructing {@link Fix}es. */
 public class SuggestedFixes {
@@ -447,9 +432,7 @@ public class SuggestedFixes {
         tree.getBody() != null
             ? ((JCTree) tree.getBody()).getStartPosition()
             : state.getEndPosition(tree);
-    List<ErrorProneToken> methodTokens =
-        ErrorProneTokens.getTokens(
-            state.getSourceCode().subSequence(basePos, endPos).toString(), state.context);
+    List<ErrorProneToken> methodTokens = state.getTokensForRange(basePos, endPos);
     for (ErrorProneToken token : methodTokens) {
       if (token.kind() == TokenKind.IDENTIFIER && token.name().equals(tree.getName())) {
         int nameStartPosition = basePos + token.pos();
@@ -750,70 +733,35 @@ public class SuggestedFixes {
     if (fix.isEmpty()) {
       return true;
     }
-    JCCompilationUnit compilationUnit = (JCCompilationUnit) state.getPath().getCompilationUnit();
-    JavaFileObject modifiedFile = compilationUnit.getSourceFile();
-    BasicJavacTask javacTask = (BasicJavacTask) state.context.get(JavacTask.class);
-    if (javacTask == null) {
-      throw new IllegalArgumentException("No JavacTask in context.");
-    }
-    Arguments arguments = Arguments.instance(javacTask.getContext());
-    List<JavaFileObject> fileObjects = new ArrayList<>(arguments.getFileObjects());
-    for (int i = 0; i < fileObjects.size(); i++) {
-      final JavaFileObject oldFile = fileObjects.get(i);
-      if (modifiedFile.toUri().equals(oldFile.toUri())) {
-        DescriptionBasedDiff diff =
-            DescriptionBasedDiff.create(compilationUnit, ImportOrganizer.STATIC_FIRST_ORGANIZER);
-        diff.handleFix(fix);
-        SourceFile fixSource;
-        try {
-          fixSource =
-              new SourceFile(
-                  modifiedFile.getName(),
-                  modifiedFile.getCharContent(false /*ignoreEncodingErrors*/));
-        } catch (IOException e) {
-          return false;
-        }
-        diff.applyDifferences(fixSource);
-        fileObjects.set(
-            i,
-            new SimpleJavaFileObject(sourceURI(modifiedFile.toUri()), Kind.SOURCE) {
-              @Override
-              public CharSequence getCharContent(boolean ignoreEncodingErrors) throws IOException {
-                return fixSource.getAsSequence();
-              }
-            });
-        break;
-      }
-    }
-    DiagnosticCollector<JavaFileObject> diagnosticListener = new DiagnosticCollector<>();
-    Context context = new Context();
-    Options options = Options.instance(context);
-    Options originalOptions = Options.instance(javacTask.getContext());
-    for (String key : originalOptions.keySet()) {
-      String value = originalOptions.get(key);
-      if (key.equals("-Xplugin:") && value.startsWith("ErrorProne")) {
-        // When using the -Xplugin Error Prone integration, disable Error Prone for speculative
-        // recompiles to avoid infinite recurison.
-        continue;
-      }
-      options.put(key, value);
-    }
-    JavacTask newTask =
-        JavacTool.create()
-            .getTask(
-                CharStreams.nullWriter(),
-                state.context.get(JavaFileManager.class),
-                diagnosticListener,
-                ImmutableList.of(),
-                arguments.getClassNames(),
-                fileObjects,
-                context);
-    try {
-      newTask.analyze();
-    } catch (IOException e) {
-      throw new UncheckedIOException(e);
+    return SpeculativeCompiler.instance(state).compilesWithFix(fix, state);
+  }
+
+  /**
+   * Returns true if the current compilation unit would still compile with the given fix applied.
+   *
+   * <p>This is much cheaper than {@link #compilesWithFix}: only the modified compilation unit is
+   * reparsed and attributed, and the other sources of the compilation are only read if it refers
+   * to them. It does not detect fixes that break other compilation units, so it should only be
+   * used for fixes whose effects are local to the compilation unit, e.g. changes to private
+   * members or method bodies. Results are cached for the rest of the compilation.
+   */
+  public static boolean compilesWithFixIncrementally(Fix fix, VisitorState state) {
+    return compilesWithFixesIncrementally(ImmutableList.of(fix), state).get(0);
+  }
+
+  /**
+   * Returns, for each of the given fixes to the current compilation unit, whether it would still
+   * compile with that fix applied, as in {@link #compilesWithFixIncrementally}.
+   *
+   * <p>The fixes are first checked together in a single speculative compilation, and only split up
+   * if that fails, so they should be independent of each other.
+   */
+  public static ImmutableList<Boolean> compilesWithFixesIncrementally(
+      List<? extends Fix> fixes, VisitorState state) {
+    if (fixes.stream().allMatch(Fix::isEmpty)) {
+      return ImmutableList.copyOf(Collections.nCopies(fixes.size(), true));
     }
-    return countErrors(diagnosticListener) == 0;
+    return SpeculativeCompiler.instance(state).compilesWithFixesIncrementally(fixes, state);
   }
 
   /** Create a plausible URI to use in {@link #compilesWithFix}. */
@@ -830,12 +778,6 @@ public class SuggestedFixes {
     }
   }
 
-  private static long countErrors(DiagnosticCollector<JavaFileObject> diagnosticCollector) {
-    return diagnosticCollector.getDiagnostics().stream()
-        .filter(d -> d.getKind() == Diagnostic.Kind.ERROR)
-        .count();
-  }
-
   /**
    * Pretty-prints a Type for use in fixes, qualifying any enclosed type names using {@link
    * #qualifyType}}.
@@ -29,6 +29,7 @@ import com.google.errorprone.VisitorState;
 import com.google.errorprone.dataflow.nullnesspropagation.Nullness;
 import com.google.errorprone.matchers.ChildMultiMatcher.MatchType;
 import com.google.errorprone.matchers.MethodVisibility.Visibility;
+import com.google.errorprone.matchers.method.MethodMatcherIndex;
 import com.google.errorprone.matchers.method.MethodMatchers;
 import com.google.errorprone.matchers.method.MethodMatchers.AnyMethodMatcher;
 import com.google.errorprone.matchers.method.MethodMatchers.ConstructorMatcher;
@@ -149,17 +150,8 @@ public class Matchers {
    */
   public static <T extends Tree> Matcher<T> anyOf(
       final Iterable<? extends Matcher<? super T>> matchers) {
-    return new Matcher<T>() {
-      @Override
-      public boolean matches(T t, VisitorState state) {
-        for (Matcher<? super T> matcher : matchers) {
-          if (matcher.matches(t, state)) {
-            return true;
-          }
-        }
-        return false;
-      }
-    };
+    // method matchers are indexed by name, so only the ones for the invoked method are run
+    return MethodMatcherIndex.anyOf(matchers);
   }
 
   @SafeVarargs
@@ -871,7 +863,7 @@ public class Matchers {
         if (ASTHelpers.hasAnnotation(methodSym, annotationClass, state)) {
           return true;
         }
-        for (MethodSymbol method : ASTHelpers.findSuperMethods(methodSym, state.getTypes())) {
+        for (MethodSymbol method : ASTHelpers.findSuperMethods(methodSym, state)) {
           if (ASTHelpers.hasAnnotation(method, annotationClass, state)) {
             return true;
           }
@@ -17,9 +17,11 @@
 package com.google.errorprone.matchers.method;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
 import com.google.errorprone.VisitorState;
 import com.google.errorprone.annotations.ForOverride;
 import com.sun.source.tree.ExpressionTree;
+import javax.annotation.Nullable;
 
 /** Super-type for matchers that compose other matchers. */
 abstract class AbstractChainedMatcher<A, B> extends AbstractSimpleMatcher<B> {
@@ -30,13 +32,23 @@ abstract class AbstractChainedMatcher<A, B> extends AbstractSimpleMatcher<B> {
   }
 
   @ForOverride
-  protected abstract Optional<B> matchResult(ExpressionTree item, A baseResult, VisitorState state);
+  @Nullable
+  protected abstract B matchResult(ExpressionTree item, A baseResult, VisitorState state);
 
   @Override
-  protected final Optional<B> matchResult(ExpressionTree item, VisitorState state) {
-    Optional<A> baseResult = baseMatcher.matchResult(item, state);
-    return baseResult.isPresent()
-        ? matchResult(item, baseResult.get(), state)
-        : Optional.<B>absent();
+  Optional<ImmutableSet<String>> methodNames() {
+    return baseMatcher.methodNames();
+  }
+
+  @Override
+  int arity() {
+    return baseMatcher.arity();
+  }
+
+  @Override
+  @Nullable
+  protected final B matchResult(ExpressionTree item, VisitorState state) {
+    A baseResult = baseMatcher.matchResult(item, state);
+    return baseResult != null ? matchResult(item, baseResult, state) : null;
   }
 }
@@ -17,16 +17,65 @@
 package com.google.errorprone.matchers.method;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.errorprone.VisitorState;
 import com.google.errorprone.matchers.Matcher;
 import com.sun.source.tree.ExpressionTree;
+import com.sun.tools.javac.util.Name;
+import javax.annotation.Nullable;
 
 /** Super-type for base (non-chained) matchers. */
 abstract class AbstractSimpleMatcher<T> implements Matcher<ExpressionTree> {
-  protected abstract Optional<T> matchResult(ExpressionTree item, VisitorState state);
+  /**
+   * Returns the state of the match if {@code item} matches, or null. The state is created once by
+   * the first matcher of a chain and then passed along it, so matching doesn't allocate at every
+   * step.
+   */
+  @Nullable
+  protected abstract T matchResult(ExpressionTree item, VisitorState state);
+
+  /**
+   * Returns the simple names of the methods this matcher is restricted to, or absent if it may
+   * match methods with any name.
+   */
+  Optional<ImmutableSet<String>> methodNames() {
+    return Optional.absent();
+  }
+
+  /**
+   * Returns the number of formal parameters of the methods this matcher is restricted to, or -1 if
+   * it may match methods with any number of parameters.
+   */
+  int arity() {
+    return -1;
+  }
+
+  // The names from methodNames(), computed lazily since they depend on the state of subclasses
+  private volatile Optional<NameIndex<Boolean>> nameFilter;
 
   @Override
   public final boolean matches(ExpressionTree tree, VisitorState state) {
-    return matchResult(tree, state).isPresent();
+    // Reject invocations of other methods by name alone, which is much cheaper than resolving the
+    // symbol and testing the owner type.
+    NameIndex<Boolean> filter = nameFilter().orNull();
+    if (filter != null) {
+      Name name = NameIndex.invokedName(tree);
+      if (name != null && filter.get(name) == null) {
+        return false;
+      }
+    }
+    return matchResult(tree, state) != null;
+  }
+
+  private Optional<NameIndex<Boolean>> nameFilter() {
+    Optional<NameIndex<Boolean>> filter = nameFilter;
+    if (filter == null) {
+      filter =
+          methodNames()
+              .transform(names -> new NameIndex<>(Maps.asMap(names, name -> Boolean.TRUE)));
+      nameFilter = filter;
+    }
+    return filter;
   }
 }
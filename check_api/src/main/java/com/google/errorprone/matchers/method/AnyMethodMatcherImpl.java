@@ -16,21 +16,22 @@
 
 package com.google.errorprone.matchers.method;
 
-import com.google.common.base.Optional;
 import com.google.errorprone.VisitorState;
 import com.google.errorprone.matchers.method.MethodMatchers.AnyMethodMatcher;
 import com.google.errorprone.matchers.method.MethodMatchers.MethodClassMatcher;
 import com.google.errorprone.predicates.TypePredicate;
 import com.google.errorprone.predicates.TypePredicates;
 import com.sun.source.tree.ExpressionTree;
+import javax.annotation.Nullable;
 
 /** Matches instance or static methods, allows refinement on class type. */
 class AnyMethodMatcherImpl extends MethodMatcher implements AnyMethodMatcher {
 
   @Override
-  protected Optional<MatchState> matchResult(
+  @Nullable
+  protected MatchState matchResult(
       ExpressionTree method, MatchState baseResult, VisitorState state) {
-    return Optional.of(baseResult);
+    return baseResult;
   }
 
   @Override
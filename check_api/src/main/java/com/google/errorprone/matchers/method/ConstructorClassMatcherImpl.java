@@ -16,7 +16,6 @@
 
 package com.google.errorprone.matchers.method;
 
-import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.errorprone.VisitorState;
 import com.google.errorprone.matchers.method.MethodMatchers.ConstructorClassMatcher;
@@ -27,6 +26,7 @@ import com.google.errorprone.suppliers.Suppliers;
 import com.sun.source.tree.ExpressionTree;
 import com.sun.tools.javac.code.Type;
 import java.util.Arrays;
+import javax.annotation.Nullable;
 
 /** Matches on class type, allows refinement on parameters. */
 class ConstructorClassMatcherImpl extends AbstractChainedMatcher<MatchState, MatchState>
@@ -35,12 +35,12 @@ class ConstructorClassMatcherImpl extends AbstractChainedMatcher<MatchState, Mat
   private final TypePredicate predicate;
 
   @Override
-  protected Optional<MatchState> matchResult(
-      ExpressionTree item, MatchState baseResult, VisitorState state) {
+  @Nullable
+  protected MatchState matchResult(ExpressionTree item, MatchState baseResult, VisitorState state) {
     if (predicate.apply(baseResult.ownerType(), state)) {
-      return Optional.of(baseResult);
+      return baseResult;
     }
-    return Optional.absent();
+    return null;
   }
 
   public ConstructorClassMatcherImpl(ConstructorMatcherImpl baseMatcher, TypePredicate predicate) {
@@ -16,25 +16,56 @@
 
 package com.google.errorprone.matchers.method;
 
-import com.google.auto.value.AutoValue;
-import com.google.common.collect.ImmutableList;
+import com.google.errorprone.util.ASTHelpers;
+import com.sun.source.tree.ExpressionTree;
 import com.sun.tools.javac.code.Symbol.MethodSymbol;
 import com.sun.tools.javac.code.Type;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * The state that is propagated across a match operation.
+ *
+ * <p>A single instance is created for each evaluation of a matcher chain, and the owner type is
+ * only computed if a matcher in the chain needs it.
+ */
+final class MatchState {
+  // The tree whose receiver determines the owner type, or null if the owner type is known
+  @Nullable private final ExpressionTree receiverTree;
+  @Nullable private Type ownerType;
+  private final MethodSymbol sym;
+
+  private MatchState(
+      @Nullable ExpressionTree receiverTree, @Nullable Type ownerType, MethodSymbol sym) {
+    this.receiverTree = receiverTree;
+    this.ownerType = ownerType;
+    this.sym = sym;
+  }
 
-/** The state that is propagated across a match operation. */
-@AutoValue
-abstract class MatchState {
   /** The type of the class in which a member method or constructor is declared. */
-  abstract Type ownerType();
+  Type ownerType() {
+    if (ownerType == null && receiverTree != null) {
+      ownerType = ASTHelpers.getReceiverType(receiverTree);
+    }
+    return ownerType;
+  }
 
   /** The method being matched. */
-  abstract MethodSymbol sym();
+  MethodSymbol sym() {
+    return sym;
+  }
 
   /** The method's formal parameter types. */
-  abstract ImmutableList<Type> paramTypes();
+  List<Type> paramTypes() {
+    return sym.type.getParameterTypes();
+  }
 
   static MatchState create(Type ownerType, MethodSymbol methodSymbol) {
-    return new AutoValue_MatchState(
-        ownerType, methodSymbol, ImmutableList.copyOf(methodSymbol.type.getParameterTypes()));
+    return new MatchState(null, ownerType, methodSymbol);
+  }
+
+  /** Returns the state for a method invoked or referenced by {@code tree}. */
+  static MatchState forReceiver(ExpressionTree tree, MethodSymbol methodSymbol) {
+    return new MatchState(tree, null, methodSymbol);
   }
 }
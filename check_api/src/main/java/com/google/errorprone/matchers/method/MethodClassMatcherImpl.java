@@ -16,7 +16,6 @@
 
 package com.google.errorprone.matchers.method;
 
-import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.errorprone.VisitorState;
 import com.google.errorprone.matchers.method.MethodMatchers.MethodClassMatcher;
@@ -26,6 +25,7 @@ import com.google.errorprone.matchers.method.MethodNameMatcherImpl.Regex;
 import com.google.errorprone.predicates.TypePredicate;
 import com.sun.source.tree.ExpressionTree;
 import java.util.regex.Pattern;
+import javax.annotation.Nullable;
 
 /** Matches on the method's class type, and allows refinement on method name or signature. */
 class MethodClassMatcherImpl extends AbstractChainedMatcher<MatchState, MatchState>
@@ -39,11 +39,9 @@ class MethodClassMatcherImpl extends AbstractChainedMatcher<MatchState, MatchSta
   }
 
   @Override
-  protected Optional<MatchState> matchResult(
-      ExpressionTree item, MatchState method, VisitorState state) {
-    return predicate.apply(method.ownerType(), state)
-        ? Optional.of(method)
-        : Optional.<MatchState>absent();
+  @Nullable
+  protected MatchState matchResult(ExpressionTree item, MatchState method, VisitorState state) {
+    return predicate.apply(method.ownerType(), state) ? method : null;
   }
 
   @Override
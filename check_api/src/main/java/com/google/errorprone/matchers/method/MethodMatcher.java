@@ -16,7 +16,6 @@
 
 package com.google.errorprone.matchers.method;
 
-import com.google.common.base.Optional;
 import com.google.errorprone.VisitorState;
 import com.google.errorprone.util.ASTHelpers;
 import com.sun.source.tree.ExpressionTree;
@@ -24,26 +23,27 @@ import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.NewClassTree;
 import com.sun.tools.javac.code.Symbol;
 import com.sun.tools.javac.code.Symbol.MethodSymbol;
+import javax.annotation.Nullable;
 
 /** Base matcher for member methods. */
 abstract class MethodMatcher extends AbstractChainedMatcher<MatchState, MatchState> {
   private static final AbstractSimpleMatcher<MatchState> BASE_METHOD_MATCHER =
       new AbstractSimpleMatcher<MatchState>() {
         @Override
-        public Optional<MatchState> matchResult(ExpressionTree tree, VisitorState state) {
+        @Nullable
+        public MatchState matchResult(ExpressionTree tree, VisitorState state) {
           Symbol sym = ASTHelpers.getSymbol(tree);
           if (!(sym instanceof MethodSymbol)) {
-            return Optional.absent();
+            return null;
           }
           if (tree instanceof NewClassTree) {
             // Don't match constructors as they are neither static nor instance methods.
-            return Optional.absent();
+            return null;
           }
           if (tree instanceof MethodInvocationTree) {
             tree = ((MethodInvocationTree) tree).getMethodSelect();
           }
-          return Optional.of(
-              MatchState.create(ASTHelpers.getReceiverType(tree), (MethodSymbol) sym));
+          return MatchState.forReceiver(tree, (MethodSymbol) sym);
         }
       };
 
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.matchers.method;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.errorprone.VisitorState;
+import com.google.errorprone.matchers.Matcher;
+import com.google.errorprone.util.ASTHelpers;
+import com.sun.source.tree.Tree;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symbol.MethodSymbol;
+import com.sun.tools.javac.util.Name;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches if any of a list of matchers matches. The method matchers that are restricted to methods
+ * with particular names are indexed by name, and then by the number of parameters, so matching an
+ * invocation only runs the matchers for methods with the invoked name.
+ *
+ * <p>This is how {@link com.google.errorprone.matchers.Matchers#anyOf} is implemented, so checks
+ * that combine many method matchers get the index without any changes.
+ */
+public final class MethodMatcherIndex<T extends Tree> implements Matcher<T> {
+
+  /** Returns a matcher that matches if any of {@code matchers} matches. */
+  public static <T extends Tree> Matcher<T> anyOf(Iterable<? extends Matcher<? super T>> matchers) {
+    ImmutableList<Matcher<? super T>> all = ImmutableList.copyOf(matchers);
+    Map<String, List<Candidate<T>>> byName = new LinkedHashMap<>();
+    ImmutableList.Builder<Matcher<? super T>> unindexed = ImmutableList.builder();
+    for (Matcher<? super T> matcher : all) {
+      Optional<ImmutableSet<String>> names =
+          matcher instanceof AbstractSimpleMatcher
+              ? ((AbstractSimpleMatcher<?>) matcher).methodNames()
+              : Optional.absent();
+      if (!names.isPresent()) {
+        unindexed.add(matcher);
+        continue;
+      }
+      Candidate<T> candidate =
+          new Candidate<>(matcher, ((AbstractSimpleMatcher<?>) matcher).arity());
+      for (String name : names.get()) {
+        byName.computeIfAbsent(name, k -> new ArrayList<>()).add(candidate);
+      }
+    }
+    Map<String, ImmutableList<Candidate<T>>> index = new LinkedHashMap<>();
+    byName.forEach((name, candidates) -> index.put(name, ImmutableList.copyOf(candidates)));
+    return new MethodMatcherIndex<>(all, new NameIndex<>(index), unindexed.build());
+  }
+
+  /** A matcher that is only run for methods with a particular name. */
+  private static final class Candidate<T extends Tree> {
+    final Matcher<? super T> matcher;
+    /** The number of parameters of the methods the matcher is restricted to, or -1. */
+    final int arity;
+
+    Candidate(Matcher<? super T> matcher, int arity) {
+      this.matcher = matcher;
+      this.arity = arity;
+    }
+  }
+
+  private final ImmutableList<Matcher<? super T>> all;
+  private final NameIndex<ImmutableList<Candidate<T>>> byName;
+  private final ImmutableList<Matcher<? super T>> unindexed;
+
+  private MethodMatcherIndex(
+      ImmutableList<Matcher<? super T>> all,
+      NameIndex<ImmutableList<Candidate<T>>> byName,
+      ImmutableList<Matcher<? super T>> unindexed) {
+    this.all = all;
+    this.byName = byName;
+    this.unindexed = unindexed;
+  }
+
+  @Override
+  public boolean matches(T tree, VisitorState state) {
+    Name name = NameIndex.invokedName(tree);
+    if (name == null) {
+      // the name can't be read off the tree, so any of the matchers could match
+      return anyMatches(all, tree, state);
+    }
+    ImmutableList<Candidate<T>> candidates = byName.get(name);
+    if (candidates != null) {
+      int arity = -1;
+      boolean arityComputed = false;
+      for (Candidate<T> candidate : candidates) {
+        if (candidate.arity >= 0) {
+          if (!arityComputed) {
+            arity = arity(tree);
+            arityComputed = true;
+          }
+          if (arity != -1 && candidate.arity != arity) {
+            continue;
+          }
+        }
+        if (candidate.matcher.matches(tree, state)) {
+          return true;
+        }
+      }
+    }
+    return anyMatches(unindexed, tree, state);
+  }
+
+  /** Returns the number of parameters of the method {@code tree} refers to, or -1. */
+  private static int arity(Tree tree) {
+    Symbol sym = ASTHelpers.getSymbol(tree);
+    return sym instanceof MethodSymbol ? sym.type.getParameterTypes().size() : -1;
+  }
+
+  private static <T extends Tree> boolean anyMatches(
+      List<Matcher<? super T>> matchers, T tree, VisitorState state) {
+    for (Matcher<? super T> matcher : matchers) {
+      if (matcher.matches(tree, state)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -20,6 +20,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.errorprone.VisitorState;
 import com.google.errorprone.matchers.method.MethodMatchers.MethodNameMatcher;
 import com.google.errorprone.matchers.method.MethodMatchers.ParameterMatcher;
@@ -28,6 +29,7 @@ import com.sun.source.tree.ExpressionTree;
 import com.sun.tools.javac.util.Name;
 import java.util.Arrays;
 import java.util.regex.Pattern;
+import javax.annotation.Nullable;
 
 /** Matchers that select on method name. */
 public abstract class MethodNameMatcherImpl extends AbstractChainedMatcher<MatchState, MatchState>
@@ -61,12 +63,17 @@ public abstract class MethodNameMatcherImpl extends AbstractChainedMatcher<Match
     }
 
     @Override
-    protected Optional<MatchState> matchResult(
-        ExpressionTree item, MatchState method, VisitorState state) {
+    Optional<ImmutableSet<String>> methodNames() {
+      return Optional.of(ImmutableSet.of(name));
+    }
+
+    @Override
+    @Nullable
+    protected MatchState matchResult(ExpressionTree item, MatchState method, VisitorState state) {
       if (!method.sym().getSimpleName().contentEquals(name)) {
-        return Optional.absent();
+        return null;
       }
-      return Optional.of(method);
+      return method;
     }
   }
 
@@ -77,9 +84,9 @@ public abstract class MethodNameMatcherImpl extends AbstractChainedMatcher<Match
     }
 
     @Override
-    protected Optional<MatchState> matchResult(
-        ExpressionTree item, MatchState method, VisitorState state) {
-      return Optional.of(method);
+    @Nullable
+    protected MatchState matchResult(ExpressionTree item, MatchState method, VisitorState state) {
+      return method;
     }
   }
 
@@ -94,12 +101,12 @@ public abstract class MethodNameMatcherImpl extends AbstractChainedMatcher<Match
     }
 
     @Override
-    protected Optional<MatchState> matchResult(
-        ExpressionTree item, MatchState method, VisitorState state) {
+    @Nullable
+    protected MatchState matchResult(ExpressionTree item, MatchState method, VisitorState state) {
       if (!regex.matcher(method.sym().getSimpleName().toString()).matches()) {
-        return Optional.absent();
+        return null;
       }
-      return Optional.of(method);
+      return method;
     }
   }
 
@@ -114,12 +121,15 @@ public abstract class MethodNameMatcherImpl extends AbstractChainedMatcher<Match
     }
 
     @Override
-    protected Optional<MatchState> matchResult(
-        ExpressionTree item, MatchState method, VisitorState state) {
+    Optional<ImmutableSet<String>> methodNames() {
+      return Optional.of(ImmutableSet.copyOf(names));
+    }
+
+    @Override
+    @Nullable
+    protected MatchState matchResult(ExpressionTree item, MatchState method, VisitorState state) {
       Name symbolName = method.sym().getSimpleName();
-      return names.stream().anyMatch(symbolName::contentEquals)
-          ? Optional.of(method)
-          : Optional.absent();
+      return names.stream().anyMatch(symbolName::contentEquals) ? method : null;
     }
   }
 }
@@ -17,9 +17,11 @@
 package com.google.errorprone.matchers.method;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
 import com.google.errorprone.VisitorState;
 import com.google.errorprone.matchers.method.MethodMatchers.MethodSignatureMatcher;
 import com.sun.source.tree.ExpressionTree;
+import javax.annotation.Nullable;
 
 /** Matches on method signature. */
 public class MethodSignatureMatcherImpl extends AbstractChainedMatcher<MatchState, MatchState>
@@ -32,13 +34,26 @@ public class MethodSignatureMatcherImpl extends AbstractChainedMatcher<MatchStat
   }
 
   @Override
-  protected Optional<MatchState> matchResult(
-      ExpressionTree item, MatchState method, VisitorState state) {
+  Optional<ImmutableSet<String>> methodNames() {
+    int paren = methodName.indexOf('(');
+    if (paren == -1) {
+      return Optional.of(ImmutableSet.of(methodName));
+    }
+    if (methodName.startsWith("<")) {
+      // the signature of a generic method starts with its type parameters
+      return Optional.absent();
+    }
+    return Optional.of(ImmutableSet.of(methodName.substring(0, paren)));
+  }
+
+  @Override
+  @Nullable
+  protected MatchState matchResult(ExpressionTree item, MatchState method, VisitorState state) {
     // TODO(cushon): build a way to match signatures (including varargs ones!) that doesn't
     // rely on MethodSymbol#toString().
     boolean matches =
         method.sym().getSimpleName().contentEquals(methodName)
             || method.sym().toString().equals(methodName);
-    return matches ? Optional.of(method) : Optional.<MatchState>absent();
+    return matches ? method : null;
   }
 }
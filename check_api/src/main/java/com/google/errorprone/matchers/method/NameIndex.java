@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.matchers.method;
+
+import com.google.common.collect.ImmutableMap;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.Tree;
+import com.sun.tools.javac.util.Name;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * A map from method names to values, which is looked up with the {@link Name}s of the trees being
+ * matched. The keys are resolved against the name table of each compilation once, so lookups are a
+ * single identity hash lookup and don't convert names to strings.
+ */
+final class NameIndex<V> {
+
+  private final ImmutableMap<String, V> values;
+
+  @Nullable private volatile Resolved<V> resolved;
+
+  NameIndex(Map<String, V> values) {
+    this.values = ImmutableMap.copyOf(values);
+  }
+
+  /** Returns the value for {@code name}, or null if there is none. */
+  @Nullable
+  V get(Name name) {
+    Resolved<V> current = resolved;
+    if (current == null || current.table != name.table) {
+      current = new Resolved<>(name.table, values);
+      resolved = current;
+    }
+    return current.values.get(name);
+  }
+
+  /**
+   * Returns the name of the method that {@code tree} invokes or refers to, read from the tree
+   * itself, or null if that isn't necessarily the name of the method's symbol (e.g. for {@code
+   * super(...)}). Matchers can be asked about null trees, e.g. by {@link
+   * com.google.errorprone.matchers.Contains}, so {@code tree} may be null.
+   */
+  @Nullable
+  static Name invokedName(@Nullable Tree tree) {
+    if (tree == null) {
+      return null;
+    }
+    Name name;
+    switch (tree.getKind()) {
+      case METHOD_INVOCATION:
+        return invokedName(((MethodInvocationTree) tree).getMethodSelect());
+      case IDENTIFIER:
+        name = (Name) ((IdentifierTree) tree).getName();
+        break;
+      case MEMBER_SELECT:
+        name = (Name) ((MemberSelectTree) tree).getIdentifier();
+        break;
+      case MEMBER_REFERENCE:
+        name = (Name) ((MemberReferenceTree) tree).getName();
+        break;
+      default:
+        return null;
+    }
+    if (name == name.table.names._this
+        || name == name.table.names._super
+        || name == name.table.names.init) {
+      return null;
+    }
+    return name;
+  }
+
+  /** The keys of the index, as names from a particular name table. */
+  private static final class Resolved<V> {
+    final Name.Table table;
+    final ImmutableMap<Name, V> values;
+
+    Resolved(Name.Table table, ImmutableMap<String, V> values) {
+      this.table = table;
+      ImmutableMap.Builder<Name, V> builder = ImmutableMap.builder();
+      values.forEach((name, value) -> builder.put(table.fromString(name), value));
+      this.values = builder.build();
+    }
+  }
+}
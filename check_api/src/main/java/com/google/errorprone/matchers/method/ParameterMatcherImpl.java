@@ -16,7 +16,6 @@
 
 package com.google.errorprone.matchers.method;
 
-import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.errorprone.VisitorState;
 import com.google.errorprone.matchers.method.MethodMatchers.ParameterMatcher;
@@ -24,6 +23,8 @@ import com.google.errorprone.suppliers.Supplier;
 import com.google.errorprone.util.ASTHelpers;
 import com.sun.source.tree.ExpressionTree;
 import com.sun.tools.javac.code.Type;
+import java.util.List;
+import javax.annotation.Nullable;
 
 /** Matches on a method's formal parameters. */
 public class ParameterMatcherImpl extends AbstractChainedMatcher<MatchState, MatchState>
@@ -38,17 +39,23 @@ public class ParameterMatcherImpl extends AbstractChainedMatcher<MatchState, Mat
   }
 
   @Override
-  protected Optional<MatchState> matchResult(
-      ExpressionTree item, MatchState info, VisitorState state) {
-    ImmutableList<Type> actual = ImmutableList.copyOf(info.paramTypes());
+  int arity() {
+    return expected.size();
+  }
+
+  @Override
+  @Nullable
+  protected MatchState matchResult(ExpressionTree item, MatchState info, VisitorState state) {
+    List<Type> actual = info.paramTypes();
     if (actual.size() != expected.size()) {
-      return Optional.absent();
+      return null;
     }
-    for (int i = 0; i < actual.size(); ++i) {
-      if (!ASTHelpers.isSameType(actual.get(i), expected.get(i).get(state), state)) {
-        return Optional.absent();
+    int i = 0;
+    for (Type type : actual) {
+      if (!ASTHelpers.isSameType(type, expected.get(i++).get(state), state)) {
+        return null;
       }
     }
-    return Optional.of(info);
+    return info;
   }
 }
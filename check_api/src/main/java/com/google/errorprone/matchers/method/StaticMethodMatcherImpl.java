@@ -16,7 +16,6 @@
 
 package com.google.errorprone.matchers.method;
 
-import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.errorprone.VisitorState;
 import com.google.errorprone.matchers.method.MethodMatchers.StaticMethodMatcher;
@@ -25,16 +24,17 @@ import com.google.errorprone.predicates.TypePredicates;
 import com.google.errorprone.suppliers.Supplier;
 import com.sun.source.tree.ExpressionTree;
 import com.sun.tools.javac.code.Type;
+import javax.annotation.Nullable;
 
 /** Matches static methods, allows refinement on class type. */
 class StaticMethodMatcherImpl extends MethodMatcher implements StaticMethodMatcher {
   @Override
-  protected Optional<MatchState> matchResult(
-      ExpressionTree item, MatchState method, VisitorState state) {
+  @Nullable
+  protected MatchState matchResult(ExpressionTree item, MatchState method, VisitorState state) {
     if (!method.sym().isStatic()) {
-      return Optional.absent();
+      return null;
     }
-    return Optional.of(method);
+    return method;
   }
 
   @Override
@@ -16,6 +16,8 @@
 
 package com.google.errorprone.names;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import com.google.common.base.Ascii;
 import com.google.common.primitives.Ints;
 
@@ -47,8 +49,10 @@ public class LevenshteinEditDistance {
   }
 
   /**
-   * Returns the edit distance between two strings. The algorithm used to calculate this distance
-   * has space requirements of len(source)*len(target).
+   * Returns the edit distance between two strings. If the shorter string has at most 64 characters,
+   * the distance is computed with the bit-parallel algorithm of Myers and Hyyro, which takes time
+   * proportional to the length of the longer string; otherwise it takes time proportional to
+   * len(source)*len(target), and space proportional to the length of the shorter string.
    *
    * @param source The source string.
    * @param target The target string
@@ -57,9 +61,34 @@ public class LevenshteinEditDistance {
    * @see #getEditDistance(String, String)
    */
   public static int getEditDistance(String source, String target, boolean caseSensitive) {
+    return editDistance(source, target, caseSensitive, Integer.MAX_VALUE);
+  }
 
-    // Levenshtein distance algorithm
+  /**
+   * Returns the edit distance between two strings if it's at most {@code maxDistance}, or {@code
+   * maxDistance + 1} otherwise. This is cheaper than {@link #getEditDistance(String, String,
+   * boolean)} when only close matches are of interest, since it gives up as soon as the distance is
+   * known to exceed the bound.
+   *
+   * @param source The source string.
+   * @param target The target string
+   * @param caseSensitive If true, case is used in comparisons and 'a' != 'A'.
+   * @param maxDistance The largest distance of interest, which must not be negative.
+   * @return The edit distance between the source and target strings, or {@code maxDistance + 1} if
+   *     it's larger than {@code maxDistance}.
+   */
+  public static int getBoundedEditDistance(
+      String source, String target, boolean caseSensitive, int maxDistance) {
+    checkArgument(
+        maxDistance >= 0 && maxDistance < Integer.MAX_VALUE,
+        "maxDistance must be between 0 and Integer.MAX_VALUE - 1: %s",
+        maxDistance);
+    return Math.min(editDistance(source, target, caseSensitive, maxDistance), maxDistance + 1);
+  }
 
+  /** Returns the edit distance, or any value larger than {@code maxDistance} if it's larger. */
+  private static int editDistance(
+      String source, String target, boolean caseSensitive, int maxDistance) {
     int sourceLength = isEmptyOrWhitespace(source) ? 0 : source.length();
     int targetLength = isEmptyOrWhitespace(target) ? 0 : target.length();
 
@@ -71,39 +100,174 @@ public class LevenshteinEditDistance {
       return sourceLength;
     }
 
-    if (!caseSensitive) {
-      source = Ascii.toLowerCase(source);
-      target = Ascii.toLowerCase(target);
+    // every character that one string has more than the other is an insertion or deletion
+    if (Math.abs(sourceLength - targetLength) > maxDistance) {
+      return maxDistance + 1;
     }
 
-    int[][] levMatrix = new int[sourceLength + 1][targetLength + 1];
+    // the distance is symmetric, so the shorter string can be the one that is indexed
+    String pattern = sourceLength <= targetLength ? source : target;
+    String text = sourceLength <= targetLength ? target : source;
+    Buffers buffers = BUFFERS.get();
+    return pattern.length() <= Long.SIZE
+        ? bitParallelEditDistance(pattern, text, caseSensitive, maxDistance, buffers)
+        : matrixEditDistance(pattern, text, caseSensitive, maxDistance, buffers);
+  }
 
-    for (int i = 0; i <= sourceLength; i++) {
-      levMatrix[i][0] = i;
+  /**
+   * Computes the edit distance with Hyyro's formulation of Myers' bit-vector algorithm. The
+   * differences between adjacent cells of a column of the Levenshtein matrix are kept as bit
+   * vectors, one bit per character of the pattern, and each character of the text advances all of
+   * them at once.
+   *
+   * <p>See G. Myers, "A fast bit-vector algorithm for approximate string matching based on dynamic
+   * programming", J. ACM 46(3), 1999, and H. Hyyro, "Explaining and extending the bit-parallel
+   * approximate string matching algorithm of Myers", 2001.
+   */
+  private static int bitParallelEditDistance(
+      String pattern, String text, boolean caseSensitive, int maxDistance, Buffers buffers) {
+    int patternLength = pattern.length();
+    int textLength = text.length();
+    for (int i = 0; i < patternLength; i++) {
+      buffers.addMatch(fold(pattern.charAt(i), caseSensitive), 1L << i);
+    }
+    long last = 1L << (patternLength - 1);
+    // the vertical differences are all +1 in the first column, since D[i][0] = i
+    long verticalPositive = -1L;
+    long verticalNegative = 0L;
+    int distance = patternLength;
+    for (int j = 0; j < textLength; j++) {
+      long matches = buffers.matches(fold(text.charAt(j), caseSensitive));
+      long diagonalZero =
+          (((matches & verticalPositive) + verticalPositive) ^ verticalPositive)
+              | matches
+              | verticalNegative;
+      long horizontalPositive = verticalNegative | ~(diagonalZero | verticalPositive);
+      long horizontalNegative = verticalPositive & diagonalZero;
+      if ((horizontalPositive & last) != 0) {
+        distance++;
+      } else if ((horizontalNegative & last) != 0) {
+        distance--;
+      }
+      // the horizontal difference in the first row is always +1, since D[0][j] = j
+      horizontalPositive = (horizontalPositive << 1) | 1;
+      horizontalNegative <<= 1;
+      verticalPositive = horizontalNegative | ~(diagonalZero | horizontalPositive);
+      verticalNegative = horizontalPositive & diagonalZero;
+      // each of the remaining characters of the text can lower the distance by at most one
+      if (distance - (textLength - j - 1) > maxDistance) {
+        distance = maxDistance + 1;
+        break;
+      }
     }
+    buffers.clearMatches(pattern, caseSensitive);
+    return distance;
+  }
+
+  /** Computes the edit distance a row of the Levenshtein matrix at a time. */
+  private static int matrixEditDistance(
+      String pattern, String text, boolean caseSensitive, int maxDistance, Buffers buffers) {
+    int patternLength = pattern.length();
+    int[] previousRow = buffers.previousRow(patternLength + 1);
+    int[] currentRow = buffers.currentRow(patternLength + 1);
 
-    for (int i = 0; i <= targetLength; i++) {
-      levMatrix[0][i] = i;
+    for (int i = 0; i <= patternLength; i++) {
+      previousRow[i] = i;
     }
 
-    for (int i = 1; i <= sourceLength; i++) {
+    for (int j = 1; j <= text.length(); j++) {
+      char textJ = fold(text.charAt(j - 1), caseSensitive);
+      currentRow[0] = j;
+      int rowMinimum = j;
+      for (int i = 1; i <= patternLength; i++) {
+        int cost = fold(pattern.charAt(i - 1), caseSensitive) == textJ ? 0 : 1;
+        currentRow[i] =
+            Ints.min(cost + previousRow[i - 1], previousRow[i] + 1, currentRow[i - 1] + 1);
+        rowMinimum = Math.min(rowMinimum, currentRow[i]);
+      }
+      // the distance is at least the smallest entry of any row
+      if (rowMinimum > maxDistance) {
+        return maxDistance + 1;
+      }
+      int[] swap = previousRow;
+      previousRow = currentRow;
+      currentRow = swap;
+    }
+
+    return previousRow[patternLength];
+  }
+
+  private static char fold(char c, boolean caseSensitive) {
+    return caseSensitive ? c : Ascii.toLowerCase(c);
+  }
+
+  private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+  /** Working storage that is reused between calls on the same thread. */
+  private static final class Buffers {
+    /** The positions in the pattern of each ASCII character, as a bit vector. */
+    private final long[] asciiMatches = new long[128];
+
+    /** The positions in the pattern of the other characters in it. */
+    private final char[] otherChars = new char[Long.SIZE];
+
+    private final long[] otherMatches = new long[Long.SIZE];
+    private int otherCount;
 
-      char sourceI = source.charAt(i - 1);
-      for (int j = 1; j <= targetLength; j++) {
-        char targetJ = target.charAt(j - 1);
+    private int[] previousRow = new int[0];
+    private int[] currentRow = new int[0];
 
-        int cost = 0;
-        if (sourceI != targetJ) {
-          cost = 1;
+    void addMatch(char c, long position) {
+      if (c < asciiMatches.length) {
+        asciiMatches[c] |= position;
+        return;
+      }
+      for (int i = 0; i < otherCount; i++) {
+        if (otherChars[i] == c) {
+          otherMatches[i] |= position;
+          return;
         }
+      }
+      otherChars[otherCount] = c;
+      otherMatches[otherCount] = position;
+      otherCount++;
+    }
 
-        levMatrix[i][j] =
-            Ints.min(
-                cost + levMatrix[i - 1][j - 1], levMatrix[i - 1][j] + 1, levMatrix[i][j - 1] + 1);
+    long matches(char c) {
+      if (c < asciiMatches.length) {
+        return asciiMatches[c];
       }
+      for (int i = 0; i < otherCount; i++) {
+        if (otherChars[i] == c) {
+          return otherMatches[i];
+        }
+      }
+      return 0;
     }
 
-    return levMatrix[sourceLength][targetLength];
+    void clearMatches(String pattern, boolean caseSensitive) {
+      for (int i = 0; i < pattern.length(); i++) {
+        char c = fold(pattern.charAt(i), caseSensitive);
+        if (c < asciiMatches.length) {
+          asciiMatches[c] = 0;
+        }
+      }
+      otherCount = 0;
+    }
+
+    int[] previousRow(int length) {
+      if (previousRow.length < length) {
+        previousRow = new int[length];
+      }
+      return previousRow;
+    }
+
+    int[] currentRow(int length) {
+      if (currentRow.length < length) {
+        currentRow = new int[length];
+      }
+      return currentRow;
+    }
   }
 
   /**
@@ -133,6 +297,23 @@ public class LevenshteinEditDistance {
    * @return True if the string is empty or contains only whitespace, false otherwise
    */
   private static boolean isEmptyOrWhitespace(String source) {
-    return source == null || source.matches("\\s*");
+    if (source == null) {
+      return true;
+    }
+    for (int i = 0; i < source.length(); i++) {
+      // the characters matched by the regular expression \s
+      switch (source.charAt(i)) {
+        case ' ':
+        case '\t':
+        case '\n':
+        case '\013':
+        case '\f':
+        case '\r':
+          break;
+        default:
+          return false;
+      }
+    }
+    return true;
   }
 }
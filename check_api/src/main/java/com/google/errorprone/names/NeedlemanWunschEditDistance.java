@@ -41,9 +41,9 @@ public final class NeedlemanWunschEditDistance {
    * insertion or deletion. This algorithm is slightly more general in that it charges a sequence of
    * adjacent insertions/deletions an up-front cost plus an incremental cost per insert/delete
    * operation. The idea is that Christopher -&gt; Chris should be less than 6 times as expensive as
-   * Christopher -&gt; Christophe. The algorithm used to calculate this distance takes time and
-   * space proportional to the product of {@code source.length()} and {@code target.length()} to
-   * build the 3 arrays.
+   * Christopher -&gt; Christophe. The algorithm used to calculate this distance takes time
+   * proportional to the product of {@code source.length()} and {@code target.length()}, and space
+   * proportional to {@code target.length()}.
    *
    * @param source source string.
    * @param target target string
@@ -61,11 +61,6 @@ public final class NeedlemanWunschEditDistance {
       int openGapCost,
       int continueGapCost) {
 
-    if (!caseSensitive) {
-      source = Ascii.toLowerCase(source);
-      target = Ascii.toLowerCase(target);
-    }
-
     int sourceLength = source.length();
     int targetLength = target.length();
 
@@ -77,86 +72,124 @@ public final class NeedlemanWunschEditDistance {
       return scriptCost(openGapCost, continueGapCost, sourceLength);
     }
 
-    // mMatrix[i][j] = Cost of aligning source.substring(0,i) with
+    // Each row of the matrices only depends on the one before it, so only
+    // two rows of each are kept: row i - 1 in the "previous" arrays, and
+    // row i in the "current" ones.
+    Rows rows = ROWS.get();
+    rows.ensureCapacity(targetLength + 1);
+
+    // m[j] = Cost of aligning source.substring(0,i) with
     // target.substring(0,j), using an edit script ending with
     // matched characters.
-    int[][] mMatrix = new int[sourceLength + 1][targetLength + 1];
+    int[] previousM = rows.previousM;
+    int[] currentM = rows.currentM;
 
     // Cost of an alignment that ends with a bunch of deletions.
-    // dMatrix[i][j] = best found cost of changing the first i chars
+    // d[j] = best found cost of changing the first i chars
     // of source into the first j chars of target, ending with one
     // or more deletes of source characters.
-    int[][] dMatrix = new int[sourceLength + 1][targetLength + 1];
+    int[] previousD = rows.previousD;
+    int[] currentD = rows.currentD;
 
     // Cost of an alignment that ends with one or more insertions.
-    int[][] iMatrix = new int[sourceLength + 1][targetLength + 1];
-
-    mMatrix[0][0] = dMatrix[0][0] = iMatrix[0][0] = 0;
-
-    // Any edit script that changes i chars of source into zero
-    // chars of target will only involve deletions.  So only the
-    // d&m Matrix entries are relevant, because dMatrix[i][0] gives
-    // the cost of changing an i-length string into a 0-length string,
-    // using an edit script ending in deletions.
-    for (int i = 1; i <= sourceLength; i++) {
-      mMatrix[i][0] = dMatrix[i][0] = scriptCost(openGapCost, continueGapCost, i);
+    int[] previousI = rows.previousI;
+    int[] currentI = rows.currentI;
 
-      // Make the iMatrix entries impossibly expensive, so they'll be
-      // ignored as inputs to min().  Use a big cost but not
-      // max int because that will overflow if anything's added to it.
-      iMatrix[i][0] = Integer.MAX_VALUE / 2;
-    }
+    previousM[0] = previousD[0] = previousI[0] = 0;
 
     for (int j = 1; j <= targetLength; j++) {
 
-      // Only the i&m Matrix entries are relevant here, because they represent
+      // Only the i&m entries are relevant here, because they represent
       // the cost of changing a 0-length string into a j-length string, using
       // an edit script ending in insertions.
-      mMatrix[0][j] = iMatrix[0][j] = scriptCost(openGapCost, continueGapCost, j);
+      previousM[j] = previousI[j] = scriptCost(openGapCost, continueGapCost, j);
 
-      // Make the dMatrix entries impossibly expensive, so they'll be
+      // Make the d entries impossibly expensive, so they'll be
       // ignored as inputs to min().  Use a big cost but not
       // max int because that will overflow if anything's added to it.
-      dMatrix[0][j] = Integer.MAX_VALUE / 2;
+      previousD[j] = Integer.MAX_VALUE / 2;
     }
 
     for (int i = 1; i <= sourceLength; i++) {
 
-      char sourceI = source.charAt(i - 1);
+      // Any edit script that changes i chars of source into zero
+      // chars of target will only involve deletions.  So only the
+      // d&m entries are relevant, because d[0] gives the cost of
+      // changing an i-length string into a 0-length string, using
+      // an edit script ending in deletions.
+      currentM[0] = currentD[0] = scriptCost(openGapCost, continueGapCost, i);
+
+      // Make the i entries impossibly expensive, as above.
+      currentI[0] = Integer.MAX_VALUE / 2;
+
+      char sourceI = fold(source.charAt(i - 1), caseSensitive);
       for (int j = 1; j <= targetLength; j++) {
-        char targetJ = target.charAt(j - 1);
+        char targetJ = fold(target.charAt(j - 1), caseSensitive);
 
         int cost = (sourceI == targetJ) ? 0 : changeCost;
 
         // Cost of changing i chars of source into j chars of target,
         // using an edit script ending in matched characters.
-        mMatrix[i][j] =
-            cost + Ints.min(mMatrix[i - 1][j - 1], iMatrix[i - 1][j - 1], dMatrix[i - 1][j - 1]);
+        currentM[j] = cost + Ints.min(previousM[j - 1], previousI[j - 1], previousD[j - 1]);
 
         // Cost of an edit script ending in a deletion.
-        dMatrix[i][j] =
-            Math.min(
-                mMatrix[i - 1][j] + openGapCost + continueGapCost,
-                dMatrix[i - 1][j] + continueGapCost);
+        currentD[j] =
+            Math.min(previousM[j] + openGapCost + continueGapCost, previousD[j] + continueGapCost);
 
         // Cost of an edit script ending in an insertion.
-        iMatrix[i][j] =
+        currentI[j] =
             Math.min(
-                mMatrix[i][j - 1] + openGapCost + continueGapCost,
-                iMatrix[i][j - 1] + continueGapCost);
+                currentM[j - 1] + openGapCost + continueGapCost, currentI[j - 1] + continueGapCost);
       }
+
+      int[] swap = previousM;
+      previousM = currentM;
+      currentM = swap;
+      swap = previousD;
+      previousD = currentD;
+      currentD = swap;
+      swap = previousI;
+      previousI = currentI;
+      currentI = swap;
     }
 
     // Return the minimum cost.
-    int costOfEditScriptEndingWithMatch = mMatrix[sourceLength][targetLength];
-    int costOfEditScriptEndingWithDelete = dMatrix[sourceLength][targetLength];
-    int costOfEditScriptEndingWithInsert = iMatrix[sourceLength][targetLength];
+    int costOfEditScriptEndingWithMatch = previousM[targetLength];
+    int costOfEditScriptEndingWithDelete = previousD[targetLength];
+    int costOfEditScriptEndingWithInsert = previousI[targetLength];
     return Ints.min(
         costOfEditScriptEndingWithMatch,
         costOfEditScriptEndingWithDelete,
         costOfEditScriptEndingWithInsert);
   }
 
+  private static char fold(char c, boolean caseSensitive) {
+    return caseSensitive ? c : Ascii.toLowerCase(c);
+  }
+
+  private static final ThreadLocal<Rows> ROWS = ThreadLocal.withInitial(Rows::new);
+
+  /** The rows of the three matrices, which are reused between calls on the same thread. */
+  private static final class Rows {
+    int[] previousM = new int[0];
+    int[] currentM = new int[0];
+    int[] previousD = new int[0];
+    int[] currentD = new int[0];
+    int[] previousI = new int[0];
+    int[] currentI = new int[0];
+
+    void ensureCapacity(int length) {
+      if (previousM.length < length) {
+        previousM = new int[length];
+        currentM = new int[length];
+        previousD = new int[length];
+        currentD = new int[length];
+        previousI = new int[length];
+        currentI = new int[length];
+      }
+    }
+  }
+
   /** Return the worst case edit distance between strings of this length */
   public static int getWorstCaseEditDistance(
       int sourceLength, int targetLength, int changeCost, int openGapCost, int continueGapCost) {
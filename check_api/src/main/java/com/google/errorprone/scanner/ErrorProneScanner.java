@@ -16,10 +16,13 @@
 
 package com.google.errorprone.scanner;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.errorprone.BugPattern;
 import com.google.errorprone.BugPattern.SeverityLevel;
+import com.google.errorprone.CheckCircuitBreaker;
+import com.google.errorprone.CheckProfiler;
 import com.google.errorprone.ErrorProneError;
 import com.google.errorprone.VisitorState;
 import com.google.errorprone.bugpatterns.BugChecker;
@@ -35,6 +38,8 @@ import com.google.errorprone.bugpatterns.BugChecker.BreakTreeMatcher;
 import com.google.errorprone.bugpatterns.BugChecker.CaseTreeMatcher;
 import com.google.errorprone.bugpatterns.BugChecker.CatchTreeMatcher;
 import com.google.errorprone.bugpatterns.BugChecker.ClassTreeMatcher;
+import com.google.errorprone.bugpatterns.BugChecker.CompilationUnitTraversal;
+import com.google.errorprone.bugpatterns.BugChecker.CompilationUnitTraversalMatcher;
 import com.google.errorprone.bugpatterns.BugChecker.CompilationUnitTreeMatcher;
 import com.google.errorprone.bugpatterns.BugChecker.CompoundAssignmentTreeMatcher;
 import com.google.errorprone.bugpatterns.BugChecker.ConditionalExpressionTreeMatcher;
@@ -74,6 +79,7 @@ import com.google.errorprone.bugpatterns.BugChecker.UnionTypeTreeMatcher;
 import com.google.errorprone.bugpatterns.BugChecker.VariableTreeMatcher;
 import com.google.errorprone.bugpatterns.BugChecker.WhileLoopTreeMatcher;
 import com.google.errorprone.bugpatterns.BugChecker.WildcardTreeMatcher;
+import com.google.errorprone.matchers.Description;
 import com.google.errorprone.matchers.Suppressible;
 import com.google.errorprone.util.ASTHelpers;
 import com.sun.source.tree.AnnotatedTypeTree;
@@ -119,6 +125,7 @@ import com.sun.source.tree.ReturnTree;
 import com.sun.source.tree.SwitchTree;
 import com.sun.source.tree.SynchronizedTree;
 import com.sun.source.tree.ThrowTree;
+import com.sun.source.tree.Tree;
 import com.sun.source.tree.TryTree;
 import com.sun.source.tree.TypeCastTree;
 import com.sun.source.tree.TypeParameterTree;
@@ -129,14 +136,19 @@ import com.sun.source.tree.WhileLoopTree;
 import com.sun.source.tree.WildcardTree;
 import com.sun.source.util.TreePath;
 import com.sun.tools.javac.code.Symbol.CompletionFailure;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
 import com.sun.tools.javac.util.JCDiagnostic.DiagnosticPosition;
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.IntStream;
 
 /**
  * Scans the parsed AST, looking for violations of any of the enabled checks.
@@ -186,9 +198,7 @@ public class ErrorProneScanner extends Scanner {
   public ErrorProneScanner(Iterable<BugChecker> checkers, Map<String, SeverityLevel> severities) {
     this.bugCheckers = ImmutableSet.copyOf(checkers);
     this.severities = severities;
-    for (BugChecker checker : this.bugCheckers) {
-      registerNodeTypes(checker);
-    }
+    registerNodeTypes();
   }
 
   @Override
@@ -196,764 +206,711 @@ public class ErrorProneScanner extends Scanner {
     return customSuppressionAnnotations;
   }
 
-  private final List<AnnotationTreeMatcher> annotationMatchers = new ArrayList<>();
-  private final List<AnnotatedTypeTreeMatcher> annotatedTypeMatchers = new ArrayList<>();
-  private final List<ArrayAccessTreeMatcher> arrayAccessMatchers = new ArrayList<>();
-  private final List<ArrayTypeTreeMatcher> arrayTypeMatchers = new ArrayList<>();
-  private final List<AssertTreeMatcher> assertMatchers = new ArrayList<>();
-  private final List<AssignmentTreeMatcher> assignmentMatchers = new ArrayList<>();
-  private final List<BinaryTreeMatcher> binaryMatchers = new ArrayList<>();
-  private final List<BlockTreeMatcher> blockMatchers = new ArrayList<>();
-  private final List<BreakTreeMatcher> breakMatchers = new ArrayList<>();
-  private final List<CaseTreeMatcher> caseMatchers = new ArrayList<>();
-  private final List<CatchTreeMatcher> catchMatchers = new ArrayList<>();
-  private final List<ClassTreeMatcher> classMatchers = new ArrayList<>();
-  private final List<CompilationUnitTreeMatcher> compilationUnitMatchers = new ArrayList<>();
-  private final List<CompoundAssignmentTreeMatcher> compoundAssignmentMatchers = new ArrayList<>();
-  private final List<ConditionalExpressionTreeMatcher> conditionalExpressionMatchers =
-      new ArrayList<>();
-  private final List<ContinueTreeMatcher> continueMatchers = new ArrayList<>();
-  private final List<DoWhileLoopTreeMatcher> doWhileLoopMatchers = new ArrayList<>();
-  private final List<EmptyStatementTreeMatcher> emptyStatementMatchers = new ArrayList<>();
-  private final List<EnhancedForLoopTreeMatcher> enhancedForLoopMatchers = new ArrayList<>();
-  private final List<ExpressionStatementTreeMatcher> expressionStatementMatchers =
-      new ArrayList<>();
-  private final List<ForLoopTreeMatcher> forLoopMatchers = new ArrayList<>();
-  private final List<IdentifierTreeMatcher> identifierMatchers = new ArrayList<>();
-  private final List<IfTreeMatcher> ifMatchers = new ArrayList<>();
-  private final List<ImportTreeMatcher> importMatchers = new ArrayList<>();
-  private final List<InstanceOfTreeMatcher> instanceOfMatchers = new ArrayList<>();
-  private final List<IntersectionTypeTreeMatcher> intersectionTypeMatchers = new ArrayList<>();
-  private final List<LabeledStatementTreeMatcher> labeledStatementMatchers = new ArrayList<>();
-  private final List<LambdaExpressionTreeMatcher> lambdaExpressionMatchers = new ArrayList<>();
-  private final List<LiteralTreeMatcher> literalMatchers = new ArrayList<>();
-  private final List<MemberReferenceTreeMatcher> memberReferenceMatchers = new ArrayList<>();
-  private final List<MemberSelectTreeMatcher> memberSelectMatchers = new ArrayList<>();
-  private final List<MethodTreeMatcher> methodMatchers = new ArrayList<>();
-  private final List<MethodInvocationTreeMatcher> methodInvocationMatchers = new ArrayList<>();
-  private final List<ModifiersTreeMatcher> modifiersMatchers = new ArrayList<>();
-  private final List<NewArrayTreeMatcher> newArrayMatchers = new ArrayList<>();
-  private final List<NewClassTreeMatcher> newClassMatchers = new ArrayList<>();
-  private final List<ParameterizedTypeTreeMatcher> parameterizedTypeMatchers = new ArrayList<>();
-  private final List<ParenthesizedTreeMatcher> parenthesizedMatchers = new ArrayList<>();
-  private final List<PrimitiveTypeTreeMatcher> primitiveTypeMatchers = new ArrayList<>();
-  private final List<ReturnTreeMatcher> returnMatchers = new ArrayList<>();
-  private final List<SwitchTreeMatcher> switchMatchers = new ArrayList<>();
-  private final List<SynchronizedTreeMatcher> synchronizedMatchers = new ArrayList<>();
-  private final List<ThrowTreeMatcher> throwMatchers = new ArrayList<>();
-  private final List<TryTreeMatcher> tryMatchers = new ArrayList<>();
-  private final List<TypeCastTreeMatcher> typeCastMatchers = new ArrayList<>();
-  private final List<TypeParameterTreeMatcher> typeParameterMatchers = new ArrayList<>();
-  private final List<UnaryTreeMatcher> unaryMatchers = new ArrayList<>();
-  private final List<UnionTypeTreeMatcher> unionTypeMatchers = new ArrayList<>();
-  private final List<VariableTreeMatcher> variableMatchers = new ArrayList<>();
-  private final List<WhileLoopTreeMatcher> whileLoopMatchers = new ArrayList<>();
-  private final List<WildcardTreeMatcher> wildcardMatchers = new ArrayList<>();
-
-  private void registerNodeTypes(BugChecker checker) {
-    customSuppressionAnnotations.addAll(checker.customSuppressionAnnotations());
-
-    if (checker instanceof AnnotationTreeMatcher) {
-      annotationMatchers.add((AnnotationTreeMatcher) checker);
-    }
-    if (checker instanceof AnnotatedTypeTreeMatcher) {
-      annotatedTypeMatchers.add((AnnotatedTypeTreeMatcher) checker);
-    }
-    if (checker instanceof ArrayAccessTreeMatcher) {
-      arrayAccessMatchers.add((ArrayAccessTreeMatcher) checker);
-    }
-    if (checker instanceof ArrayTypeTreeMatcher) {
-      arrayTypeMatchers.add((ArrayTypeTreeMatcher) checker);
-    }
-    if (checker instanceof AssertTreeMatcher) {
-      assertMatchers.add((AssertTreeMatcher) checker);
-    }
-    if (checker instanceof AssignmentTreeMatcher) {
-      assignmentMatchers.add((AssignmentTreeMatcher) checker);
-    }
-    if (checker instanceof BinaryTreeMatcher) {
-      binaryMatchers.add((BinaryTreeMatcher) checker);
-    }
-    if (checker instanceof BlockTreeMatcher) {
-      blockMatchers.add((BlockTreeMatcher) checker);
-    }
-    if (checker instanceof BreakTreeMatcher) {
-      breakMatchers.add((BreakTreeMatcher) checker);
-    }
-    if (checker instanceof CaseTreeMatcher) {
-      caseMatchers.add((CaseTreeMatcher) checker);
-    }
-    if (checker instanceof CatchTreeMatcher) {
-      catchMatchers.add((CatchTreeMatcher) checker);
-    }
-    if (checker instanceof ClassTreeMatcher) {
-      classMatchers.add((ClassTreeMatcher) checker);
-    }
-    if (checker instanceof CompilationUnitTreeMatcher) {
-      compilationUnitMatchers.add((CompilationUnitTreeMatcher) checker);
-    }
-    if (checker instanceof CompoundAssignmentTreeMatcher) {
-      compoundAssignmentMatchers.add((CompoundAssignmentTreeMatcher) checker);
-    }
-    if (checker instanceof ConditionalExpressionTreeMatcher) {
-      conditionalExpressionMatchers.add((ConditionalExpressionTreeMatcher) checker);
-    }
-    if (checker instanceof ContinueTreeMatcher) {
-      continueMatchers.add((ContinueTreeMatcher) checker);
-    }
-    if (checker instanceof DoWhileLoopTreeMatcher) {
-      doWhileLoopMatchers.add((DoWhileLoopTreeMatcher) checker);
-    }
-    if (checker instanceof EmptyStatementTreeMatcher) {
-      emptyStatementMatchers.add((EmptyStatementTreeMatcher) checker);
-    }
-    if (checker instanceof EnhancedForLoopTreeMatcher) {
-      enhancedForLoopMatchers.add((EnhancedForLoopTreeMatcher) checker);
-    }
-    if (checker instanceof ExpressionStatementTreeMatcher) {
-      expressionStatementMatchers.add((ExpressionStatementTreeMatcher) checker);
-    }
-    if (checker instanceof ForLoopTreeMatcher) {
-      forLoopMatchers.add((ForLoopTreeMatcher) checker);
-    }
-    if (checker instanceof IdentifierTreeMatcher) {
-      identifierMatchers.add((IdentifierTreeMatcher) checker);
-    }
-    if (checker instanceof IfTreeMatcher) {
-      ifMatchers.add((IfTreeMatcher) checker);
-    }
-    if (checker instanceof ImportTreeMatcher) {
-      importMatchers.add((ImportTreeMatcher) checker);
-    }
-    if (checker instanceof InstanceOfTreeMatcher) {
-      instanceOfMatchers.add((InstanceOfTreeMatcher) checker);
-    }
-    if (checker instanceof IntersectionTypeTreeMatcher) {
-      intersectionTypeMatchers.add((IntersectionTypeTreeMatcher) checker);
-    }
-    if (checker instanceof LabeledStatementTreeMatcher) {
-      labeledStatementMatchers.add((LabeledStatementTreeMatcher) checker);
-    }
-    if (checker instanceof LambdaExpressionTreeMatcher) {
-      lambdaExpressionMatchers.add((LambdaExpressionTreeMatcher) checker);
-    }
-    if (checker instanceof LiteralTreeMatcher) {
-      literalMatchers.add((LiteralTreeMatcher) checker);
-    }
-    if (checker instanceof MemberReferenceTreeMatcher) {
-      memberReferenceMatchers.add((MemberReferenceTreeMatcher) checker);
-    }
-    if (checker instanceof MemberSelectTreeMatcher) {
-      memberSelectMatchers.add((MemberSelectTreeMatcher) checker);
-    }
-    if (checker instanceof MethodTreeMatcher) {
-      methodMatchers.add((MethodTreeMatcher) checker);
-    }
-    if (checker instanceof MethodInvocationTreeMatcher) {
-      methodInvocationMatchers.add((MethodInvocationTreeMatcher) checker);
-    }
-    if (checker instanceof ModifiersTreeMatcher) {
-      modifiersMatchers.add((ModifiersTreeMatcher) checker);
-    }
-    if (checker instanceof NewArrayTreeMatcher) {
-      newArrayMatchers.add((NewArrayTreeMatcher) checker);
-    }
-    if (checker instanceof NewClassTreeMatcher) {
-      newClassMatchers.add((NewClassTreeMatcher) checker);
-    }
-    if (checker instanceof ParameterizedTypeTreeMatcher) {
-      parameterizedTypeMatchers.add((ParameterizedTypeTreeMatcher) checker);
-    }
-    if (checker instanceof ParenthesizedTreeMatcher) {
-      parenthesizedMatchers.add((ParenthesizedTreeMatcher) checker);
+  /** Runs a single matcher on a tree. */
+  @FunctionalInterface
+  private interface TreeProcessor<M extends Suppressible, T extends Tree> {
+    Description process(M matcher, T tree, VisitorState state);
+  }
+
+  /** A matcher interface, and the method that runs it on trees of the corresponding type. */
+  private static final class MatcherType {
+    final Class<? extends Suppressible> matcherClass;
+    final ImmutableList<Tree.Kind> kinds;
+    final TreeProcessor<Suppressible, Tree> processor;
+
+    MatcherType(
+        Class<? extends Suppressible> matcherClass,
+        ImmutableList<Tree.Kind> kinds,
+        TreeProcessor<Suppressible, Tree> processor) {
+      this.matcherClass = matcherClass;
+      this.kinds = kinds;
+      this.processor = processor;
     }
-    if (checker instanceof PrimitiveTypeTreeMatcher) {
-      primitiveTypeMatchers.add((PrimitiveTypeTreeMatcher) checker);
+  }
+
+  /** A registered matcher, paired with the method that runs it on a particular kind of tree. */
+  private static final class MatcherDispatch {
+    final Suppressible matcher;
+    /** The id of the matcher from {@link Scanner#registerSuppressible}. */
+    final int suppressibleId;
+
+    final TreeProcessor<Suppressible, Tree> processor;
+
+    MatcherDispatch(
+        Suppressible matcher, int suppressibleId, TreeProcessor<Suppressible, Tree> processor) {
+      this.matcher = matcher;
+      this.suppressibleId = suppressibleId;
+      this.processor = processor;
     }
-    if (checker instanceof ReturnTreeMatcher) {
-      returnMatchers.add((ReturnTreeMatcher) checker);
+  }
+
+  private static final ImmutableList<MatcherType> MATCHER_TYPES = matcherTypes();
+
+  private static ImmutableList<MatcherType> matcherTypes() {
+    ImmutableList.Builder<MatcherType> builder = ImmutableList.builder();
+    register(
+        builder,
+        AnnotationTreeMatcher.class,
+        AnnotationTree.class,
+        AnnotationTreeMatcher::matchAnnotation);
+    register(
+        builder,
+        AnnotatedTypeTreeMatcher.class,
+        AnnotatedTypeTree.class,
+        AnnotatedTypeTreeMatcher::matchAnnotatedType);
+    register(
+        builder,
+        ArrayAccessTreeMatcher.class,
+        ArrayAccessTree.class,
+        ArrayAccessTreeMatcher::matchArrayAccess);
+    register(
+        builder,
+        ArrayTypeTreeMatcher.class,
+        ArrayTypeTree.class,
+        ArrayTypeTreeMatcher::matchArrayType);
+    register(builder, AssertTreeMatcher.class, AssertTree.class, AssertTreeMatcher::matchAssert);
+    register(
+        builder,
+        AssignmentTreeMatcher.class,
+        AssignmentTree.class,
+        AssignmentTreeMatcher::matchAssignment);
+    register(builder, BinaryTreeMatcher.class, BinaryTree.class, BinaryTreeMatcher::matchBinary);
+    register(builder, BlockTreeMatcher.class, BlockTree.class, BlockTreeMatcher::matchBlock);
+    register(builder, BreakTreeMatcher.class, BreakTree.class, BreakTreeMatcher::matchBreak);
+    register(builder, CaseTreeMatcher.class, CaseTree.class, CaseTreeMatcher::matchCase);
+    register(builder, CatchTreeMatcher.class, CatchTree.class, CatchTreeMatcher::matchCatch);
+    register(builder, ClassTreeMatcher.class, ClassTree.class, ClassTreeMatcher::matchClass);
+    register(
+        builder,
+        CompilationUnitTreeMatcher.class,
+        CompilationUnitTree.class,
+        CompilationUnitTreeMatcher::matchCompilationUnit);
+    register(
+        builder,
+        CompoundAssignmentTreeMatcher.class,
+        CompoundAssignmentTree.class,
+        CompoundAssignmentTreeMatcher::matchCompoundAssignment);
+    register(
+        builder,
+        ConditionalExpressionTreeMatcher.class,
+        ConditionalExpressionTree.class,
+        ConditionalExpressionTreeMatcher::matchConditionalExpression);
+    register(
+        builder, ContinueTreeMatcher.class, ContinueTree.class, ContinueTreeMatcher::matchContinue);
+    register(
+        builder,
+        DoWhileLoopTreeMatcher.class,
+        DoWhileLoopTree.class,
+        DoWhileLoopTreeMatcher::matchDoWhileLoop);
+    register(
+        builder,
+        EmptyStatementTreeMatcher.class,
+        EmptyStatementTree.class,
+        EmptyStatementTreeMatcher::matchEmptyStatement);
+    register(
+        builder,
+        EnhancedForLoopTreeMatcher.class,
+        EnhancedForLoopTree.class,
+        EnhancedForLoopTreeMatcher::matchEnhancedForLoop);
+    register(
+        builder,
+        ExpressionStatementTreeMatcher.class,
+        ExpressionStatementTree.class,
+        ExpressionStatementTreeMatcher::matchExpressionStatement);
+    register(
+        builder, ForLoopTreeMatcher.class, ForLoopTree.class, ForLoopTreeMatcher::matchForLoop);
+    register(
+        builder,
+        IdentifierTreeMatcher.class,
+        IdentifierTree.class,
+        IdentifierTreeMatcher::matchIdentifier);
+    register(builder, IfTreeMatcher.class, IfTree.class, IfTreeMatcher::matchIf);
+    register(builder, ImportTreeMatcher.class, ImportTree.class, ImportTreeMatcher::matchImport);
+    register(
+        builder,
+        InstanceOfTreeMatcher.class,
+        InstanceOfTree.class,
+        InstanceOfTreeMatcher::matchInstanceOf);
+    register(
+        builder,
+        IntersectionTypeTreeMatcher.class,
+        IntersectionTypeTree.class,
+        IntersectionTypeTreeMatcher::matchIntersectionType);
+    register(
+        builder,
+        LabeledStatementTreeMatcher.class,
+        LabeledStatementTree.class,
+        LabeledStatementTreeMatcher::matchLabeledStatement);
+    register(
+        builder,
+        LambdaExpressionTreeMatcher.class,
+        LambdaExpressionTree.class,
+        LambdaExpressionTreeMatcher::matchLambdaExpression);
+    register(
+        builder, LiteralTreeMatcher.class, LiteralTree.class, LiteralTreeMatcher::matchLiteral);
+    register(
+        builder,
+        MemberReferenceTreeMatcher.class,
+        MemberReferenceTree.class,
+        MemberReferenceTreeMatcher::matchMemberReference);
+    register(
+        builder,
+        MemberSelectTreeMatcher.class,
+        MemberSelectTree.class,
+        MemberSelectTreeMatcher::matchMemberSelect);
+    register(builder, MethodTreeMatcher.class, MethodTree.class, MethodTreeMatcher::matchMethod);
+    register(
+        builder,
+        MethodInvocationTreeMatcher.class,
+        MethodInvocationTree.class,
+        MethodInvocationTreeMatcher::matchMethodInvocation);
+    register(
+        builder,
+        ModifiersTreeMatcher.class,
+        ModifiersTree.class,
+        ModifiersTreeMatcher::matchModifiers);
+    register(
+        builder, NewArrayTreeMatcher.class, NewArrayTree.class, NewArrayTreeMatcher::matchNewArray);
+    register(
+        builder, NewClassTreeMatcher.class, NewClassTree.class, NewClassTreeMatcher::matchNewClass);
+    register(
+        builder,
+        ParameterizedTypeTreeMatcher.class,
+        ParameterizedTypeTree.class,
+        ParameterizedTypeTreeMatcher::matchParameterizedType);
+    register(
+        builder,
+        ParenthesizedTreeMatcher.class,
+        ParenthesizedTree.class,
+        ParenthesizedTreeMatcher::matchParenthesized);
+    register(
+        builder,
+        PrimitiveTypeTreeMatcher.class,
+        PrimitiveTypeTree.class,
+        PrimitiveTypeTreeMatcher::matchPrimitiveType);
+    register(builder, ReturnTreeMatcher.class, ReturnTree.class, ReturnTreeMatcher::matchReturn);
+    register(builder, SwitchTreeMatcher.class, SwitchTree.class, SwitchTreeMatcher::matchSwitch);
+    register(
+        builder,
+        SynchronizedTreeMatcher.class,
+        SynchronizedTree.class,
+        SynchronizedTreeMatcher::matchSynchronized);
+    register(builder, ThrowTreeMatcher.class, ThrowTree.class, ThrowTreeMatcher::matchThrow);
+    register(builder, TryTreeMatcher.class, TryTree.class, TryTreeMatcher::matchTry);
+    register(
+        builder, TypeCastTreeMatcher.class, TypeCastTree.class, TypeCastTreeMatcher::matchTypeCast);
+    register(
+        builder,
+        TypeParameterTreeMatcher.class,
+        TypeParameterTree.class,
+        TypeParameterTreeMatcher::matchTypeParameter);
+    register(builder, UnaryTreeMatcher.class, UnaryTree.class, UnaryTreeMatcher::matchUnary);
+    register(
+        builder,
+        UnionTypeTreeMatcher.class,
+        UnionTypeTree.class,
+        UnionTypeTreeMatcher::matchUnionType);
+    register(
+        builder, VariableTreeMatcher.class, VariableTree.class, VariableTreeMatcher::matchVariable);
+    register(
+        builder,
+        WhileLoopTreeMatcher.class,
+        WhileLoopTree.class,
+        WhileLoopTreeMatcher::matchWhileLoop);
+    register(
+        builder, WildcardTreeMatcher.class, WildcardTree.class, WildcardTreeMatcher::matchWildcard);
+    return builder.build();
+  }
+
+  @SuppressWarnings("unchecked") // the processor is only ever invoked on trees of type T
+  private static <M extends Suppressible, T extends Tree> void register(
+      ImmutableList.Builder<MatcherType> builder,
+      Class<M> matcherClass,
+      Class<T> treeClass,
+      TreeProcessor<M, T> processor) {
+    ImmutableList.Builder<Tree.Kind> kinds = ImmutableList.builder();
+    for (Tree.Kind kind : Tree.Kind.values()) {
+      if (kind.asInterface() == treeClass) {
+        kinds.add(kind);
+      }
     }
-    if (checker instanceof SwitchTreeMatcher) {
-      switchMatchers.add((SwitchTreeMatcher) checker);
+    builder.add(
+        new MatcherType(
+            matcherClass, kinds.build(), (TreeProcessor<Suppressible, Tree>) processor));
+  }
+
+  private static final MatcherDispatch[] NO_MATCHERS = {};
+
+  /**
+   * The matchers to run on each tree, indexed by the ordinal of the tree's {@link Tree.Kind}. Kinds
+   * that no checker is interested in map to an empty array.
+   */
+  private final MatcherDispatch[][] matchersByKind =
+      new MatcherDispatch[Tree.Kind.values().length][];
+
+  private static final int[] NO_TRAVERSALS = {};
+
+  private final List<CompilationUnitTraversalMatcher> traversalMatchers = new ArrayList<>();
+
+  /** The ids of the {@link #traversalMatchers} from {@link #registerSuppressible}. */
+  private final List<Integer> traversalIds = new ArrayList<>();
+
+  /**
+   * The indices in {@link #traversalMatchers} of the traversals interested in each tree, indexed by
+   * the ordinal of the tree's {@link Tree.Kind}.
+   */
+  private final int[][] traversalsByKind = new int[Tree.Kind.values().length][];
+
+  /**
+   * The indices in {@link #traversalMatchers} of the traversals to notify once each tree and its
+   * children have been scanned, indexed by the ordinal of the tree's {@link Tree.Kind}.
+   */
+  private final int[][] exitTraversalsByKind = new int[Tree.Kind.values().length][];
+
+  /**
+   * True while scanning a constructor generated by javac. Traversals replace scanners that saw the
+   * whole compilation unit, so they are shown generated constructors, but other matchers are not.
+   */
+  private boolean inGeneratedConstructor = false;
+
+  /**
+   * The traversals started for the compilation unit being scanned, parallel to {@link
+   * #traversalMatchers}; an entry is null if the check had nothing to do in the compilation unit.
+   * The whole field is null outside of a compilation unit.
+   */
+  private CompilationUnitTraversal[] activeTraversals;
+
+  /** The circuit breaker of the compilation being scanned. */
+  private CheckCircuitBreaker circuitBreaker = CheckCircuitBreaker.disabled();
+
+  /**
+   * The ids from {@link #registerSuppressible} of the checks that the {@link #circuitBreaker} has
+   * disabled, so that testing a check before each invocation is a single bit test.
+   */
+  private final BitSet tripped = new BitSet();
+
+  /** The checkers, by their ids from {@link #registerSuppressible}. */
+  private final Map<Integer, BugChecker> checkersById = new HashMap<>();
+
+  private void registerNodeTypes() {
+    List<List<MatcherDispatch>> dispatches = new ArrayList<>();
+    for (int i = 0; i < matchersByKind.length; i++) {
+      dispatches.add(new ArrayList<>());
+    }
+    for (BugChecker checker : bugCheckers) {
+      customSuppressionAnnotations.addAll(checker.customSuppressionAnnotations());
+      int suppressibleId = registerSuppressible(checker);
+      checkersById.put(suppressibleId, checker);
+      for (MatcherType type : MATCHER_TYPES) {
+        if (!type.matcherClass.isInstance(checker)) {
+          continue;
+        }
+        MatcherDispatch dispatch = new MatcherDispatch(checker, suppressibleId, type.processor);
+        for (Tree.Kind kind : type.kinds) {
+          dispatches.get(kind.ordinal()).add(dispatch);
+        }
+      }
+      if (checker instanceof CompilationUnitTraversalMatcher) {
+        traversalMatchers.add((CompilationUnitTraversalMatcher) checker);
+        traversalIds.add(suppressibleId);
+      }
     }
-    if (checker instanceof SynchronizedTreeMatcher) {
-      synchronizedMatchers.add((SynchronizedTreeMatcher) checker);
+    for (int i = 0; i < matchersByKind.length; i++) {
+      List<MatcherDispatch> forKind = dispatches.get(i);
+      matchersByKind[i] =
+          forKind.isEmpty() ? NO_MATCHERS : forKind.toArray(new MatcherDispatch[forKind.size()]);
+    }
+    for (Tree.Kind kind : Tree.Kind.values()) {
+      traversalsByKind[kind.ordinal()] =
+          IntStream.range(0, traversalMatchers.size())
+              .filter(i -> traversalMatchers.get(i).traversalKinds().contains(kind))
+              .toArray();
+      exitTraversalsByKind[kind.ordinal()] =
+          IntStream.range(0, traversalMatchers.size())
+              .filter(i -> traversalMatchers.get(i).exitKinds().contains(kind))
+              .toArray();
     }
-    if (checker instanceof ThrowTreeMatcher) {
-      throwMatchers.add((ThrowTreeMatcher) checker);
+  }
+
+  /**
+   * Runs the matchers registered for the kind of {@code tree}, and returns the state to use when
+   * scanning its children. If no matchers are registered for the kind, the current path and
+   * suppression state are never consulted.
+   */
+  private VisitorState processMatchers(Tree tree, VisitorState visitorState) {
+    MatcherDispatch[] dispatches =
+        inGeneratedConstructor ? NO_MATCHERS : matchersByKind[tree.getKind().ordinal()];
+    int[] traversals =
+        activeTraversals != null ? traversalsByKind[tree.getKind().ordinal()] : NO_TRAVERSALS;
+    if (dispatches.length == 0 && traversals.length == 0) {
+      return visitorState;
     }
-    if (checker instanceof TryTreeMatcher) {
-      tryMatchers.add((TryTreeMatcher) checker);
+    VisitorState state = visitorState.withPath(getCurrentPath());
+    for (MatcherDispatch dispatch : dispatches) {
+      if (isSuppressed(dispatch.suppressibleId, state.errorProneOptions())
+          || tripped.get(dispatch.suppressibleId)) {
+        continue;
+      }
+      long startNanos = circuitBreaker.start();
+      try (CheckProfiler.Span unused = state.profile(dispatch.matcher)) {
+        reportMatch(dispatch.processor.process(dispatch.matcher, tree, state), state);
+      } catch (Throwable t) {
+        handleError(dispatch.matcher, t);
+        updateTripped(dispatch.suppressibleId, dispatch.matcher);
+      }
+      checkBudget(dispatch.suppressibleId, dispatch.matcher, startNanos);
+    }
+    for (int i : traversals) {
+      CompilationUnitTraversal traversal = activeTraversals[i];
+      CompilationUnitTraversalMatcher matcher = traversalMatchers.get(i);
+      int id = traversalIds.get(i);
+      if (traversal == null || tripped.get(id)) {
+        continue;
+      }
+      long startNanos = circuitBreaker.start();
+      try (CheckProfiler.Span unused = state.profile(matcher)) {
+        traversal.enter(tree, state);
+      } catch (Throwable t) {
+        handleError(matcher, t);
+        updateTripped(id, matcher);
+      }
+      checkBudget(id, matcher, startNanos);
     }
-    if (checker instanceof TypeCastTreeMatcher) {
-      typeCastMatchers.add((TypeCastTreeMatcher) checker);
+    return state;
+  }
+
+  /**
+   * Scans {@code tree}, and then tells the traversals that asked for it that {@code tree} and its
+   * children have been scanned.
+   */
+  @Override
+  public Void scan(Tree tree, VisitorState visitorState) {
+    super.scan(tree, visitorState);
+    if (tree == null || activeTraversals == null) {
+      return null;
     }
-    if (checker instanceof TypeParameterTreeMatcher) {
-      typeParameterMatchers.add((TypeParameterTreeMatcher) checker);
+    int[] traversals = exitTraversalsByKind[tree.getKind().ordinal()];
+    if (traversals.length == 0) {
+      return null;
     }
-    if (checker instanceof UnaryTreeMatcher) {
-      unaryMatchers.add((UnaryTreeMatcher) checker);
+    // The current path has already been restored to the parent of the tree.
+    VisitorState state = visitorState.withPath(new TreePath(getCurrentPath(), tree));
+    for (int i : traversals) {
+      CompilationUnitTraversal traversal = activeTraversals[i];
+      CompilationUnitTraversalMatcher matcher = traversalMatchers.get(i);
+      int id = traversalIds.get(i);
+      if (traversal == null || tripped.get(id)) {
+        continue;
+      }
+      long startNanos = circuitBreaker.start();
+      try (CheckProfiler.Span unused = state.profile(matcher)) {
+        traversal.exit(tree, state);
+      } catch (Throwable t) {
+        handleError(matcher, t);
+        updateTripped(id, matcher);
+      }
+      checkBudget(id, matcher, startNanos);
     }
-    if (checker instanceof UnionTypeTreeMatcher) {
-      unionTypeMatchers.add((UnionTypeTreeMatcher) checker);
+    return null;
+  }
+
+  /**
+   * Records an invocation of {@code check} that started at {@code startNanos} with the circuit
+   * breaker, if it took longer than the time budget.
+   */
+  private void checkBudget(int suppressibleId, Suppressible check, long startNanos) {
+    long elapsedNanos = circuitBreaker.overrun(startNanos);
+    if (elapsedNanos > 0) {
+      circuitBreaker.recordOverrun(check, elapsedNanos, currentLocation());
+      updateTripped(suppressibleId, check);
     }
-    if (checker instanceof VariableTreeMatcher) {
-      variableMatchers.add((VariableTreeMatcher) checker);
+  }
+
+  /** Remembers if the circuit breaker has disabled {@code check} after a failure. */
+  private void updateTripped(int suppressibleId, Suppressible check) {
+    if (circuitBreaker.isTripped(check)) {
+      tripped.set(suppressibleId);
     }
-    if (checker instanceof WhileLoopTreeMatcher) {
-      whileLoopMatchers.add((WhileLoopTreeMatcher) checker);
+  }
+
+  /**
+   * Switches to the circuit breaker of the compilation unit about to be scanned, and looks up the
+   * checks it has already disabled, e.g. in earlier compilation units.
+   */
+  private void useCircuitBreaker(CheckCircuitBreaker breaker) {
+    circuitBreaker = breaker;
+    tripped.clear();
+    checkersById.forEach((id, checker) -> tripped.set(id, breaker.isTripped(checker)));
+  }
+
+  /** Returns the file and line of the tree being scanned, for reporting failures. */
+  private String currentLocation() {
+    TreePath path = getCurrentPath();
+    JCCompilationUnit compilationUnit = (JCCompilationUnit) path.getCompilationUnit();
+    long line =
+        compilationUnit.getLineMap().getLineNumber(((JCTree) path.getLeaf()).getStartPosition());
+    return compilationUnit.getSourceFile().getName() + ":" + line;
+  }
+
+  /**
+   * Starts the traversal of each {@link CompilationUnitTraversalMatcher} that is not suppressed for
+   * the compilation unit, or returns null if none were started.
+   */
+  private CompilationUnitTraversal[] startTraversals(CompilationUnitTree tree, VisitorState state) {
+    CompilationUnitTraversal[] traversals = null;
+    for (int i = 0; i < traversalMatchers.size(); i++) {
+      CompilationUnitTraversalMatcher matcher = traversalMatchers.get(i);
+      int id = traversalIds.get(i);
+      if (isSuppressed(id, state.errorProneOptions()) || tripped.get(id)) {
+        continue;
+      }
+      long startNanos = circuitBreaker.start();
+      try (CheckProfiler.Span unused = state.profile(matcher)) {
+        CompilationUnitTraversal traversal = matcher.startTraversal(tree, state);
+        if (traversal != null) {
+          if (traversals == null) {
+            traversals = new CompilationUnitTraversal[traversalMatchers.size()];
+          }
+          traversals[i] = traversal;
+        }
+      } catch (Throwable t) {
+        handleError(matcher, t);
+        updateTripped(id, matcher);
+      }
+      checkBudget(id, matcher, startNanos);
     }
-    if (checker instanceof WildcardTreeMatcher) {
-      wildcardMatchers.add((WildcardTreeMatcher) checker);
+    return traversals;
+  }
+
+  /** Reports the results of the traversals started by {@link #startTraversals}. */
+  private void finishTraversals(CompilationUnitTraversal[] traversals, VisitorState state) {
+    for (int i = 0; i < traversals.length; i++) {
+      CompilationUnitTraversalMatcher matcher = traversalMatchers.get(i);
+      int id = traversalIds.get(i);
+      if (traversals[i] == null || tripped.get(id)) {
+        continue;
+      }
+      long startNanos = circuitBreaker.start();
+      try (CheckProfiler.Span unused = state.profile(matcher)) {
+        reportMatch(traversals[i].finish(state), state);
+      } catch (Throwable t) {
+        handleError(matcher, t);
+        updateTripped(id, matcher);
+      }
+      checkBudget(id, matcher, startNanos);
     }
   }
 
   @Override
   public Void visitAnnotation(AnnotationTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (AnnotationTreeMatcher matcher : annotationMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchAnnotation(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitAnnotation(tree, state);
+    return super.visitAnnotation(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitAnnotatedType(AnnotatedTypeTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (AnnotatedTypeTreeMatcher matcher : annotatedTypeMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchAnnotatedType(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitAnnotatedType(tree, state);
+    return super.visitAnnotatedType(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitArrayAccess(ArrayAccessTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (ArrayAccessTreeMatcher matcher : arrayAccessMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchArrayAccess(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitArrayAccess(tree, state);
+    return super.visitArrayAccess(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitArrayType(ArrayTypeTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (ArrayTypeTreeMatcher matcher : arrayTypeMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchArrayType(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitArrayType(tree, state);
+    return super.visitArrayType(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitAssert(AssertTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (AssertTreeMatcher matcher : assertMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchAssert(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitAssert(tree, state);
+    return super.visitAssert(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitAssignment(AssignmentTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (AssignmentTreeMatcher matcher : assignmentMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchAssignment(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitAssignment(tree, state);
+    return super.visitAssignment(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitBinary(BinaryTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (BinaryTreeMatcher matcher : binaryMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchBinary(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitBinary(tree, state);
+    return super.visitBinary(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitBlock(BlockTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (BlockTreeMatcher matcher : blockMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchBlock(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitBlock(tree, state);
+    return super.visitBlock(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitBreak(BreakTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (BreakTreeMatcher matcher : breakMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchBreak(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitBreak(tree, state);
+    return super.visitBreak(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitCase(CaseTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (CaseTreeMatcher matcher : caseMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchCase(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitCase(tree, state);
+    return super.visitCase(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitCatch(CatchTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (CatchTreeMatcher matcher : catchMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchCatch(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitCatch(tree, state);
+    return super.visitCatch(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitClass(ClassTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (ClassTreeMatcher matcher : classMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchClass(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitClass(tree, state);
+    return super.visitClass(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitCompilationUnit(CompilationUnitTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (CompilationUnitTreeMatcher matcher : compilationUnitMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchCompilationUnit(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
+    useCircuitBreaker(CheckCircuitBreaker.instance(visitorState.context));
+    if (traversalMatchers.isEmpty()) {
+      return super.visitCompilationUnit(tree, processMatchers(tree, visitorState));
     }
-    return super.visitCompilationUnit(tree, state);
+    VisitorState state = visitorState.withPath(getCurrentPath());
+    CompilationUnitTraversal[] traversals = startTraversals(tree, state);
+    if (traversals == null) {
+      return super.visitCompilationUnit(tree, processMatchers(tree, state));
+    }
+    CompilationUnitTraversal[] prevTraversals = activeTraversals;
+    activeTraversals = traversals;
+    try {
+      super.visitCompilationUnit(tree, processMatchers(tree, state));
+    } finally {
+      activeTraversals = prevTraversals;
+    }
+    finishTraversals(traversals, state);
+    return null;
   }
 
   @Override
   public Void visitCompoundAssignment(CompoundAssignmentTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (CompoundAssignmentTreeMatcher matcher : compoundAssignmentMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchCompoundAssignment(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitCompoundAssignment(tree, state);
+    return super.visitCompoundAssignment(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitConditionalExpression(
       ConditionalExpressionTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (ConditionalExpressionTreeMatcher matcher : conditionalExpressionMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchConditionalExpression(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitConditionalExpression(tree, state);
+    return super.visitConditionalExpression(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitContinue(ContinueTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (ContinueTreeMatcher matcher : continueMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchContinue(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitContinue(tree, state);
+    return super.visitContinue(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitDoWhileLoop(DoWhileLoopTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (DoWhileLoopTreeMatcher matcher : doWhileLoopMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchDoWhileLoop(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitDoWhileLoop(tree, state);
+    return super.visitDoWhileLoop(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitEmptyStatement(EmptyStatementTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (EmptyStatementTreeMatcher matcher : emptyStatementMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchEmptyStatement(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitEmptyStatement(tree, state);
+    return super.visitEmptyStatement(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitEnhancedForLoop(EnhancedForLoopTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (EnhancedForLoopTreeMatcher matcher : enhancedForLoopMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchEnhancedForLoop(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitEnhancedForLoop(tree, state);
+    return super.visitEnhancedForLoop(tree, processMatchers(tree, visitorState));
   }
 
   // Intentionally skip visitErroneous -- we don't analyze malformed expressions.
 
   @Override
   public Void visitExpressionStatement(ExpressionStatementTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (ExpressionStatementTreeMatcher matcher : expressionStatementMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchExpressionStatement(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitExpressionStatement(tree, state);
+    return super.visitExpressionStatement(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitForLoop(ForLoopTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (ForLoopTreeMatcher matcher : forLoopMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchForLoop(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitForLoop(tree, state);
+    return super.visitForLoop(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitIdentifier(IdentifierTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (IdentifierTreeMatcher matcher : identifierMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchIdentifier(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitIdentifier(tree, state);
+    return super.visitIdentifier(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitIf(IfTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (IfTreeMatcher matcher : ifMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchIf(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitIf(tree, state);
+    return super.visitIf(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitImport(ImportTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (ImportTreeMatcher matcher : importMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchImport(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitImport(tree, state);
+    return super.visitImport(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitInstanceOf(InstanceOfTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (InstanceOfTreeMatcher matcher : instanceOfMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchInstanceOf(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitInstanceOf(tree, state);
+    return super.visitInstanceOf(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitIntersectionType(IntersectionTypeTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (IntersectionTypeTreeMatcher matcher : intersectionTypeMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchIntersectionType(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitIntersectionType(tree, state);
+    return super.visitIntersectionType(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitLabeledStatement(LabeledStatementTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (LabeledStatementTreeMatcher matcher : labeledStatementMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchLabeledStatement(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitLabeledStatement(tree, state);
+    return super.visitLabeledStatement(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitLambdaExpression(LambdaExpressionTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (LambdaExpressionTreeMatcher matcher : lambdaExpressionMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchLambdaExpression(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitLambdaExpression(tree, state);
+    return super.visitLambdaExpression(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitLiteral(LiteralTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (LiteralTreeMatcher matcher : literalMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchLiteral(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitLiteral(tree, state);
+    return super.visitLiteral(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitMemberReference(MemberReferenceTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (MemberReferenceTreeMatcher matcher : memberReferenceMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchMemberReference(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitMemberReference(tree, state);
+    return super.visitMemberReference(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitMemberSelect(MemberSelectTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (MemberSelectTreeMatcher matcher : memberSelectMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchMemberSelect(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitMemberSelect(tree, state);
+    return super.visitMemberSelect(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitMethod(MethodTree tree, VisitorState visitorState) {
-    // Ignore synthetic constructors:
+    // Ignore synthetic constructors, except in traversals:
     if (ASTHelpers.isGeneratedConstructor(tree)) {
-      return null;
-    }
-
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (MethodTreeMatcher matcher : methodMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchMethod(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
+      if (activeTraversals == null) {
+        return null;
+      }
+      inGeneratedConstructor = true;
+      try {
+        return super.visitMethod(tree, processMatchers(tree, visitorState));
+      } finally {
+        inGeneratedConstructor = false;
       }
     }
-    return super.visitMethod(tree, state);
+    return super.visitMethod(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitMethodInvocation(MethodInvocationTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (MethodInvocationTreeMatcher matcher : methodInvocationMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchMethodInvocation(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitMethodInvocation(tree, state);
+    return super.visitMethodInvocation(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitModifiers(ModifiersTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (ModifiersTreeMatcher matcher : modifiersMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchModifiers(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitModifiers(tree, state);
+    return super.visitModifiers(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitNewArray(NewArrayTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (NewArrayTreeMatcher matcher : newArrayMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchNewArray(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitNewArray(tree, state);
+    return super.visitNewArray(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitNewClass(NewClassTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (NewClassTreeMatcher matcher : newClassMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchNewClass(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitNewClass(tree, state);
+    return super.visitNewClass(tree, processMatchers(tree, visitorState));
   }
 
   // Intentionally skip visitOther. It seems to be used only for let expressions, which are
@@ -961,233 +918,84 @@ public class ErrorProneScanner extends Scanner {
 
   @Override
   public Void visitParameterizedType(ParameterizedTypeTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (ParameterizedTypeTreeMatcher matcher : parameterizedTypeMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchParameterizedType(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitParameterizedType(tree, state);
+    return super.visitParameterizedType(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitParenthesized(ParenthesizedTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (ParenthesizedTreeMatcher matcher : parenthesizedMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchParenthesized(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitParenthesized(tree, state);
+    return super.visitParenthesized(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitPrimitiveType(PrimitiveTypeTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (PrimitiveTypeTreeMatcher matcher : primitiveTypeMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchPrimitiveType(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitPrimitiveType(tree, state);
+    return super.visitPrimitiveType(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitReturn(ReturnTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (ReturnTreeMatcher matcher : returnMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchReturn(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitReturn(tree, state);
+    return super.visitReturn(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitSwitch(SwitchTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (SwitchTreeMatcher matcher : switchMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchSwitch(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitSwitch(tree, state);
+    return super.visitSwitch(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitSynchronized(SynchronizedTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (SynchronizedTreeMatcher matcher : synchronizedMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchSynchronized(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitSynchronized(tree, state);
+    return super.visitSynchronized(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitThrow(ThrowTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (ThrowTreeMatcher matcher : throwMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchThrow(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitThrow(tree, state);
+    return super.visitThrow(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitTry(TryTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (TryTreeMatcher matcher : tryMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchTry(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitTry(tree, state);
+    return super.visitTry(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitTypeCast(TypeCastTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (TypeCastTreeMatcher matcher : typeCastMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchTypeCast(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitTypeCast(tree, state);
+    return super.visitTypeCast(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitTypeParameter(TypeParameterTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (TypeParameterTreeMatcher matcher : typeParameterMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchTypeParameter(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitTypeParameter(tree, state);
+    return super.visitTypeParameter(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitUnary(UnaryTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (UnaryTreeMatcher matcher : unaryMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchUnary(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitUnary(tree, state);
+    return super.visitUnary(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitUnionType(UnionTypeTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (UnionTypeTreeMatcher matcher : unionTypeMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchUnionType(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitUnionType(tree, state);
+    return super.visitUnionType(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitVariable(VariableTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (VariableTreeMatcher matcher : variableMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchVariable(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitVariable(tree, state);
+    return super.visitVariable(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitWhileLoop(WhileLoopTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (WhileLoopTreeMatcher matcher : whileLoopMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchWhileLoop(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitWhileLoop(tree, state);
+    return super.visitWhileLoop(tree, processMatchers(tree, visitorState));
   }
 
   @Override
   public Void visitWildcard(WildcardTree tree, VisitorState visitorState) {
-    VisitorState state = visitorState.withPath(getCurrentPath());
-    for (WildcardTreeMatcher matcher : wildcardMatchers) {
-      if (!isSuppressed(matcher, state.errorProneOptions())) {
-        try {
-          reportMatch(matcher.matchWildcard(tree, state), state);
-        } catch (Throwable t) {
-          handleError(matcher, t);
-        }
-      }
-    }
-    return super.visitWildcard(tree, state);
+    return super.visitWildcard(tree, processMatchers(tree, visitorState));
   }
 
   /**
    * Handles an exception thrown by an individual BugPattern. By default, wraps the exception in an
-   * {@link ErrorProneError} and rethrows. May be overridden by subclasses, for example to log the
-   * error and continue.
+   * {@link ErrorProneError} and rethrows. If a failure limit was set, the exception is recorded
+   * with the {@link CheckCircuitBreaker} instead. May be overridden by subclasses, for example to
+   * log the error and continue.
    */
   @Override
   protected void handleError(Suppressible s, Throwable t) {
@@ -1197,6 +1005,10 @@ public class ErrorProneScanner extends Scanner {
     if (t instanceof CompletionFailure) {
       throw (CompletionFailure) t;
     }
+    if (circuitBreaker.isolatesExceptions()) {
+      circuitBreaker.recordFailure(s, t, currentLocation());
+      return;
+    }
     TreePath path = getCurrentPath();
     throw new ErrorProneError(
         s.canonicalName(),
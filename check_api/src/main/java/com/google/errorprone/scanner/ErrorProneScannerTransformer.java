@@ -36,7 +36,7 @@ public abstract class ErrorProneScannerTransformer implements CodeTransformer {
     return new AutoValue_ErrorProneScannerTransformer(scanner);
   }
 
-  abstract Scanner scanner();
+  public abstract Scanner scanner();
 
   @Override
   public void apply(TreePath tree, Context context, DescriptionListener listener) {
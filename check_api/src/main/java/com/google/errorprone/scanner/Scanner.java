@@ -28,7 +28,9 @@ import com.sun.source.util.TreePath;
 import com.sun.source.util.TreePathScanner;
 import com.sun.tools.javac.code.Symbol;
 import java.lang.annotation.Annotation;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -45,6 +47,16 @@ public class Scanner extends TreePathScanner<Void, VisitorState> {
   private Set<String> suppressions = new HashSet<>();
   private Set<Class<? extends Annotation>> customSuppressions = new HashSet<>();
   private boolean inGeneratedCode = false;
+
+  // Checks registered with registerSuppressible are identified by dense ids, and whether they are
+  // suppressed on the current path is tracked as a bitset. The bitset is recomputed when a
+  // suppression annotation is entered, so testing a check is a single bit test.
+  private final Map<String, BitSet> checksBySuppressionName = new HashMap<>();
+  private final Map<Class<? extends Annotation>, BitSet> checksByCustomSuppression =
+      new HashMap<>();
+  private final BitSet errorChecks = new BitSet();
+  private int suppressibleCount = 0;
+  private BitSet suppressedChecks = new BitSet();
   // This must be lazily initialized, because the list of custom suppression annotations will
   // not be available until after the subclass's constructor has run.
   private SuppressionHelper suppressionHelper;
@@ -58,9 +70,12 @@ public class Scanner extends TreePathScanner<Void, VisitorState> {
   /** Scan a tree from a position identified by a TreePath. */
   @Override
   public Void scan(TreePath path, VisitorState state) {
+    BitSet prevSuppressedChecks = suppressedChecks;
     SuppressionHelper.SuppressionInfo prevSuppressionInfo =
         updateSuppressions(path.getLeaf(), state);
-
+    if (prevSuppressionInfo == null) {
+      return super.scan(path, state);
+    }
     try {
       return super.scan(path, state);
     } finally {
@@ -68,6 +83,7 @@ public class Scanner extends TreePathScanner<Void, VisitorState> {
       suppressions = prevSuppressionInfo.suppressWarningsStrings;
       customSuppressions = prevSuppressionInfo.customSuppressions;
       inGeneratedCode = prevSuppressionInfo.inGeneratedCode;
+      suppressedChecks = prevSuppressedChecks;
     }
   }
 
@@ -78,7 +94,11 @@ public class Scanner extends TreePathScanner<Void, VisitorState> {
       return null;
     }
 
+    BitSet prevSuppressedChecks = suppressedChecks;
     SuppressionHelper.SuppressionInfo prevSuppressionInfo = updateSuppressions(tree, state);
+    if (prevSuppressionInfo == null) {
+      return super.scan(tree, state);
+    }
     try {
       return super.scan(tree, state);
     } finally {
@@ -86,37 +106,44 @@ public class Scanner extends TreePathScanner<Void, VisitorState> {
       suppressions = prevSuppressionInfo.suppressWarningsStrings;
       customSuppressions = prevSuppressionInfo.customSuppressions;
       inGeneratedCode = prevSuppressionInfo.inGeneratedCode;
+      suppressedChecks = prevSuppressedChecks;
     }
   }
 
   /**
    * Updates current suppression state with information for the given {@code tree}. Returns the
-   * previous suppression state so that it can be restored when going up the tree.
+   * previous suppression state so that it can be restored when going up the tree, or {@code null}
+   * if the tree does not declare a symbol and so cannot change the suppression state.
    */
   private SuppressionHelper.SuppressionInfo updateSuppressions(Tree tree, VisitorState state) {
+    Symbol sym = ASTHelpers.getDeclaredSymbol(tree);
+    if (sym == null) {
+      return null;
+    }
     SuppressionHelper.SuppressionInfo prevSuppressionInfo =
         new SuppressionHelper.SuppressionInfo(suppressions, customSuppressions, inGeneratedCode);
 
     initSuppressionHelper();
 
-    Symbol sym = ASTHelpers.getDeclaredSymbol(tree);
-    if (sym != null) {
-      SuppressionHelper.SuppressionInfo newSuppressions =
-          suppressionHelper.extendSuppressionSets(
-              sym,
-              state.getSymtab().suppressWarningsType,
-              suppressions,
-              customSuppressions,
-              inGeneratedCode,
-              state);
-      if (newSuppressions.suppressWarningsStrings != null) {
-        suppressions = newSuppressions.suppressWarningsStrings;
-      }
-      if (newSuppressions.customSuppressions != null) {
-        customSuppressions = newSuppressions.customSuppressions;
-      }
-      inGeneratedCode = newSuppressions.inGeneratedCode;
+    SuppressionHelper.SuppressionInfo newSuppressions =
+        suppressionHelper.extendSuppressionSets(
+            sym,
+            state.getSymtab().suppressWarningsType,
+            suppressions,
+            customSuppressions,
+            inGeneratedCode,
+            state);
+    if (newSuppressions.suppressWarningsStrings != null) {
+      suppressions = newSuppressions.suppressWarningsStrings;
+    }
+    if (newSuppressions.customSuppressions != null) {
+      customSuppressions = newSuppressions.customSuppressions;
     }
+    if (newSuppressions.suppressWarningsStrings != null
+        || newSuppressions.customSuppressions != null) {
+      suppressedChecks = suppressedChecks();
+    }
+    inGeneratedCode = newSuppressions.inGeneratedCode;
 
     return prevSuppressionInfo;
   }
@@ -138,6 +165,60 @@ public class Scanner extends TreePathScanner<Void, VisitorState> {
         errorProneOptions.disableWarningsInGeneratedCode());
   }
 
+  /**
+   * Assigns {@code suppressible} an id for {@link #isSuppressed(int, ErrorProneOptions)}. Checks
+   * must be registered before scanning starts.
+   *
+   * @return the id of the check
+   */
+  protected int registerSuppressible(Suppressible suppressible) {
+    int id = suppressibleCount++;
+    if (suppressible.supportsSuppressWarnings()) {
+      for (String name : suppressible.allNames()) {
+        checksBySuppressionName.computeIfAbsent(name, k -> new BitSet()).set(id);
+      }
+    }
+    for (Class<? extends Annotation> annotation : suppressible.customSuppressionAnnotations()) {
+      checksByCustomSuppression.computeIfAbsent(annotation, k -> new BitSet()).set(id);
+    }
+    if (severityMap().get(suppressible.canonicalName()) == SeverityLevel.ERROR) {
+      errorChecks.set(id);
+    }
+    return id;
+  }
+
+  /**
+   * Returns true if the check with the given id from {@link #registerSuppressible} should be
+   * suppressed on the current tree path. This gives the same answer as {@link
+   * #isSuppressed(Suppressible, ErrorProneOptions)}.
+   */
+  protected boolean isSuppressed(int suppressibleId, ErrorProneOptions errorProneOptions) {
+    if (suppressedChecks.get(suppressibleId)) {
+      return true;
+    }
+    return inGeneratedCode
+        && errorProneOptions.disableWarningsInGeneratedCode()
+        && !errorChecks.get(suppressibleId);
+  }
+
+  /** Returns the ids of the registered checks suppressed by the current suppression sets. */
+  private BitSet suppressedChecks() {
+    BitSet result = new BitSet();
+    for (String suppression : suppressions) {
+      BitSet checks = checksBySuppressionName.get(suppression);
+      if (checks != null) {
+        result.or(checks);
+      }
+    }
+    for (Class<? extends Annotation> suppression : customSuppressions) {
+      BitSet checks = checksByCustomSuppression.get(suppression);
+      if (checks != null) {
+        result.or(checks);
+      }
+    }
+    return result;
+  }
+
   /**
    * Returns a set of all the custom suppression annotation types used by the {@code BugChecker}s in
    * this{@code Scanner}.
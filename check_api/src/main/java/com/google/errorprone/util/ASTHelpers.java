@@ -75,7 +75,6 @@ import com.sun.tools.javac.code.Flags;
 import com.sun.tools.javac.code.Scope;
 import com.sun.tools.javac.code.Symbol;
 import com.sun.tools.javac.code.Symbol.ClassSymbol;
-import com.sun.tools.javac.code.Symbol.CompletionFailure;
 import com.sun.tools.javac.code.Symbol.MethodSymbol;
 import com.sun.tools.javac.code.Symbol.PackageSymbol;
 import com.sun.tools.javac.code.Symbol.TypeSymbol;
@@ -300,7 +299,7 @@ public class ASTHelpers {
         return false;
       }
       // TODO(b/112139121): work around for javac's too-early constant string folding
-      return ErrorProneTokens.getTokens(state.getSourceForNode(expression), state.context).stream()
+      return state.getTokensForNode(expression).stream()
           .anyMatch(t -> t.kind() == TokenKind.PLUS);
     }
     if (expression instanceof UnaryTree) {
@@ -564,6 +563,18 @@ public class ASTHelpers {
         .collect(Collectors.toCollection(LinkedHashSet::new));
   }
 
+  /**
+   * Returns the methods {@code methodSymbol} overrides, in the order of the types in the closure of
+   * its owner.
+   *
+   * <p>The result is cached for the rest of the compilation, so this is cheaper than {@link
+   * #findSuperMethods(MethodSymbol, Types)} for methods that several checks ask about.
+   */
+  public static ImmutableSet<MethodSymbol> findSuperMethods(
+      MethodSymbol methodSymbol, VisitorState state) {
+    return state.getOverrideIndex().superMethods(methodSymbol);
+  }
+
   /**
    * Finds (if it exists) first (in the class hierarchy) non-interface super method of given {@code
    * method}.
@@ -572,6 +583,17 @@ public class ASTHelpers {
     return findSuperMethods(methodSymbol, types, /* skipInterfaces= */ true).findFirst();
   }
 
+  /**
+   * Finds (if it exists) first (in the class hierarchy) non-interface super method of given {@code
+   * method}, using the methods cached by {@link #findSuperMethods(MethodSymbol, VisitorState)}.
+   */
+  public static Optional<MethodSymbol> findSuperMethod(
+      MethodSymbol methodSymbol, VisitorState state) {
+    return findSuperMethods(methodSymbol, state).stream()
+        .filter(superMethod -> !superMethod.owner.isInterface())
+        .findFirst();
+  }
+
   private static Stream<MethodSymbol> findSuperMethods(
       MethodSymbol methodSymbol, Types types, boolean skipInterfaces) {
     TypeSymbol owner = (TypeSymbol) methodSymbol.owner;
@@ -648,40 +670,26 @@ public class ASTHelpers {
       return false;
     }
     // normalize to non-binary names
-    annotationClass = annotationClass.replace('$', '.');
-    Name annotationName = state.getName(annotationClass);
-    if (hasAttribute(sym, annotationName)) {
-      return true;
-    }
-    if (isInherited(state, annotationClass)) {
-      while (sym instanceof ClassSymbol) {
-        if (hasAttribute(sym, annotationName)) {
-          return true;
-        }
-        sym = ((ClassSymbol) sym).getSuperclass().tsym;
-      }
-    }
-    return false;
+    Name annotationName = state.getName(annotationClass.replace('$', '.'));
+    return AnnotationIndex.instance(state.context).hasAnnotation(sym, annotationName, state);
   }
 
-  private static boolean isInherited(VisitorState state, String annotationName) {
-    Symbol annotationSym = state.getSymbolFromString(annotationName);
-    if (annotationSym == null) {
+  /**
+   * Determines whether a symbol has an annotation of the given type. This includes annotations
+   * inherited from superclasses due to {@code @Inherited}.
+   *
+   * <p>This is cheaper than the overloads that take the annotation's class name, since the name
+   * doesn't need to be converted for each lookup.
+   *
+   * @return true if the symbol is annotated with given type.
+   */
+  public static boolean hasAnnotation(
+      Symbol sym, AnnotationName annotationName, VisitorState state) {
+    if (sym == null) {
       return false;
     }
-    try {
-      annotationSym.complete();
-    } catch (CompletionFailure e) {
-      // @Inherited won't work if the annotation isn't on the classpath, but we can still check
-      // if it's present directly
-    }
-    Symbol inheritedSym = state.getSymtab().inheritedType.tsym;
-    return annotationSym.attribute(inheritedSym) != null;
-  }
-
-  private static boolean hasAttribute(Symbol sym, Name annotationName) {
-    return sym.getRawAttributes().stream()
-        .anyMatch(a -> a.type.tsym.getQualifiedName().equals(annotationName));
+    return AnnotationIndex.instance(state.context)
+        .hasAnnotation(sym, annotationName.name(state), state);
   }
 
   /**
@@ -716,6 +724,16 @@ public class ASTHelpers {
     return hasAnnotation(tree, annotationClass.getName(), state);
   }
 
+  /**
+   * Check for the presence of an annotation, considering annotation inheritance.
+   *
+   * @return true if the tree is annotated with given type.
+   */
+  public static boolean hasAnnotation(
+      Tree tree, AnnotationName annotationName, VisitorState state) {
+    return hasAnnotation(getDeclaredSymbol(tree), annotationName, state);
+  }
+
   /**
    * Check for the presence of an annotation with a specific simple name directly on this symbol.
    * Does *not* consider annotation inheritance.
@@ -1584,7 +1602,6 @@ public class ASTHelpers {
 
   /** Returns whether the given {@code tree} contains any comments in its source. */
   public static boolean containsComments(Tree tree, VisitorState state) {
-    return ErrorProneTokens.getTokens(state.getSourceForNode(tree), state.context).stream()
-        .anyMatch(t -> !t.comments().isEmpty());
+    return state.getTokensForNode(tree).stream().anyMatch(t -> !t.comments().isEmpty());
   }
 }
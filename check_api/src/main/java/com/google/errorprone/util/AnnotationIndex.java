@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.util;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.errorprone.CheckProfiler;
+import com.google.errorprone.SubContext;
+import com.google.errorprone.VisitorState;
+import com.sun.tools.javac.code.Attribute;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.code.Symbol.CompletionFailure;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Name;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The names of the annotations on each symbol, and whether each annotation type is {@code
+ * Inherited}, computed once per compilation.
+ *
+ * <p>The declaration annotations of a symbol are complete by the time Error Prone runs, so the
+ * answers don't change over the course of a compilation. The index is stored in the base context
+ * of the task, see {@link SubContext#base}, so it is shared by every compilation unit.
+ *
+ * <p>When profiling is enabled with {@code -XepProfile}, the number of hits and misses of the
+ * annotation names of symbols is included in the profile.
+ */
+final class AnnotationIndex {
+
+  static AnnotationIndex instance(Context context) {
+    Context base = SubContext.base(context);
+    AnnotationIndex index = base.get(AnnotationIndex.class);
+    if (index == null) {
+      index = new AnnotationIndex(base);
+      base.put(AnnotationIndex.class, index);
+    }
+    return index;
+  }
+
+  private final Map<Symbol, ImmutableSet<Name>> annotationNames = new HashMap<>();
+  private final Map<Name, Boolean> inherited = new HashMap<>();
+  private final CheckProfiler.CacheStats stats;
+
+  private AnnotationIndex(Context context) {
+    this.stats = CheckProfiler.instance(context).cacheStats("AnnotationIndex");
+  }
+
+  /**
+   * Returns true if {@code sym} has the annotation named {@code annotationName}, including
+   * annotations inherited from superclasses.
+   */
+  boolean hasAnnotation(Symbol sym, Name annotationName, VisitorState state) {
+    if (annotationNames(sym).contains(annotationName)) {
+      return true;
+    }
+    if (sym instanceof ClassSymbol && isInherited(annotationName, state)) {
+      for (sym = ((ClassSymbol) sym).getSuperclass().tsym;
+          sym instanceof ClassSymbol;
+          sym = ((ClassSymbol) sym).getSuperclass().tsym) {
+        if (annotationNames(sym).contains(annotationName)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /** Returns the qualified names of the types of the annotations directly on {@code sym}. */
+  private ImmutableSet<Name> annotationNames(Symbol sym) {
+    ImmutableSet<Name> names = annotationNames.get(sym);
+    if (names != null) {
+      stats.hit();
+    } else {
+      stats.miss();
+      ImmutableSet.Builder<Name> builder = ImmutableSet.builder();
+      for (Attribute.Compound attribute : sym.getRawAttributes()) {
+        builder.add(attribute.type.tsym.getQualifiedName());
+      }
+      names = builder.build();
+      annotationNames.put(sym, names);
+    }
+    return names;
+  }
+
+  private boolean isInherited(Name annotationName, VisitorState state) {
+    Boolean result = inherited.get(annotationName);
+    if (result == null) {
+      result = computeInherited(annotationName, state);
+      inherited.put(annotationName, result);
+    }
+    return result;
+  }
+
+  private static boolean computeInherited(Name annotationName, VisitorState state) {
+    Symbol annotationSym = state.getSymbolFromString(annotationName.toString());
+    if (annotationSym == null) {
+      return false;
+    }
+    try {
+      annotationSym.complete();
+    } catch (CompletionFailure e) {
+      // @Inherited won't work if the annotation isn't on the classpath, but we can still check
+      // if it's present directly
+    }
+    Symbol inheritedSym = state.getSymtab().inheritedType.tsym;
+    return annotationSym.attribute(inheritedSym) != null;
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.util;
+
+import com.google.errorprone.VisitorState;
+import com.sun.tools.javac.util.Name;
+import com.sun.tools.javac.util.Names;
+import java.lang.annotation.Annotation;
+import javax.annotation.Nullable;
+
+/**
+ * The name of an annotation type, for use with {@link ASTHelpers#hasAnnotation}.
+ *
+ * <p>Checks that look for the same annotation on many symbols should create one of these in a
+ * static field, so the annotation's name is only converted to a javac {@link Name} once per
+ * compilation instead of on every lookup.
+ */
+public final class AnnotationName {
+
+  /**
+   * Returns the name of the annotation type {@code annotationClass}.
+   *
+   * @param annotationClass the binary class name of the annotation (e.g.
+   *     "javax.annotation.Nullable", or "some.package.OuterClassName$InnerClassName")
+   */
+  public static AnnotationName of(String annotationClass) {
+    return new AnnotationName(annotationClass.replace('$', '.'));
+  }
+
+  /** Returns the name of the annotation type {@code annotationClass}. */
+  public static AnnotationName of(Class<? extends Annotation> annotationClass) {
+    return of(annotationClass.getName());
+  }
+
+  private final String qualifiedName;
+
+  @Nullable private volatile Name name;
+
+  private AnnotationName(String qualifiedName) {
+    this.qualifiedName = qualifiedName;
+  }
+
+  /** Returns the canonical name of the annotation type, e.g. "some.package.Outer.Inner". */
+  public String qualifiedName() {
+    return qualifiedName;
+  }
+
+  /** Returns the annotation type's name, in the name table of the current compilation. */
+  public Name name(VisitorState state) {
+    Name current = name;
+    Name.Table table = Names.instance(state.context).table;
+    if (current == null || current.table != table) {
+      current = table.fromString(qualifiedName);
+      name = current;
+    }
+    return current;
+  }
+
+  @Override
+  public String toString() {
+    return qualifiedName;
+  }
+}
@@ -16,6 +16,7 @@
 package com.google.errorprone.util;
 
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.sun.tools.javac.util.Position.makeLineMap;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.CharMatcher;
@@ -51,11 +52,9 @@ public class Comments {
    * param1 /* c1 *&#47;, /* c2 *&#47; param2)} will attach the comment c1 to {@code param1} and the
    * comment c2 to {@code param2}.
    *
-   * <p>Warning: this is expensive to compute as it involves re-tokenizing the source for this node.
-   *
-   * <p>Currently this method will only tokenize the source code of the method call itself. However,
-   * the source positions in the returned {@code Comment} objects are adjusted so that they are
-   * relative to the whole file.
+   * <p>Currently this method will only consider the tokens of the method call itself. However, the
+   * source positions in the returned {@code Comment} objects are adjusted so that they are relative
+   * to the whole file.
    */
   public static ImmutableList<Commented<ExpressionTree>> findCommentsForArguments(
       NewClassTree newClassTree, VisitorState state) {
@@ -69,11 +68,9 @@ public class Comments {
    * *&#47;, /* c2 *&#47; param2)} will attach the comment c1 to {@code param1} and the comment c2
    * to {@code param2}.
    *
-   * <p>Warning: this is expensive to compute as it involves re-tokenizing the source for this node
-   *
-   * <p>Currently this method will only tokenize the source code of the method call itself. However,
-   * the source positions in the returned {@code Comment} objects are adjusted so that they are
-   * relative to the whole file.
+   * <p>Currently this method will only consider the tokens of the method call itself. However, the
+   * source positions in the returned {@code Comment} objects are adjusted so that they are relative
+   * to the whole file.
    */
   public static ImmutableList<Commented<ExpressionTree>> findCommentsForArguments(
       MethodInvocationTree methodInvocationTree, VisitorState state) {
@@ -128,9 +125,10 @@ public class Comments {
     arguments.forEach(
         a -> exclude.add(Range.closed(((JCTree) a).getStartPosition(), state.getEndPosition(a))));
 
-    ErrorProneTokens errorProneTokens = new ErrorProneTokens(source.toString(), state.context);
-    ImmutableList<ErrorProneToken> tokens = errorProneTokens.getTokens();
-    LineMap lineMap = errorProneTokens.getLineMap();
+    ImmutableList<ErrorProneToken> tokens =
+        state.getTokensForRange(startPosition, endPosition.get());
+    char[] chars = source.toString().toCharArray();
+    LineMap lineMap = makeLineMap(chars, chars.length, false);
 
     ArgumentTracker argumentTracker = new ArgumentTracker(arguments, startPosition, state, lineMap);
     TokenTracker tokenTracker = new TokenTracker(lineMap);
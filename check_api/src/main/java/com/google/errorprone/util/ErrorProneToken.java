@@ -23,14 +23,29 @@ import com.sun.tools.javac.parser.Tokens.TokenKind;
 import com.sun.tools.javac.util.Name;
 import java.util.Collections;
 import java.util.List;
+import javax.annotation.Nullable;
 
 /** Wraps a javac {@link Token} to return comments in declaration order. */
 public class ErrorProneToken {
 
   private final Token token;
+  private final int pos;
+  private final int endPos;
+  @Nullable private final List<Comment> comments;
 
   ErrorProneToken(Token token) {
+    this(token, token.pos, token.endPos, null);
+  }
+
+  /**
+   * Creates a token with the given positions and comments (in declaration order), for tokens that
+   * are reported relative to the start of a range of the source.
+   */
+  ErrorProneToken(Token token, int pos, int endPos, @Nullable List<Comment> comments) {
     this.token = token;
+    this.pos = pos;
+    this.endPos = endPos;
+    this.comments = comments;
   }
 
   public TokenKind kind() {
@@ -38,14 +53,17 @@ public class ErrorProneToken {
   }
 
   public int pos() {
-    return token.pos;
+    return pos;
   }
 
   public int endPos() {
-    return token.endPos;
+    return endPos;
   }
 
   public List<Comment> comments() {
+    if (comments != null) {
+      return comments;
+    }
     // javac stores the comments in reverse declaration order because appending to linked
     // lists is expensive
     return token.comments == null
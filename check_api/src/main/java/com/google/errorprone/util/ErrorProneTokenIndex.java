@@ -0,0 +1,164 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.util;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.collect.ImmutableList;
+import com.google.errorprone.util.ErrorProneTokens.CommentWithTextAndPosition;
+import com.sun.tools.javac.parser.Tokens.Comment;
+import com.sun.tools.javac.parser.Tokens.Comment.CommentStyle;
+import com.sun.tools.javac.parser.Tokens.Token;
+import com.sun.tools.javac.util.Context;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The tokens of an entire source file, lexed once and indexed by position.
+ *
+ * <p>Lexing is linear in the length of the text, so checks that repeatedly tokenize small ranges
+ * of a large file (e.g. the arguments of every method invocation) are better served by looking the
+ * range up in a single lexing of the whole file.
+ */
+public final class ErrorProneTokenIndex {
+
+  private final String source;
+  private final Context context;
+  private final ImmutableList<Token> tokens;
+  /** The start position of each token, for binary search. */
+  private final int[] starts;
+  /**
+   * The end of the last token or comment javac recorded; the file may end with a line comment
+   * after it, which javac drops.
+   */
+  private final int recordedEnd;
+
+  public ErrorProneTokenIndex(CharSequence source, Context context) {
+    this.source = source == null ? "" : source.toString();
+    this.context = context;
+    this.tokens = new ErrorProneTokens(this.source, context).getJavacTokens();
+    this.starts = new int[tokens.size()];
+    for (int i = 0; i < starts.length; i++) {
+      starts[i] = tokens.get(i).pos;
+    }
+    Token eof = tokens.get(tokens.size() - 1);
+    int recordedEnd = tokens.size() > 1 ? tokens.get(tokens.size() - 2).endPos : 0;
+    if (eof.comments != null) {
+      for (Comment comment : eof.comments) {
+        recordedEnd = Math.max(recordedEnd, ((CommentWithTextAndPosition) comment).endPos());
+      }
+    }
+    this.recordedEnd = recordedEnd;
+  }
+
+  /**
+   * Returns the tokens in the source between {@code start} (inclusive) and {@code end} (exclusive),
+   * with positions relative to {@code start}.
+   *
+   * <p>The result is the same as {@code ErrorProneTokens.getTokens(source.substring(start, end))}:
+   * it ends with an {@code EOF} token that holds any trailing comments, and only comments inside
+   * the range are included.
+   */
+  public ImmutableList<ErrorProneToken> getTokens(int start, int end) {
+    int first = firstTokenAtOrAfter(start);
+    int next = firstTokenAtOrAfter(end);
+    if (!isTokenBoundary(first, start)
+        || !isTokenBoundary(next, end)
+        || (end > recordedEnd
+            && !CharMatcher.whitespace().matchesAllOf(source.substring(recordedEnd, end)))) {
+      // the range splits a token (e.g. the '>>' closing nested type arguments) or a comment, so
+      // it would lex differently on its own
+      return ErrorProneTokens.getTokens(source.substring(start, end), context);
+    }
+    // javac's reader drops a single trailing whitespace character, and places EOF before it
+    int bufferEnd = end;
+    if (end > start && Character.isWhitespace(source.charAt(end - 1))) {
+      bufferEnd--;
+    }
+    ImmutableList.Builder<ErrorProneToken> result = ImmutableList.builder();
+    for (int i = first; i < next; i++) {
+      Token token = tokens.get(i);
+      result.add(
+          new ErrorProneToken(
+              token,
+              token.pos - start,
+              token.endPos - start,
+              comments(token, start, end, bufferEnd)));
+    }
+    Token eof = tokens.get(tokens.size() - 1);
+    result.add(
+        new ErrorProneToken(
+            eof,
+            bufferEnd - start,
+            bufferEnd - start,
+            comments(tokens.get(next), start, end, bufferEnd)));
+    return result.build();
+  }
+
+  /** Returns the index of the first token starting at or after {@code pos}. */
+  private int firstTokenAtOrAfter(int pos) {
+    int idx = Arrays.binarySearch(starts, pos);
+    if (idx < 0) {
+      return -idx - 1;
+    }
+    // tokens are only empty at EOF, so positions are unique except for a trailing EOF
+    while (idx > 0 && starts[idx - 1] == pos) {
+      idx--;
+    }
+    return idx;
+  }
+
+  /**
+   * Returns true if {@code pos} does not fall inside the token before {@code idx}, or inside any of
+   * the comments preceding the token at {@code idx}.
+   */
+  private boolean isTokenBoundary(int idx, int pos) {
+    if (idx > 0 && tokens.get(idx - 1).endPos > pos) {
+      return false;
+    }
+    if (idx < tokens.size() && tokens.get(idx).comments != null) {
+      for (Comment comment : tokens.get(idx).comments) {
+        CommentWithTextAndPosition c = (CommentWithTextAndPosition) comment;
+        if (c.pos() < pos && pos < c.endPos()) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the comments of {@code token} inside the range, in declaration order. Like javac, this
+   * omits a line comment that runs to the end of the input.
+   */
+  private static List<Comment> comments(Token token, int start, int end, int bufferEnd) {
+    if (token.comments == null || token.comments.isEmpty()) {
+      return ImmutableList.of();
+    }
+    List<Comment> comments = new ArrayList<>();
+    // javac stores the comments in reverse declaration order
+    for (Comment comment : token.comments.reverse()) {
+      CommentWithTextAndPosition c = (CommentWithTextAndPosition) comment;
+      if (start <= c.pos()
+          && c.endPos() <= end
+          && !(c.getStyle() == CommentStyle.LINE && c.endPos() >= bufferEnd)) {
+        comments.add(c.withOffset(start));
+      }
+    }
+    return comments;
+  }
+}
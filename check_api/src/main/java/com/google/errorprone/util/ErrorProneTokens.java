@@ -24,6 +24,7 @@ import com.sun.tools.javac.parser.Scanner;
 import com.sun.tools.javac.parser.ScannerFactory;
 import com.sun.tools.javac.parser.Tokens.Comment;
 import com.sun.tools.javac.parser.Tokens.Comment.CommentStyle;
+import com.sun.tools.javac.parser.Tokens.Token;
 import com.sun.tools.javac.parser.Tokens.TokenKind;
 import com.sun.tools.javac.parser.UnicodeReader;
 import com.sun.tools.javac.util.Context;
@@ -46,11 +47,20 @@ public class ErrorProneTokens {
   }
 
   public ImmutableList<ErrorProneToken> getTokens() {
-    Scanner scanner = new AccessibleScanner(scannerFactory, commentSavingTokenizer);
     ImmutableList.Builder<ErrorProneToken> tokens = ImmutableList.builder();
+    for (Token token : getJavacTokens()) {
+      tokens.add(new ErrorProneToken(token));
+    }
+    return tokens.build();
+  }
+
+  /** Returns the underlying javac tokens, ending with {@link TokenKind#EOF}. */
+  ImmutableList<Token> getJavacTokens() {
+    Scanner scanner = new AccessibleScanner(scannerFactory, commentSavingTokenizer);
+    ImmutableList.Builder<Token> tokens = ImmutableList.builder();
     do {
       scanner.nextToken();
-      tokens.add(new ErrorProneToken(scanner.token()));
+      tokens.add(scanner.token());
     } while (scanner.token().kind != TokenKind.EOF);
     return tokens.build();
   }
@@ -108,6 +118,21 @@ public class ErrorProneTokens {
       return pos + index;
     }
 
+    int pos() {
+      return pos;
+    }
+
+    int endPos() {
+      return endPos;
+    }
+
+    /** Returns this comment with its positions shifted back by {@code offset}. */
+    CommentWithTextAndPosition withOffset(int offset) {
+      return offset == 0
+          ? this
+          : new CommentWithTextAndPosition(pos - offset, endPos - offset, reader, style);
+    }
+
     @Override
     public CommentStyle getStyle() {
       return style;
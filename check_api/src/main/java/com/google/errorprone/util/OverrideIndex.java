@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.util;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.errorprone.CheckProfiler;
+import com.google.errorprone.SubContext;
+import com.sun.tools.javac.code.Symbol.MethodSymbol;
+import com.sun.tools.javac.code.Types;
+import com.sun.tools.javac.util.Context;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The methods that each method overrides, computed lazily and shared by every check in a javac
+ * task.
+ *
+ * <p>Finding the methods a method overrides means scanning the members of every type in the closure
+ * of its owner, and many checks ask about the same methods. The class hierarchy doesn't change once
+ * Error Prone runs, so the answers are computed once per method. The index is stored in the base
+ * context of the task, see {@link SubContext#base}, so it is shared by every compilation unit.
+ *
+ * <p>When profiling is enabled with {@code -XepProfile}, the number of hits and misses is included
+ * in the profile.
+ */
+public final class OverrideIndex {
+
+  public static OverrideIndex instance(Context context) {
+    Context base = SubContext.base(context);
+    OverrideIndex index = base.get(OverrideIndex.class);
+    if (index == null) {
+      index = new OverrideIndex(base);
+      base.put(OverrideIndex.class, index);
+    }
+    return index;
+  }
+
+  private final Types types;
+  private final CheckProfiler.CacheStats stats;
+  private final Map<MethodSymbol, ImmutableSet<MethodSymbol>> superMethods = new HashMap<>();
+
+  private OverrideIndex(Context context) {
+    this.types = Types.instance(context);
+    this.stats = CheckProfiler.instance(context).cacheStats("OverrideIndex");
+  }
+
+  /**
+   * Returns the methods {@code methodSymbol} overrides, in the order of the types in the closure of
+   * its owner.
+   *
+   * @see ASTHelpers#findSuperMethods(MethodSymbol, Types)
+   */
+  public ImmutableSet<MethodSymbol> superMethods(MethodSymbol methodSymbol) {
+    ImmutableSet<MethodSymbol> result = superMethods.get(methodSymbol);
+    if (result != null) {
+      stats.hit();
+      return result;
+    }
+    stats.miss();
+    result = ImmutableSet.copyOf(ASTHelpers.findSuperMethods(methodSymbol, types));
+    superMethods.put(methodSymbol, result);
+    return result;
+  }
+}
@@ -176,6 +176,64 @@ public class ErrorProneOptionsTest {
     assertThat(excludedPattern.matcher("foo/other_output/subdir/Gen.cpp").matches()).isFalse();
   }
 
+  @Test
+  public void recognizesProfile() {
+    ErrorProneOptions options =
+        ErrorProneOptions.processArgs(new String[] {"-XepProfile:/tmp/profile.csv"});
+    assertThat(options.getProfilePath().toString()).isEqualTo("/tmp/profile.csv");
+
+    options = ErrorProneOptions.processArgs(new String[] {});
+    assertThat((Object) options.getProfilePath()).isNull();
+
+    assertThrows(
+        InvalidCommandLineOptionException.class,
+        () -> ErrorProneOptions.processArgs(new String[] {"-XepProfile:"}));
+  }
+
+  @Test
+  public void recognizesCircuitBreaker() {
+    ErrorProneOptions options =
+        ErrorProneOptions.processArgs(
+            new String[] {
+              "-XepCheckFailureLimit:3", "-XepCheckTimeBudget:500", "-XepCheckOverrunLimit:5"
+            });
+    assertThat(options.getCheckFailureLimit()).isEqualTo(3);
+    assertThat(options.getCheckTimeBudgetMillis()).isEqualTo(500);
+    assertThat(options.getCheckOverrunLimit()).isEqualTo(5);
+
+    options = ErrorProneOptions.processArgs(new String[] {});
+    assertThat(options.getCheckFailureLimit()).isEqualTo(0);
+    assertThat(options.getCheckTimeBudgetMillis()).isEqualTo(0);
+    assertThat(options.getCheckOverrunLimit()).isEqualTo(3);
+
+    assertThrows(
+        InvalidCommandLineOptionException.class,
+        () -> ErrorProneOptions.processArgs(new String[] {"-XepCheckFailureLimit:0"}));
+    assertThrows(
+        InvalidCommandLineOptionException.class,
+        () -> ErrorProneOptions.processArgs(new String[] {"-XepCheckTimeBudget:soon"}));
+    assertThrows(
+        InvalidCommandLineOptionException.class,
+        () -> ErrorProneOptions.processArgs(new String[] {"-XepCheckOverrunLimit:0"}));
+  }
+
+  @Test
+  public void recognizesCacheDir() {
+    ErrorProneOptions options =
+        ErrorProneOptions.processArgs(
+            new String[] {"-XepCacheDir:/tmp/cache", "-XepCacheMaxSize:64"});
+    assertThat(options.getCacheDir().toString()).isEqualTo("/tmp/cache");
+    assertThat(options.getCacheMaxMegabytes()).isEqualTo(64);
+
+    options = ErrorProneOptions.processArgs(new String[] {});
+    assertThat((Object) options.getCacheDir()).isNull();
+    assertThat(options.getCacheMaxMegabytes()).isEqualTo(256);
+
+    assertThrows(
+        InvalidCommandLineOptionException.class,
+        () -> ErrorProneOptions.processArgs(new String[] {"-XepCacheDir:"}));
+  }
+
   @Test
   public void recognizesPatch() {
     ErrorProneOptions options =
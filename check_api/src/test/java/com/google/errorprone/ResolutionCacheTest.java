@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.util.Context;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** {@link ResolutionCache}Test */
+@RunWith(JUnit4.class)
+public class ResolutionCacheTest {
+
+  private final Context context = new Context();
+  private final ResolutionCache cache = ResolutionCache.instance(context);
+  private final List<String> lookups = new ArrayList<>();
+
+  private Function<String, Type> lookup(Type result) {
+    return key -> {
+      lookups.add(key);
+      return result;
+    };
+  }
+
+  @Test
+  public void sharedByContext() {
+    assertThat(ResolutionCache.instance(context)).isSameAs(cache);
+    assertThat(ResolutionCache.instance(new Context())).isNotSameAs(cache);
+  }
+
+  @Test
+  public void sharedByCompilationUnits() {
+    assertThat(ResolutionCache.instance(new SubContext(context))).isSameAs(cache);
+    assertThat(ResolutionCache.instance(new SubContext(new SubContext(context)))).isSameAs(cache);
+    assertThat(new SubContext(context).get(ResolutionCache.class)).isSameAs(cache);
+  }
+
+  @Test
+  public void foundLookupsAreKept() {
+    Type type = Type.noType;
+    assertThat(cache.types.get("a.A", lookup(type))).isSameAs(type);
+    cache.startCompilationUnit();
+    assertThat(cache.types.get("a.A", lookup(null))).isSameAs(type);
+    assertThat(lookups).containsExactly("a.A");
+  }
+
+  @Test
+  public void missingLookupsAreKeptForOneCompilationUnit() {
+    Type type = Type.noType;
+    assertThat(cache.types.get("a.B", lookup(null))).isNull();
+    assertThat(cache.types.get("a.B", lookup(type))).isNull();
+    cache.startCompilationUnit();
+    assertThat(cache.types.get("a.B", lookup(type))).isSameAs(type);
+    assertThat(lookups).containsExactly("a.B", "a.B");
+  }
+
+  @Test
+  public void missingLookupsAreKeptByNewVisitorStates() {
+    assertThat(cache.types.get("a.C", lookup(null))).isNull();
+    new VisitorState(new SubContext(context));
+    assertThat(cache.types.get("a.C", lookup(Type.noType))).isNull();
+    assertThat(lookups).containsExactly("a.C");
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.apply;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** {@link PatchFileDestination}Test */
+@RunWith(JUnit4.class)
+public class PatchFileDestinationTest {
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path baseDir;
+  private Path patchFile;
+
+  @Before
+  public void setUp() throws IOException {
+    baseDir = temporaryFolder.getRoot().toPath();
+    patchFile = baseDir.resolve("error-prone.patch");
+    Files.write(baseDir.resolve("A.java"), ImmutableList.of("class A {", "}"), UTF_8);
+  }
+
+  private SourceFile update(String name, String source) {
+    return new SourceFile(baseDir.resolve(name).toString(), source);
+  }
+
+  @Test
+  public void heldUntilRetrieved() throws IOException {
+    PatchFileDestination destination = new PatchFileDestination(baseDir, baseDir);
+    destination.writeFile(update("A.java", "final class A {\n}\n"));
+    destination.flush();
+    assertThat(Files.exists(patchFile)).isFalse();
+
+    String diff = destination.patchFile(baseDir.resolve("A.java").toUri());
+    assertThat(diff).contains("-class A {");
+    assertThat(diff).contains("+final class A {");
+    assertThat(destination.patchFile(baseDir.resolve("A.java").toUri())).isNull();
+  }
+
+  @Test
+  public void unchanged() throws IOException {
+    PatchFileDestination destination = new PatchFileDestination(baseDir, baseDir);
+    destination.writeFile(update("A.java", "class A {\n}\n"));
+    assertThat(destination.patchFile(baseDir.resolve("A.java").toUri())).isNull();
+  }
+}
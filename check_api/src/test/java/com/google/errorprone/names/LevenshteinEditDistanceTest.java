@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.names;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import com.google.common.base.Ascii;
+import com.google.common.primitives.Ints;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for LevenshteinEditDistance */
+@RunWith(JUnit4.class)
+public class LevenshteinEditDistanceTest {
+
+  @Test
+  public void getEditDistance() {
+    assertThat(LevenshteinEditDistance.getEditDistance("kitten", "sitting")).isEqualTo(3);
+    assertThat(LevenshteinEditDistance.getEditDistance("foo", "foo")).isEqualTo(0);
+    assertThat(LevenshteinEditDistance.getEditDistance("foo", "")).isEqualTo(3);
+    assertThat(LevenshteinEditDistance.getEditDistance("", "foo")).isEqualTo(3);
+  }
+
+  @Test
+  public void getEditDistance_treatsWhitespaceAsEmpty() {
+    assertThat(LevenshteinEditDistance.getEditDistance(" \t", "foo")).isEqualTo(3);
+    assertThat(LevenshteinEditDistance.getEditDistance("foo", " \t")).isEqualTo(3);
+    assertThat(LevenshteinEditDistance.getEditDistance(null, "foo")).isEqualTo(3);
+    assertThat(LevenshteinEditDistance.getEditDistance("a b", "ab")).isEqualTo(1);
+  }
+
+  @Test
+  public void getEditDistance_caseInsensitive() {
+    assertThat(LevenshteinEditDistance.getEditDistance("fooBar", "FOOBAR", false)).isEqualTo(0);
+    assertThat(LevenshteinEditDistance.getEditDistance("fooBar", "FOOBAR", true)).isEqualTo(5);
+  }
+
+  @Test
+  public void getEditDistance_matchesMatrix() {
+    Random random = new Random(42);
+    // lengths on either side of the 64 characters that fit in a bit vector
+    for (int maxLength : new int[] {8, 63, 64, 65, 150}) {
+      for (int i = 0; i < 200; i++) {
+        String source = randomString(random, random.nextInt(maxLength + 1));
+        String target = randomString(random, random.nextInt(maxLength + 1));
+        for (boolean caseSensitive : new boolean[] {true, false}) {
+          int expected = matrixEditDistance(source, target, caseSensitive);
+          assertWithMessage("%s -> %s", source, target)
+              .that(LevenshteinEditDistance.getEditDistance(source, target, caseSensitive))
+              .isEqualTo(expected);
+          for (int maxDistance : new int[] {0, 1, 3, expected, 100}) {
+            assertWithMessage("%s -> %s within %s", source, target, maxDistance)
+                .that(
+                    LevenshteinEditDistance.getBoundedEditDistance(
+                        source, target, caseSensitive, maxDistance))
+                .isEqualTo(Math.min(expected, maxDistance + 1));
+          }
+        }
+      }
+    }
+  }
+
+  /** Returns a string of letters from a small alphabet, including some that aren't ASCII. */
+  private static String randomString(Random random, int length) {
+    String alphabet = "abcABC_\u00e9\u00c9\u4e2d";
+    StringBuilder result = new StringBuilder();
+    for (int i = 0; i < length; i++) {
+      result.append(alphabet.charAt(random.nextInt(alphabet.length())));
+    }
+    return result.toString();
+  }
+
+  /** The textbook algorithm, which fills in the whole matrix. */
+  private static int matrixEditDistance(String source, String target, boolean caseSensitive) {
+    if (!caseSensitive) {
+      source = Ascii.toLowerCase(source);
+      target = Ascii.toLowerCase(target);
+    }
+    int[][] matrix = new int[source.length() + 1][target.length() + 1];
+    for (int i = 0; i <= source.length(); i++) {
+      matrix[i][0] = i;
+    }
+    for (int j = 0; j <= target.length(); j++) {
+      matrix[0][j] = j;
+    }
+    for (int i = 1; i <= source.length(); i++) {
+      for (int j = 1; j <= target.length(); j++) {
+        int cost = source.charAt(i - 1) == target.charAt(j - 1) ? 0 : 1;
+        matrix[i][j] =
+            Ints.min(cost + matrix[i - 1][j - 1], matrix[i - 1][j] + 1, matrix[i][j - 1] + 1);
+      }
+    }
+    return matrix[source.length()][target.length()];
+  }
+}
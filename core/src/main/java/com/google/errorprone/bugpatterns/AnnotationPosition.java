@@ -40,7 +40,6 @@ import com.google.errorprone.fixes.SuggestedFix;
 import com.google.errorprone.matchers.Description;
 import com.google.errorprone.util.ASTHelpers;
 import com.google.errorprone.util.ErrorProneToken;
-import com.google.errorprone.util.ErrorProneTokens;
 import com.sun.source.tree.AnnotationTree;
 import com.sun.source.tree.ClassTree;
 import com.sun.source.tree.MethodTree;
@@ -170,8 +169,7 @@ public final class AnnotationPosition extends BugChecker
     } else {
       throw new AssertionError();
     }
-    return ErrorProneTokens.getTokens(
-        state.getSourceCode().subSequence(annotationEnd, endPos).toString(), state.context);
+    return state.getTokensForRange(annotationEnd, endPos);
   }
 
   /** Checks that annotations are on the right side of the modifiers. */
@@ -36,7 +36,6 @@ import com.google.errorprone.matchers.Description;
 import com.google.errorprone.util.ASTHelpers;
 import com.google.errorprone.util.Comments;
 import com.google.errorprone.util.ErrorProneToken;
-import com.google.errorprone.util.ErrorProneTokens;
 import com.sun.source.tree.ExpressionTree;
 import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.NewClassTree;
@@ -89,9 +88,7 @@ public class BooleanParameter extends BugChecker
     }
     int start = ((JCTree) tree).getStartPosition();
     int end = state.getEndPosition(getLast(arguments));
-    String source = state.getSourceCode().subSequence(start, end).toString();
-    Deque<ErrorProneToken> tokens =
-        new ArrayDeque<>(ErrorProneTokens.getTokens(source, state.context));
+    Deque<ErrorProneToken> tokens = new ArrayDeque<>(state.getTokensForRange(start, end));
     forEachPair(
         sym.getParameters().stream(),
         arguments.stream(),
@@ -81,7 +81,7 @@ public class DoNotCallChecker extends BugChecker
           .addFix(SuggestedFixes.addModifiers(tree, state, Modifier.FINAL))
           .build();
     }
-    return findSuperMethods(symbol, state.getTypes()).stream()
+    return findSuperMethods(symbol, state).stream()
         .filter(s -> hasAnnotation(s, DO_NOT_CALL, state))
         .findAny()
         .map(
@@ -15,23 +15,26 @@
  */
 package com.google.errorprone.bugpatterns;
 
+import static com.google.common.base.MoreObjects.firstNonNull;
 import static com.google.errorprone.BugPattern.Category.JDK;
 import static com.google.errorprone.BugPattern.SeverityLevel.SUGGESTION;
 import static com.google.errorprone.util.ASTHelpers.getSymbol;
 import static com.google.errorprone.util.ASTHelpers.hasAnnotation;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
 import com.google.errorprone.BugPattern;
 import com.google.errorprone.BugPattern.ProvidesFix;
 import com.google.errorprone.VisitorState;
-import com.google.errorprone.bugpatterns.BugChecker.CompilationUnitTreeMatcher;
+import com.google.errorprone.bugpatterns.BugChecker.CompilationUnitTraversal;
+import com.google.errorprone.bugpatterns.BugChecker.CompilationUnitTraversalMatcher;
+import com.google.errorprone.fixes.SuggestedFix;
 import com.google.errorprone.fixes.SuggestedFixes;
 import com.google.errorprone.matchers.Description;
 import com.google.errorprone.util.ASTHelpers;
 import com.sun.source.tree.AnnotationTree;
 import com.sun.source.tree.AssignmentTree;
 import com.sun.source.tree.BlockTree;
-import com.sun.source.tree.ClassTree;
 import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.tree.CompoundAssignmentTree;
 import com.sun.source.tree.ExpressionTree;
@@ -42,15 +45,18 @@ import com.sun.source.tree.Tree;
 import com.sun.source.tree.Tree.Kind;
 import com.sun.source.tree.UnaryTree;
 import com.sun.source.tree.VariableTree;
-import com.sun.source.util.TreePathScanner;
 import com.sun.tools.javac.code.Flags;
 import com.sun.tools.javac.code.Symbol;
 import com.sun.tools.javac.code.Symbol.MethodSymbol;
 import com.sun.tools.javac.code.Symbol.VarSymbol;
-import com.sun.tools.javac.util.Context;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.EnumSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.Modifier;
 
@@ -61,7 +67,7 @@ import javax.lang.model.element.Modifier;
     summary = "This field is only assigned during initialization; consider making it final",
     severity = SUGGESTION,
     providesFix = ProvidesFix.REQUIRES_HUMAN_ATTENTION)
-public class FieldCanBeFinal extends BugChecker implements CompilationUnitTreeMatcher {
+public class FieldCanBeFinal extends BugChecker implements CompilationUnitTraversalMatcher {
 
   /** Annotations that imply a field is non-constant. */
   // TODO(cushon): consider supporting @Var as a meta-annotation
@@ -212,138 +218,200 @@ public class FieldCanBeFinal extends BugChecker implements CompilationUnitTreeMa
     }
   }
 
+  /**
+   * The trees that {@link FinalTraversal} is interested in: the ones that record an assignment,
+   * and the ones that change the initialization context of their children.
+   */
+  private static final ImmutableSet<Kind> TRAVERSAL_KINDS =
+      Sets.immutableEnumSet(
+          Sets.union(
+              EnumSet.of(
+                  Kind.VARIABLE,
+                  Kind.BLOCK,
+                  Kind.METHOD,
+                  Kind.CLASS,
+                  Kind.INTERFACE,
+                  Kind.ENUM,
+                  Kind.ANNOTATION_TYPE,
+                  Kind.ASSIGNMENT,
+                  Kind.MULTIPLY_ASSIGNMENT,
+                  Kind.DIVIDE_ASSIGNMENT,
+                  Kind.REMAINDER_ASSIGNMENT,
+                  Kind.PLUS_ASSIGNMENT,
+                  Kind.MINUS_ASSIGNMENT,
+                  Kind.LEFT_SHIFT_ASSIGNMENT,
+                  Kind.RIGHT_SHIFT_ASSIGNMENT,
+                  Kind.UNSIGNED_RIGHT_SHIFT_ASSIGNMENT,
+                  Kind.AND_ASSIGNMENT,
+                  Kind.XOR_ASSIGNMENT,
+                  Kind.OR_ASSIGNMENT),
+              UNARY_ASSIGNMENT));
+
   @Override
-  public Description matchCompilationUnit(CompilationUnitTree tree, VisitorState state) {
-    VariableAssignmentRecords writes = new VariableAssignmentRecords();
-    new FinalScanner(writes, state.context).scan(state.getPath(), InitializationContext.NONE);
-    outer:
-    for (VariableAssignments var : writes.getAssignments()) {
-      if (!var.isEffectivelyFinal()) {
-        continue;
-      }
-      if (!var.sym.isPrivate()) {
-        continue;
-      }
-      for (String annotation : IMPLICIT_VAR_ANNOTATIONS) {
-        if (ASTHelpers.hasAnnotation(var.sym, annotation, state)) {
-          continue outer;
-        }
-      }
-      VariableTree varDecl = var.declaration();
-      for (AnnotationTree anno : varDecl.getModifiers().getAnnotations()) {
-        if (IMPLICIT_VAR_ANNOTATION_SIMPLE_NAMES.contains(ASTHelpers.getAnnotationName(anno))) {
-          return Description.NO_MATCH;
-        }
-      }
-      SuggestedFixes.addModifiers(varDecl, state, Modifier.FINAL)
-          .ifPresent(
-              f -> {
-                if (SuggestedFixes.compilesWithFix(f, state)) {
-                  state.reportMatch(describeMatch(varDecl, f));
-                }
-              });
-    }
-    return Description.NO_MATCH;
+  public Set<Kind> traversalKinds() {
+    return TRAVERSAL_KINDS;
   }
 
-  /** Record assignments to possibly-final variables in a compilation unit. */
-  private class FinalScanner extends TreePathScanner<Void, InitializationContext> {
+  @Override
+  public Set<Kind> exitKinds() {
+    return TRAVERSAL_KINDS;
+  }
 
-    private final VariableAssignmentRecords writes;
-    private final Context context;
+  @Override
+  public CompilationUnitTraversal startTraversal(CompilationUnitTree tree, VisitorState state) {
+    return new FinalTraversal();
+  }
 
-    public FinalScanner(VariableAssignmentRecords writes, Context context) {
-      this.writes = writes;
-      this.context = context;
-    }
+  /**
+   * Record assignments to possibly-final variables in a compilation unit, and suggest making the
+   * ones that are only assigned during initialization final.
+   */
+  private class FinalTraversal implements CompilationUnitTraversal {
 
-    @Override
-    public Void visitVariable(VariableTree node, InitializationContext init) {
-      VarSymbol sym = ASTHelpers.getSymbol(node);
-      if (sym.getKind() == ElementKind.FIELD && !isSuppressed(node)) {
-        writes.recordDeclaration(sym, node);
-      }
-      return super.visitVariable(node, InitializationContext.NONE);
-    }
+    private final VariableAssignmentRecords writes = new VariableAssignmentRecords();
+
+    /**
+     * The initialization context of the children of each tree that has been entered but not exited
+     * yet, innermost first.
+     */
+    private final Deque<InitializationContext> contexts = new ArrayDeque<>();
+
+    /** The suppressed class whose members are being skipped, or null. */
+    private Tree skipped;
 
     @Override
-    public Void visitBlock(BlockTree node, InitializationContext init) {
-      if (getCurrentPath().getParentPath().getLeaf().getKind() == Kind.CLASS) {
-        init = node.isStatic() ? InitializationContext.STATIC : InitializationContext.INSTANCE;
+    public void enter(Tree tree, VisitorState state) {
+      if (skipped != null) {
+        return;
       }
-      return super.visitBlock(node, init);
+      InitializationContext init = firstNonNull(contexts.peek(), InitializationContext.NONE);
+      switch (tree.getKind()) {
+        case VARIABLE:
+          VarSymbol sym = ASTHelpers.getSymbol((VariableTree) tree);
+          if (sym.getKind() == ElementKind.FIELD && !isSuppressed(tree)) {
+            writes.recordDeclaration(sym, (VariableTree) tree);
+          }
+          init = InitializationContext.NONE;
+          break;
+        case BLOCK:
+          if (state.getPath().getParentPath().getLeaf().getKind() == Kind.CLASS) {
+            init =
+                ((BlockTree) tree).isStatic()
+                    ? InitializationContext.STATIC
+                    : InitializationContext.INSTANCE;
+          }
+          break;
+        case METHOD:
+          MethodSymbol methodSym = ASTHelpers.getSymbol((MethodTree) tree);
+          if (methodSym != null && methodSym.isConstructor()) {
+            init = InitializationContext.INSTANCE;
+          }
+          break;
+        case CLASS:
+        case INTERFACE:
+        case ENUM:
+        case ANNOTATION_TYPE:
+          if (isSuppressed(tree) || hasImplicitVarClassAnnotation(tree, state)) {
+            skipped = tree;
+            return;
+          }
+          // reset the initialization context when entering a new declaration
+          init = InitializationContext.NONE;
+          break;
+        case ASSIGNMENT:
+          ExpressionTree variable = ((AssignmentTree) tree).getVariable();
+          if (init == InitializationContext.INSTANCE && !isThisAccess(variable)) {
+            // don't record assignments in initializers that aren't to members of the object
+            // being initialized
+            init = InitializationContext.NONE;
+          }
+          writes.recordAssignment(variable, init);
+          break;
+        default:
+          init = InitializationContext.NONE;
+          if (tree instanceof CompoundAssignmentTree) {
+            writes.recordAssignment(((CompoundAssignmentTree) tree).getVariable(), init);
+          } else {
+            writes.recordAssignment(((UnaryTree) tree).getExpression(), init);
+          }
+          break;
+      }
+      contexts.push(init);
     }
 
     @Override
-    public Void visitMethod(MethodTree node, InitializationContext init) {
-      MethodSymbol sym = ASTHelpers.getSymbol(node);
-      if (sym != null && sym.isConstructor()) {
-        init = InitializationContext.INSTANCE;
+    public void exit(Tree tree, VisitorState state) {
+      if (skipped == null) {
+        contexts.pop();
+      } else if (skipped == tree) {
+        skipped = null;
       }
-      return super.visitMethod(node, init);
     }
 
     @Override
-    public Void visitAssignment(AssignmentTree node, InitializationContext init) {
-      if (init == InitializationContext.INSTANCE && !isThisAccess(node.getVariable())) {
-        // don't record assignments in initializers that aren't to members of the object
-        // being initialized
-        init = InitializationContext.NONE;
+    public Description finish(VisitorState state) {
+      List<VariableTree> declarations = new ArrayList<>();
+      List<SuggestedFix> fixes = new ArrayList<>();
+      outer:
+      for (VariableAssignments var : writes.getAssignments()) {
+        if (!var.isEffectivelyFinal()) {
+          continue;
+        }
+        if (!var.sym.isPrivate()) {
+          continue;
+        }
+        for (String annotation : IMPLICIT_VAR_ANNOTATIONS) {
+          if (ASTHelpers.hasAnnotation(var.sym, annotation, state)) {
+            continue outer;
+          }
+        }
+        VariableTree varDecl = var.declaration();
+        for (AnnotationTree anno : varDecl.getModifiers().getAnnotations()) {
+          if (IMPLICIT_VAR_ANNOTATION_SIMPLE_NAMES.contains(ASTHelpers.getAnnotationName(anno))) {
+            break outer;
+          }
+        }
+        SuggestedFixes.addModifiers(varDecl, state, Modifier.FINAL)
+            .ifPresent(
+                f -> {
+                  declarations.add(varDecl);
+                  fixes.add(f);
+                });
+      }
+      // The fields are all private, so making them final can only break this compilation unit,
+      // and the fixes are independent of each other: check them all in one speculative
+      // compilation.
+      List<Boolean> compiles = SuggestedFixes.compilesWithFixesIncrementally(fixes, state);
+      for (int i = 0; i < fixes.size(); i++) {
+        if (compiles.get(i)) {
+          state.reportMatch(describeMatch(declarations.get(i), fixes.get(i)));
+        }
       }
-      writes.recordAssignment(node.getVariable(), init);
-      return super.visitAssignment(node, init);
+      return Description.NO_MATCH;
     }
+  }
 
-    boolean isThisAccess(Tree tree) {
-      if (tree.getKind() == Kind.IDENTIFIER) {
+  private static boolean hasImplicitVarClassAnnotation(Tree tree, VisitorState state) {
+    for (String annotation : IMPLICIT_VAR_CLASS_ANNOTATIONS) {
+      if (ASTHelpers.hasAnnotation(getSymbol(tree), annotation, state)) {
         return true;
       }
-      if (tree.getKind() != Kind.MEMBER_SELECT) {
-        return false;
-      }
-      ExpressionTree selected = ((MemberSelectTree) tree).getExpression();
-      if (!(selected instanceof IdentifierTree)) {
-        return false;
-      }
-      IdentifierTree ident = (IdentifierTree) selected;
-      return ident.getName().contentEquals("this");
     }
+    return false;
+  }
 
-    @Override
-    public Void visitClass(ClassTree node, InitializationContext init) {
-      VisitorState state = new VisitorState(context).withPath(getCurrentPath());
-
-      if (isSuppressed(node)) {
-        return null;
-      }
-
-
-      for (String annotation : IMPLICIT_VAR_CLASS_ANNOTATIONS) {
-        if (ASTHelpers.hasAnnotation(getSymbol(node), annotation, state)) {
-          return null;
-        }
-      }
-
-      // reset the initialization context when entering a new declaration
-      return super.visitClass(node, InitializationContext.NONE);
+  private static boolean isThisAccess(Tree tree) {
+    if (tree.getKind() == Kind.IDENTIFIER) {
+      return true;
     }
-
-    @Override
-    public Void visitCompoundAssignment(CompoundAssignmentTree node, InitializationContext init) {
-      init = InitializationContext.NONE;
-      writes.recordAssignment(node.getVariable(), init);
-      return super.visitCompoundAssignment(node, init);
+    if (tree.getKind() != Kind.MEMBER_SELECT) {
+      return false;
     }
-
-
-    @Override
-    public Void visitUnary(UnaryTree node, InitializationContext init) {
-      if (UNARY_ASSIGNMENT.contains(node.getKind())) {
-        init = InitializationContext.NONE;
-        writes.recordAssignment(node.getExpression(), init);
-      }
-      return super.visitUnary(node, init);
+    ExpressionTree selected = ((MemberSelectTree) tree).getExpression();
+    if (!(selected instanceof IdentifierTree)) {
+      return false;
     }
+    IdentifierTree ident = (IdentifierTree) selected;
+    return ident.getName().contentEquals("this");
   }
-
 }
@@ -84,7 +84,7 @@ public class FunctionalInterfaceMethodChanged extends BugChecker implements Meth
       TreeVisitor<Boolean, VisitorState> behaviorPreserving =
           new BehaviorPreservingChecker(thisInterfaceSam);
       if (!Collections.disjoint(
-              ASTHelpers.findSuperMethods(ASTHelpers.getSymbol(tree), types),
+              ASTHelpers.findSuperMethods(ASTHelpers.getSymbol(tree), state),
               functionalSuperInterfaceSams)
           && !tree.accept(behaviorPreserving, state)) {
         return describeMatch(tree);
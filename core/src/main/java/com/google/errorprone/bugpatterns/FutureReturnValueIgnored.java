@@ -123,7 +123,7 @@ public final class FutureReturnValueIgnored extends AbstractReturnValueIgnored
           if (hasAnnotation(sym, CanIgnoreReturnValue.class, state)) {
             return false;
           }
-          for (MethodSymbol superSym : ASTHelpers.findSuperMethods(sym, state.getTypes())) {
+          for (MethodSymbol superSym : ASTHelpers.findSuperMethods(sym, state)) {
             // There are interfaces annotated with @CanIgnoreReturnValue (like Guava's Function)
             // whose return value really shouldn't be ignored - as a heuristic, check if the super's
             // method is returning a future subtype.
@@ -30,7 +30,8 @@ import com.google.errorprone.BugPattern;
 import com.google.errorprone.BugPattern.ProvidesFix;
 import com.google.errorprone.ErrorProneFlags;
 import com.google.errorprone.VisitorState;
-import com.google.errorprone.bugpatterns.BugChecker.CompilationUnitTreeMatcher;
+import com.google.errorprone.bugpatterns.BugChecker.CompilationUnitTraversal;
+import com.google.errorprone.bugpatterns.BugChecker.CompilationUnitTraversalMatcher;
 import com.google.errorprone.bugpatterns.CanBeStaticAnalyzer.CanBeStaticResult;
 import com.google.errorprone.fixes.SuggestedFix;
 import com.google.errorprone.matchers.Description;
@@ -43,11 +44,12 @@ import com.sun.source.tree.MemberSelectTree;
 import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.tree.VariableTree;
-import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.TreePath;
 import com.sun.source.util.TreeScanner;
 import com.sun.tools.javac.code.Symbol.MethodSymbol;
 import com.sun.tools.javac.tree.JCTree;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -62,7 +64,7 @@ import javax.lang.model.element.Modifier;
     category = JDK,
     severity = SUGGESTION,
     providesFix = ProvidesFix.REQUIRES_HUMAN_ATTENTION)
-public class MethodCanBeStatic extends BugChecker implements CompilationUnitTreeMatcher {
+public class MethodCanBeStatic extends BugChecker implements CompilationUnitTraversalMatcher {
   private final FindingOutputStyle findingOutputStyle;
 
   public MethodCanBeStatic(ErrorProneFlags flags) {
@@ -72,72 +74,55 @@ public class MethodCanBeStatic extends BugChecker implements CompilationUnitTree
   }
 
   @Override
-  public Description matchCompilationUnit(CompilationUnitTree tree, VisitorState state) {
-    Map<MethodSymbol, MethodDetails> nodes = new HashMap<>();
-    new TreePathScanner<Void, Void>() {
-      private int suppressions = 0;
-
-      @Override
-      public Void visitClass(ClassTree classTree, Void unused) {
-        if (isSuppressed(classTree)) {
-          suppressions++;
-          super.visitClass(classTree, null);
-          suppressions--;
-        } else {
-          super.visitClass(classTree, null);
-        }
-        return null;
-      }
+  public Set<Tree.Kind> traversalKinds() {
+    return EnumSet.of(Tree.Kind.METHOD);
+  }
 
-      @Override
-      public Void visitMethod(MethodTree tree, Void unused) {
-        if (isSuppressed(tree)) {
-          suppressions++;
-          matchMethod(tree);
-          super.visitMethod(tree, null);
-          suppressions--;
-        } else {
-          matchMethod(tree);
-          super.visitMethod(tree, null);
-        }
-        return null;
-      }
+  @Override
+  public CompilationUnitTraversal startTraversal(CompilationUnitTree tree, VisitorState state) {
+    return new CompilationUnitTraversal() {
+      private final Map<MethodSymbol, MethodDetails> nodes = new HashMap<>();
 
       @Override
-      public Void visitVariable(VariableTree variableTree, Void unused) {
-        if (isSuppressed(variableTree)) {
-          suppressions++;
-          super.visitVariable(variableTree, null);
-          suppressions--;
-        } else {
-          super.visitVariable(variableTree, null);
-        }
-        return null;
-      }
-
-      private void matchMethod(MethodTree tree) {
-        MethodSymbol sym = ASTHelpers.getSymbol(tree);
+      public void enter(Tree tree, VisitorState state) {
+        MethodTree methodTree = (MethodTree) tree;
+        MethodSymbol sym = ASTHelpers.getSymbol(methodTree);
         if (sym.isStatic()) {
-          nodes.put(sym, new MethodDetails(tree, true, ImmutableSet.of()));
+          nodes.put(sym, new MethodDetails(methodTree, true, ImmutableSet.of()));
         } else {
-          CanBeStaticResult result = CanBeStaticAnalyzer.canBeStaticResult(tree, sym, state);
+          CanBeStaticResult result = CanBeStaticAnalyzer.canBeStaticResult(methodTree, sym, state);
           boolean isExcluded = isExcluded(sym, state);
           nodes.put(
               sym,
               new MethodDetails(
-                  tree,
-                  result.canPossiblyBeStatic() && !isExcluded && suppressions == 0,
+                  methodTree,
+                  result.canPossiblyBeStatic() && !isExcluded && !isSuppressedAt(state.getPath()),
                   result.methodsReferenced()));
         }
       }
-    }.scan(state.getPath(), null);
 
-    propagateNonStaticness(nodes);
-    nodes
-        .entrySet()
-        .removeIf(
-            entry -> entry.getValue().tree.getModifiers().getFlags().contains(Modifier.STATIC));
-    return generateDescription(nodes, state);
+      @Override
+      public Description finish(VisitorState state) {
+        propagateNonStaticness(nodes);
+        nodes
+            .entrySet()
+            .removeIf(
+                entry -> entry.getValue().tree.getModifiers().getFlags().contains(Modifier.STATIC));
+        return generateDescription(nodes, state);
+      }
+    };
+  }
+
+  /** Returns true if the method at {@code path} or any declaration enclosing it is suppressed. */
+  private boolean isSuppressedAt(TreePath path) {
+    for (; path != null; path = path.getParentPath()) {
+      Tree tree = path.getLeaf();
+      if ((tree instanceof ClassTree || tree instanceof MethodTree || tree instanceof VariableTree)
+          && isSuppressed(tree)) {
+        return true;
+      }
+    }
+    return false;
   }
 
   private static void propagateNonStaticness(Map<MethodSymbol, MethodDetails> nodes) {
@@ -404,7 +404,7 @@ public class NoAllocationChecker extends BugChecker
     if (symbol == null) {
       return NO_MATCH;
     }
-    return findSuperMethods(symbol, state.getTypes()).stream()
+    return findSuperMethods(symbol, state).stream()
         .filter(s -> ASTHelpers.hasAnnotation(s, NoAllocation.class.getName(), state))
         .findAny()
         .map(
@@ -54,7 +54,7 @@ public class Overrides extends BugChecker implements MethodTreeMatcher {
     MethodSymbol methodSymbol = ASTHelpers.getSymbol(methodTree);
     boolean isVarargs = (methodSymbol.flags() & Flags.VARARGS) != 0;
 
-    Set<MethodSymbol> superMethods = ASTHelpers.findSuperMethods(methodSymbol, state.getTypes());
+    Set<MethodSymbol> superMethods = ASTHelpers.findSuperMethods(methodSymbol, state);
 
     // If there are no super methods, we're fine:
     if (superMethods.isEmpty()) {
@@ -34,7 +34,6 @@ import com.google.errorprone.matchers.Description;
 import com.google.errorprone.util.ASTHelpers;
 import com.google.errorprone.util.Comments;
 import com.google.errorprone.util.ErrorProneToken;
-import com.google.errorprone.util.ErrorProneTokens;
 import com.sun.source.tree.ExpressionTree;
 import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.NewClassTree;
@@ -93,8 +92,7 @@ public class ParameterName extends BugChecker
       // fast path if the arguments don't contain anything that looks like a comment
       return;
     }
-    Deque<ErrorProneToken> tokens =
-        new ArrayDeque<>(ErrorProneTokens.getTokens(source, state.context));
+    Deque<ErrorProneToken> tokens = new ArrayDeque<>(state.getTokensForRange(start, end));
     forEachPair(
         sym.getParameters().stream(),
         arguments.stream(),
@@ -15,6 +15,7 @@
  */
 package com.google.errorprone.bugpatterns;
 
+import static com.google.common.collect.Iterables.getLast;
 import static com.google.errorprone.BugPattern.Category.JDK;
 import static com.google.errorprone.BugPattern.SeverityLevel.SUGGESTION;
 import static com.google.errorprone.matchers.Description.NO_MATCH;
@@ -22,11 +23,13 @@ import static com.google.errorprone.util.ASTHelpers.getSymbol;
 
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Sets;
 import com.google.errorprone.BugPattern;
 import com.google.errorprone.BugPattern.ProvidesFix;
 import com.google.errorprone.BugPattern.StandardTags;
 import com.google.errorprone.VisitorState;
-import com.google.errorprone.bugpatterns.BugChecker.CompilationUnitTreeMatcher;
+import com.google.errorprone.bugpatterns.BugChecker.CompilationUnitTraversal;
+import com.google.errorprone.bugpatterns.BugChecker.CompilationUnitTraversalMatcher;
 import com.google.errorprone.bugpatterns.StaticImports.StaticImportInfo;
 import com.google.errorprone.fixes.SuggestedFix;
 import com.google.errorprone.matchers.Description;
@@ -39,13 +42,13 @@ import com.sun.source.tree.ImportTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.util.DocTreePath;
 import com.sun.source.util.DocTreePathScanner;
-import com.sun.source.util.TreePathScanner;
 import com.sun.source.util.TreeScanner;
 import com.sun.tools.javac.api.JavacTrees;
 import com.sun.tools.javac.code.Symbol;
-import com.sun.tools.javac.code.Types;
 import com.sun.tools.javac.tree.DCTree.DCReference;
+import com.sun.tools.javac.tree.JCTree;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import javax.annotation.Nullable;
 
@@ -58,132 +61,129 @@ import javax.annotation.Nullable;
     documentSuppression = false,
     tags = StandardTags.STYLE,
     providesFix = ProvidesFix.REQUIRES_HUMAN_ATTENTION)
-public final class RemoveUnusedImports extends BugChecker implements CompilationUnitTreeMatcher {
+public final class RemoveUnusedImports extends BugChecker
+    implements CompilationUnitTraversalMatcher {
+
+  /** Identifiers, and the declarations whose javadoc may refer to an imported symbol. */
+  private static final ImmutableSet<Tree.Kind> TRAVERSAL_KINDS =
+      Sets.immutableEnumSet(
+          Tree.Kind.IDENTIFIER,
+          Tree.Kind.COMPILATION_UNIT,
+          Tree.Kind.CLASS,
+          Tree.Kind.INTERFACE,
+          Tree.Kind.ENUM,
+          Tree.Kind.ANNOTATION_TYPE,
+          Tree.Kind.METHOD,
+          Tree.Kind.VARIABLE);
+
+  @Override
+  public Set<Tree.Kind> traversalKinds() {
+    return TRAVERSAL_KINDS;
+  }
+
   @Override
-  public Description matchCompilationUnit(
+  @Nullable
+  public CompilationUnitTraversal startTraversal(
       CompilationUnitTree compilationUnitTree, VisitorState state) {
-    final ImmutableSetMultimap<ImportTree, Symbol> importedSymbols =
+    ImmutableSetMultimap<ImportTree, Symbol> importedSymbols =
         getImportedSymbols(compilationUnitTree, state);
-
     if (importedSymbols.isEmpty()) {
-      return NO_MATCH;
-    }
-
-    final Set<ImportTree> unusedImports = new HashSet<>(importedSymbols.keySet());
-    new TreeSymbolScanner(JavacTrees.instance(state.context), state.getTypes())
-        .scan(
-            compilationUnitTree,
-            new SymbolSink() {
-              @Override
-              public boolean keepScanning() {
-                return !unusedImports.isEmpty();
-              }
-
-              @Override
-              public void accept(Symbol symbol) {
-                unusedImports.removeAll(importedSymbols.inverse().get(symbol));
-              }
-            });
-
-    if (unusedImports.isEmpty()) {
-      return NO_MATCH;
-    }
-    SuggestedFix.Builder fixBuilder = SuggestedFix.builder();
-    for (ImportTree unusedImport : unusedImports) {
-      fixBuilder.delete(unusedImport);
+      return null;
     }
-    return describeMatch(unusedImports.iterator().next(), fixBuilder.build());
+    return new UnusedImportsTraversal(compilationUnitTree, importedSymbols, state);
   }
 
-  /**
-   * A callback that provides actions for whenever you encounter a {@link Symbol}. Also provides a
-   * hook by which you can stop scanning.
-   */
-  private interface SymbolSink {
-    boolean keepScanning();
-
-    void accept(Symbol symbol);
-  }
-
-  private static final class TreeSymbolScanner extends TreePathScanner<Void, SymbolSink> {
+  private final class UnusedImportsTraversal implements CompilationUnitTraversal {
+    final ImmutableSetMultimap<ImportTree, Symbol> importedSymbols;
+    final Set<ImportTree> unusedImports;
     final DocTreeSymbolScanner docTreeSymbolScanner;
-    final JavacTrees trees;
-    final Types types;
-
-    private TreeSymbolScanner(JavacTrees trees, Types types) {
-      this.types = types;
-      this.docTreeSymbolScanner = new DocTreeSymbolScanner();
-      this.trees = trees;
-    }
-
-    /** Skip the imports themselves when checking for usage. */
-    @Override
-    public Void visitImport(ImportTree importTree, SymbolSink usedSymbols) {
-      return null;
+    final int importsStart;
+    final int importsEnd;
+
+    UnusedImportsTraversal(
+        CompilationUnitTree compilationUnitTree,
+        ImmutableSetMultimap<ImportTree, Symbol> importedSymbols,
+        VisitorState state) {
+      this.importedSymbols = importedSymbols;
+      this.unusedImports = new HashSet<>(importedSymbols.keySet());
+      this.docTreeSymbolScanner = new DocTreeSymbolScanner(JavacTrees.instance(state.context));
+      List<? extends ImportTree> imports = compilationUnitTree.getImports();
+      this.importsStart = ((JCTree) imports.get(0)).getStartPosition();
+      this.importsEnd = state.getEndPosition(getLast(imports));
     }
 
     @Override
-    public Void visitIdentifier(IdentifierTree tree, SymbolSink sink) {
-      if (tree == null) {
-        return null;
+    public void enter(Tree tree, VisitorState state) {
+      if (unusedImports.isEmpty()) {
+        return;
       }
-      Symbol symbol = getSymbol(tree);
-      if (symbol == null) {
-        return null;
+      if (tree.getKind() == Tree.Kind.IDENTIFIER) {
+        // Skip the imports themselves when checking for usage.
+        int position = ((JCTree) tree).getStartPosition();
+        if (position >= importsStart && position < importsEnd) {
+          return;
+        }
+        Symbol symbol = getSymbol(tree);
+        if (symbol != null) {
+          markUsed(symbol.baseSymbol());
+        }
+        return;
       }
-      sink.accept(symbol.baseSymbol());
-      return null;
+      DocCommentTree commentTree = docTreeSymbolScanner.trees.getDocCommentTree(state.getPath());
+      if (commentTree != null) {
+        docTreeSymbolScanner.scan(new DocTreePath(state.getPath(), commentTree), this);
+      }
+    }
+
+    void markUsed(Symbol symbol) {
+      unusedImports.removeAll(importedSymbols.inverse().get(symbol));
     }
 
     @Override
-    public Void scan(Tree tree, SymbolSink sink) {
-      if (!sink.keepScanning()) {
-        return null;
+    public Description finish(VisitorState state) {
+      if (unusedImports.isEmpty()) {
+        return NO_MATCH;
       }
-      if (tree == null) {
-        return null;
+      SuggestedFix.Builder fixBuilder = SuggestedFix.builder();
+      for (ImportTree unusedImport : unusedImports) {
+        fixBuilder.delete(unusedImport);
       }
-      scanJavadoc(sink);
-      return super.scan(tree, sink);
+      return describeMatch(unusedImports.iterator().next(), fixBuilder.build());
     }
+  }
 
-    private void scanJavadoc(SymbolSink sink) {
-      if (getCurrentPath() == null) {
-        return;
-      }
-      DocCommentTree commentTree = trees.getDocCommentTree(getCurrentPath());
-      if (commentTree == null) {
-        return;
-      }
-      docTreeSymbolScanner.scan(new DocTreePath(getCurrentPath(), commentTree), sink);
+  /**
+   * For the time being, this will just report any symbol referenced from javadoc as a usage.
+   * TODO(gak): improve this so that we can remove imports used only from javadoc and replace the
+   * usages with fully-qualified names.
+   */
+  private static final class DocTreeSymbolScanner
+      extends DocTreePathScanner<Void, UnusedImportsTraversal> {
+    final JavacTrees trees;
+
+    DocTreeSymbolScanner(JavacTrees trees) {
+      this.trees = trees;
     }
 
-    /**
-     * For the time being, this will just report any symbol referenced from javadoc as a usage.
-     * TODO(gak): improve this so that we can remove imports used only from javadoc and replace the
-     * usages with fully-qualified names.
-     */
-    final class DocTreeSymbolScanner extends DocTreePathScanner<Void, SymbolSink> {
-      @Override
-      public Void visitReference(ReferenceTree referenceTree, SymbolSink sink) {
-        // do this first, it attributes the referenceTree as a side-effect
-        trees.getElement(getCurrentPath());
-        TreeScanner<Void, SymbolSink> nonRecursiveScanner =
-            new TreeScanner<Void, SymbolSink>() {
-              @Override
-              public Void visitIdentifier(IdentifierTree tree, SymbolSink sink) {
-                Symbol sym = ASTHelpers.getSymbol(tree);
-                if (sym != null) {
-                  sink.accept(sym);
-                }
-                return null;
+    @Override
+    public Void visitReference(ReferenceTree referenceTree, UnusedImportsTraversal sink) {
+      // do this first, it attributes the referenceTree as a side-effect
+      trees.getElement(getCurrentPath());
+      TreeScanner<Void, UnusedImportsTraversal> nonRecursiveScanner =
+          new TreeScanner<Void, UnusedImportsTraversal>() {
+            @Override
+            public Void visitIdentifier(IdentifierTree tree, UnusedImportsTraversal sink) {
+              Symbol sym = ASTHelpers.getSymbol(tree);
+              if (sym != null) {
+                sink.markUsed(sym);
               }
-            };
-        DCReference reference = (DCReference) referenceTree;
-        nonRecursiveScanner.scan(reference.qualifierExpression, sink);
-        nonRecursiveScanner.scan(reference.paramTypes, sink);
-        return null;
-      }
+              return null;
+            }
+          };
+      DCReference reference = (DCReference) referenceTree;
+      nonRecursiveScanner.scan(reference.qualifierExpression, sink);
+      nonRecursiveScanner.scan(reference.paramTypes, sink);
+      return null;
     }
   }
 
@@ -178,7 +178,7 @@ public final class TruthAssertExpected extends BugChecker implements MethodInvoc
       return Description.NO_MATCH;
     }
     SuggestedFix fix = SuggestedFix.swap(assertedArgument, terminatingArgument);
-    if (SuggestedFixes.compilesWithFix(fix, state)) {
+    if (SuggestedFixes.compilesWithFixIncrementally(fix, state)) {
       return describeMatch(tree, fix);
     }
     return describeMatch(tree);
@@ -167,7 +167,7 @@ public class UnnecessaryDefaultInEnumSwitch extends BugChecker implements Switch
     //  Try deleting the code entirely.  If it fails to compile, we've broken (3) -> no match.
     //  Try lifting the code to the prior case statement.  If it fails to compile, we had (2)
     //  and the code is unreachable -- so use (2) as the strategy.  Otherwise, use (1).
-    if (!SuggestedFixes.compilesWithFix(SuggestedFix.delete(defaultCase), state)) {
+    if (!SuggestedFixes.compilesWithFixIncrementally(SuggestedFix.delete(defaultCase), state)) {
       return NO_MATCH; // case (3)
     }
     if (!canCompleteNormally(caseBeforeDefault)) {
@@ -71,7 +71,7 @@ public class UnnecessaryTypeArgument extends BugChecker
       return Description.NO_MATCH;
     }
 
-    for (MethodSymbol superMethod : ASTHelpers.findSuperMethods(methodSymbol, state.getTypes())) {
+    for (MethodSymbol superMethod : ASTHelpers.findSuperMethods(methodSymbol, state)) {
       if (!superMethod.getTypeParameters().isEmpty()) {
         // Exempt methods that override generic methods to preserve the substitutability of the
         // two types.
@@ -34,10 +34,6 @@ import static com.google.errorprone.util.ASTHelpers.getSymbol;
 import static com.google.errorprone.util.ASTHelpers.getType;
 import static com.google.errorprone.util.ASTHelpers.isSubtype;
 import static com.google.errorprone.util.SideEffectAnalysis.hasSideEffect;
-import static com.sun.source.tree.Tree.Kind.POSTFIX_DECREMENT;
-import static com.sun.source.tree.Tree.Kind.POSTFIX_INCREMENT;
-import static com.sun.source.tree.Tree.Kind.PREFIX_DECREMENT;
-import static com.sun.source.tree.Tree.Kind.PREFIX_INCREMENT;
 
 import com.google.common.base.Ascii;
 import com.google.common.collect.ArrayListMultimap;
@@ -48,7 +44,8 @@ import com.google.common.collect.Sets;
 import com.google.errorprone.BugPattern;
 import com.google.errorprone.ErrorProneFlags;
 import com.google.errorprone.VisitorState;
-import com.google.errorprone.bugpatterns.BugChecker.CompilationUnitTreeMatcher;
+import com.google.errorprone.bugpatterns.BugChecker.CompilationUnitTraversal;
+import com.google.errorprone.bugpatterns.BugChecker.CompilationUnitTraversalMatcher;
 import com.google.errorprone.fixes.SuggestedFix;
 import com.google.errorprone.matchers.Description;
 import com.google.errorprone.matchers.Matcher;
@@ -56,16 +53,13 @@ import com.google.errorprone.suppliers.Supplier;
 import com.google.errorprone.suppliers.Suppliers;
 import com.google.errorprone.util.ASTHelpers;
 import com.google.errorprone.util.ErrorProneToken;
-import com.google.errorprone.util.ErrorProneTokens;
 import com.sun.source.tree.AnnotationTree;
-import com.sun.source.tree.ArrayAccessTree;
 import com.sun.source.tree.AssignmentTree;
 import com.sun.source.tree.ClassTree;
 import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.tree.CompoundAssignmentTree;
 import com.sun.source.tree.DoWhileLoopTree;
 import com.sun.source.tree.EnhancedForLoopTree;
-import com.sun.source.tree.ErroneousTree;
 import com.sun.source.tree.ExpressionStatementTree;
 import com.sun.source.tree.ExpressionTree;
 import com.sun.source.tree.ForLoopTree;
@@ -73,21 +67,17 @@ import com.sun.source.tree.IdentifierTree;
 import com.sun.source.tree.IfTree;
 import com.sun.source.tree.LambdaExpressionTree;
 import com.sun.source.tree.MemberReferenceTree;
-import com.sun.source.tree.MemberSelectTree;
 import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.MethodTree;
-import com.sun.source.tree.ReturnTree;
 import com.sun.source.tree.StatementTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.tree.Tree.Kind;
 import com.sun.source.tree.TryTree;
-import com.sun.source.tree.UnaryTree;
 import com.sun.source.tree.VariableTree;
 import com.sun.source.tree.WhileLoopTree;
 import com.sun.source.util.SimpleTreeVisitor;
 import com.sun.source.util.TreePath;
 import com.sun.source.util.TreePathScanner;
-import com.sun.source.util.TreeScanner;
 import com.sun.tools.javac.code.Symbol;
 import com.sun.tools.javac.code.Symbol.MethodSymbol;
 import com.sun.tools.javac.code.Symbol.TypeSymbol;
@@ -103,10 +93,10 @@ import com.sun.tools.javac.util.Position;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nullable;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.Modifier;
@@ -120,7 +110,7 @@ import javax.lang.model.element.Name;
     providesFix = REQUIRES_HUMAN_ATTENTION,
     severity = WARNING,
     documentSuppression = false)
-public final class Unused extends BugChecker implements CompilationUnitTreeMatcher {
+public final class Unused extends BugChecker implements CompilationUnitTraversalMatcher {
   private static final String GWT_JAVASCRIPT_OBJECT = "com.google.gwt.core.client.JavaScriptObject";
   private static final String EXEMPT_PREFIX = "unused";
   private static final String JUNIT_PARAMS_VALUE = "value";
@@ -199,11 +189,68 @@ public final class Unused extends BugChecker implements CompilationUnitTreeMatch
     this.reportInjectedFields = flags.getBoolean("Unused:ReportInjectedFields").orElse(false);
   }
 
+  /**
+   * The trees that declare a possibly unused element, that use one, or that change whether the
+   * elements used inside them count as used.
+   */
+  private static final ImmutableSet<Kind> TRAVERSAL_KINDS =
+      Sets.immutableEnumSet(
+          Kind.VARIABLE,
+          Kind.CLASS,
+          Kind.INTERFACE,
+          Kind.ENUM,
+          Kind.ANNOTATION_TYPE,
+          Kind.METHOD,
+          Kind.EXPRESSION_STATEMENT,
+          Kind.IDENTIFIER,
+          Kind.MEMBER_SELECT,
+          Kind.MEMBER_REFERENCE,
+          Kind.ARRAY_ACCESS,
+          Kind.RETURN,
+          Kind.METHOD_INVOCATION);
+
+  /** The trees that end a skipped declaration, or whose effect on their children ends with them. */
+  private static final ImmutableSet<Kind> EXIT_KINDS =
+      Sets.immutableEnumSet(
+          Kind.VARIABLE,
+          Kind.CLASS,
+          Kind.INTERFACE,
+          Kind.ENUM,
+          Kind.ANNOTATION_TYPE,
+          Kind.METHOD,
+          Kind.EXPRESSION_STATEMENT,
+          Kind.ARRAY_ACCESS,
+          Kind.RETURN,
+          Kind.METHOD_INVOCATION);
+
+  @Override
+  public Set<Kind> traversalKinds() {
+    return TRAVERSAL_KINDS;
+  }
+
   @Override
-  public Description matchCompilationUnit(CompilationUnitTree tree, VisitorState state) {
-    // Map of symbols to variable declarations. Initially this is a map of all of the local variable
-    // and fields. As we go we remove those variables which are used.
-    Map<Symbol, TreePath> unusedElements = new HashMap<>();
+  public Set<Kind> exitKinds() {
+    return EXIT_KINDS;
+  }
+
+  @Override
+  public CompilationUnitTraversal startTraversal(CompilationUnitTree tree, VisitorState state) {
+    return new UnusedTraversal();
+  }
+
+  /**
+   * Finds all the local variables, parameters, fields and methods that could be unused, and all the
+   * elements that are used, in a single pass over the compilation unit. Elements may be used before
+   * they are declared, so the unused ones are only known once the whole compilation unit has been
+   * visited.
+   */
+  private final class UnusedTraversal implements CompilationUnitTraversal {
+    // Map of symbols to variable declarations. This is a map of all of the local variables,
+    // parameters, fields and methods that could be unused.
+    private final Map<Symbol, TreePath> unusedElements = new HashMap<>();
+
+    // The symbols that are really used.
+    private final Set<Symbol> usedElements = new HashSet<>();
 
     // Map of symbols to their usage sites. In this map we also include the definition site in
     // addition to all the trees where symbol is used. This map is designed to keep the usage sites
@@ -211,460 +258,421 @@ public final class Unused extends BugChecker implements CompilationUnitTreeMatch
     //
     // We populate this map when analyzing the unused variables and then use it to generate
     // appropriate fixes for them.
-    ListMultimap<Symbol, TreePath> usageSites = ArrayListMultimap.create();
+    private final ListMultimap<Symbol, TreePath> usageSites = ArrayListMultimap.create();
 
     // We will skip reporting on the whole compilation if there are any native methods found.
-    // Use a TreeScanner to find all local variables and fields.
-    // The only reason type is atomic here is that we need to set its value from inside the closure.
-    if (hasNativeMethods(state.getPath())) {
-      // Skipping the analysis of this file because it has native methods.
-      return Description.NO_MATCH;
-    }
-    AtomicBoolean ignoreUnusedMethods = new AtomicBoolean(false);
-
-    // Use a TreeScanner to find all local variables and fields.
-    class PrivateFieldLocalVarFinder extends TreePathScanner<Void, Void> {
-
-      private boolean hasJUnitParamsParametersForMethodAnnotation(
-          Collection<? extends AnnotationTree> annotations) {
-        for (AnnotationTree tree : annotations) {
-          JCAnnotation annotation = (JCAnnotation) tree;
-          if (annotation.getAnnotationType().type != null
-              && annotation
-                  .getAnnotationType()
-                  .type
-                  .toString()
-                  .equals(JUNIT_PARAMS_ANNOTATION_TYPE)) {
-            if (annotation.getArguments().isEmpty()) {
-              // @Parameters, which uses implicit provider methods
-              return true;
-            }
-            for (JCExpression arg : annotation.getArguments()) {
-              if (arg.getKind() != Kind.ASSIGNMENT) {
-                // Implicit value annotation, e.g. @Parameters({"1"}); no exemption required.
-                return false;
-              }
-              JCExpression var = ((JCAssign) arg).getVariable();
-              if (var.getKind() == Kind.IDENTIFIER) {
-                // Anything that is not @Parameters(value = ...), e.g.
-                // @Parameters(source = ...) or @Parameters(method = ...)
-                if (((IdentifierTree) var).getName().contentEquals(JUNIT_PARAMS_VALUE)) {
-                  return true;
-                }
-              }
-            }
+    private boolean hasNativeMethods = false;
+    // The number of methods enclosing the current tree. Native methods are only looked for in
+    // methods that are not nested in other methods.
+    private int methodDepth = 0;
+
+    private boolean ignoreUnusedMethods = false;
+
+    // The declaration whose subtree is not searched for possibly unused elements, e.g. because it
+    // is suppressed, or null.
+    private Tree skipped = null;
+
+    // When this greater than zero, the usage of identifiers are real.
+    private int inArrayAccess = 0;
+    // This is true when we are processing a `return` statement. Elements used in return statement
+    // must not be considered unused.
+    private boolean inReturnStatement = false;
+    // When this greater than zero, the usage of identifiers are real because they are in a method
+    // call.
+    private int inMethodCall = 0;
+
+    private TreePath currentExpressionStatement = null;
+
+    @Override
+    public void enter(Tree tree, VisitorState state) {
+      switch (tree.getKind()) {
+        case VARIABLE:
+          if (skipped == null) {
+            visitVariable((VariableTree) tree, state);
           }
-        }
-        return false;
+          break;
+        case CLASS:
+        case INTERFACE:
+        case ENUM:
+        case ANNOTATION_TYPE:
+          if (skipped == null
+              && (isSuppressed(tree) || exemptedBySuperType(getType(tree), state))) {
+            skipped = tree;
+          }
+          break;
+        case METHOD:
+          visitMethod((MethodTree) tree, state);
+          break;
+        case EXPRESSION_STATEMENT:
+          currentExpressionStatement = state.getPath();
+          break;
+        case IDENTIFIER:
+        case MEMBER_SELECT:
+          // Filtering out identifier symbol from vars map. These are real usages of identifiers.
+          markUsed(getSymbol(tree), state.getPath());
+          break;
+        case MEMBER_REFERENCE:
+          MethodSymbol symbol = getSymbol((MemberReferenceTree) tree);
+          markUsed(symbol, state.getPath());
+          if (symbol != null) {
+            usedElements.addAll(symbol.getParameters());
+          }
+          break;
+        case ARRAY_ACCESS:
+          inArrayAccess++;
+          break;
+        case RETURN:
+          inReturnStatement = true;
+          break;
+        case METHOD_INVOCATION:
+          // Looks at method invocations and marks the invoked private methods as used.
+          inMethodCall++;
+          Symbol methodSymbol = getSymbol(tree);
+          if (methodSymbol != null) {
+            usedElements.add(methodSymbol);
+          }
+          break;
+        default:
+          break;
       }
+    }
 
-      private boolean exemptedBySuperType(Type type, VisitorState state) {
-        return EXEMPTING_SUPER_TYPES.stream()
-            .anyMatch(t -> isSubtype(type, Suppliers.typeFromString(t).get(state), state));
+    @Override
+    public void exit(Tree tree, VisitorState state) {
+      switch (tree.getKind()) {
+        case METHOD:
+          methodDepth--;
+          break;
+        case EXPRESSION_STATEMENT:
+          currentExpressionStatement = null;
+          break;
+        case ARRAY_ACCESS:
+          inArrayAccess--;
+          break;
+        case RETURN:
+          inReturnStatement = false;
+          break;
+        case METHOD_INVOCATION:
+          inMethodCall--;
+          break;
+        default:
+          break;
+      }
+      if (skipped == tree) {
+        skipped = null;
       }
+    }
 
-      @Override
-      public Void visitVariable(VariableTree variableTree, Void unused) {
-        if (exemptedByName(variableTree.getName())) {
-          return null;
-        }
-        if (isSuppressed(variableTree)) {
-          return null;
-        }
-        VarSymbol symbol = getSymbol(variableTree);
-        if (symbol == null) {
-          return null;
-        }
-        if (symbol.getKind() == ElementKind.FIELD
-            && exemptedFieldBySuperType(getType(variableTree), state)) {
-          return null;
-        }
-        super.visitVariable(variableTree, null);
-        // Return if the element is exempted by an annotation.
-        if (exemptedByAnnotation(
-            variableTree.getModifiers().getAnnotations(), EXEMPTING_VARIABLE_ANNOTATIONS, state)) {
-          return null;
-        }
-        switch (symbol.getKind()) {
-          case FIELD:
-            // We are only interested in private fields and those which are not special.
-            if (isFieldEligibleForChecking(variableTree, symbol)) {
-              unusedElements.put(symbol, getCurrentPath());
-              usageSites.put(symbol, getCurrentPath());
-            }
-            break;
-          case LOCAL_VARIABLE:
-            unusedElements.put(symbol, getCurrentPath());
-            usageSites.put(symbol, getCurrentPath());
-            break;
-          case PARAMETER:
-            // ignore the receiver parameter
-            if (variableTree.getName().contentEquals("this")) {
-              return null;
+    private boolean hasJUnitParamsParametersForMethodAnnotation(
+        Collection<? extends AnnotationTree> annotations) {
+      for (AnnotationTree tree : annotations) {
+        JCAnnotation annotation = (JCAnnotation) tree;
+        if (annotation.getAnnotationType().type != null
+            && annotation
+                .getAnnotationType()
+                .type
+                .toString()
+                .equals(JUNIT_PARAMS_ANNOTATION_TYPE)) {
+          if (annotation.getArguments().isEmpty()) {
+            // @Parameters, which uses implicit provider methods
+            return true;
+          }
+          for (JCExpression arg : annotation.getArguments()) {
+            if (arg.getKind() != Kind.ASSIGNMENT) {
+              // Implicit value annotation, e.g. @Parameters({"1"}); no exemption required.
+              return false;
             }
-            if (isParameterSubjectToAnalysis(symbol)) {
-              unusedElements.put(symbol, getCurrentPath());
+            JCExpression var = ((JCAssign) arg).getVariable();
+            if (var.getKind() == Kind.IDENTIFIER) {
+              // Anything that is not @Parameters(value = ...), e.g.
+              // @Parameters(source = ...) or @Parameters(method = ...)
+              if (((IdentifierTree) var).getName().contentEquals(JUNIT_PARAMS_VALUE)) {
+                return true;
+              }
             }
-            break;
-          default:
-            break;
-        }
-        return null;
-      }
-
-      private boolean exemptedFieldBySuperType(Type type, VisitorState state) {
-        return EXEMPTING_FIELD_SUPER_TYPES.stream()
-            .anyMatch(t -> isSubtype(type, state.getTypeFromString(t), state));
-      }
-
-      private boolean isFieldEligibleForChecking(VariableTree variableTree, VarSymbol symbol) {
-        if (reportInjectedFields
-            && variableTree.getModifiers().getFlags().isEmpty()
-            && ASTHelpers.hasDirectAnnotationWithSimpleName(variableTree, "Inject")) {
-          return true;
+          }
         }
-        return variableTree.getModifiers().getFlags().contains(Modifier.PRIVATE)
-            && !SPECIAL_FIELDS.contains(symbol.getSimpleName().toString())
-            && !isLoggerField(variableTree);
-      }
-
-      private boolean isLoggerField(VariableTree variableTree) {
-        return variableTree.getModifiers().getFlags().containsAll(LOGGER_REQUIRED_MODIFIERS)
-            && LOGGER_TYPE_NAME.contains(variableTree.getType().toString())
-            && LOGGER_VAR_NAME.contains(variableTree.getName().toString());
       }
+      return false;
+    }
 
-      /** Returns whether {@code sym} can be removed without updating call sites in other files. */
-      private boolean isParameterSubjectToAnalysis(Symbol sym) {
-        checkArgument(sym.getKind() == ElementKind.PARAMETER);
-        Symbol enclosingMethod = sym.owner;
+    private boolean exemptedBySuperType(Type type, VisitorState state) {
+      return EXEMPTING_SUPER_TYPES.stream()
+          .anyMatch(t -> isSubtype(type, Suppliers.typeFromString(t).get(state), state));
+    }
 
-        for (String annotationName : methodAnnotationsExemptingParameters) {
-          if (ASTHelpers.hasAnnotation(enclosingMethod, annotationName, state)) {
-            return false;
+    private void visitVariable(VariableTree variableTree, VisitorState state) {
+      TreePath path = state.getPath();
+      Tree parent = path.getParentPath().getLeaf();
+      // Skip lambda parameters, and try resources: while these may not be referenced, they are
+      // used.
+      if (parent.getKind() == Kind.LAMBDA_EXPRESSION
+          && ((LambdaExpressionTree) parent).getParameters().contains(variableTree)) {
+        skipped = variableTree;
+        return;
+      }
+      if (parent.getKind() == Kind.TRY
+          && ((TryTree) parent).getResources().contains(variableTree)) {
+        skipped = variableTree;
+        return;
+      }
+      if (exemptedByName(variableTree.getName()) || isSuppressed(variableTree)) {
+        skipped = variableTree;
+        return;
+      }
+      VarSymbol symbol = getSymbol(variableTree);
+      if (symbol == null) {
+        skipped = variableTree;
+        return;
+      }
+      if (symbol.getKind() == ElementKind.FIELD
+          && exemptedFieldBySuperType(getType(variableTree), state)) {
+        skipped = variableTree;
+        return;
+      }
+      // Return if the element is exempted by an annotation.
+      if (exemptedByAnnotation(
+          variableTree.getModifiers().getAnnotations(), EXEMPTING_VARIABLE_ANNOTATIONS, state)) {
+        return;
+      }
+      switch (symbol.getKind()) {
+        case FIELD:
+          // We are only interested in private fields and those which are not special.
+          if (isFieldEligibleForChecking(variableTree, symbol)) {
+            unusedElements.put(symbol, path);
+            usageSites.put(symbol, path);
           }
-        }
-
-
-        return enclosingMethod.getModifiers().contains(Modifier.PRIVATE);
-      }
-
-      @Override
-      public Void visitTry(TryTree node, Void unused) {
-        // Skip resources, as while these may not be referenced, they are used.
-        scan(node.getBlock(), null);
-        scan(node.getCatches(), null);
-        scan(node.getFinallyBlock(), null);
-        return null;
+          break;
+        case LOCAL_VARIABLE:
+          unusedElements.put(symbol, path);
+          usageSites.put(symbol, path);
+          break;
+        case PARAMETER:
+          // ignore the receiver parameter
+          if (variableTree.getName().contentEquals("this")) {
+            return;
+          }
+          if (isParameterSubjectToAnalysis(symbol, state)) {
+            unusedElements.put(symbol, path);
+          }
+          break;
+        default:
+          break;
       }
+    }
 
-      @Override
-      public Void visitClass(ClassTree tree, Void unused) {
-        if (isSuppressed(tree) || exemptedBySuperType(getType(tree), state)) {
-          return null;
-        }
-        return super.visitClass(tree, null);
-      }
+    private boolean exemptedFieldBySuperType(Type type, VisitorState state) {
+      return EXEMPTING_FIELD_SUPER_TYPES.stream()
+          .anyMatch(t -> isSubtype(type, state.getTypeFromString(t), state));
+    }
 
-      @Override
-      public Void visitLambdaExpression(LambdaExpressionTree node, Void unused) {
-        // skip lambda parameters
-        return scan(node.getBody(), null);
+    private boolean isFieldEligibleForChecking(VariableTree variableTree, VarSymbol symbol) {
+      if (reportInjectedFields
+          && variableTree.getModifiers().getFlags().isEmpty()
+          && ASTHelpers.hasDirectAnnotationWithSimpleName(variableTree, "Inject")) {
+        return true;
       }
+      return variableTree.getModifiers().getFlags().contains(Modifier.PRIVATE)
+          && !SPECIAL_FIELDS.contains(symbol.getSimpleName().toString())
+          && !isLoggerField(variableTree);
+    }
 
-      @Override
-      public Void visitMethod(MethodTree tree, Void unused) {
-        if (hasJUnitParamsParametersForMethodAnnotation(tree.getModifiers().getAnnotations())) {
-          // Since this method uses @Parameters, there will be another method that appears to
-          // be unused. Don't warn about unusedMethods at all in this case.
-          ignoreUnusedMethods.set(true);
-        }
-
-        if (isSuppressed(tree)) {
-          // @SuppressWarnings("unused") applies to the entire AST, not just the symbol it's bound
-          // to.  Skip the whole method.
-          return null;
-        }
+    private boolean isLoggerField(VariableTree variableTree) {
+      return variableTree.getModifiers().getFlags().containsAll(LOGGER_REQUIRED_MODIFIERS)
+          && LOGGER_TYPE_NAME.contains(variableTree.getType().toString())
+          && LOGGER_VAR_NAME.contains(variableTree.getName().toString());
+    }
 
-        if (isMethodSymbolEligibleForChecking(tree)) {
-          unusedElements.put(getSymbol(tree), getCurrentPath());
-        }
-        return super.visitMethod(tree, unused);
-      }
+    /** Returns whether {@code sym} can be removed without updating call sites in other files. */
+    private boolean isParameterSubjectToAnalysis(Symbol sym, VisitorState state) {
+      checkArgument(sym.getKind() == ElementKind.PARAMETER);
+      Symbol enclosingMethod = sym.owner;
 
-      private boolean isMethodSymbolEligibleForChecking(MethodTree tree) {
-        if (exemptedByName(tree.getName())) {
-          return false;
-        }
-        // Assume the method is called if annotated with a called-reflectively annotation.
-        if (exemptedByAnnotation(
-            tree.getModifiers().getAnnotations(), EXEMPTING_METHOD_ANNOTATIONS, state)) {
-          return false;
-        }
-        // Skip constructors and special methods.
-        MethodSymbol methodSymbol = getSymbol(tree);
-        if (methodSymbol == null
-            || methodSymbol.getKind() == ElementKind.CONSTRUCTOR
-            || SPECIAL_METHODS.matches(tree, state)) {
+      for (String annotationName : methodAnnotationsExemptingParameters) {
+        if (ASTHelpers.hasAnnotation(enclosingMethod, annotationName, state)) {
           return false;
         }
-
-        // Ignore this method if the last parameter is a GWT JavaScriptObject.
-        if (!tree.getParameters().isEmpty()) {
-          Type lastParamType = getType(getLast(tree.getParameters()));
-          if (lastParamType != null && lastParamType.toString().equals(GWT_JAVASCRIPT_OBJECT)) {
-            return false;
-          }
-        }
-
-        return tree.getModifiers().getFlags().contains(Modifier.PRIVATE);
       }
-    }
-    new PrivateFieldLocalVarFinder().scan(state.getPath(), null);
 
-    class FilterUsedElements extends TreePathScanner<Void, Void> {
-      private boolean leftHandSideAssignment = false;
-      // When this greater than zero, the usage of identifiers are real.
-      private int inArrayAccess = 0;
-      // This is true when we are processing a `return` statement. Elements used in return statement
-      // must not be considered unused.
-      private boolean inReturnStatement = false;
-      // When this greater than zero, the usage of identifiers are real because they are in a method
-      // call.
-      private int inMethodCall = 0;
 
-      private TreePath currentExpressionStatement = null;
+      return enclosingMethod.getModifiers().contains(Modifier.PRIVATE);
+    }
 
-      private boolean isInExpressionStatementTree() {
-        Tree parent = getCurrentPath().getParentPath().getLeaf();
-        return parent != null && parent.getKind() == Kind.EXPRESSION_STATEMENT;
+    private void visitMethod(MethodTree tree, VisitorState state) {
+      if (methodDepth++ == 0 && tree.getModifiers().getFlags().contains(Modifier.NATIVE)) {
+        hasNativeMethods = true;
       }
-
-      private boolean isUsed(@Nullable Symbol symbol) {
-        return symbol != null
-            && (!leftHandSideAssignment
-                || inReturnStatement
-                || inArrayAccess > 0
-                || inMethodCall > 0)
-            && unusedElements.containsKey(symbol);
+      if (skipped != null) {
+        return;
       }
 
-      @Override
-      public Void visitExpressionStatement(ExpressionStatementTree tree, Void unused) {
-        currentExpressionStatement = getCurrentPath();
-        super.visitExpressionStatement(tree, null);
-        currentExpressionStatement = null;
-        return null;
+      if (hasJUnitParamsParametersForMethodAnnotation(tree.getModifiers().getAnnotations())) {
+        // Since this method uses @Parameters, there will be another method that appears to
+        // be unused. Don't warn about unusedMethods at all in this case.
+        ignoreUnusedMethods = true;
       }
 
-      @Override
-      public Void visitIdentifier(IdentifierTree tree, Void unused) {
-        Symbol symbol = getSymbol(tree);
-        // Filtering out identifier symbol from vars map. These are real usages of identifiers.
-        if (isUsed(symbol)) {
-          unusedElements.remove(symbol);
-        }
-        if (currentExpressionStatement != null && unusedElements.containsKey(symbol)) {
-          usageSites.put(symbol, currentExpressionStatement);
-        }
-        return null;
+      if (isSuppressed(tree)) {
+        // @SuppressWarnings("unused") applies to the entire AST, not just the symbol it's bound
+        // to.  Skip the whole method.
+        skipped = tree;
+        return;
       }
 
-      @Override
-      public Void visitAssignment(AssignmentTree tree, Void unused) {
-        // If a variable is used in the left hand side of an assignment that does not count as a
-        // usage.
-        if (isInExpressionStatementTree()) {
-          leftHandSideAssignment = true;
-          scan(tree.getVariable(), null);
-          leftHandSideAssignment = false;
-          scan(tree.getExpression(), null);
-        } else {
-          super.visitAssignment(tree, null);
-        }
-        return null;
+      if (isMethodSymbolEligibleForChecking(tree, state)) {
+        unusedElements.put(getSymbol(tree), state.getPath());
       }
+    }
 
-      @Override
-      public Void visitMemberSelect(MemberSelectTree memberSelectTree, Void unused) {
-        Symbol symbol = getSymbol(memberSelectTree);
-        if (isUsed(symbol)) {
-          unusedElements.remove(symbol);
-        } else if (currentExpressionStatement != null && unusedElements.containsKey(symbol)) {
-          usageSites.put(symbol, currentExpressionStatement);
-        }
-        // Clear leftHandSideAssignment and descend down the tree to catch any variables in the
-        // receiver of this member select, which _are_ considered used.
-        boolean wasLeftHandAssignment = leftHandSideAssignment;
-        leftHandSideAssignment = false;
-        super.visitMemberSelect(memberSelectTree, null);
-        leftHandSideAssignment = wasLeftHandAssignment;
-        return null;
+    private boolean isMethodSymbolEligibleForChecking(MethodTree tree, VisitorState state) {
+      if (exemptedByName(tree.getName())) {
+        return false;
       }
-
-      @Override
-      public Void visitMemberReference(MemberReferenceTree tree, Void unused) {
-        super.visitMemberReference(tree, null);
-        MethodSymbol symbol = getSymbol(tree);
-        if (isUsed(symbol)) {
-          unusedElements.remove(symbol);
-        }
-        if (currentExpressionStatement != null && unusedElements.containsKey(symbol)) {
-          usageSites.put(symbol, currentExpressionStatement);
-        }
-        if (symbol != null) {
-          symbol.getParameters().forEach(unusedElements::remove);
-        }
-        return null;
+      // Assume the method is called if annotated with a called-reflectively annotation.
+      if (exemptedByAnnotation(
+          tree.getModifiers().getAnnotations(), EXEMPTING_METHOD_ANNOTATIONS, state)) {
+        return false;
       }
-
-      @Override
-      public Void visitCompoundAssignment(CompoundAssignmentTree tree, Void unused) {
-        if (isInExpressionStatementTree()) {
-          leftHandSideAssignment = true;
-          scan(tree.getVariable(), null);
-          leftHandSideAssignment = false;
-          scan(tree.getExpression(), null);
-        } else {
-          super.visitCompoundAssignment(tree, null);
-        }
-        return null;
+      // Skip constructors and special methods.
+      MethodSymbol methodSymbol = getSymbol(tree);
+      if (methodSymbol == null
+          || methodSymbol.getKind() == ElementKind.CONSTRUCTOR
+          || SPECIAL_METHODS.matches(tree, state)) {
+        return false;
       }
 
-      @Override
-      public Void visitArrayAccess(ArrayAccessTree node, Void unused) {
-        inArrayAccess++;
-        super.visitArrayAccess(node, null);
-        inArrayAccess--;
-        return null;
+      // Ignore this method if the last parameter is a GWT JavaScriptObject.
+      if (!tree.getParameters().isEmpty()) {
+        Type lastParamType = getType(getLast(tree.getParameters()));
+        if (lastParamType != null && lastParamType.toString().equals(GWT_JAVASCRIPT_OBJECT)) {
+          return false;
+        }
       }
 
-      @Override
-      public Void visitReturn(ReturnTree node, Void unused) {
-        inReturnStatement = true;
-        scan(node.getExpression(), null);
-        inReturnStatement = false;
-        return null;
-      }
+      return tree.getModifiers().getFlags().contains(Modifier.PRIVATE);
+    }
 
-      @Override
-      public Void visitUnary(UnaryTree tree, Void unused) {
-        // If unary expression is inside another expression, then this is a real usage of unary
-        // operand.
-        // Example:
-        //   array[i++] = 0; // 'i' has a real usage here. 'array' might not have.
-        //   list.get(i++);
-        // But if it is like this:
-        //   i++;
-        // Then it is possible that this is not a real usage of 'i'.
-        if (isInExpressionStatementTree()
-            && (tree.getKind() == POSTFIX_DECREMENT
-                || tree.getKind() == POSTFIX_INCREMENT
-                || tree.getKind() == PREFIX_DECREMENT
-                || tree.getKind() == PREFIX_INCREMENT)) {
-          leftHandSideAssignment = true;
-          scan(tree.getExpression(), null);
-          leftHandSideAssignment = false;
-        } else {
-          super.visitUnary(tree, null);
-        }
-        return null;
+    private void markUsed(@Nullable Symbol symbol, TreePath path) {
+      if (symbol == null || usedElements.contains(symbol)) {
+        return;
       }
-
-      @Override
-      public Void visitErroneous(ErroneousTree tree, Void unused) {
-        return scan(tree.getErrorTrees(), null);
+      if (inReturnStatement
+          || inArrayAccess > 0
+          || inMethodCall > 0
+          || !isLeftHandSideOfAssignment(path)) {
+        usedElements.add(symbol);
+      } else if (currentExpressionStatement != null) {
+        usageSites.put(symbol, currentExpressionStatement);
       }
+    }
 
-      /**
-       * Looks at method invocations and removes the invoked private methods from {@code
-       * #unusedElements}.
-       */
-      @Override
-      public Void visitMethodInvocation(MethodInvocationTree tree, Void unused) {
-        inMethodCall++;
-        Symbol methodSymbol = getSymbol(tree);
-        if (methodSymbol != null) {
-          unusedElements.remove(methodSymbol);
+    @Override
+    public Description finish(VisitorState state) {
+      if (hasNativeMethods) {
+        // Skipping the analysis of this file because it has native methods.
+        return Description.NO_MATCH;
+      }
+      unusedElements.keySet().removeAll(usedElements);
+      for (TreePath unusedPath : unusedElements.values()) {
+        Tree unused = unusedPath.getLeaf();
+        switch (unused.getKind()) {
+          case VARIABLE:
+            VariableTree unusedVar = (VariableTree) unused;
+            String element;
+            VarSymbol symbol = getSymbol(unusedVar);
+            switch (symbol.getKind()) {
+              case FIELD:
+                element = "Field";
+                break;
+              case LOCAL_VARIABLE:
+                element = "Local variable";
+                break;
+              case PARAMETER:
+                element = "Parameter";
+                break;
+              default:
+                element = "Variable";
+                break;
+            }
+            ImmutableList<SuggestedFix> fixes;
+            switch (symbol.getKind()) {
+              case LOCAL_VARIABLE:
+              case FIELD:
+                fixes = buildUnusedVarFixes(symbol, usageSites.get(symbol), state);
+                break;
+              case PARAMETER:
+                fixes = buildUnusedParameterFixes(symbol, usageSites.get(symbol), state);
+                break;
+              default:
+                fixes = ImmutableList.of();
+            }
+            state.reportMatch(
+                buildDescription(unused)
+                    .setMessage(
+                        String.format("%s '%s' is never read.", element, unusedVar.getName()))
+                    .addAllFixes(fixes)
+                    .build());
+            break;
+          case METHOD:
+            if (ignoreUnusedMethods) {
+              break;
+            }
+            String message =
+                String.format(
+                    "Private method '%s' is never used.", ((MethodTree) unused).getName());
+            state.reportMatch(
+                buildDescription(unused)
+                    .addFix(replaceWithComments(unusedPath, "", state))
+                    .setMessage(message)
+                    .build());
+            break;
+          default:
+            break;
         }
-        super.visitMethodInvocation(tree, null);
-        inMethodCall--;
-        return null;
       }
+      return Description.NO_MATCH;
     }
+  }
 
-    new FilterUsedElements().scan(state.getPath(), null);
-
-    for (TreePath unusedPath : unusedElements.values()) {
-      Tree unused = unusedPath.getLeaf();
-      switch (unused.getKind()) {
-        case VARIABLE:
-          VariableTree unusedVar = (VariableTree) unused;
-          String element;
-          VarSymbol symbol = getSymbol(unusedVar);
-          switch (symbol.getKind()) {
-            case FIELD:
-              element = "Field";
-              break;
-            case LOCAL_VARIABLE:
-              element = "Local variable";
-              break;
-            case PARAMETER:
-              element = "Parameter";
-              break;
-            default:
-              element = "Variable";
-              break;
-          }
-          ImmutableList<SuggestedFix> fixes;
-          switch (symbol.getKind()) {
-            case LOCAL_VARIABLE:
-            case FIELD:
-              fixes = buildUnusedVarFixes(symbol, usageSites.get(symbol), state);
-              break;
-            case PARAMETER:
-              fixes = buildUnusedParameterFixes(symbol, usageSites.get(symbol), state);
-              break;
-            default:
-              fixes = ImmutableList.of();
-          }
-          state.reportMatch(
-              buildDescription(unused)
-                  .setMessage(String.format("%s '%s' is never read.", element, unusedVar.getName()))
-                  .addAllFixes(fixes)
-                  .build());
-          break;
-        case METHOD:
-          if (ignoreUnusedMethods.get()) {
-            break;
+  /**
+   * Returns true if the tree at {@code path} is being assigned to by an expression statement, e.g.
+   * {@code x} in {@code x = 1;} or {@code x++;}, which doesn't count as a usage. The receivers of
+   * member selects, e.g. {@code a} in {@code a.x = 1;}, are used.
+   */
+  private static boolean isLeftHandSideOfAssignment(TreePath path) {
+    for (; path.getParentPath() != null; path = path.getParentPath()) {
+      Tree tree = path.getLeaf();
+      TreePath parentPath = path.getParentPath();
+      Tree parent = parentPath.getLeaf();
+      switch (parent.getKind()) {
+        case MEMBER_SELECT:
+          return false;
+        case POSTFIX_DECREMENT:
+        case POSTFIX_INCREMENT:
+        case PREFIX_DECREMENT:
+        case PREFIX_INCREMENT:
+          if (isInExpressionStatementTree(parentPath)) {
+            return true;
           }
-          String message =
-              String.format("Private method '%s' is never used.", ((MethodTree) unused).getName());
-          state.reportMatch(
-              buildDescription(unused)
-                  .addFix(replaceWithComments(unusedPath, "", state))
-                  .setMessage(message)
-                  .build());
           break;
         default:
-          break;
+          if (parent instanceof AssignmentTree && isInExpressionStatementTree(parentPath)) {
+            return ((AssignmentTree) parent).getVariable() == tree;
+          }
+          if (parent instanceof CompoundAssignmentTree && isInExpressionStatementTree(parentPath)) {
+            return ((CompoundAssignmentTree) parent).getVariable() == tree;
+          }
+          if (!(parent instanceof ExpressionTree)) {
+            return false;
+          }
       }
     }
-    return Description.NO_MATCH;
+    return false;
   }
 
-  private static boolean hasNativeMethods(TreePath path) {
-    AtomicBoolean hasAnyNativeMethods = new AtomicBoolean(false);
-    new TreeScanner<Void, Void>() {
-      @Override
-      public Void visitMethod(MethodTree tree, Void unused) {
-        if (tree.getModifiers().getFlags().contains(Modifier.NATIVE)) {
-          hasAnyNativeMethods.set(true);
-        }
-        return null;
-      }
-    }.scan(path, null);
-    return hasAnyNativeMethods.get();
+  private static boolean isInExpressionStatementTree(TreePath path) {
+    Tree parent = path.getParentPath().getLeaf();
+    return parent != null && parent.getKind() == Kind.EXPRESSION_STATEMENT;
   }
 
   // https://docs.oracle.com/javase/specs/jls/se11/html/jls-14.html#jls-ExpressionStatement
@@ -892,7 +900,8 @@ public final class Unused extends BugChecker implements CompilationUnitTreeMatch
     }
     String source =
         state.getSourceCode().subSequence(startTokenization, state.getEndPosition(tree)).toString();
-    List<ErrorProneToken> tokens = ErrorProneTokens.getTokens(source, state.context);
+    List<ErrorProneToken> tokens =
+        state.getTokensForRange(startTokenization, state.getEndPosition(tree));
     if (tokens.isEmpty() || tokens.get(0).comments().isEmpty()) {
       return SuggestedFix.replace(startTokenization, state.getEndPosition(tree), replacement);
     }
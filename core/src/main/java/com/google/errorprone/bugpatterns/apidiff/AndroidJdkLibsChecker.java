@@ -55,7 +55,7 @@ public class AndroidJdkLibsChecker extends ApiDiffChecker {
   }
 
   private AndroidJdkLibsChecker(boolean allowJava8) {
-    super(deriveApiDiff(allowJava8));
+    super(ApiDiff.lazy(() -> deriveApiDiff(allowJava8)));
   }
 
   private static ApiDiff deriveApiDiff(boolean allowJava8) {
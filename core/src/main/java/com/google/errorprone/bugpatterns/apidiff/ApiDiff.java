@@ -17,15 +17,30 @@
 package com.google.errorprone.bugpatterns.apidiff;
 
 import com.google.auto.value.AutoValue;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.Multimap;
 import com.google.errorprone.bugpatterns.apidiff.ApiDiffProto.Diff;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
-/** The difference between two APIs. */
-@AutoValue
-public abstract class ApiDiff {
+/**
+ * The difference between two APIs.
+ *
+ * <p>The diff is held in a compact index: class names and member descriptors are interned, and each
+ * class's members are stored with a hash of their identifier and descriptor, so that checking a
+ * member doesn't allocate. A diff created with {@link #lazy} is only loaded the first time it's
+ * queried, so a diff that is never used, e.g. because its check is disabled, costs nothing.
+ */
+public final class ApiDiff {
 
   /** A per class unique identifier for a field or method. */
   @AutoValue
@@ -47,54 +62,99 @@ public abstract class ApiDiff {
     }
   }
 
+  private final Supplier<Index> index;
+
+  private ApiDiff(Supplier<Index> index) {
+    this.index = index;
+  }
+
   /** Binary names of classes only present in the new API. */
-  public abstract ImmutableSet<String> unsupportedClasses();
+  public ImmutableSet<String> unsupportedClasses() {
+    return index.get().unsupportedClasses;
+  }
 
   /** Members only present in the new API, grouped by binary name of their declaring class. */
-  public abstract ImmutableSetMultimap<String, ClassMemberKey> unsupportedMembersByClass();
+  public ImmutableSetMultimap<String, ClassMemberKey> unsupportedMembersByClass() {
+    ImmutableSetMultimap.Builder<String, ClassMemberKey> result = ImmutableSetMultimap.builder();
+    index
+        .get()
+        .unsupportedMembers
+        .forEach(
+            (className, members) -> {
+              for (int i = 0; i < members.identifiers.length; i++) {
+                result.put(
+                    className,
+                    ClassMemberKey.create(members.identifiers[i], members.descriptors[i]));
+              }
+            });
+    return result.build();
+  }
 
   /** Returns true if the class with the given binary name is unsupported. */
   boolean isClassUnsupported(String className) {
-    return unsupportedClasses().contains(className);
+    return index.get().unsupportedClasses.contains(className);
+  }
+
+  /**
+   * Returns true if any members of the class with the given binary name are unsupported; if not,
+   * there's no need to compute the descriptors of its members for {@link #isMemberUnsupported}.
+   */
+  boolean hasUnsupportedMembers(String className) {
+    return index.get().unsupportedMembers.containsKey(className);
+  }
+
+  /** Returns true if the member with the given declaring class is unsupported. */
+  boolean isMemberUnsupported(String className, String identifier, String descriptor) {
+    Members members = index.get().unsupportedMembers.get(className);
+    return members != null
+        && (members.contains(identifier, descriptor) || members.contains(identifier, ""));
   }
 
   /** Returns true if the member with the given declaring class is unsupported. */
   boolean isMemberUnsupported(String className, ClassMemberKey memberKey) {
-    return unsupportedMembersByClass().containsEntry(className, memberKey)
-        || unsupportedMembersByClass()
-            .containsEntry(className, ClassMemberKey.create(memberKey.identifier(), ""));
+    return isMemberUnsupported(className, memberKey.identifier(), memberKey.descriptor());
   }
 
   public static ApiDiff fromMembers(
       Set<String> unsupportedClasses, Multimap<String, ClassMemberKey> unsupportedMembersByClass) {
-    return new AutoValue_ApiDiff(
-        ImmutableSet.copyOf(unsupportedClasses),
-        ImmutableSetMultimap.copyOf(unsupportedMembersByClass));
+    Index.Builder index = new Index.Builder();
+    unsupportedClasses.forEach(index::addClass);
+    unsupportedMembersByClass.forEach(
+        (className, member) ->
+            index.addMember(className, member.identifier(), member.descriptor()));
+    return new ApiDiff(Suppliers.ofInstance(index.build()));
   }
 
   /** Converts a {@link Diff} to a {@link ApiDiff}. */
   public static ApiDiff fromProto(Diff diff) {
-    ImmutableSet.Builder<String> unsupportedClasses = ImmutableSet.builder();
-    ImmutableSetMultimap.Builder<String, ClassMemberKey> unsupportedMembersByClass =
-        ImmutableSetMultimap.builder();
+    Index.Builder index = new Index.Builder();
     for (ApiDiffProto.ClassDiff c : diff.getClassDiffList()) {
       switch (c.getDiffCase()) {
         case EVERYTHING_DIFF:
-          unsupportedClasses.add(c.getEverythingDiff().getClassName());
+          index.addClass(c.getEverythingDiff().getClassName());
           break;
         case MEMBER_DIFF:
           ApiDiffProto.MemberDiff memberDiff = c.getMemberDiff();
           for (ApiDiffProto.ClassMember member : memberDiff.getMemberList()) {
-            unsupportedMembersByClass.put(
-                memberDiff.getClassName(),
-                ClassMemberKey.create(member.getIdentifier(), member.getMemberDescriptor()));
+            index.addMember(
+                memberDiff.getClassName(), member.getIdentifier(), member.getMemberDescriptor());
           }
           break;
         default:
           throw new AssertionError(c.getDiffCase());
       }
     }
-    return new AutoValue_ApiDiff(unsupportedClasses.build(), unsupportedMembersByClass.build());
+    return new ApiDiff(Suppliers.ofInstance(index.build()));
+  }
+
+  /**
+   * Returns a diff that is loaded from {@code diff} the first time it's queried, and then kept.
+   *
+   * <p>Checks that enforce a diff read from a resource, e.g. a {@link Diff} proto for a platform
+   * baseline, should use this so that the resource is only read and indexed if the check runs.
+   */
+  public static ApiDiff lazy(Supplier<ApiDiff> diff) {
+    return new ApiDiff(Suppliers.memoize(() -> diff.get().index.get()));
   }
 
   /** Converts a {@link ApiDiff} to a {@link ApiDiffProto.Diff}. */
@@ -105,10 +165,12 @@ public abstract class ApiDiff {
           ApiDiffProto.ClassDiff.newBuilder()
               .setEverythingDiff(ApiDiffProto.EverythingDiff.newBuilder().setClassName(className)));
     }
-    for (String className : unsupportedMembersByClass().keySet()) {
+    ImmutableSetMultimap<String, ClassMemberKey> unsupportedMembersByClass =
+        unsupportedMembersByClass();
+    for (String className : unsupportedMembersByClass.keySet()) {
       ApiDiffProto.MemberDiff.Builder memberDiff =
           ApiDiffProto.MemberDiff.newBuilder().setClassName(className);
-      for (ClassMemberKey member : unsupportedMembersByClass().get(className)) {
+      for (ClassMemberKey member : unsupportedMembersByClass.get(className)) {
         memberDiff.addMember(
             ApiDiffProto.ClassMember.newBuilder()
                 .setIdentifier(member.identifier())
@@ -118,4 +180,139 @@ public abstract class ApiDiff {
     }
     return builder.build();
   }
+
+  /** Diffs are equal if they have the same unsupported classes and members. */
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (!(o instanceof ApiDiff)) {
+      return false;
+    }
+    ApiDiff that = (ApiDiff) o;
+    return unsupportedClasses().equals(that.unsupportedClasses())
+        && unsupportedMembersByClass().equals(that.unsupportedMembersByClass());
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(unsupportedClasses(), unsupportedMembersByClass());
+  }
+
+  @Override
+  public String toString() {
+    return "ApiDiff{unsupportedClasses="
+        + unsupportedClasses()
+        + ", unsupportedMembersByClass="
+        + unsupportedMembersByClass()
+        + "}";
+  }
+
+  /** The unsupported classes, and the unsupported members of each class. */
+  private static final class Index {
+    final ImmutableSet<String> unsupportedClasses;
+    final ImmutableMap<String, Members> unsupportedMembers;
+
+    private Index(
+        ImmutableSet<String> unsupportedClasses, ImmutableMap<String, Members> unsupportedMembers) {
+      this.unsupportedClasses = unsupportedClasses;
+      this.unsupportedMembers = unsupportedMembers;
+    }
+
+    static final class Builder {
+      /** Interns class names and descriptors, which are repeated many times in a diff. */
+      private final Map<String, String> strings = new HashMap<>();
+
+      private final Set<String> classes = new LinkedHashSet<>();
+      private final Map<String, Members.Builder> members = new LinkedHashMap<>();
+
+      private String intern(String string) {
+        String existing = strings.putIfAbsent(string, string);
+        return existing != null ? existing : string;
+      }
+
+      void addClass(String className) {
+        classes.add(intern(className));
+      }
+
+      void addMember(String className, String identifier, String descriptor) {
+        members
+            .computeIfAbsent(intern(className), c -> new Members.Builder())
+            .add(intern(identifier), intern(descriptor));
+      }
+
+      Index build() {
+        ImmutableMap.Builder<String, Members> result = ImmutableMap.builder();
+        members.forEach((className, builder) -> result.put(className, builder.build()));
+        return new Index(ImmutableSet.copyOf(classes), result.build());
+      }
+    }
+  }
+
+  /**
+   * The unsupported members of a class, as parallel arrays of identifiers, descriptors, and the
+   * hashes of both. Classes only have a few unsupported members, so they're searched linearly.
+   */
+  private static final class Members {
+    final int[] hashes;
+    final String[] identifiers;
+    final String[] descriptors;
+
+    private Members(int[] hashes, String[] identifiers, String[] descriptors) {
+      this.hashes = hashes;
+      this.identifiers = identifiers;
+      this.descriptors = descriptors;
+    }
+
+    static int hash(String identifier, String descriptor) {
+      return 31 * identifier.hashCode() + descriptor.hashCode();
+    }
+
+    boolean contains(String identifier, String descriptor) {
+      int hash = hash(identifier, descriptor);
+      for (int i = 0; i < hashes.length; i++) {
+        if (hashes[i] == hash
+            && identifiers[i].equals(identifier)
+            && descriptors[i].equals(descriptor)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    static final class Builder {
+      private int size;
+      private int[] hashes = new int[4];
+      private String[] identifiers = new String[4];
+      private String[] descriptors = new String[4];
+
+      void add(String identifier, String descriptor) {
+        int hash = hash(identifier, descriptor);
+        for (int i = 0; i < size; i++) {
+          if (hashes[i] == hash
+              && identifiers[i].equals(identifier)
+              && descriptors[i].equals(descriptor)) {
+            return;
+          }
+        }
+        if (size == hashes.length) {
+          hashes = Arrays.copyOf(hashes, size * 2);
+          identifiers = Arrays.copyOf(identifiers, size * 2);
+          descriptors = Arrays.copyOf(descriptors, size * 2);
+        }
+        hashes[size] = hash;
+        identifiers[size] = identifier;
+        descriptors[size] = descriptor;
+        size++;
+      }
+
+      Members build() {
+        return new Members(
+            Arrays.copyOf(hashes, size),
+            Arrays.copyOf(identifiers, size),
+            Arrays.copyOf(descriptors, size));
+      }
+    }
+  }
 }
@@ -22,7 +22,6 @@ import com.google.errorprone.VisitorState;
 import com.google.errorprone.bugpatterns.BugChecker;
 import com.google.errorprone.bugpatterns.BugChecker.IdentifierTreeMatcher;
 import com.google.errorprone.bugpatterns.BugChecker.MemberSelectTreeMatcher;
-import com.google.errorprone.bugpatterns.apidiff.ApiDiff.ClassMemberKey;
 import com.google.errorprone.matchers.Description;
 import com.google.errorprone.util.ASTHelpers;
 import com.google.errorprone.util.Signatures;
@@ -91,11 +90,12 @@ public abstract class ApiDiffChecker extends BugChecker
     if (!(sym instanceof VarSymbol || sym instanceof MethodSymbol)) {
       return Description.NO_MATCH;
     }
-    ClassMemberKey memberKey =
-        ClassMemberKey.create(
-            sym.getSimpleName().toString(), Signatures.descriptor(sym.type, types));
     ClassSymbol owner = sym.owner.enclClass();
-    if (apiDiff.isMemberUnsupported(Signatures.classDescriptor(owner.type, types), memberKey)
+    String ownerName = Signatures.classDescriptor(owner.type, types);
+    // most classes have no unsupported members, so only compute the descriptor if this one does
+    if ((apiDiff.hasUnsupportedMembers(ownerName)
+            && apiDiff.isMemberUnsupported(
+                ownerName, sym.getSimpleName().toString(), Signatures.descriptor(sym.type, types)))
         || hasAnnotationForbiddingUse(sym, state)) {
       return buildDescription(tree)
           .setMessage(String.format("%s#%s is not available in %s", owner, sym, receiver))
@@ -38,7 +38,7 @@ import java.io.UncheckedIOException;
     })
 public class Java7ApiChecker extends ApiDiffChecker {
 
-  static final ApiDiff API_DIFF = loadApiDiff();
+  static final ApiDiff API_DIFF = ApiDiff.lazy(Java7ApiChecker::loadApiDiff);
 
   private static ApiDiff loadApiDiff() {
     try {
@@ -18,6 +18,10 @@ package com.google.errorprone.bugpatterns.argumentselectiondefects;
 
 import com.google.auto.value.AutoValue;
 import com.google.common.collect.ImmutableList;
+import com.google.errorprone.VisitorState;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.tools.javac.code.Type;
+import java.util.List;
 import java.util.function.Function;
 
 /**
@@ -82,29 +86,56 @@ abstract class ArgumentChangeFinder {
       return Changes.empty();
     }
 
+    VisitorState state = invocationInfo.state();
     ImmutableList<Parameter> formals =
-        Parameter.createListFromVarSymbols(invocationInfo.formalParameters());
-    ImmutableList<Parameter> actuals =
-        Parameter.createListFromExpressionTrees(
-            invocationInfo.actualParameters().subList(0, invocationInfo.formalParameters().size()));
-
-    Costs costs = new Costs(formals, actuals);
-
-    /* Set the distance between a pair to Inf if not assignable */
-    costs
-        .viablePairs()
-        .filter(ParameterPair::isAlternativePairing)
-        .filter(p -> !p.actual().isAssignableTo(p.formal(), invocationInfo.state()))
-        .forEach(p -> costs.invalidatePair(p));
+        FormalParameterCache.instance(state.context)
+            .formals(invocationInfo.symbol(), invocationInfo.formalParameters());
+    int size = formals.size();
+    List<? extends ExpressionTree> arguments = invocationInfo.actualParameters().subList(0, size);
+
+    /* Find which arguments are assignable to which other formal parameters. This only needs the
+    types of the arguments, so it's done before working out their names, which is more expensive */
+    Type[] argumentTypes = new Type[size];
+    for (int actual = 0; actual < size; actual++) {
+      argumentTypes[actual] = Parameter.getArgumentType(arguments.get(actual));
+    }
+    boolean[][] assignable = new boolean[size][size];
+    boolean anyAssignable = false;
+    for (int formal = 0; formal < size; formal++) {
+      for (int actual = 0; actual < size; actual++) {
+        if (formal != actual
+            && Parameter.isAssignable(argumentTypes[actual], formals.get(formal).type(), state)) {
+          assignable[formal][actual] = true;
+          anyAssignable = true;
+        }
+      }
+    }
 
     /* If there are no formal parameters which are assignable to any alternative actual parameters
     then we can stop without trying to look for permutations */
-    if (costs.viablePairs().noneMatch(ParameterPair::isAlternativePairing)) {
+    if (!anyAssignable) {
       return Changes.empty();
     }
 
-    /* Set the lexical distance between pairs */
-    costs.viablePairs().forEach(p -> costs.updatePair(p, distanceFunction().apply(p)));
+    ImmutableList<Parameter> actuals = Parameter.createListFromExpressionTrees(arguments);
+
+    Costs costs = new Costs(formals, actuals);
+
+    for (int formal = 0; formal < size; formal++) {
+      for (int actual = 0; actual < size; actual++) {
+        if (formal == actual || assignable[formal][actual]) {
+          /* Set the lexical distance between pairs */
+          costs.updatePair(
+              formal,
+              actual,
+              distanceFunction()
+                  .apply(ParameterPair.create(formals.get(formal), actuals.get(actual))));
+        } else {
+          /* Set the distance between a pair to Inf if not assignable */
+          costs.invalidatePair(formal, actual);
+        }
+      }
+    }
 
     Changes changes = costs.computeAssignments();
 
@@ -16,11 +16,8 @@
 
 package com.google.errorprone.bugpatterns.argumentselectiondefects;
 
-import static com.google.common.collect.ImmutableList.toImmutableList;
-
 import blogspot.software_and_algorithms.stern_library.optimization.HungarianAlgorithm;
 import com.google.common.collect.ImmutableList;
-import java.util.stream.Stream;
 
 /**
  * Accumulates the various costs of using existing arguments or alternatives. These are modelled as
@@ -54,44 +51,22 @@ class Costs {
 
   Changes computeAssignments() {
     int[] assignments = new HungarianAlgorithm(costMatrix).execute();
-    ImmutableList<Parameter> formalsWithChange =
-        formals.stream()
-            .filter(f -> assignments[f.index()] != f.index())
-            .collect(toImmutableList());
-
-    if (formalsWithChange.isEmpty()) {
+    ImmutableList.Builder<Double> originalCost = ImmutableList.builder();
+    ImmutableList.Builder<Double> assignmentCost = ImmutableList.builder();
+    ImmutableList.Builder<ParameterPair> changes = ImmutableList.builder();
+    for (int formal = 0; formal < formals.size(); formal++) {
+      int actual = assignments[formal];
+      if (actual != formal) {
+        originalCost.add(costMatrix[formal][formal]);
+        assignmentCost.add(costMatrix[formal][actual]);
+        changes.add(ParameterPair.create(formals.get(formal), actuals.get(actual)));
+      }
+    }
+    ImmutableList<ParameterPair> changedPairs = changes.build();
+    if (changedPairs.isEmpty()) {
       return Changes.empty();
     }
-
-    ImmutableList<Double> originalCost =
-        formalsWithChange.stream()
-            .map(f2 -> costMatrix[f2.index()][f2.index()])
-            .collect(toImmutableList());
-
-    ImmutableList<Double> assignmentCost =
-        formalsWithChange.stream()
-            .map(f1 -> costMatrix[f1.index()][assignments[f1.index()]])
-            .collect(toImmutableList());
-
-    ImmutableList<ParameterPair> changes =
-        formalsWithChange.stream()
-            .map(f -> ParameterPair.create(f, actuals.get(assignments[f.index()])))
-            .collect(toImmutableList());
-
-    return Changes.create(originalCost, assignmentCost, changes);
-  }
-
-  /**
-   * Constructs a stream for every element of formals paired with every element of actuals (cross
-   * product). Each item contains the formal and the actual, which in turn contain their index into
-   * the cost matrix. Elements whose cost is Inf in the cost matrix are filtered out so only viable
-   * pairings remain.
-   */
-  Stream<ParameterPair> viablePairs() {
-    return formals.stream()
-        .flatMap(f -> actuals.stream().map(a -> ParameterPair.create(f, a)))
-        .filter(
-            p -> costMatrix[p.formal().index()][p.actual().index()] != Double.POSITIVE_INFINITY);
+    return Changes.create(originalCost.build(), assignmentCost.build(), changedPairs);
   }
 
   /** Set the cost of all the alternatives for this formal parameter to be Inf. */
@@ -103,14 +78,14 @@ class Costs {
     }
   }
 
-  /** Update the cost of the given pairing. */
-  void updatePair(ParameterPair p, double cost) {
-    costMatrix[p.formal().index()][p.actual().index()] = cost;
+  /** Update the cost of the pairing of the given formal and actual parameter indices. */
+  void updatePair(int formal, int actual, double cost) {
+    costMatrix[formal][actual] = cost;
   }
 
   /** Set the cost of this pairing to be Inf. */
-  void invalidatePair(ParameterPair p) {
-    updatePair(p, Double.POSITIVE_INFINITY);
+  void invalidatePair(int formal, int actual) {
+    updatePair(formal, actual, Double.POSITIVE_INFINITY);
   }
 
   @Override
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.bugpatterns.argumentselectiondefects;
+
+import com.google.common.collect.ImmutableList;
+import com.google.errorprone.CheckProfiler;
+import com.google.errorprone.SubContext;
+import com.sun.tools.javac.code.Symbol.MethodSymbol;
+import com.sun.tools.javac.code.Symbol.VarSymbol;
+import com.sun.tools.javac.util.Context;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The formal {@link Parameter}s of the methods invoked in a compilation, shared by every check and
+ * compilation unit in a javac task.
+ *
+ * <p>A method is usually invoked many times, and the parameters memoize their normalized names, so
+ * reusing them means each name is only split into terms once. The cache is stored in the base
+ * context of the task, see {@link SubContext#base}.
+ */
+final class FormalParameterCache {
+
+  static FormalParameterCache instance(Context context) {
+    Context base = SubContext.base(context);
+    FormalParameterCache cache = base.get(FormalParameterCache.class);
+    if (cache == null) {
+      cache = new FormalParameterCache(CheckProfiler.instance(base));
+      base.put(FormalParameterCache.class, cache);
+    }
+    return cache;
+  }
+
+  private final Map<MethodSymbol, ImmutableList<Parameter>> formals = new HashMap<>();
+  private final CheckProfiler.CacheStats stats;
+
+  private FormalParameterCache(CheckProfiler profiler) {
+    this.stats = profiler.cacheStats("FormalParameters");
+  }
+
+  /**
+   * Returns the formal parameters of {@code method}, given the symbols of the parameters that are
+   * checked, which only depend on the method.
+   */
+  ImmutableList<Parameter> formals(MethodSymbol method, List<VarSymbol> parameters) {
+    ImmutableList<Parameter> result = formals.get(method);
+    if (result != null) {
+      stats.hit();
+      return result;
+    }
+    stats.miss();
+    result = Parameter.createListFromVarSymbols(parameters);
+    formals.put(method, result);
+    return result;
+  }
+}
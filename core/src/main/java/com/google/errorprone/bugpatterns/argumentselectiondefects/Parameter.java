@@ -19,6 +19,7 @@ package com.google.errorprone.bugpatterns.argumentselectiondefects;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 
 import com.google.auto.value.AutoValue;
+import com.google.auto.value.extension.memoized.Memoized;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
@@ -95,7 +96,7 @@ abstract class Parameter {
             (t, i) ->
                 new AutoValue_Parameter(
                     getArgumentName(t),
-                    Optional.ofNullable(ASTHelpers.getResultType(t)).orElse(Type.noType),
+                    getArgumentType(t),
                     (int) i,
                     t.toString(),
                     t.getKind(),
@@ -113,12 +114,20 @@ abstract class Parameter {
    * subclassing, autoboxing and null.
    */
   boolean isAssignableTo(Parameter target, VisitorState state) {
-    if (state.getTypes().isSameType(type(), Type.noType)
-        || state.getTypes().isSameType(target.type(), Type.noType)) {
+    return isAssignable(type(), target.type(), state);
+  }
+
+  /**
+   * Return true if a value of type {@code type} is assignable to {@code target}, as {@link
+   * #isAssignableTo} does for the types of two parameters.
+   */
+  static boolean isAssignable(Type type, Type target, VisitorState state) {
+    if (state.getTypes().isSameType(type, Type.noType)
+        || state.getTypes().isSameType(target, Type.noType)) {
       return false;
     }
     try {
-      return state.getTypes().isAssignable(type(), target.type());
+      return state.getTypes().isAssignable(type, target);
     } catch (CompletionFailure e) {
       // Report completion errors to avoid e.g. https://github.com/bazelbuild/bazel/issues/4105
       Check.instance(state.context)
@@ -127,6 +136,21 @@ abstract class Parameter {
     }
   }
 
+  /** The type of an argument, or {@code Type.noType} if it doesn't have one. */
+  static Type getArgumentType(ExpressionTree tree) {
+    return Optional.ofNullable(ASTHelpers.getResultType(tree)).orElse(Type.noType);
+  }
+
+  /**
+   * The name in lower underscore case, e.g. {@code foo_bar} for {@code fooBar}. This is memoized
+   * since splitting a name into terms is relatively expensive, and the formal parameters of a
+   * method are shared between its invocations.
+   */
+  @Memoized
+  String lowerUnderscoreName() {
+    return NamingConventions.convertToLowerUnderscore(name());
+  }
+
   boolean isNullLiteral() {
     return name().equals(NAME_NULL);
   }
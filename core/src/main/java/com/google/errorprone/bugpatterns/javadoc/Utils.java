@@ -16,7 +16,7 @@
 
 package com.google.errorprone.bugpatterns.javadoc;
 
-import static com.google.errorprone.names.LevenshteinEditDistance.getEditDistance;
+import static com.google.errorprone.names.LevenshteinEditDistance.getBoundedEditDistance;
 
 import com.google.errorprone.VisitorState;
 import com.google.errorprone.fixes.SuggestedFix;
@@ -45,7 +45,8 @@ final class Utils {
     String bestMatch = null;
     int minDistance = Integer.MAX_VALUE;
     for (String choice : choices) {
-      int distance = getEditDistance(to, choice);
+      // distances of EDIT_LIMIT and above are never a match, so there is no need to compute them
+      int distance = getBoundedEditDistance(to, choice, /* caseSensitive= */ true, EDIT_LIMIT - 1);
       if (distance < minDistance && distance < EDIT_LIMIT) {
         bestMatch = choice;
         minDistance = distance;
@@ -143,10 +143,9 @@ public class ImmutableAnalysis {
               immutableTyParams, interfaceAnnotation, interfaceType);
       if (info.isPresent()) {
         return info.plus(
-            String.format(
-                "'%s' extends '%s'",
-                threadSafety.getPrettyName(type.tsym),
-                threadSafety.getPrettyName(interfaceType.tsym)));
+            "'%s' extends '%s'",
+            Violation.lazy(() -> threadSafety.getPrettyName(type.tsym)),
+            Violation.lazy(() -> threadSafety.getPrettyName(interfaceType.tsym)));
       }
     }
 
@@ -160,9 +159,9 @@ public class ImmutableAnalysis {
     Type mutableEnclosing = threadSafety.mutableEnclosingInstance(tree, type);
     if (mutableEnclosing != null) {
       return info.plus(
-          String.format(
-              "'%s' has mutable enclosing instance '%s'",
-              threadSafety.getPrettyName(type.tsym), mutableEnclosing));
+          "'%s' has mutable enclosing instance '%s'",
+          Violation.lazy(() -> threadSafety.getPrettyName(type.tsym)),
+          mutableEnclosing);
     }
     return Violation.absent();
   }
@@ -179,10 +178,6 @@ public class ImmutableAnalysis {
     }
 
     AnnotationInfo superannotation = getImmutableAnnotation(superType.tsym, state);
-    String message =
-        String.format(
-            "'%s' extends '%s'",
-            threadSafety.getPrettyName(type.tsym), threadSafety.getPrettyName(superType.tsym));
     if (superannotation != null) {
       // If the superclass does happen to be immutable, we don't need to recursively
       // inspect it. We just have to check that it's instantiated correctly:
@@ -191,7 +186,10 @@ public class ImmutableAnalysis {
       if (!info.isPresent()) {
         return Violation.absent();
       }
-      return info.plus(message);
+      return info.plus(
+          "'%s' extends '%s'",
+          Violation.lazy(() -> threadSafety.getPrettyName(type.tsym)),
+          Violation.lazy(() -> threadSafety.getPrettyName(superType.tsym)));
     }
 
     // Recursive case: check if the supertype is 'effectively' immutable.
@@ -210,7 +208,10 @@ public class ImmutableAnalysis {
     if (!info.isPresent()) {
       return Violation.absent();
     }
-    return info.plus(message);
+    return info.plus(
+        "'%s' extends '%s'",
+        Violation.lazy(() -> threadSafety.getPrettyName(type.tsym)),
+        Violation.lazy(() -> threadSafety.getPrettyName(superType.tsym)));
   }
 
   /**
@@ -276,9 +277,9 @@ public class ImmutableAnalysis {
 
       Violation info =
           Violation.of(
-              String.format(
-                  "'%s' has non-final field '%s'",
-                  threadSafety.getPrettyName(classSym), var.getSimpleName()));
+              "'%s' has non-final field '%s'",
+              Violation.lazy(() -> threadSafety.getPrettyName(classSym)),
+              var.getSimpleName());
       if (tree.isPresent()) {
         // If we have a tree to attach diagnostics to, report the error immediately instead of
         // accumulating the path to the error from the top-level class being checked
@@ -296,9 +297,10 @@ public class ImmutableAnalysis {
     if (info.isPresent()) {
       info =
           info.plus(
-              String.format(
-                  "'%s' has field '%s' of type '%s'",
-                  threadSafety.getPrettyName(classSym), var.getSimpleName(), varType));
+              "'%s' has field '%s' of type '%s'",
+              Violation.lazy(() -> threadSafety.getPrettyName(classSym)),
+              var.getSimpleName(),
+              varType);
       if (tree.isPresent()) {
         // If we have a tree to attach diagnostics to, report the error immediately instead of
         // accumulating the path to the error from the top-level class being checked
@@ -315,8 +317,7 @@ public class ImmutableAnalysis {
    * symbol or from the list of well-known immutable types.
    */
   AnnotationInfo getImmutableAnnotation(Symbol sym, VisitorState state) {
-    String nameStr = sym.flatName().toString();
-    AnnotationInfo known = wellKnownMutability.getKnownImmutableClasses().get(nameStr);
+    AnnotationInfo known = wellKnownMutability.getKnownSafeClass(sym, state);
     if (known != null) {
       return known;
     }
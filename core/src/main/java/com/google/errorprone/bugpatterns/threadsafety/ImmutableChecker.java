@@ -77,6 +77,8 @@ public class ImmutableChecker extends BugChecker
 
   private final WellKnownMutability wellKnownMutability;
   private final ImmutableSet<String> immutableAnnotations;
+  /** Whether to write the classes that are verified to be immutable to a MutabilitySummary. */
+  private final boolean writeClasspathSummary;
 
   @Deprecated // Used reflectively, but you should pass in ErrorProneFlags to get custom mutability
   public ImmutableChecker() {
@@ -94,6 +96,7 @@ public class ImmutableChecker extends BugChecker
   private ImmutableChecker(ErrorProneFlags flags, ImmutableSet<String> immutableAnnotations) {
     this.wellKnownMutability = WellKnownMutability.fromFlags(flags);
     this.immutableAnnotations = immutableAnnotations;
+    this.writeClasspathSummary = flags.getBoolean("Immutable:WriteClasspathSummary").orElse(false);
   }
 
   // check instantiations of `@ImmutableTypeParameter`s in method references
@@ -227,15 +230,25 @@ public class ImmutableChecker extends BugChecker
 
     ClassSymbol sym = ASTHelpers.getSymbol(tree);
 
+    // violations in fields are reported as they're found, rather than returned
+    boolean[] reported = {false};
     Violation info =
         analysis.checkForImmutability(
             Optional.of(tree),
             immutableTypeParametersInScope(ASTHelpers.getSymbol(tree), state, analysis),
             ASTHelpers.getType(tree),
-            (Tree matched, Violation violation) ->
-                describeClass(matched, sym, annotation, violation));
+            (Tree matched, Violation violation) -> {
+              reported[0] = true;
+              return describeClass(matched, sym, annotation, violation);
+            });
 
     if (!info.isPresent()) {
+      if (writeClasspathSummary
+          && !reported[0]
+          && !sym.isLocal()
+          && sym.getQualifiedName().contentEquals(annotation.typeName())) {
+        MutabilitySummary.recordVerified(state.context, sym, annotation);
+      }
       return NO_MATCH;
     }
 
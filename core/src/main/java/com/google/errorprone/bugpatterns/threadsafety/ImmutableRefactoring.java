@@ -20,11 +20,13 @@ import static com.google.errorprone.BugPattern.SeverityLevel.SUGGESTION;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
 import com.google.errorprone.BugPattern;
 import com.google.errorprone.BugPattern.ProvidesFix;
 import com.google.errorprone.VisitorState;
 import com.google.errorprone.bugpatterns.BugChecker;
-import com.google.errorprone.bugpatterns.BugChecker.CompilationUnitTreeMatcher;
+import com.google.errorprone.bugpatterns.BugChecker.CompilationUnitTraversal;
+import com.google.errorprone.bugpatterns.BugChecker.CompilationUnitTraversalMatcher;
 import com.google.errorprone.fixes.SuggestedFix;
 import com.google.errorprone.matchers.Description;
 import com.google.errorprone.util.ASTHelpers;
@@ -32,9 +34,10 @@ import com.sun.source.tree.ClassTree;
 import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.tree.ImportTree;
 import com.sun.source.tree.NewClassTree;
-import com.sun.source.util.TreePathScanner;
+import com.sun.source.tree.Tree;
 import com.sun.tools.javac.code.Symbol;
 import java.util.Optional;
+import java.util.Set;
 
 /** @author cushon@google.com (Liam Miller-Cushon) */
 @BugPattern(
@@ -42,15 +45,24 @@ import java.util.Optional;
     summary = "Refactors uses of the JSR 305 @Immutable to Error Prone's annotation",
     severity = SUGGESTION,
     providesFix = ProvidesFix.REQUIRES_HUMAN_ATTENTION)
-public class ImmutableRefactoring extends BugChecker implements CompilationUnitTreeMatcher {
+public class ImmutableRefactoring extends BugChecker
+    implements CompilationUnitTraversalMatcher {
+
+  private static final ImmutableSet<Tree.Kind> TRAVERSAL_KINDS =
+      Sets.immutableEnumSet(
+          Tree.Kind.CLASS,
+          Tree.Kind.INTERFACE,
+          Tree.Kind.ENUM,
+          Tree.Kind.ANNOTATION_TYPE,
+          Tree.Kind.NEW_CLASS);
 
   @Override
-  public Description matchCompilationUnit(CompilationUnitTree tree, VisitorState state) {
-    ImmutableChecker immutableChecker =
-        new ImmutableChecker(
-            ImmutableSet.of(
-                javax.annotation.concurrent.Immutable.class.getName(),
-                com.google.errorprone.annotations.Immutable.class.getName()));
+  public Set<Tree.Kind> traversalKinds() {
+    return TRAVERSAL_KINDS;
+  }
+
+  @Override
+  public CompilationUnitTraversal startTraversal(CompilationUnitTree tree, VisitorState state) {
     Optional<? extends ImportTree> immutableImport =
         tree.getImports().stream()
             .filter(
@@ -62,45 +74,58 @@ public class ImmutableRefactoring extends BugChecker implements CompilationUnitT
                 })
             .findFirst();
     if (!immutableImport.isPresent()) {
-      return Description.NO_MATCH;
+      return null;
     }
-    boolean[] ok = {true};
-    new TreePathScanner<Void, Void>() {
-      @Override
-      public Void visitClass(ClassTree node, Void unused) {
-        if (immutableChecker.matchClass(node, createVisitorState().withPath(getCurrentPath()))
-            != Description.NO_MATCH) {
-          ok[0] = false;
-        }
-        return super.visitClass(node, null);
-      }
+    return new ImmutableTraversal(immutableImport.get(), state);
+  }
 
-      @Override
-      public Void visitNewClass(NewClassTree node, Void unused) {
-        if (immutableChecker.matchNewClass(node, createVisitorState().withPath(getCurrentPath()))
-            != Description.NO_MATCH) {
-          ok[0] = false;
-        }
-        return super.visitNewClass(node, null);
+  private final class ImmutableTraversal implements CompilationUnitTraversal {
+    private final ImmutableChecker immutableChecker =
+        new ImmutableChecker(
+            ImmutableSet.of(
+                javax.annotation.concurrent.Immutable.class.getName(),
+                com.google.errorprone.annotations.Immutable.class.getName()));
+    private final ImportTree immutableImport;
+    private final VisitorState checkerState;
+    private boolean ok = true;
+
+    ImmutableTraversal(ImportTree immutableImport, VisitorState state) {
+      this.immutableImport = immutableImport;
+      this.checkerState =
+          new VisitorState(
+              state.context,
+              (Description description) -> ok = false,
+              ImmutableMap.of(),
+              state.errorProneOptions());
+    }
+
+    @Override
+    public void enter(Tree tree, VisitorState state) {
+      if (!ok) {
+        return;
       }
+      VisitorState stateWithPath = checkerState.withPath(state.getPath());
+      Description description =
+          tree instanceof ClassTree
+              ? immutableChecker.matchClass((ClassTree) tree, stateWithPath)
+              : immutableChecker.matchNewClass((NewClassTree) tree, stateWithPath);
+      if (description != Description.NO_MATCH) {
+        ok = false;
+      }
+    }
 
-      private VisitorState createVisitorState() {
-        return new VisitorState(
-            state.context,
-            (Description description) -> ok[0] = false,
-            ImmutableMap.of(),
-            state.errorProneOptions());
+    @Override
+    public Description finish(VisitorState state) {
+      if (!ok) {
+        // TODO(cushon): replace non-compliant @Immutable annotations with javadoc
+        return Description.NO_MATCH;
       }
-    }.scan(state.getPath(), null);
-    if (!ok[0]) {
-      // TODO(cushon): replace non-compliant @Immutable annotations with javadoc
-      return Description.NO_MATCH;
+      return describeMatch(
+          immutableImport,
+          SuggestedFix.builder()
+              .removeImport(javax.annotation.concurrent.Immutable.class.getName())
+              .addImport(com.google.errorprone.annotations.Immutable.class.getName())
+              .build());
     }
-    return describeMatch(
-        immutableImport.get(),
-        SuggestedFix.builder()
-            .removeImport(javax.annotation.concurrent.Immutable.class.getName())
-            .addImport(com.google.errorprone.annotations.Immutable.class.getName())
-            .build());
   }
 }
@@ -0,0 +1,338 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.bugpatterns.threadsafety;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.errorprone.SubContext;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import com.sun.tools.javac.api.BasicJavacTask;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.code.Symbol.TypeVariableSymbol;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Log;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+import javax.tools.FileObject;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Precomputed mutability of the classes in a library, so that compilations that depend on the
+ * library can look them up instead of analyzing them.
+ *
+ * <p>A library lists its classes in a {@code META-INF/errorprone/immutable-types} resource. Each
+ * line is either:
+ *
+ * <ul>
+ *   <li>{@code immutable <binary name> [<type parameter>...]}: the class is immutable, and is a
+ *       container of the listed type parameters, like a class annotated with
+ *       {@code @Immutable(containerOf=...)};
+ *   <li>{@code mutable <binary name>}: the class is mutable.
+ * </ul>
+ *
+ * <p>Blank lines and lines starting with {@code #} are ignored. If several summaries on the
+ * classpath describe a class, the first one is used.
+ *
+ * <p>A summary is only trusted for the classes that are loaded from the same classpath entry, so
+ * that a library can't declare the mutability of another library's classes, and an entry is
+ * ignored if it names type parameters the class doesn't declare. {@link ImmutableChecker} writes
+ * the summary of the classes it has verified to the class output when {@code
+ * -XepOpt:Immutable:WriteClasspathSummary} is passed.
+ */
+public final class MutabilitySummary {
+
+  /** The name of the resource that holds the summary of a library. */
+  public static final String RESOURCE_NAME = "META-INF/errorprone/immutable-types";
+
+  private static final MutabilitySummary EMPTY =
+      new MutabilitySummary(ImmutableMap.of(), ImmutableSet.of(), ImmutableMap.of());
+
+  private static final Splitter WHITESPACE = Splitter.onPattern("\\s+").omitEmptyStrings();
+
+  private final ImmutableMap<String, AnnotationInfo> immutableClasses;
+  private final ImmutableSet<String> mutableClasses;
+  /** The URI of the classpath entry whose summary describes each class, by binary name. */
+  private final ImmutableMap<String, String> classpathEntries;
+
+  private MutabilitySummary(
+      ImmutableMap<String, AnnotationInfo> immutableClasses,
+      ImmutableSet<String> mutableClasses,
+      ImmutableMap<String, String> classpathEntries) {
+    this.immutableClasses = immutableClasses;
+    this.mutableClasses = mutableClasses;
+    this.classpathEntries = classpathEntries;
+  }
+
+  /** Classes that are known to be immutable, by binary name. */
+  public ImmutableMap<String, AnnotationInfo> immutableClasses() {
+    return immutableClasses;
+  }
+
+  /** Classes that are known to be mutable, by binary name. */
+  public ImmutableSet<String> mutableClasses() {
+    return mutableClasses;
+  }
+
+  /**
+   * Returns the annotation info of {@code sym} if the summary of the classpath entry it was loaded
+   * from declares it immutable, or else null.
+   */
+  @Nullable
+  AnnotationInfo immutableClass(ClassSymbol sym) {
+    String className = sym.flatName().toString();
+    AnnotationInfo info = immutableClasses.get(className);
+    if (info == null || !isFromClasspathEntry(sym, className)) {
+      return null;
+    }
+    Set<String> typeParameters = new HashSet<>();
+    for (TypeVariableSymbol typeParameter : sym.getTypeParameters()) {
+      typeParameters.add(typeParameter.getSimpleName().toString());
+    }
+    return typeParameters.containsAll(info.containerOf()) ? info : null;
+  }
+
+  /**
+   * Returns true if the summary of the classpath entry {@code sym} was loaded from declares it
+   * mutable.
+   */
+  boolean isMutableClass(ClassSymbol sym) {
+    String className = sym.flatName().toString();
+    return mutableClasses.contains(className) && isFromClasspathEntry(sym, className);
+  }
+
+  /** Returns true if {@code sym} was loaded from the classpath entry of the summary of it. */
+  private boolean isFromClasspathEntry(ClassSymbol sym, String className) {
+    String classpathEntry = classpathEntries.get(className);
+    return classpathEntry != null
+        && sym.classfile != null
+        && sym.classfile.getKind() == JavaFileObject.Kind.CLASS
+        && sym.classfile
+            .toUri()
+            .toString()
+            .equals(classpathEntry + className.replace('.', '/') + ".class");
+  }
+
+  /** Parses a summary in the format described above. */
+  public static MutabilitySummary parse(String summary) {
+    return new Reader().read("<summary>", "", summary).build();
+  }
+
+  /** Returns the summary in the format described above, which {@link #parse} reads back. */
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    for (AnnotationInfo info : immutableClasses.values()) {
+      result.append("immutable ").append(info.typeName());
+      for (String typeParameter : info.containerOf()) {
+        result.append(' ').append(typeParameter);
+      }
+      result.append('\n');
+    }
+    for (String mutable : mutableClasses) {
+      result.append("mutable ").append(mutable).append('\n');
+    }
+    return result.toString();
+  }
+
+  /**
+   * Returns the summaries of the libraries on the classpath of the compilation, merged.
+   *
+   * <p>The classpath is only searched the first time this is called in a javac task, and the result
+   * is stored in the base context of the task, see {@link SubContext#base}. A summary that can't be
+   * read or is malformed is reported as a warning and ignored.
+   */
+  static MutabilitySummary forCompilation(Context context) {
+    Context base = SubContext.base(context);
+    MutabilitySummary summary = base.get(MutabilitySummary.class);
+    if (summary == null) {
+      JavaFileManager fileManager = base.get(JavaFileManager.class);
+      summary = fileManager != null ? fromClasspath(fileManager, Log.instance(base)) : EMPTY;
+      base.put(MutabilitySummary.class, summary);
+    }
+    return summary;
+  }
+
+  private static MutabilitySummary fromClasspath(JavaFileManager fileManager, Log log) {
+    String directory = RESOURCE_NAME.substring(0, RESOURCE_NAME.lastIndexOf('/'));
+    Iterable<JavaFileObject> files;
+    try {
+      // The file manager lists the directory from the index of each archive that javac already
+      // keeps, so this doesn't open the classpath entries again.
+      files =
+          fileManager.list(
+              StandardLocation.CLASS_PATH,
+              directory.replace('/', '.'),
+              EnumSet.of(JavaFileObject.Kind.OTHER),
+              /* recurse= */ false);
+    } catch (IOException e) {
+      log.warning("error.prone", "Failed to list the mutability summaries on the classpath: " + e);
+      return EMPTY;
+    }
+    Reader reader = new Reader();
+    for (JavaFileObject file : files) {
+      // e.g. jar:file:/lib.jar!/META-INF/errorprone/immutable-types
+      String uri = file.toUri().toString();
+      if (!uri.endsWith("/" + RESOURCE_NAME)) {
+        continue;
+      }
+      // e.g. jar:file:/lib.jar!/, which the URIs of the class files in the same entry start with
+      String classpathEntry = uri.substring(0, uri.length() - RESOURCE_NAME.length());
+      try {
+        reader.read(
+            file.getName(),
+            classpathEntry,
+            file.getCharContent(/* ignoreEncodingErrors= */ false));
+      } catch (IOException e) {
+        log.warning(
+            "error.prone",
+            "Ignoring mutability summary " + file.getName() + ", which can't be read: " + e);
+      } catch (IllegalArgumentException e) {
+        log.warning("error.prone", "Ignoring malformed mutability summary: " + e.getMessage());
+      }
+    }
+    return reader.build();
+  }
+
+  /** Merges summaries, keeping the first verdict for each class. */
+  private static final class Reader {
+    private final Map<String, AnnotationInfo> immutable = new LinkedHashMap<>();
+    private final Set<String> mutable = new LinkedHashSet<>();
+    private final Map<String, String> classpathEntries = new LinkedHashMap<>();
+
+    /**
+     * Adds the classes of {@code summary}, found in {@code classpathEntry}, that aren't already
+     * known, or throws if it is malformed, in which case none of them are added.
+     */
+    Reader read(String source, String classpathEntry, CharSequence summary) {
+      Map<String, AnnotationInfo> immutable = new LinkedHashMap<>();
+      Set<String> mutable = new LinkedHashSet<>();
+      int lineNumber = 0;
+      for (String line : Splitter.on('\n').split(summary)) {
+        lineNumber++;
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+        List<String> words = WHITESPACE.splitToList(line);
+        String className = words.size() > 1 ? words.get(1) : null;
+        if (className == null
+            || !(words.get(0).equals("immutable")
+                || (words.get(0).equals("mutable") && words.size() == 2))) {
+          throw new IllegalArgumentException(
+              String.format("%s:%d: malformed mutability summary: %s", source, lineNumber, line));
+        }
+        if (immutable.containsKey(className) || mutable.contains(className)) {
+          continue;
+        }
+        if (words.get(0).equals("immutable")) {
+          immutable.put(
+              className,
+              AnnotationInfo.create(
+                  className, ImmutableList.copyOf(words.subList(2, words.size()))));
+        } else {
+          mutable.add(className);
+        }
+      }
+      immutable.forEach(
+          (className, info) -> {
+            if (!this.mutable.contains(className) && !this.immutable.containsKey(className)) {
+              this.immutable.put(className, info);
+              this.classpathEntries.put(className, classpathEntry);
+            }
+          });
+      for (String className : mutable) {
+        if (!this.immutable.containsKey(className) && this.mutable.add(className)) {
+          this.classpathEntries.put(className, classpathEntry);
+        }
+      }
+      return this;
+    }
+
+    MutabilitySummary build() {
+      return new MutabilitySummary(
+          ImmutableMap.copyOf(immutable),
+          ImmutableSet.copyOf(mutable),
+          ImmutableMap.copyOf(classpathEntries));
+    }
+  }
+
+  /**
+   * Records that {@code sym}, declared in the current compilation, has been verified to be
+   * immutable, so that it is included in the summary written to the class output when the
+   * compilation finishes.
+   */
+  static void recordVerified(Context context, ClassSymbol sym, AnnotationInfo info) {
+    Context base = SubContext.base(context);
+    Generator generator = base.get(Generator.class);
+    if (generator == null) {
+      generator = new Generator(base);
+      base.put(Generator.class, generator);
+      BasicJavacTask.instance(base).addTaskListener(generator);
+    }
+    generator.immutable.put(
+        sym.flatName().toString(),
+        AnnotationInfo.create(sym.flatName().toString(), info.containerOf()));
+  }
+
+  /** Writes the summary of the classes verified in a compilation when it finishes. */
+  private static final class Generator implements TaskListener {
+    private final Context context;
+    /** Sorted by binary name, so that the output doesn't depend on the order of the sources. */
+    private final Map<String, AnnotationInfo> immutable = new TreeMap<>();
+
+    Generator(Context context) {
+      this.context = context;
+    }
+
+    @Override
+    public void finished(TaskEvent taskEvent) {
+      if (taskEvent.getKind() != TaskEvent.Kind.COMPILATION || immutable.isEmpty()) {
+        return;
+      }
+      MutabilitySummary summary =
+          new MutabilitySummary(
+              ImmutableMap.copyOf(immutable), ImmutableSet.of(), ImmutableMap.of());
+      try {
+        FileObject file =
+            context
+                .get(JavaFileManager.class)
+                .getFileForOutput(StandardLocation.CLASS_OUTPUT, "", RESOURCE_NAME, null);
+        try (Writer writer = file.openWriter()) {
+          writer.write("# classes verified by Error Prone's ImmutableChecker\n");
+          writer.write(summary.toString());
+        }
+      } catch (IOException e) {
+        Log.instance(context)
+            .warning("error.prone", "Failed to write the mutability summary: " + e);
+      }
+    }
+  }
+}
@@ -20,7 +20,6 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 
-import com.google.auto.value.AutoValue;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -29,6 +28,8 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Streams;
 import com.google.errorprone.VisitorState;
+import com.google.errorprone.annotations.FormatMethod;
+import com.google.errorprone.annotations.FormatString;
 import com.google.errorprone.bugpatterns.CanBeStaticAnalyzer;
 import com.google.errorprone.util.ASTHelpers;
 import com.sun.source.tree.ClassTree;
@@ -58,6 +59,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import javax.lang.model.element.AnnotationValue;
@@ -82,6 +84,12 @@ public final class ThreadSafety {
   /** Stores recursive invocations of {@link #isTypeParameterThreadSafe} */
   private final Set<TypeVariableSymbol> recursiveThreadSafeTypeParameter = new HashSet<>();
 
+  /** The verdicts of every {@link ThreadSafety} with the same configuration in this compilation. */
+  private final ThreadSafetyCache.Verdicts verdicts;
+
+  /** The accepted annotations as they're listed in explanations, computed when first needed. */
+  @Nullable private String annotationNames;
+
   public static Builder builder() {
     return new Builder();
   }
@@ -307,6 +315,17 @@ public final class ThreadSafety {
     this.containerOfAnnotation = containerOfAnnotation;
     this.suppressAnnotation = suppressAnnotation;
     this.typeParameterAnnotation = typeParameterAnnotation;
+    this.verdicts =
+        ThreadSafetyCache.instance(state.context)
+            .verdicts(
+                ThreadSafetyCache.Configuration.create(
+                    purpose,
+                    this.knownTypes,
+                    this.markerAnnotations,
+                    this.acceptedAnnotations,
+                    containerOfAnnotation,
+                    suppressAnnotation,
+                    typeParameterAnnotation));
   }
 
   /** Information about known types and whether they're known to be safe or unsafe. */
@@ -318,6 +337,23 @@ public final class ThreadSafety {
 
     /** Types that are known to be unsafe and don't need testing. */
     public Set<String> getKnownUnsafeClasses();
+
+    /**
+     * Returns the annotation info of a type that is known to be safe in the current compilation, or
+     * null.
+     *
+     * <p>Implementations may consult information about the compilation, e.g. summaries of the
+     * libraries on its classpath, in addition to {@link #getKnownSafeClasses}.
+     */
+    @Nullable
+    default AnnotationInfo getKnownSafeClass(Symbol sym, VisitorState state) {
+      return getKnownSafeClasses().get(sym.flatName().toString());
+    }
+
+    /** Returns whether a type is known to be unsafe in the current compilation. */
+    default boolean isKnownUnsafeClass(Symbol sym, VisitorState state) {
+      return getKnownUnsafeClasses().contains(sym.flatName().toString());
+    }
   }
 
   /**
@@ -325,22 +361,36 @@ public final class ThreadSafety {
    *
    * <p>An absent explanation indicates either an annotated type with no violations, or a type
    * without the annotation.
+   *
+   * <p>Most violations are discarded without being reported, so steps added with {@link #of(String,
+   * Object...)} or {@link #plus(String, Object...)} are only formatted when the explanation is
+   * needed. Arguments that are expensive to compute, such as {@link #getPrettyName}, should be
+   * wrapped with {@link #lazy} so that they are only computed then too.
    */
-  @AutoValue
-  public abstract static class Violation {
+  public static final class Violation {
+
+    private static final Violation ABSENT = new Violation(ConsPStack.empty());
+
+    /** The steps, each either a {@link String} or a {@link Step} that formats itself. */
+    private final ConsPStack<Object> steps;
+
+    private Violation(ConsPStack<Object> steps) {
+      this.steps = steps;
+    }
 
+    @SuppressWarnings("unchecked") // ConsPStack is immutable
     public static Violation create(ConsPStack<String> path) {
-      return new AutoValue_ThreadSafety_Violation(path);
+      return new Violation((ConsPStack<Object>) (ConsPStack<?>) path);
     }
 
     /** @return true if a violation was found */
     public boolean isPresent() {
-      return !path().isEmpty();
+      return !steps.isEmpty();
     }
 
     /** @return the explanation */
     public String message() {
-      return Joiner.on(", ").join(path());
+      return Joiner.on(", ").join(steps);
     }
 
     /**
@@ -348,21 +398,95 @@ public final class ThreadSafety {
      *
      * <p>Example: ["Foo has field 'xs' of type 'int[]'", "arrays are not thread-safe"]
      */
-    public abstract ConsPStack<String> path();
+    public ConsPStack<String> path() {
+      List<String> path = new ArrayList<>(steps.size());
+      for (Object step : steps) {
+        path.add(step.toString());
+      }
+      return ConsPStack.from(path);
+    }
 
     /** Adds a step. */
     public Violation plus(String edge) {
-      return create(path().plus(edge));
+      return new Violation(steps.plus(edge));
+    }
+
+    /** Adds a step, which is formatted with {@link String#format} when it's needed. */
+    @FormatMethod
+    public Violation plus(@FormatString String format, Object... args) {
+      return new Violation(steps.plus(new Step(format, args)));
     }
 
     /** Creates an explanation with one step. */
     public static Violation of(String reason) {
-      return create(ConsPStack.singleton(reason));
+      return new Violation(ConsPStack.singleton(reason));
+    }
+
+    /**
+     * Creates an explanation with one step, which is formatted with {@link String#format} when it's
+     * needed.
+     */
+    @FormatMethod
+    public static Violation of(@FormatString String format, Object... args) {
+      return new Violation(ConsPStack.singleton(new Step(format, args)));
+    }
+
+    /**
+     * Returns an argument for {@link #of(String, Object...)} or {@link #plus(String, Object...)}
+     * that is only computed when the step is formatted.
+     */
+    public static Object lazy(Supplier<?> arg) {
+      return new LazyArgument(arg);
     }
 
     /** An empty explanation. */
     public static Violation absent() {
-      return create(ConsPStack.empty());
+      return ABSENT;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Violation && path().equals(((Violation) o).path());
+    }
+
+    @Override
+    public int hashCode() {
+      return path().hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return "Violation{path=" + path() + "}";
+    }
+  }
+
+  /** A step of a {@link Violation} that hasn't been formatted yet. */
+  private static final class Step {
+    private final String format;
+    private final Object[] args;
+
+    Step(String format, Object[] args) {
+      this.format = format;
+      this.args = args;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(format, args);
+    }
+  }
+
+  /** An argument of a {@link Step} that is computed when the step is formatted. */
+  private static final class LazyArgument {
+    private final Supplier<?> arg;
+
+    LazyArgument(Supplier<?> arg) {
+      this.arg = arg;
+    }
+
+    @Override
+    public String toString() {
+      return String.valueOf(arg.get());
     }
   }
 
@@ -377,12 +501,22 @@ public final class ThreadSafety {
    */
   public Violation threadSafeInstantiation(
       Set<String> containerTypeParameters, AnnotationInfo annotation, Type type) {
+    return cached(
+        annotation,
+        /* allowContainerTypeParameters= */ true,
+        containerTypeParameters,
+        type,
+        () -> checkThreadSafeInstantiation(containerTypeParameters, annotation, type));
+  }
+
+  private Violation checkThreadSafeInstantiation(
+      Set<String> containerTypeParameters, AnnotationInfo annotation, Type type) {
     if (!annotation.containerOf().isEmpty()
         && type.tsym.getTypeParameters().size() != type.getTypeArguments().size()) {
       return Violation.of(
-          String.format(
-              "'%s' required instantiation of '%s' with type parameters, but was raw",
-              getPrettyName(type.tsym), Joiner.on(", ").join(annotation.containerOf())));
+          "'%s' required instantiation of '%s' with type parameters, but was raw",
+          Violation.lazy(() -> getPrettyName(type.tsym)),
+          Violation.lazy(() -> Joiner.on(", ").join(annotation.containerOf())));
     }
     for (int i = 0; i < type.tsym.getTypeParameters().size(); i++) {
       TypeVariableSymbol typaram = type.tsym.getTypeParameters().get(i);
@@ -402,11 +536,10 @@ public final class ThreadSafety {
         Violation info = isThreadSafeType(!immutableTypeParameter, containerTypeParameters, tyarg);
         if (info.isPresent()) {
           return info.plus(
-              String.format(
-                  "'%s' was instantiated with %s type for '%s'",
-                  getPrettyName(type.tsym),
-                  purpose.mutableOrNonThreadSafe(),
-                  typaram.getSimpleName()));
+              "'%s' was instantiated with %s type for '%s'",
+              Violation.lazy(() -> getPrettyName(type.tsym)),
+              purpose.mutableOrNonThreadSafe(),
+              typaram.getSimpleName());
         }
       }
     }
@@ -436,8 +569,7 @@ public final class ThreadSafety {
             (typaram, argument) -> {
               if (containerOfSubtyping(containerTypeParameters, annotation, typaram, argument)) {
                 return Violation.of(
-                    String.format(
-                        "'%s' is not a container of '%s'", annotation.typeName(), typaram));
+                    "'%s' is not a container of '%s'", annotation.typeName(), typaram);
               }
               return Violation.absent();
             })
@@ -493,8 +625,42 @@ public final class ThreadSafety {
    */
   public Violation isThreadSafeType(
       boolean allowContainerTypeParameters, Set<String> containerTypeParameters, Type type) {
-    return type.accept(
-        new ThreadSafeTypeVisitor(allowContainerTypeParameters, containerTypeParameters), null);
+    Set<String> inScope =
+        allowContainerTypeParameters ? containerTypeParameters : ImmutableSet.of();
+    return cached(
+        /* annotation= */ null,
+        allowContainerTypeParameters,
+        inScope,
+        type,
+        () -> type.accept(new ThreadSafeTypeVisitor(allowContainerTypeParameters, inScope), null));
+  }
+
+  /**
+   * Returns the cached verdict for a question about {@code type}, or computes and caches it.
+   *
+   * <p>While the bounds of a type parameter are being checked, the type parameter is assumed to be
+   * thread-safe, so verdicts computed then aren't cached and cached verdicts aren't used.
+   */
+  private Violation cached(
+      @Nullable AnnotationInfo annotation,
+      boolean allowContainerTypeParameters,
+      Set<String> containerTypeParameters,
+      Type type,
+      Supplier<Violation> verdict) {
+    if (!recursiveThreadSafeTypeParameter.isEmpty()) {
+      return verdict.get();
+    }
+    ThreadSafetyCache.Key key =
+        verdicts.key(annotation, allowContainerTypeParameters, containerTypeParameters, type);
+    if (key == null) {
+      return verdict.get();
+    }
+    Violation result = verdicts.get(key);
+    if (result == null) {
+      result = verdict.get();
+      verdicts.put(key, result);
+    }
+    return result;
   }
 
   private class ThreadSafeTypeVisitor extends Types.SimpleVisitor<Violation, Void> {
@@ -505,8 +671,7 @@ public final class ThreadSafety {
     private ThreadSafeTypeVisitor(
         boolean allowContainerTypeParameters, Set<String> containerTypeParameters) {
       this.allowContainerTypeParameters = allowContainerTypeParameters;
-      this.containerTypeParameters =
-          !allowContainerTypeParameters ? ImmutableSet.of() : containerTypeParameters;
+      this.containerTypeParameters = containerTypeParameters;
     }
 
     @Override
@@ -516,7 +681,7 @@ public final class ThreadSafety {
 
     @Override
     public Violation visitArrayType(ArrayType t, Void s) {
-      return Violation.of(String.format("arrays are %s", purpose.mutableOrNotThreadSafe()));
+      return Violation.of("arrays are %s", purpose.mutableOrNotThreadSafe());
     }
 
     @Override
@@ -528,24 +693,18 @@ public final class ThreadSafety {
       if (isTypeParameterThreadSafe(tyvar, containerTypeParameters)) {
         return Violation.absent();
       }
-      String message;
       if (!allowContainerTypeParameters) {
-        message =
-            String.format("'%s' is not annotated @ImmutableTypeParameter", tyvar.getSimpleName());
+        return Violation.of("'%s' is not annotated @ImmutableTypeParameter", tyvar.getSimpleName());
       } else if (!containerTypeParameters.isEmpty()) {
-        message =
-            String.format(
-                "'%s' is a %s type variable (not in '%s')",
-                tyvar.getSimpleName(),
-                purpose.mutableOrNonThreadSafe(),
-                Joiner.on(", ").join(containerTypeParameters));
+        return Violation.of(
+            "'%s' is a %s type variable (not in '%s')",
+            tyvar.getSimpleName(),
+            purpose.mutableOrNonThreadSafe(),
+            Violation.lazy(() -> Joiner.on(", ").join(containerTypeParameters)));
       } else {
-        message =
-            String.format(
-                "'%s' is a %s type variable",
-                tyvar.getSimpleName(), purpose.mutableOrNonThreadSafe());
+        return Violation.of(
+            "'%s' is a %s type variable", tyvar.getSimpleName(), purpose.mutableOrNonThreadSafe());
       }
-      return Violation.of(message);
     }
 
     @Override
@@ -574,27 +733,29 @@ public final class ThreadSafety {
       if (annotation != null) {
         return threadSafeInstantiation(containerTypeParameters, annotation, type);
       }
-      String nameStr = type.tsym.flatName().toString();
-      if (knownTypes.getKnownUnsafeClasses().contains(nameStr)) {
+      if (knownTypes.isKnownUnsafeClass(type.tsym, state)) {
         return Violation.of(
-            String.format(
-                "'%s' is %s", type.tsym.getSimpleName(), purpose.mutableOrNotThreadSafe()));
+            "'%s' is %s", type.tsym.getSimpleName(), purpose.mutableOrNotThreadSafe());
       }
       if (WellKnownMutability.isProto2MessageClass(state, type)) {
         if (WellKnownMutability.isProto2MutableMessageClass(state, type)) {
-          return Violation.of(
-              String.format("'%s' is a mutable proto message", type.tsym.getSimpleName()));
+          return Violation.of("'%s' is a mutable proto message", type.tsym.getSimpleName());
         }
         return Violation.absent();
       }
       return Violation.of(
-          String.format(
-              "the declaration of type '%s' is not annotated with %s",
-              type,
-              Streams.concat(markerAnnotations.stream(), acceptedAnnotations.stream())
-                  .map(a -> "@" + a)
-                  .collect(Collectors.joining(" or "))));
+          "the declaration of type '%s' is not annotated with %s", type, annotationNames());
+    }
+  }
+
+  private String annotationNames() {
+    if (annotationNames == null) {
+      annotationNames =
+          Streams.concat(markerAnnotations.stream(), acceptedAnnotations.stream())
+              .map(a -> "@" + a)
+              .collect(Collectors.joining(" or "));
     }
+    return annotationNames;
   }
 
   /**
@@ -649,8 +810,7 @@ public final class ThreadSafety {
    * an accepted annotation on the symbol, or from the list of well-known types.
    */
   public AnnotationInfo getMarkerOrAcceptedAnnotation(Symbol sym, VisitorState state) {
-    String nameStr = sym.flatName().toString();
-    AnnotationInfo known = knownTypes.getKnownSafeClasses().get(nameStr);
+    AnnotationInfo known = knownTypes.getKnownSafeClass(sym, state);
     if (known != null) {
       return known;
     }
@@ -861,8 +1021,7 @@ public final class ThreadSafety {
                 return Violation.absent();
               }
               return info.plus(
-                  String.format(
-                      "instantiation of '%s' is %s", sym, purpose.mutableOrNotThreadSafe()));
+                  "instantiation of '%s' is %s", sym, purpose.mutableOrNotThreadSafe());
             })
         .filter(Violation::isPresent)
         .findFirst()
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.bugpatterns.threadsafety;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.errorprone.CheckProfiler;
+import com.google.errorprone.SubContext;
+import com.google.errorprone.bugpatterns.threadsafety.ThreadSafety.Purpose;
+import com.google.errorprone.bugpatterns.threadsafety.ThreadSafety.Violation;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.code.Type.ArrayType;
+import com.sun.tools.javac.code.Type.CapturedType;
+import com.sun.tools.javac.code.Type.WildcardType;
+import com.sun.tools.javac.code.TypeTag;
+import com.sun.tools.javac.util.Context;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * The verdicts of {@link ThreadSafety} about the types it has checked, shared by every check and
+ * compilation unit in a javac task.
+ *
+ * <p>Whether a type is thread-safe only depends on the declarations of the types it mentions, which
+ * don't change during a compilation, so a field of type {@code ImmutableMap<String, Foo>} only has
+ * to be checked once however many classes declare one. Verdicts are kept separately for each
+ * configuration of {@link ThreadSafety}, since checkers differ in the annotations and known types
+ * they accept. The cache is stored in the base context of the task, see {@link SubContext#base}.
+ *
+ * <p>When profiling is enabled with {@code -XepProfile}, the number of hits and misses is included
+ * in the profile.
+ */
+final class ThreadSafetyCache {
+
+  static ThreadSafetyCache instance(Context context) {
+    Context base = SubContext.base(context);
+    ThreadSafetyCache cache = base.get(ThreadSafetyCache.class);
+    if (cache == null) {
+      cache = new ThreadSafetyCache(CheckProfiler.instance(base));
+      base.put(ThreadSafetyCache.class, cache);
+    }
+    return cache;
+  }
+
+  private final Map<Configuration, Map<Key, Violation>> verdicts = new HashMap<>();
+  private final CheckProfiler.CacheStats stats;
+
+  private ThreadSafetyCache(CheckProfiler profiler) {
+    this.stats = profiler.cacheStats("ThreadSafety");
+  }
+
+  /** Returns the verdicts for a configuration of {@link ThreadSafety}. */
+  Verdicts verdicts(Configuration configuration) {
+    return new Verdicts(verdicts.computeIfAbsent(configuration, c -> new HashMap<>()));
+  }
+
+  /** The settings of a {@link ThreadSafety} that its verdicts depend on. */
+  @AutoValue
+  abstract static class Configuration {
+    abstract Purpose purpose();
+
+    /**
+     * The known types, which are compared by identity. Checkers create them once, and the same
+     * checker instances analyze every compilation unit in a javac task.
+     */
+    abstract ThreadSafety.KnownTypes knownTypes();
+
+    abstract ImmutableSet<String> markerAnnotations();
+
+    abstract ImmutableSet<String> acceptedAnnotations();
+
+    @Nullable
+    abstract Class<? extends Annotation> containerOfAnnotation();
+
+    @Nullable
+    abstract Class<? extends Annotation> suppressAnnotation();
+
+    @Nullable
+    abstract Class<? extends Annotation> typeParameterAnnotation();
+
+    static Configuration create(
+        Purpose purpose,
+        ThreadSafety.KnownTypes knownTypes,
+        ImmutableSet<String> markerAnnotations,
+        ImmutableSet<String> acceptedAnnotations,
+        @Nullable Class<? extends Annotation> containerOfAnnotation,
+        @Nullable Class<? extends Annotation> suppressAnnotation,
+        @Nullable Class<? extends Annotation> typeParameterAnnotation) {
+      return new AutoValue_ThreadSafetyCache_Configuration(
+          purpose,
+          knownTypes,
+          markerAnnotations,
+          acceptedAnnotations,
+          containerOfAnnotation,
+          suppressAnnotation,
+          typeParameterAnnotation);
+    }
+  }
+
+  /**
+   * A question about a type: whether it's thread-safe if {@code annotation} is null, or whether
+   * it's a thread-safe instantiation of the type annotated with {@code annotation} otherwise.
+   */
+  @AutoValue
+  abstract static class Key {
+    @Nullable
+    abstract AnnotationInfo annotation();
+
+    abstract boolean allowContainerTypeParameters();
+
+    abstract ImmutableSet<String> containerTypeParameters();
+
+    abstract Object type();
+  }
+
+  /** The verdicts for one configuration. */
+  final class Verdicts {
+    private final Map<Key, Violation> verdicts;
+
+    private Verdicts(Map<Key, Violation> verdicts) {
+      this.verdicts = verdicts;
+    }
+
+    /**
+     * Returns the key of a question about {@code type}, or null if the verdict can't be cached
+     * because the type is annotated or contains a captured type variable.
+     */
+    @Nullable
+    Key key(
+        @Nullable AnnotationInfo annotation,
+        boolean allowContainerTypeParameters,
+        Set<String> containerTypeParameters,
+        Type type) {
+      Object typeKey = typeKey(type);
+      if (typeKey == null) {
+        return null;
+      }
+      return new AutoValue_ThreadSafetyCache_Key(
+          annotation,
+          allowContainerTypeParameters,
+          ImmutableSet.copyOf(containerTypeParameters),
+          typeKey);
+    }
+
+    @Nullable
+    Violation get(Key key) {
+      Violation verdict = verdicts.get(key);
+      if (verdict != null) {
+        stats.hit();
+      } else {
+        stats.miss();
+      }
+      return verdict;
+    }
+
+    void put(Key key, Violation verdict) {
+      verdicts.put(key, verdict);
+    }
+  }
+
+  /**
+   * Returns a value that is equal for types that are the same and are written the same way, or null
+   * if the type can't be cached.
+   *
+   * <p>Types are compared by the symbols they refer to, since {@link Type} doesn't implement
+   * equality. Type annotations make a type uncacheable, since they can suppress the check and
+   * appear in its explanation.
+   */
+  @Nullable
+  private static Object typeKey(Type type) {
+    if (!type.getAnnotationMirrors().isEmpty()) {
+      return null;
+    }
+    if (type.isPrimitive()) {
+      return type.getTag();
+    }
+    switch (type.getTag()) {
+      case CLASS:
+        List<Object> key = new ArrayList<>();
+        key.add(type.tsym);
+        key.add(
+            type.getEnclosingType().hasTag(TypeTag.CLASS)
+                ? typeKey(type.getEnclosingType())
+                : type.getEnclosingType().getTag());
+        for (Type argument : type.getTypeArguments()) {
+          key.add(typeKey(argument));
+        }
+        return key.contains(null) ? null : ImmutableList.copyOf(key);
+      case TYPEVAR:
+        // a captured type variable is created afresh for each expression
+        return type instanceof CapturedType ? null : type.tsym;
+      case WILDCARD:
+        WildcardType wildcard = (WildcardType) type;
+        Object bound = wildcard.type != null ? typeKey(wildcard.type) : TypeTag.NONE;
+        if (bound == null) {
+          return null;
+        }
+        // the upper bound of `?` and `? super T` is the bound of the type parameter
+        return ImmutableList.of(
+            wildcard.kind, bound, wildcard.bound != null ? wildcard.bound.tsym : TypeTag.NONE);
+      case ARRAY:
+        Object component = typeKey(((ArrayType) type).elemtype);
+        return component != null ? ImmutableList.of(TypeTag.ARRAY, component) : null;
+      default:
+        return null;
+    }
+  }
+}
@@ -28,20 +28,31 @@ import com.google.errorprone.ErrorProneFlags;
 import com.google.errorprone.VisitorState;
 import com.google.errorprone.suppliers.Supplier;
 import com.google.errorprone.suppliers.Suppliers;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
 import com.sun.tools.javac.code.Type;
 import java.lang.reflect.TypeVariable;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import javax.annotation.Nullable;
 
 /** A collection of types with known mutability. */
 public final class WellKnownMutability implements ThreadSafety.KnownTypes {
 
 
-  private WellKnownMutability(List<String> knownImmutable, List<String> knownUnsafe) {
+  /**
+   * Whether to consult the {@link MutabilitySummary summaries} of libraries on the classpath, which
+   * is off unless {@code -XepOpt:Immutable:ClasspathSummaries} is passed.
+   */
+  private final boolean classpathSummaries;
+
+  private WellKnownMutability(
+      List<String> knownImmutable, List<String> knownUnsafe, boolean classpathSummaries) {
     knownImmutableClasses = buildImmutableClasses(knownImmutable);
     knownUnsafeClasses = buildUnsafeClasses(knownUnsafe);
+    this.classpathSummaries = classpathSummaries;
   }
 
   public static WellKnownMutability fromFlags(ErrorProneFlags flags) {
@@ -49,7 +60,8 @@ public final class WellKnownMutability implements ThreadSafety.KnownTypes {
         flags.getList("Immutable:KnownImmutable").orElse(ImmutableList.of());
     ImmutableList<String> unsafe =
         flags.getList("Immutable:KnownUnsafe").orElse(ImmutableList.of());
-    return new WellKnownMutability(immutable, unsafe);
+    boolean classpathSummaries = flags.getBoolean("Immutable:ClasspathSummaries").orElse(false);
+    return new WellKnownMutability(immutable, unsafe, classpathSummaries);
   }
 
   public Map<String, AnnotationInfo> getKnownImmutableClasses() {
@@ -66,6 +78,29 @@ public final class WellKnownMutability implements ThreadSafety.KnownTypes {
     return knownUnsafeClasses;
   }
 
+  /**
+   * Returns the annotation info of a type that is known to be immutable, either from the list of
+   * well-known types and {@code -XepOpt:Immutable:KnownImmutable}, or from the summary of a library
+   * on the classpath.
+   */
+  @Override
+  @Nullable
+  public AnnotationInfo getKnownSafeClass(Symbol sym, VisitorState state) {
+    AnnotationInfo known = knownImmutableClasses.get(sym.flatName().toString());
+    if (known != null || !classpathSummaries || !(sym instanceof ClassSymbol)) {
+      return known;
+    }
+    return MutabilitySummary.forCompilation(state.context).immutableClass((ClassSymbol) sym);
+  }
+
+  @Override
+  public boolean isKnownUnsafeClass(Symbol sym, VisitorState state) {
+    return knownUnsafeClasses.contains(sym.flatName().toString())
+        || (classpathSummaries
+            && sym instanceof ClassSymbol
+            && MutabilitySummary.forCompilation(state.context).isMutableClass((ClassSymbol) sym));
+  }
+
   /** Types that are known to be immutable. */
   private final ImmutableMap<String, AnnotationInfo> knownImmutableClasses;
 
@@ -26,16 +26,25 @@ import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableClassToInstanceMap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import com.google.errorprone.BugPattern.SeverityLevel;
 import com.google.errorprone.CodeTransformer;
 import com.google.errorprone.DescriptionListener;
 import com.google.errorprone.SubContext;
+import com.google.errorprone.fixes.SuggestedFix;
+import com.google.errorprone.matchers.Description;
 import com.sun.source.util.TreePath;
 import com.sun.tools.javac.code.Symbol.PackageSymbol;
 import com.sun.tools.javac.file.JavacFileManager;
+import com.sun.tools.javac.parser.JavaTokenizer;
+import com.sun.tools.javac.parser.ScannerFactory;
+import com.sun.tools.javac.parser.Tokens.Token;
+import com.sun.tools.javac.parser.Tokens.TokenKind;
+import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
 import com.sun.tools.javac.util.Context;
 import java.io.Serializable;
 import java.lang.annotation.Annotation;
+import java.nio.CharBuffer;
 import java.util.Collection;
 import java.util.List;
 import javax.annotation.Nullable;
@@ -119,8 +128,45 @@ public abstract class RefasterRule<M extends TemplateMatch, T extends Template<M
 
   @Override
   public void apply(TreePath path, Context context, DescriptionListener listener) {
-    RefasterScanner.create(this, listener)
-        .scan(path, prepareContext(context, (JCCompilationUnit) path.getCompilationUnit()));
+    RefasterRuleIndex.create(ImmutableList.of(this)).apply(path, context, listener);
+  }
+
+  /**
+   * Reports the matches of the before template at {@code beforeTemplateIndex} against {@code tree},
+   * with the replacements from the after templates as fixes.
+   *
+   * @param context the context returned by {@link #prepareContext}
+   */
+  void reportMatches(
+      int beforeTemplateIndex, JCTree tree, Context context, DescriptionListener listener) {
+    JCCompilationUnit compilationUnit = context.get(JCCompilationUnit.class);
+    matchLoop:
+    for (M match : beforeTemplates().get(beforeTemplateIndex).match(tree, context)) {
+      if (rejectMatchesWithComments()) {
+        String matchContents = match.getRange(compilationUnit);
+        JavaTokenizer tokenizer =
+            new JavaTokenizer(ScannerFactory.instance(context), CharBuffer.wrap(matchContents)) {};
+        for (Token token = tokenizer.readToken();
+            token.kind != TokenKind.EOF;
+            token = tokenizer.readToken()) {
+          if (token.comments != null && !token.comments.isEmpty()) {
+            continue matchLoop;
+          }
+        }
+      }
+      Description.Builder builder =
+          Description.builder(
+              match.getLocation(), qualifiedTemplateClass(), "", SeverityLevel.WARNING, "");
+
+      if (afterTemplates().isEmpty()) {
+        builder.addFix(SuggestedFix.prefixWith(match.getLocation(), "/* match found */ "));
+      } else {
+        for (T afterTemplate : afterTemplates()) {
+          builder.addFix(afterTemplate.replace(match));
+        }
+      }
+      listener.onDescribed(builder.build());
+    }
   }
 
   boolean rejectMatchesWithComments() {
@@ -129,7 +175,8 @@ public abstract class RefasterRule<M extends TemplateMatch, T extends Template<M
 
   static final Context.Key<ImmutableList<UTypeVar>> RULE_TYPE_VARS = new Context.Key<>();
 
-  private Context prepareContext(Context baseContext, JCCompilationUnit compilationUnit) {
+  /** Returns the context in which this rule's templates are matched against the given unit. */
+  Context prepareContext(Context baseContext, JCCompilationUnit compilationUnit) {
     Context context = new SubContext(baseContext);
     if (context.get(JavaFileManager.class) == null) {
       JavacFileManager.preRegister(context);
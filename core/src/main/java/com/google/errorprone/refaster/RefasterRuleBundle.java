@@ -0,0 +1,538 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.refaster;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.auto.service.AutoService;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
+import com.google.errorprone.CodeTransformer;
+import com.google.errorprone.CodeTransformerLoader;
+import com.google.errorprone.refaster.RefasterRuleIndex.Entry;
+import com.google.errorprone.refaster.RefasterRuleIndex.TemplateKey;
+import com.sun.source.tree.Tree;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamConstants;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.annotation.Nullable;
+
+/**
+ * An indexed container of Java-serialized Refaster rules.
+ *
+ * <p>Each rule is serialized to its own record, and the records are preceded by a table of their
+ * lengths and of the keys that {@link RefasterRuleIndex} needs to index the rules' before
+ * templates. Loading a bundle only reads the table and the transformers that aren't Refaster
+ * rules: each rule is deserialized the first time one of its templates is a candidate for a tree,
+ * so rules that never see a matching method name or tree kind are never deserialized, and a rule
+ * that can't be deserialized doesn't affect the others. Single files are memory-mapped.
+ *
+ * <p>A record is a Java serialization stream without the stream header, in which the names of
+ * classes and all strings are indices into the name table of the bundle, so that the names the
+ * rules have in common are only written once. Classes are written as their name and {@code
+ * serialVersionUID}, which is checked against the loaded class when a record is read.
+ *
+ * <p>Layout, in big-endian order:
+ *
+ * <pre>
+ * int magic, int version
+ * int nameCount, nameCount * (int length, UTF-8 bytes)
+ * int entryCount, entryCount * entry
+ * records
+ * </pre>
+ *
+ * where an entry is a Refaster rule ({@code byte 0, int templateClass, int keyCount, keyCount *
+ * (int kindCount, kindCount * int kind, int name), int length}) or any other transformer ({@code
+ * byte 1, int length}), in the order they're applied. Names are indices into the name table, or -1
+ * if absent. The records follow in the same order, each taking the number of bytes given by its
+ * entry.
+ */
+public final class RefasterRuleBundle {
+
+  /** {@code "EPRB"}. */
+  static final int MAGIC = 0x45505242;
+
+  /** The header of a single Java-serialized transformer. */
+  private static final int SERIALIZED_MAGIC =
+      (ObjectStreamConstants.STREAM_MAGIC << 16) | ObjectStreamConstants.STREAM_VERSION;
+
+  /** Bumped whenever the layout changes; bundles of any other version are rejected. */
+  static final int VERSION = 4;
+
+  private static final byte RULE = 0;
+  private static final byte OTHER = 1;
+
+  private RefasterRuleBundle() {}
+
+  /**
+   * Writes the given transformers as a bundle. Refaster rules are written individually, including
+   * those nested in {@link com.google.errorprone.CompositeCodeTransformer}s or {@link
+   * RefasterRuleIndex}es, so they can be decoded independently.
+   */
+  public static void write(Iterable<? extends CodeTransformer> transformers, OutputStream out)
+      throws IOException {
+    Map<String, Integer> names = new LinkedHashMap<>();
+    ByteArrayOutputStream table = new ByteArrayOutputStream();
+    DataOutputStream tableOut = new DataOutputStream(table);
+    ByteArrayOutputStream records = new ByteArrayOutputStream();
+    int entryCount = 0;
+    for (CodeTransformer transformer : RefasterRuleIndex.flatten(transformers)) {
+      if (!(transformer instanceof RefasterRule || transformer instanceof RefasterRuleIndex)) {
+        tableOut.writeByte(OTHER);
+        tableOut.writeInt(writeRecord(transformer, names, records));
+        entryCount++;
+        continue;
+      }
+      for (Entry entry : RefasterRuleIndex.entries(transformer)) {
+        tableOut.writeByte(RULE);
+        tableOut.writeInt(nameIndex(names, entry.qualifiedTemplateClass()));
+        tableOut.writeInt(entry.keys().size());
+        for (TemplateKey key : entry.keys()) {
+          tableOut.writeInt(key.kinds().size());
+          for (Tree.Kind kind : key.kinds()) {
+            tableOut.writeInt(nameIndex(names, kind.name()));
+          }
+          tableOut.writeInt(key.name() == null ? -1 : nameIndex(names, key.name()));
+        }
+        tableOut.writeInt(writeRecord(entry.rule(), names, records));
+        entryCount++;
+      }
+    }
+    tableOut.flush();
+
+    DataOutputStream dataOut = new DataOutputStream(out);
+    dataOut.writeInt(MAGIC);
+    dataOut.writeInt(VERSION);
+    dataOut.writeInt(names.size());
+    for (String name : names.keySet()) {
+      byte[] bytes = name.getBytes(UTF_8);
+      dataOut.writeInt(bytes.length);
+      dataOut.write(bytes);
+    }
+    dataOut.writeInt(entryCount);
+    table.writeTo(dataOut);
+    records.writeTo(dataOut);
+    dataOut.flush();
+  }
+
+  private static int nameIndex(Map<String, Integer> names, String name) {
+    return names.computeIfAbsent(name, k -> names.size());
+  }
+
+  /** Appends the record of {@code object} to {@code records}, and returns its length. */
+  private static int writeRecord(
+      Object object, Map<String, Integer> names, ByteArrayOutputStream records)
+      throws IOException {
+    int start = records.size();
+    RecordOutputStream out = new RecordOutputStream(records, names);
+    out.writeObject(object);
+    out.flush();
+    return records.size() - start;
+  }
+
+  /**
+   * Returns true if {@code path} is a directory, a jar or zip archive, or a file that starts with
+   * the bundle header.
+   */
+  public static boolean canLoad(Path path) throws IOException {
+    if (Files.isDirectory(path) || isArchive(path)) {
+      return true;
+    }
+    if (!Files.isRegularFile(path)) {
+      return false;
+    }
+    try (InputStream in = Files.newInputStream(path)) {
+      byte[] header = new byte[Integer.BYTES];
+      return ByteStreams.read(in, header, 0, header.length) == header.length
+          && ByteBuffer.wrap(header).getInt() == MAGIC;
+    }
+  }
+
+  /**
+   * Loads the transformers at {@code path}, which may be a bundle, a directory, or a jar or zip
+   * archive. The files in a directory or archive that are bundles or single Java-serialized
+   * transformers are loaded, other files are skipped, and the transformers are combined with
+   * {@link RefasterRuleIndex#compose}.
+   */
+  public static CodeTransformer load(Path path) throws IOException {
+    List<CodeTransformer> transformers = new ArrayList<>();
+    if (Files.isDirectory(path)) {
+      List<Path> files;
+      try (Stream<Path> stream = Files.walk(path)) {
+        files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+      }
+      for (Path file : files) {
+        if (isArchive(file)) {
+          loadArchive(file, transformers);
+          continue;
+        }
+        ByteBuffer contents = map(file);
+        if (isTransformerFile(contents)) {
+          decode(contents, file.toString(), transformers);
+        }
+      }
+    } else if (isArchive(path)) {
+      loadArchive(path, transformers);
+    } else {
+      decode(map(path), path.toString(), transformers);
+    }
+    return RefasterRuleIndex.compose(transformers);
+  }
+
+  private static boolean isArchive(Path path) {
+    String name = path.getFileName() == null ? "" : path.getFileName().toString();
+    return Files.isRegularFile(path) && (name.endsWith(".jar") || name.endsWith(".zip"));
+  }
+
+  /** Returns true if {@code contents} is a bundle or a single Java-serialized transformer. */
+  private static boolean isTransformerFile(ByteBuffer contents) {
+    if (contents.remaining() < Integer.BYTES) {
+      return false;
+    }
+    int header = contents.getInt(contents.position());
+    return header == MAGIC || header == SERIALIZED_MAGIC;
+  }
+
+  private static ByteBuffer map(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+  /**
+   * Loads the bundles and Java-serialized transformers in a jar or zip archive, in the order of
+   * their names, skipping directories, {@code META-INF/} and any other files.
+   */
+  private static void loadArchive(Path archive, List<CodeTransformer> transformers)
+      throws IOException {
+    try (ZipFile zip = new ZipFile(archive.toFile())) {
+      List<ZipEntry> files = new ArrayList<>();
+      for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
+        ZipEntry entry = e.nextElement();
+        if (!entry.isDirectory() && !entry.getName().startsWith("META-INF/")) {
+          files.add(entry);
+        }
+      }
+      files.sort((a, b) -> a.getName().compareTo(b.getName()));
+      for (ZipEntry file : files) {
+        ByteBuffer contents;
+        try (InputStream in = zip.getInputStream(file)) {
+          byte[] header = new byte[Integer.BYTES];
+          int length = ByteStreams.read(in, header, 0, header.length);
+          if (!isTransformerFile(ByteBuffer.wrap(header, 0, length))) {
+            continue;
+          }
+          ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+          bytes.write(header);
+          ByteStreams.copy(in, bytes);
+          contents = ByteBuffer.wrap(bytes.toByteArray());
+        }
+        decode(contents, archive + "!" + file.getName(), transformers);
+      }
+    }
+  }
+
+  /**
+   * Reads the table of the bundle in {@code contents} and any transformers that aren't Refaster
+   * rules, or the transformer if it holds a single Java-serialized one.
+   */
+  private static void decode(
+      ByteBuffer contents, String description, List<CodeTransformer> transformers)
+      throws IOException {
+    ByteBuffer in = contents.duplicate();
+    if (in.remaining() < Integer.BYTES || in.getInt(in.position()) != MAGIC) {
+      try (ObjectInputStream objects = new ObjectInputStream(new ByteBufferInputStream(in))) {
+        transformers.add(
+            readObject(objects, CodeTransformer.class, "Refaster rule from " + description));
+      }
+      return;
+    }
+    try {
+      in.getInt();
+      int version = in.getInt();
+      if (version != VERSION) {
+        throw new IOException(
+            String.format(
+                "%s is a version %d Refaster rule bundle, expected version %d",
+                description, version, VERSION));
+      }
+      String[] names = new String[in.getInt()];
+      for (int i = 0; i < names.length; i++) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        names[i] = new String(bytes, UTF_8);
+      }
+      List<TableEntry> entries = new ArrayList<>();
+      for (int entryCount = in.getInt(); entryCount > 0; entryCount--) {
+        byte type = in.get();
+        if (type == RULE) {
+          String templateClass = names[in.getInt()];
+          ImmutableList.Builder<TemplateKey> keys = ImmutableList.builder();
+          for (int keyCount = in.getInt(); keyCount > 0; keyCount--) {
+            ImmutableSet.Builder<Tree.Kind> kinds = ImmutableSet.builder();
+            for (int kindCount = in.getInt(); kindCount > 0; kindCount--) {
+              kinds.add(Tree.Kind.valueOf(names[in.getInt()]));
+            }
+            keys.add(TemplateKey.create(kinds.build(), name(names, in.getInt())));
+          }
+          entries.add(new TableEntry(templateClass, keys.build(), in.getInt()));
+        } else if (type == OTHER) {
+          entries.add(new TableEntry(null, null, in.getInt()));
+        } else {
+          throw new IOException(String.format("Malformed Refaster rule bundle %s", description));
+        }
+      }
+      int offset = in.position();
+      for (TableEntry entry : entries) {
+        ByteBuffer record = slice(in, offset, entry.length);
+        offset += entry.length;
+        if (entry.templateClass == null) {
+          transformers.add(
+              readRecord(
+                  record, names, CodeTransformer.class, "Refaster rule from " + description));
+          continue;
+        }
+        String what = String.format("Refaster rule %s from %s", entry.templateClass, description);
+        // consecutive rules are combined into one index by RefasterRuleIndex.compose
+        transformers.add(
+            RefasterRuleIndex.fromEntries(
+                ImmutableList.of(
+                    Entry.lazy(
+                        entry.templateClass,
+                        entry.keys,
+                        () -> {
+                          try {
+                            return readRecord(record, names, RefasterRule.class, what);
+                          } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                          }
+                        }))));
+      }
+    } catch (BufferUnderflowException
+        | IndexOutOfBoundsException
+        | IllegalArgumentException
+        | NegativeArraySizeException e) {
+      throw new IOException(String.format("Malformed Refaster rule bundle %s", description), e);
+    }
+  }
+
+  @Nullable
+  private static String name(String[] names, int index) {
+    return index == -1 ? null : names[index];
+  }
+
+  private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+    ByteBuffer slice = buffer.duplicate();
+    slice.position(offset);
+    slice.limit(offset + length);
+    return slice.slice();
+  }
+
+  private static <T> T readRecord(ByteBuffer record, String[] names, Class<T> type, String what)
+      throws IOException {
+    try (ObjectInputStream in =
+        new RecordInputStream(new ByteBufferInputStream(record.duplicate()), names)) {
+      return readObject(in, type, what);
+    }
+  }
+
+  private static <T> T readObject(ObjectInputStream in, Class<T> type, String what)
+      throws IOException {
+    try {
+      return type.cast(in.readObject());
+    } catch (IOException | ClassNotFoundException | ClassCastException e) {
+      throw new IOException("Can't load " + what, e);
+    }
+  }
+
+  /** An entry in the table of a bundle. */
+  private static final class TableEntry {
+    /** The template class of a rule, or null for other transformers. */
+    @Nullable final String templateClass;
+
+    @Nullable final ImmutableList<TemplateKey> keys;
+
+    /** The length of the record. */
+    final int length;
+
+    TableEntry(
+        @Nullable String templateClass, @Nullable ImmutableList<TemplateKey> keys, int length) {
+      this.templateClass = templateClass;
+      this.keys = keys;
+      this.length = length;
+    }
+  }
+
+  /** A string in a record, as its index in the name table. */
+  private static final class NameRef implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final int index;
+
+    NameRef(int index) {
+      this.index = index;
+    }
+  }
+
+  /** Writes a record, adding the names of its classes and its strings to the name table. */
+  private static final class RecordOutputStream extends ObjectOutputStream {
+    private final Map<String, Integer> names;
+
+    RecordOutputStream(OutputStream out, Map<String, Integer> names) throws IOException {
+      super(out);
+      this.names = names;
+      enableReplaceObject(true);
+    }
+
+    @Override
+    protected void writeStreamHeader() {}
+
+    @Override
+    protected void writeClassDescriptor(ObjectStreamClass desc) throws IOException {
+      writeInt(nameIndex(names, desc.getName()));
+      writeLong(desc.getSerialVersionUID());
+    }
+
+    @Override
+    protected Object replaceObject(Object obj) {
+      return obj instanceof String ? new NameRef(nameIndex(names, (String) obj)) : obj;
+    }
+  }
+
+  /** Reads a record written by {@link RecordOutputStream}. */
+  private static final class RecordInputStream extends ObjectInputStream {
+    private final String[] names;
+
+    RecordInputStream(InputStream in, String[] names) throws IOException {
+      super(in);
+      this.names = names;
+      enableResolveObject(true);
+    }
+
+    @Override
+    protected void readStreamHeader() {}
+
+    @Override
+    protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+      String name = names[readInt()];
+      long serialVersionUID = readLong();
+      Class<?> clazz = Class.forName(name, false, RefasterRuleBundle.class.getClassLoader());
+      ObjectStreamClass desc = ObjectStreamClass.lookup(clazz);
+      if (desc == null) {
+        throw new InvalidClassException(name, "class is not serializable");
+      }
+      // like ObjectStreamClass, which doesn't compare the serialVersionUIDs of arrays
+      if (!clazz.isArray() && desc.getSerialVersionUID() != serialVersionUID) {
+        throw new InvalidClassException(
+            name,
+            String.format(
+                "serialVersionUID %d doesn't match the local serialVersionUID %d",
+                serialVersionUID, desc.getSerialVersionUID()));
+      }
+      return desc;
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc) {
+      // the descriptors of a record are those of the loaded classes
+      return desc.forClass();
+    }
+
+    @Override
+    protected Object resolveObject(Object obj) {
+      return obj instanceof NameRef ? names[((NameRef) obj).index] : obj;
+    }
+  }
+
+  /** An {@link InputStream} over the remaining bytes of a {@link ByteBuffer}. */
+  private static final class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, count);
+      return count;
+    }
+
+    @Override
+    public long skip(long count) {
+      int skipped = (int) Math.max(0, Math.min(count, buffer.remaining()));
+      buffer.position(buffer.position() + skipped);
+      return skipped;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+
+  /** Loads {@code -XepPatchChecks:refaster:} rules from bundles, directories and archives. */
+  @AutoService(CodeTransformerLoader.class)
+  public static final class Loader implements CodeTransformerLoader {
+    @Override
+    public boolean canLoad(Path path) throws IOException {
+      return RefasterRuleBundle.canLoad(path);
+    }
+
+    @Override
+    public CodeTransformer load(Path path) throws IOException {
+      return RefasterRuleBundle.load(path);
+    }
+  }
+}
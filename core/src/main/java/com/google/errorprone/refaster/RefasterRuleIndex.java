@@ -0,0 +1,501 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.refaster;
+
+import static java.util.Comparator.comparingInt;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableClassToInstanceMap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.MultimapBuilder;
+import com.google.common.primitives.Ints;
+import com.google.errorprone.CodeTransformer;
+import com.google.errorprone.CompositeCodeTransformer;
+import com.google.errorprone.DescriptionListener;
+import com.google.errorprone.matchers.Description;
+import com.google.errorprone.util.ASTHelpers;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.tree.ParameterizedTypeTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreePath;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import com.sun.tools.javac.util.Context;
+import java.io.Serializable;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Applies a set of Refaster rules in a single traversal of each compilation unit.
+ *
+ * <p>Before templates are indexed by the kind of tree they can match, and for method invocations
+ * and constructor calls by the name of the method or class, so that only the templates that could
+ * possibly match a node are unified against it.
+ */
+public final class RefasterRuleIndex implements CodeTransformer, Serializable {
+
+  /**
+   * Combines the given transformers into one, applying each run of consecutive Refaster rules among
+   * them (including those nested in {@link CompositeCodeTransformer}s) with a single index. The
+   * transformers are applied in the same order, so the same fix wins where fixes overlap.
+   */
+  public static CodeTransformer compose(Iterable<? extends CodeTransformer> transformers) {
+    List<CodeTransformer> composed = new ArrayList<>();
+    List<Entry> run = new ArrayList<>();
+    for (CodeTransformer transformer : flatten(transformers)) {
+      if (transformer instanceof RefasterRule || transformer instanceof RefasterRuleIndex) {
+        run.addAll(entries(transformer));
+      } else {
+        if (!run.isEmpty()) {
+          composed.add(new RefasterRuleIndex(ImmutableList.copyOf(run)));
+          run.clear();
+        }
+        composed.add(transformer);
+      }
+    }
+    if (!run.isEmpty()) {
+      composed.add(new RefasterRuleIndex(ImmutableList.copyOf(run)));
+    }
+    return composed.size() == 1
+        ? composed.get(0)
+        : CompositeCodeTransformer.compose(ImmutableList.copyOf(composed));
+  }
+
+  /**
+   * Returns the given transformers in order, replacing each {@link CompositeCodeTransformer} with
+   * the transformers it's composed of.
+   */
+  static ImmutableList<CodeTransformer> flatten(Iterable<? extends CodeTransformer> transformers) {
+    ImmutableList.Builder<CodeTransformer> flattened = ImmutableList.builder();
+    for (CodeTransformer transformer : transformers) {
+      if (transformer instanceof CompositeCodeTransformer) {
+        flattened.addAll(flatten(((CompositeCodeTransformer) transformer).transformers()));
+      } else {
+        flattened.add(transformer);
+      }
+    }
+    return flattened.build();
+  }
+
+  /**
+   * Returns the entries of a {@link RefasterRule} or {@link RefasterRuleIndex}, or an empty list
+   * for any other transformer.
+   */
+  static ImmutableList<Entry> entries(CodeTransformer transformer) {
+    if (transformer instanceof RefasterRule) {
+      return ImmutableList.of(Entry.of((RefasterRule<?, ?>) transformer));
+    }
+    if (transformer instanceof RefasterRuleIndex) {
+      return ((RefasterRuleIndex) transformer).entries;
+    }
+    return ImmutableList.of();
+  }
+
+  public static RefasterRuleIndex create(Iterable<? extends RefasterRule<?, ?>> rules) {
+    ImmutableList.Builder<Entry> entries = ImmutableList.builder();
+    for (RefasterRule<?, ?> rule : rules) {
+      entries.add(Entry.of(rule));
+    }
+    return new RefasterRuleIndex(entries.build());
+  }
+
+  /** Returns an index of the given rules, which may be decoded lazily. */
+  static RefasterRuleIndex fromEntries(List<Entry> entries) {
+    return new RefasterRuleIndex(ImmutableList.copyOf(entries));
+  }
+
+  private final ImmutableList<Entry> entries;
+
+  /** Built on first use. */
+  @Nullable private Index index;
+
+  private RefasterRuleIndex(ImmutableList<Entry> entries) {
+    this.entries = entries;
+  }
+
+  /** The number of rules in the index. */
+  int size() {
+    return entries.size();
+  }
+
+  /** Returns the rule at {@code ruleIndex}, decoding it if it was loaded lazily. */
+  RefasterRule<?, ?> rule(int ruleIndex) {
+    return entries.get(ruleIndex).rule();
+  }
+
+  /** Returns all of the rules, decoding any that were loaded lazily. */
+  ImmutableList<RefasterRule<?, ?>> rules() {
+    ImmutableList.Builder<RefasterRule<?, ?>> rules = ImmutableList.builder();
+    for (Entry entry : entries) {
+      rules.add(entry.rule());
+    }
+    return rules.build();
+  }
+
+  private Object writeReplace() {
+    return new SerializedForm(rules());
+  }
+
+  private static final class SerializedForm implements Serializable {
+    private final ImmutableList<RefasterRule<?, ?>> rules;
+
+    SerializedForm(ImmutableList<RefasterRule<?, ?>> rules) {
+      this.rules = rules;
+    }
+
+    private Object readResolve() {
+      return create(rules);
+    }
+  }
+
+  /**
+   * Applies all of the rules in a single traversal. The matches are reported in the order of the
+   * rules, as if each rule had been applied in turn, so the same fix wins where fixes overlap.
+   */
+  @Override
+  public void apply(TreePath path, Context context, DescriptionListener listener) {
+    ListMultimap<Integer, Description> matches =
+        MultimapBuilder.treeKeys().arrayListValues().build();
+    new RefasterScanner(
+            this,
+            rule -> description -> matches.put(rule, description),
+            (JCCompilationUnit) path.getCompilationUnit())
+        .scan(path, context);
+    matches.values().forEach(listener::onDescribed);
+  }
+
+  @Override
+  public ImmutableClassToInstanceMap<Annotation> annotations() {
+    return ImmutableClassToInstanceMap.<Annotation>builder().build();
+  }
+
+  /** Returns the indices of the rules whose templates are declared in the given class. */
+  int[] rulesDeclaredIn(String qualifiedClassName) {
+    return index().rulesByTemplateClass.getOrDefault(qualifiedClassName, NO_RULES);
+  }
+
+  /**
+   * Returns the before templates that may match {@code tree}, in the order of their rules and of
+   * the templates within each rule.
+   */
+  ImmutableList<Candidate> candidates(Tree tree) {
+    Index index = index();
+    KindCandidates forKind = index.byKind.get(tree.getKind().asInterface());
+    if (forKind == null) {
+      return index.anyKind;
+    }
+    ImmutableList<Candidate> named = forKind.named(tree);
+    if (index.anyKind.isEmpty() && named.isEmpty()) {
+      return forKind.unnamed;
+    }
+    List<Candidate> candidates = new ArrayList<>(index.anyKind);
+    candidates.addAll(forKind.unnamed);
+    candidates.addAll(named);
+    candidates.sort(comparingInt(Candidate::order));
+    return ImmutableList.copyOf(candidates);
+  }
+
+  private Index index() {
+    Index index = this.index;
+    if (index == null) {
+      this.index = index = new Index(entries);
+    }
+    return index;
+  }
+
+  private static final int[] NO_RULES = {};
+
+  /**
+   * A rule in the index. The rule itself is only needed once one of its templates is a candidate
+   * for a tree, so it may be decoded lazily.
+   */
+  static final class Entry {
+    static Entry of(RefasterRule<?, ?> rule) {
+      ImmutableList.Builder<TemplateKey> keys = ImmutableList.builder();
+      for (Template<?> template : rule.beforeTemplates()) {
+        keys.add(TemplateKey.of(template));
+      }
+      return new Entry(rule.qualifiedTemplateClass(), keys.build(), Suppliers.ofInstance(rule));
+    }
+
+    static Entry lazy(
+        String qualifiedTemplateClass,
+        ImmutableList<TemplateKey> keys,
+        Supplier<RefasterRule<?, ?>> rule) {
+      return new Entry(qualifiedTemplateClass, keys, Suppliers.memoize(rule));
+    }
+
+    private final String qualifiedTemplateClass;
+    private final ImmutableList<TemplateKey> keys;
+    private final Supplier<RefasterRule<?, ?>> rule;
+
+    private Entry(
+        String qualifiedTemplateClass,
+        ImmutableList<TemplateKey> keys,
+        Supplier<RefasterRule<?, ?>> rule) {
+      this.qualifiedTemplateClass = qualifiedTemplateClass;
+      this.keys = keys;
+      this.rule = rule;
+    }
+
+    String qualifiedTemplateClass() {
+      return qualifiedTemplateClass;
+    }
+
+    /** The keys of the rule's before templates, in order. */
+    ImmutableList<TemplateKey> keys() {
+      return keys;
+    }
+
+    RefasterRule<?, ?> rule() {
+      return rule.get();
+    }
+  }
+
+  /** The kinds of tree a before template can match, and the name it invokes, if any. */
+  @AutoValue
+  abstract static class TemplateKey {
+    /**
+     * The kinds of tree the template's root can unify with, or empty if it may match trees of any
+     * kind.
+     */
+    abstract ImmutableSet<Tree.Kind> kinds();
+
+    /** The name of the method or class the template's root invokes, if it names one. */
+    @Nullable
+    abstract String name();
+
+    static TemplateKey create(ImmutableSet<Tree.Kind> kinds, @Nullable String name) {
+      return new AutoValue_RefasterRuleIndex_TemplateKey(kinds, name);
+    }
+
+    static TemplateKey of(Template<?> template) {
+      UTree<?> root = root(template);
+      return root == null
+          ? create(ImmutableSet.of(), null)
+          : create(unifiesWith(root), templateName(root));
+    }
+  }
+
+  /** A before template of one of the rules. */
+  @AutoValue
+  abstract static class Candidate {
+    /** The index of the rule in {@link RefasterRuleIndex#entries}. */
+    abstract int ruleIndex();
+
+    /** The index of the template in the rule's before templates. */
+    abstract int templateIndex();
+
+    /** The position of the template among all of the before templates of all rules. */
+    abstract int order();
+  }
+
+  /** The candidates whose templates can only match trees of the same kind. */
+  private static final class KindCandidates {
+    /** Templates that can match any tree of this kind. */
+    ImmutableList<Candidate> unnamed = ImmutableList.of();
+
+    /** Templates that only match method invocations or constructor calls of a given name. */
+    ImmutableListMultimap<String, Candidate> byName = ImmutableListMultimap.of();
+
+    ImmutableList<Candidate> named(Tree tree) {
+      if (byName.isEmpty()) {
+        return ImmutableList.of();
+      }
+      String name = targetName(tree);
+      return name != null ? byName.get(name) : ImmutableList.copyOf(byName.values());
+    }
+  }
+
+  private static final class Index {
+    final Map<String, int[]> rulesByTemplateClass = new HashMap<>();
+    final Map<Class<? extends Tree>, KindCandidates> byKind = new HashMap<>();
+    final ImmutableList<Candidate> anyKind;
+
+    Index(ImmutableList<Entry> entries) {
+      Map<String, List<Integer>> declared = new HashMap<>();
+      Map<Class<? extends Tree>, List<Candidate>> unnamed = new HashMap<>();
+      Map<Class<? extends Tree>, ImmutableListMultimap.Builder<String, Candidate>> named =
+          new HashMap<>();
+      ImmutableList.Builder<Candidate> anyKind = ImmutableList.builder();
+      int order = 0;
+      for (int i = 0; i < entries.size(); i++) {
+        Entry entry = entries.get(i);
+        declared.computeIfAbsent(entry.qualifiedTemplateClass(), k -> new ArrayList<>()).add(i);
+        for (int j = 0; j < entry.keys().size(); j++) {
+          Candidate candidate = new AutoValue_RefasterRuleIndex_Candidate(i, j, order++);
+          TemplateKey key = entry.keys().get(j);
+          if (key.kinds().isEmpty()) {
+            anyKind.add(candidate);
+            continue;
+          }
+          // several kinds may share an interface, e.g. those of binary operators
+          Set<Class<? extends Tree>> kinds = new LinkedHashSet<>();
+          for (Tree.Kind kind : key.kinds()) {
+            kinds.add(kind.asInterface());
+          }
+          String name = key.name();
+          for (Class<? extends Tree> kind : kinds) {
+            if (name != null) {
+              named
+                  .computeIfAbsent(kind, k -> ImmutableListMultimap.builder())
+                  .put(name, candidate);
+            } else {
+              unnamed.computeIfAbsent(kind, k -> new ArrayList<>()).add(candidate);
+            }
+          }
+        }
+      }
+      declared.forEach((name, indices) -> rulesByTemplateClass.put(name, Ints.toArray(indices)));
+      unnamed.forEach(
+          (kind, candidates) ->
+              byKind.computeIfAbsent(kind, k -> new KindCandidates()).unnamed =
+                  ImmutableList.copyOf(candidates));
+      named.forEach(
+          (kind, candidates) ->
+              byKind.computeIfAbsent(kind, k -> new KindCandidates()).byName = candidates.build());
+      this.anyKind = anyKind.build();
+    }
+  }
+
+  /**
+   * Returns the root of the template if it only matches trees of the kinds it has visitor methods
+   * for, or null if it may match trees of any kind.
+   */
+  @Nullable
+  private static UTree<?> root(Template<?> template) {
+    if (template instanceof BlockTemplate) {
+      // block templates match sequences of statements in a block
+      return UBlock.create();
+    }
+    if (template instanceof ExpressionTemplate) {
+      UTree<?> root = ((ExpressionTemplate) template).expression();
+      return dispatchesOnKind(root.getClass()) ? root : null;
+    }
+    return null;
+  }
+
+  /**
+   * Returns true if the {@link UTree} only unifies with trees of the kinds it has visitor methods
+   * for: its {@code unify} dispatches to the visitor method for the target's kind, and it does not
+   * override {@code defaultAction} to accept targets of other kinds (as e.g. template parameters
+   * and {@code Refaster.anyOf} do).
+   */
+  private static boolean dispatchesOnKind(Class<?> treeClass) {
+    for (Class<?> c = treeClass; c != UTree.class; c = c.getSuperclass()) {
+      for (Method method : c.getDeclaredMethods()) {
+        if ((method.getName().equals("unify") || method.getName().equals("defaultAction"))
+            && method.getParameterCount() == 2
+            && method.getParameterTypes()[0] == Tree.class) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the kinds of tree that {@code root} can unify with: its own kind, and the kinds of the
+   * visitor methods it overrides, e.g. {@link UMemberSelect} also unifies with identifiers that
+   * refer to the member it selects.
+   */
+  private static ImmutableSet<Tree.Kind> unifiesWith(UTree<?> root) {
+    Set<Class<?>> visited = new HashSet<>();
+    for (Class<?> c = root.getClass(); c != UTree.class; c = c.getSuperclass()) {
+      for (Method method : c.getDeclaredMethods()) {
+        if (method.getName().startsWith("visit")
+            && method.getParameterCount() == 2
+            && Tree.class.isAssignableFrom(method.getParameterTypes()[0])
+            && method.getParameterTypes()[1] == Unifier.class) {
+          visited.add(method.getParameterTypes()[0]);
+        }
+      }
+    }
+    ImmutableSet.Builder<Tree.Kind> kinds = ImmutableSet.builder();
+    kinds.add(root.getKind());
+    for (Tree.Kind kind : Tree.Kind.values()) {
+      if (visited.contains(kind.asInterface())) {
+        kinds.add(kind);
+      }
+    }
+    return kinds.build();
+  }
+
+  /** The name of the method or class the template's root invokes, if it names one. */
+  @Nullable
+  private static String templateName(UTree<?> root) {
+    if (root instanceof UMethodInvocation) {
+      UExpression select = ((UMethodInvocation) root).getMethodSelect();
+      if (select instanceof UMemberSelect) {
+        return ((UMemberSelect) select).getIdentifier().contents();
+      }
+      if (select instanceof UStaticIdent) {
+        return ((UStaticIdent) select).getName().contents();
+      }
+    } else if (root instanceof UNewClass) {
+      UExpression identifier = ((UNewClass) root).getIdentifier();
+      if (identifier instanceof UTypeApply) {
+        identifier = ((UTypeApply) identifier).getType();
+      }
+      if (identifier instanceof UClassIdent) {
+        return ((UClassIdent) identifier).getName().contents();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * The name that a template for the target's kind would have to have to match it, or null if it
+   * can't be determined.
+   */
+  @Nullable
+  private static String targetName(Tree tree) {
+    if (tree instanceof MethodInvocationTree) {
+      Tree select = ((MethodInvocationTree) tree).getMethodSelect();
+      if (select instanceof MemberSelectTree) {
+        return ((MemberSelectTree) select).getIdentifier().toString();
+      }
+      if (select instanceof IdentifierTree) {
+        return ((IdentifierTree) select).getName().toString();
+      }
+    } else if (tree instanceof NewClassTree) {
+      Tree identifier = ((NewClassTree) tree).getIdentifier();
+      if (identifier instanceof ParameterizedTypeTree) {
+        identifier = ((ParameterizedTypeTree) identifier).getType();
+      }
+      Symbol sym = ASTHelpers.getSymbol(identifier);
+      return sym != null ? sym.getQualifiedName().toString() : null;
+    }
+    return null;
+  }
+}
@@ -16,11 +16,7 @@
 
 package com.google.errorprone.refaster;
 
-import com.google.auto.value.AutoValue;
-import com.google.errorprone.BugPattern.SeverityLevel;
 import com.google.errorprone.DescriptionListener;
-import com.google.errorprone.fixes.SuggestedFix;
-import com.google.errorprone.matchers.Description;
 import com.google.errorprone.util.ASTHelpers;
 import com.sun.source.tree.ClassTree;
 import com.sun.source.tree.DoWhileLoopTree;
@@ -32,39 +28,58 @@ import com.sun.source.tree.WhileLoopTree;
 import com.sun.source.util.SimpleTreeVisitor;
 import com.sun.source.util.TreeScanner;
 import com.sun.tools.javac.code.Symbol;
-import com.sun.tools.javac.parser.JavaTokenizer;
-import com.sun.tools.javac.parser.ScannerFactory;
-import com.sun.tools.javac.parser.Tokens.Token;
-import com.sun.tools.javac.parser.Tokens.TokenKind;
 import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
 import com.sun.tools.javac.tree.JCTree.JCStatement;
 import com.sun.tools.javac.tree.TreeMaker;
 import com.sun.tools.javac.util.Context;
 import com.sun.tools.javac.util.ListBuffer;
-import java.nio.CharBuffer;
+import java.util.function.IntFunction;
 
 /**
- * Scanner that outputs suggested fixes generated by a {@code RefasterMatcher}.
+ * Scanner that outputs suggested fixes generated by the rules in a {@link RefasterRuleIndex}, in a
+ * single traversal of the compilation unit. The fixes of each rule are reported to the listener for
+ * the rule's index.
  *
  * @author lowasser@google.com (Louis Wasserman)
  */
-@AutoValue
-abstract class RefasterScanner<M extends TemplateMatch, T extends Template<M>>
-    extends TreeScanner<Void, Context> {
-  static <M extends TemplateMatch, T extends Template<M>> RefasterScanner<M, T> create(
-      RefasterRule<M, T> rule, DescriptionListener listener) {
-    return new AutoValue_RefasterScanner<>(rule, listener);
-  }
+final class RefasterScanner extends TreeScanner<Void, Context> {
+  private final RefasterRuleIndex rules;
+  private final IntFunction<DescriptionListener> listeners;
+  private final JCCompilationUnit compilationUnit;
+
+  /** The context of each rule, prepared the first time one of its templates is a candidate. */
+  private final Context[] ruleContexts;
 
-  abstract RefasterRule<M, T> rule();
+  /**
+   * For each rule, the number of enclosing classes that declare it. A rule is not matched against
+   * its own templates.
+   */
+  private final int[] enclosingTemplateClasses;
 
-  abstract DescriptionListener listener();
+  RefasterScanner(
+      RefasterRuleIndex rules,
+      IntFunction<DescriptionListener> listeners,
+      JCCompilationUnit compilationUnit) {
+    this.rules = rules;
+    this.listeners = listeners;
+    this.compilationUnit = compilationUnit;
+    this.ruleContexts = new Context[rules.size()];
+    this.enclosingTemplateClasses = new int[rules.size()];
+  }
 
   @Override
   public Void visitClass(ClassTree node, Context context) {
     Symbol sym = ASTHelpers.getSymbol(node);
-    if (sym == null || !sym.getQualifiedName().contentEquals(rule().qualifiedTemplateClass())) {
+    int[] declaredRules =
+        sym == null ? new int[0] : rules.rulesDeclaredIn(sym.getQualifiedName().toString());
+    if (declaredRules.length == rules.size()) {
+      return null;
+    }
+    for (int rule : declaredRules) {
+      enclosingTemplateClasses[rule]++;
+    }
+    try {
       ListBuffer<JCStatement> statements = new ListBuffer<>();
       for (Tree tree : node.getMembers()) {
         if (tree instanceof JCStatement) {
@@ -74,6 +89,10 @@ abstract class RefasterScanner<M extends TemplateMatch, T extends Template<M>>
         }
       }
       scan(TreeMaker.instance(context).Block(0, statements.toList()), context);
+    } finally {
+      for (int rule : declaredRules) {
+        enclosingTemplateClasses[rule]--;
+      }
     }
     return null;
   }
@@ -83,40 +102,18 @@ abstract class RefasterScanner<M extends TemplateMatch, T extends Template<M>>
     if (tree == null) {
       return null;
     }
-    JCCompilationUnit compilationUnit = context.get(JCCompilationUnit.class);
-    for (T beforeTemplate : rule().beforeTemplates()) {
-      matchLoop:
-      for (M match : beforeTemplate.match((JCTree) tree, context)) {
-        if (rule().rejectMatchesWithComments()) {
-          String matchContents = match.getRange(compilationUnit);
-          JavaTokenizer tokenizer =
-              new JavaTokenizer(
-                  ScannerFactory.instance(context), CharBuffer.wrap(matchContents)) {};
-          for (Token token = tokenizer.readToken();
-              token.kind != TokenKind.EOF;
-              token = tokenizer.readToken()) {
-            if (token.comments != null && !token.comments.isEmpty()) {
-              continue matchLoop;
-            }
-          }
-        }
-        Description.Builder builder =
-            Description.builder(
-                match.getLocation(),
-                rule().qualifiedTemplateClass(),
-                "",
-                SeverityLevel.WARNING,
-                "");
-
-        if (rule().afterTemplates().isEmpty()) {
-          builder.addFix(SuggestedFix.prefixWith(match.getLocation(), "/* match found */ "));
-        } else {
-          for (T afterTemplate : rule().afterTemplates()) {
-            builder.addFix(afterTemplate.replace(match));
-          }
-        }
-        listener().onDescribed(builder.build());
+    for (RefasterRuleIndex.Candidate candidate : rules.candidates(tree)) {
+      int rule = candidate.ruleIndex();
+      if (enclosingTemplateClasses[rule] > 0) {
+        continue;
+      }
+      if (ruleContexts[rule] == null) {
+        ruleContexts[rule] = rules.rule(rule).prepareContext(context, compilationUnit);
       }
+      rules
+          .rule(rule)
+          .reportMatches(
+              candidate.templateIndex(), (JCTree) tree, ruleContexts[rule], listeners.apply(rule));
     }
     return super.scan(tree, context);
   }
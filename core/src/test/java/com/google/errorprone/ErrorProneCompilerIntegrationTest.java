@@ -554,6 +554,41 @@ public class ErrorProneCompilerIntegrationTest {
         .contains("An unhandled exception was thrown by the Error Prone static analysis plugin");
   }
 
+  @Test
+  public void crashingCheckIsDisabledAfterFailureLimit() {
+    compiler =
+        compilerBuilder.report(ScannerSupplier.fromBugCheckerClasses(CrashOnReturn.class)).build();
+    Result exitCode =
+        compiler.compile(
+            new String[] {"-XepCheckFailureLimit:2"},
+            Arrays.asList(
+                compiler
+                    .fileManager()
+                    .forSourceLines(
+                        "test/Test.java",
+                        "package Test;",
+                        "class Test {",
+                        "  void f() {",
+                        "    return;",
+                        "  }",
+                        "  void g() {",
+                        "    return;",
+                        "  }",
+                        "  void h() {",
+                        "    return;",
+                        "  }",
+                        "}")));
+    outputStream.flush();
+    assertThat(exitCode).named(outputStream.toString()).isEqualTo(Result.OK);
+    Diagnostic<? extends JavaFileObject> summary =
+        Iterables.getOnlyElement(diagnosticHelper.getDiagnostics());
+    assertThat(summary.getKind()).isEqualTo(Diagnostic.Kind.NOTE);
+    assertThat(summary.getMessage(ENGLISH))
+        .contains("CrashOnReturn: 2 exception(s), 0 time budget overrun(s), disabled; first at");
+    assertThat(summary.getMessage(ENGLISH))
+        .contains("test/Test.java:4: java.lang.NullPointerException");
+  }
+
   @Test
   public void compilePolicy_bytodo() {
     InvalidCommandLineOptionException e =
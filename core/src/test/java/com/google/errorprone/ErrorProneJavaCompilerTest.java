@@ -16,6 +16,7 @@
 
 package com.google.errorprone;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.errorprone.BugPattern.Category.JDK;
 import static com.google.errorprone.BugPattern.SeverityLevel.ERROR;
@@ -30,21 +31,32 @@ import static org.mockito.Mockito.verify;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.errorprone.BugPattern.ProvidesFix;
+import com.google.errorprone.annotations.Immutable;
 import com.google.errorprone.bugpatterns.ArrayEquals;
 import com.google.errorprone.bugpatterns.BadShiftAmount;
 import com.google.errorprone.bugpatterns.BugChecker;
 import com.google.errorprone.bugpatterns.BugChecker.ClassTreeMatcher;
+import com.google.errorprone.bugpatterns.BugChecker.CompilationUnitTreeMatcher;
+import com.google.errorprone.bugpatterns.BugChecker.MethodInvocationTreeMatcher;
+import com.google.errorprone.bugpatterns.BugChecker.MethodTreeMatcher;
 import com.google.errorprone.bugpatterns.ChainingConstructorIgnoresParameter;
 import com.google.errorprone.bugpatterns.Finally;
+import com.google.errorprone.bugpatterns.threadsafety.ThreadSafety;
+import com.google.errorprone.bugpatterns.threadsafety.WellKnownMutability;
 import com.google.errorprone.fixes.SuggestedFix;
 import com.google.errorprone.matchers.Description;
 import com.google.errorprone.scanner.ScannerSupplier;
 import com.google.errorprone.util.ASTHelpers;
 import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.MethodTree;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.code.Symbol.MethodSymbol;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -52,6 +64,9 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -422,6 +437,397 @@ public class ErrorProneJavaCompilerTest {
     assertThat(result.succeeded).isFalse();
   }
 
+  @Test
+  public void testProfile() throws IOException {
+    Path profile = tempDir.getRoot().toPath().resolve("profile.csv");
+    CompilationResult result =
+        doCompile(
+            Arrays.asList("bugpatterns/testdata/SelfAssignmentPositiveCases1.java"),
+            Arrays.asList("-XepProfile:" + profile),
+            Collections.<Class<? extends BugChecker>>emptyList());
+    assertThat(result.succeeded).isFalse();
+
+    List<String> lines = Files.readAllLines(profile, UTF_8);
+    assertThat(lines.get(0)).isEqualTo("check,kind,invocations,wall_nanos,allocated_bytes");
+    assertThat(lines.stream().anyMatch(line -> line.startsWith("SelfAssignment,ASSIGNMENT,")))
+        .isTrue();
+  }
+
+  @Test
+  public void testProfileCaches() throws IOException {
+    Path profile = tempDir.getRoot().toPath().resolve("profile.csv");
+    doCompile(
+        Arrays.asList("bugpatterns/testdata/SelfAssignmentPositiveCases1.java"),
+        Arrays.asList("-XepProfile:" + profile),
+        Collections.<Class<? extends BugChecker>>emptyList());
+
+    List<String> lines =
+        Files.readAllLines(tempDir.getRoot().toPath().resolve("profile.csv.caches.csv"), UTF_8);
+    assertThat(lines.get(0)).isEqualTo("cache,hits,misses");
+    assertThat(lines.stream().anyMatch(line -> line.startsWith("OverrideIndex,"))).isTrue();
+  }
+
+  @BugPattern(
+      name = "NullnessOfInvocations",
+      summary = "Computes the nullness of every method invocation.",
+      category = JDK,
+      severity = ERROR,
+      providesFix = ProvidesFix.NO_FIX)
+  public static class NullnessOfInvocations extends BugChecker
+      implements MethodInvocationTreeMatcher {
+    @Override
+    public Description matchMethodInvocation(MethodInvocationTree tree, VisitorState state) {
+      state.getNullnessAnalysis().getNullness(state.getPath(), state.context);
+      return Description.NO_MATCH;
+    }
+  }
+
+  @Test
+  public void testProfileNullnessInference() throws IOException {
+    Path profile = tempDir.getRoot().toPath().resolve("profile.csv");
+    CompilationResult result =
+        doCompile(
+            Arrays.asList("bugpatterns/testdata/OptionalNotPresentNegativeCases.java"),
+            Arrays.asList("-XepProfile:" + profile),
+            ImmutableList.of(NullnessOfInvocations.class));
+    assertThat(result.succeeded).isTrue();
+
+    List<String> caches =
+        Files.readAllLines(tempDir.getRoot().toPath().resolve("profile.csv.caches.csv"), UTF_8);
+    assertThat(caches.stream().anyMatch(line -> line.startsWith("NullnessInference,"))).isTrue();
+    List<String> counters =
+        Files.readAllLines(tempDir.getRoot().toPath().resolve("profile.csv.counters.csv"), UTF_8);
+    assertThat(counters.get(0)).isEqualTo("counter,value");
+    assertThat(
+            counters.stream().anyMatch(line -> line.startsWith("NullnessInference.constraints,")))
+        .isTrue();
+  }
+
+  @Test
+  public void testResultCache() throws IOException {
+    Path profile = tempDir.getRoot().toPath().resolve("profile.csv");
+    List<String> args =
+        Arrays.asList(
+            "-XepCacheDir:" + tempDir.getRoot().toPath().resolve("cache"),
+            "-XepProfile:" + profile);
+    CompilationResult first =
+        doCompile(
+            Arrays.asList("bugpatterns/testdata/SelfAssignmentPositiveCases1.java"),
+            args,
+            Collections.<Class<? extends BugChecker>>emptyList());
+    CompilationResult second =
+        doCompile(
+            Arrays.asList("bugpatterns/testdata/SelfAssignmentPositiveCases1.java"),
+            args,
+            Collections.<Class<? extends BugChecker>>emptyList());
+
+    assertThat(second.succeeded).isFalse();
+    assertThat(describe(second.diagnosticHelper.getDiagnostics()))
+        .containsExactlyElementsIn(describe(first.diagnosticHelper.getDiagnostics()))
+        .inOrder();
+    List<String> lines =
+        Files.readAllLines(tempDir.getRoot().toPath().resolve("profile.csv.caches.csv"), UTF_8);
+    assertThat(lines).contains("ResultCache,1,0");
+  }
+
+  @Test
+  public void testResultCacheKeyedByJavacOptions() throws IOException {
+    Path profile = tempDir.getRoot().toPath().resolve("profile.csv");
+    List<String> args =
+        Arrays.asList(
+            "-XepCacheDir:" + tempDir.getRoot().toPath().resolve("cache"),
+            "-XepProfile:" + profile);
+    doCompile(
+        Arrays.asList("bugpatterns/testdata/SelfAssignmentPositiveCases1.java"),
+        args,
+        Collections.<Class<? extends BugChecker>>emptyList());
+    List<String> withParameters = new ArrayList<>(args);
+    withParameters.add("-parameters");
+    doCompile(
+        Arrays.asList("bugpatterns/testdata/SelfAssignmentPositiveCases1.java"),
+        withParameters,
+        Collections.<Class<? extends BugChecker>>emptyList());
+
+    List<String> lines =
+        Files.readAllLines(tempDir.getRoot().toPath().resolve("profile.csv.caches.csv"), UTF_8);
+    assertThat(lines).contains("ResultCache,0,1");
+  }
+
+  /**
+   * Looks something up in a cache once in each compilation unit, and records how many hits the
+   * cache had during the lookup.
+   */
+  abstract static class CacheHitsPerCompilationUnit extends BugChecker
+      implements CompilationUnitTreeMatcher {
+    static final List<Long> hits = new ArrayList<>();
+
+    private final String cache;
+
+    CacheHitsPerCompilationUnit(String cache) {
+      this.cache = cache;
+    }
+
+    abstract void lookup(CompilationUnitTree tree, VisitorState state);
+
+    @Override
+    public Description matchCompilationUnit(CompilationUnitTree tree, VisitorState state) {
+      CheckProfiler.CacheStats stats = CheckProfiler.instance(state.context).cacheStats(cache);
+      long before = stats.hits();
+      lookup(tree, state);
+      hits.add(stats.hits() - before);
+      return Description.NO_MATCH;
+    }
+  }
+
+  /** Compiles two compilation units with {@code checker}, and returns the hits in each of them. */
+  private List<Long> cacheHitsPerCompilationUnit(
+      Class<? extends CacheHitsPerCompilationUnit> checker) {
+    CacheHitsPerCompilationUnit.hits.clear();
+    CompilationResult result =
+        doCompile(
+            Arrays.asList(
+                "bugpatterns/testdata/ArrayEqualsNegativeCases.java",
+                "bugpatterns/testdata/ArrayEqualsNegativeCases2.java"),
+            Arrays.asList("-XepProfile:" + tempDir.getRoot().toPath().resolve("profile.csv")),
+            ImmutableList.of(checker));
+    assertThat(result.diagnosticHelper.getDiagnostics()).isEmpty();
+    assertThat(result.succeeded).isTrue();
+    return CacheHitsPerCompilationUnit.hits;
+  }
+
+  @BugPattern(
+      name = "SuperMethodsOfSize",
+      summary = "Finds the methods ArrayList#size overrides in every compilation unit.",
+      category = JDK,
+      severity = ERROR,
+      providesFix = ProvidesFix.NO_FIX)
+  public static class SuperMethodsOfSize extends CacheHitsPerCompilationUnit {
+    public SuperMethodsOfSize() {
+      super("OverrideIndex");
+    }
+
+    @Override
+    void lookup(CompilationUnitTree tree, VisitorState state) {
+      ClassSymbol arrayList = (ClassSymbol) state.getSymbolFromString("java.util.ArrayList");
+      MethodSymbol size =
+          Iterables.getOnlyElement(
+              Iterables.filter(
+                  arrayList.members().getSymbolsByName(state.getName("size")), MethodSymbol.class));
+      assertThat(state.getOverrideIndex().superMethods(size))
+          .containsExactlyElementsIn(ASTHelpers.findSuperMethods(size, state.getTypes()))
+          .inOrder();
+    }
+  }
+
+  @Test
+  public void testOverrideIndexSharedByCompilationUnits() {
+    List<Long> hits = cacheHitsPerCompilationUnit(SuperMethodsOfSize.class);
+    assertThat(hits).containsExactly(0L, 1L).inOrder();
+  }
+
+  @BugPattern(
+      name = "StringIsDeprecated",
+      summary = "Checks whether String is deprecated in every compilation unit.",
+      category = JDK,
+      severity = ERROR,
+      providesFix = ProvidesFix.NO_FIX)
+  public static class StringIsDeprecated extends CacheHitsPerCompilationUnit {
+    public StringIsDeprecated() {
+      super("AnnotationIndex");
+    }
+
+    @Override
+    void lookup(CompilationUnitTree tree, VisitorState state) {
+      assertThat(
+              ASTHelpers.hasAnnotation(
+                  state.getSymtab().stringType.tsym, "java.lang.Deprecated", state))
+          .isFalse();
+    }
+  }
+
+  @Test
+  public void testAnnotationIndexSharedByCompilationUnits() {
+    List<Long> hits = cacheHitsPerCompilationUnit(StringIsDeprecated.class);
+    assertThat(hits).containsExactly(0L, 1L).inOrder();
+  }
+
+  @BugPattern(
+      name = "ResolveList",
+      summary = "Resolves java.util.List in every compilation unit.",
+      category = JDK,
+      severity = ERROR,
+      providesFix = ProvidesFix.NO_FIX)
+  public static class ResolveList extends CacheHitsPerCompilationUnit {
+    public ResolveList() {
+      super("Resolution");
+    }
+
+    @Override
+    void lookup(CompilationUnitTree tree, VisitorState state) {
+      assertThat(state.getTypeFromString("java.util.List")).isNotNull();
+    }
+  }
+
+  @Test
+  public void testResolutionCacheSharedByCompilationUnits() {
+    List<Long> hits = cacheHitsPerCompilationUnit(ResolveList.class);
+    assertThat(hits).hasSize(2);
+    assertThat(hits.get(1)).isGreaterThan(0L);
+  }
+
+  @BugPattern(
+      name = "StringIsThreadSafe",
+      summary = "Checks that String is thread-safe in every compilation unit.",
+      category = JDK,
+      severity = ERROR,
+      providesFix = ProvidesFix.NO_FIX)
+  public static class StringIsThreadSafe extends CacheHitsPerCompilationUnit {
+    private final WellKnownMutability knownTypes =
+        WellKnownMutability.fromFlags(ErrorProneFlags.empty());
+
+    public StringIsThreadSafe() {
+      super("ThreadSafety");
+    }
+
+    @Override
+    void lookup(CompilationUnitTree tree, VisitorState state) {
+      ThreadSafety threadSafety =
+          ThreadSafety.builder()
+              .knownTypes(knownTypes)
+              .markerAnnotations(ImmutableSet.of(Immutable.class.getName()))
+              .build(state);
+      assertThat(
+              threadSafety
+                  .isThreadSafeType(
+                      /* allowContainerTypeParameters= */ true,
+                      ImmutableSet.of(),
+                      state.getSymtab().stringType)
+                  .isPresent())
+          .isFalse();
+    }
+  }
+
+  @Test
+  public void testThreadSafetyCacheSharedByCompilationUnits() {
+    List<Long> hits = cacheHitsPerCompilationUnit(StringIsThreadSafe.class);
+    assertThat(hits).containsExactly(0L, 1L).inOrder();
+  }
+
+  @BugPattern(
+      name = "ThrowsOnMethods",
+      summary = "Throws an exception for every method.",
+      category = JDK,
+      severity = ERROR,
+      providesFix = ProvidesFix.NO_FIX)
+  public static class ThrowsOnMethods extends BugChecker implements MethodTreeMatcher {
+    static int invocations;
+
+    @Override
+    public Description matchMethod(MethodTree tree, VisitorState state) {
+      invocations++;
+      throw new IllegalStateException("broken check");
+    }
+  }
+
+  @BugPattern(
+      name = "SlowOnMethods",
+      summary = "Takes a long time for every method.",
+      category = JDK,
+      severity = ERROR,
+      providesFix = ProvidesFix.NO_FIX)
+  public static class SlowOnMethods extends BugChecker implements MethodTreeMatcher {
+    static int invocations;
+
+    @Override
+    public Description matchMethod(MethodTree tree, VisitorState state) {
+      invocations++;
+      try {
+        Thread.sleep(20);
+      } catch (InterruptedException e) {
+        throw new AssertionError(e);
+      }
+      return Description.NO_MATCH;
+    }
+  }
+
+  private static final ImmutableList<String> TWO_COMPILATION_UNITS =
+      ImmutableList.of(
+          "bugpatterns/testdata/ArrayEqualsNegativeCases.java",
+          "bugpatterns/testdata/ArrayEqualsNegativeCases2.java");
+
+  @Test
+  public void testCheckFailureLimit() {
+    ThrowsOnMethods.invocations = 0;
+    CompilationResult result =
+        doCompile(
+            TWO_COMPILATION_UNITS,
+            Arrays.asList("-XepCheckFailureLimit:2"),
+            ImmutableList.of(ThrowsOnMethods.class));
+    assertThat(result.succeeded).isTrue();
+    assertThat(ThrowsOnMethods.invocations).isEqualTo(2);
+    Diagnostic<? extends JavaFileObject> summary =
+        Iterables.getOnlyElement(result.diagnosticHelper.getDiagnostics());
+    assertThat(summary.getKind()).isEqualTo(Diagnostic.Kind.NOTE);
+    assertThat(summary.getMessage(Locale.ENGLISH))
+        .contains("ThrowsOnMethods: 2 exception(s), 0 time budget overrun(s), disabled; first at");
+    assertThat(summary.getMessage(Locale.ENGLISH))
+        .contains("ArrayEqualsNegativeCases.java:23: java.lang.IllegalStateException: broken check");
+  }
+
+  @Test
+  public void testCheckTimeBudget_doesNotIsolateExceptions() {
+    CompilationResult result =
+        doCompile(
+            TWO_COMPILATION_UNITS,
+            Arrays.asList("-XepCheckTimeBudget:60000"),
+            ImmutableList.of(ThrowsOnMethods.class));
+    assertThat(result.succeeded).isFalse();
+    assertThat(describe(result.diagnosticHelper.getDiagnostics()).toString())
+        .contains("An unhandled exception was thrown by the Error Prone static analysis plugin");
+  }
+
+  @Test
+  public void testCheckTimeBudget() {
+    SlowOnMethods.invocations = 0;
+    CompilationResult result =
+        doCompile(
+            TWO_COMPILATION_UNITS,
+            Arrays.asList("-XepCheckTimeBudget:1", "-XepCheckOverrunLimit:1"),
+            ImmutableList.of(SlowOnMethods.class));
+    assertThat(result.succeeded).isTrue();
+    // the check is disabled after its first invocation, including in the second compilation unit
+    assertThat(SlowOnMethods.invocations).isEqualTo(1);
+    Diagnostic<? extends JavaFileObject> summary =
+        Iterables.getOnlyElement(result.diagnosticHelper.getDiagnostics());
+    assertThat(summary.getKind()).isEqualTo(Diagnostic.Kind.NOTE);
+    assertThat(summary.getMessage(Locale.ENGLISH))
+        .contains("SlowOnMethods: 0 exception(s), 1 time budget overrun(s), disabled");
+  }
+
+  @Test
+  public void testCheckTimeBudget_defaultOverrunLimit() {
+    SlowOnMethods.invocations = 0;
+    CompilationResult result =
+        doCompile(
+            TWO_COMPILATION_UNITS,
+            Arrays.asList("-XepCheckTimeBudget:1"),
+            ImmutableList.of(SlowOnMethods.class));
+    assertThat(result.succeeded).isTrue();
+    // a single slow invocation doesn't disable the check
+    assertThat(SlowOnMethods.invocations).isEqualTo(3);
+    assertThat(
+            Iterables.getOnlyElement(result.diagnosticHelper.getDiagnostics())
+                .getMessage(Locale.ENGLISH))
+        .contains("SlowOnMethods: 0 exception(s), 3 time budget overrun(s), disabled");
+  }
+
+  private static ImmutableList<String> describe(
+      List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+    return diagnostics.stream()
+        .map(d -> d.getLineNumber() + ": " + d.getMessage(Locale.ENGLISH))
+        .collect(toImmutableList());
+  }
+
   private static class CompilationResult {
     public final boolean succeeded;
     public final DiagnosticTestHelper diagnosticHelper;
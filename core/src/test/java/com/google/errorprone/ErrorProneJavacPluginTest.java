@@ -213,7 +213,8 @@ public class ErrorProneJavacPluginTest {
                 .filter(l -> l.startsWith("--- "))
                 .map(l -> Paths.get(l.substring("--- ".length())).getFileName().toString())
                 .collect(toImmutableList()))
-        .containsExactly("A.java", "B.java");
+        .containsExactly("A.java", "B.java")
+        .inOrder();
   }
 
   @Test
@@ -56,6 +56,38 @@ public class FieldCanBeFinalTest {
         .doTest();
   }
 
+  @Test
+  public void nestedDeclarations() {
+    compilationHelper
+        .addSourceLines(
+            "Test.java",
+            "class Test {",
+            "  private int x;",
+            "  // BUG: Diagnostic contains: private final int y",
+            "  private int y;",
+            "  private int z;",
+            "  Test() {",
+            "    y = 1;",
+            "    new Object() {",
+            "      void f() {",
+            "        x = 1;",
+            "      }",
+            "    };",
+            "  }",
+            "  @SuppressWarnings(\"FieldCanBeFinal\")",
+            "  class Suppressed {",
+            "    private int w;",
+            "    Suppressed() {",
+            "      w = 1;",
+            "    }",
+            "  }",
+            "  void g() {",
+            "    z++;",
+            "  }",
+            "}")
+        .doTest();
+  }
+
   @Test
   public void initializerBlocks() {
     compilationHelper
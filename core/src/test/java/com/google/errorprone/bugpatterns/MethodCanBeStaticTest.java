@@ -242,6 +242,22 @@ public class MethodCanBeStaticTest {
         .doTest();
   }
 
+  @Test
+  public void negativeSuppressedEnclosing() {
+    testHelper
+        .addSourceLines(
+            "Test.java",
+            "@SuppressWarnings(\"MethodCanBeStatic\")",
+            "class Test {",
+            "  static class Inner {",
+            "    private String f() {",
+            "      return \"\";",
+            "    }",
+            "  }",
+            "}")
+        .doTest();
+  }
+
   @Test
   public void negativeOverride() {
     testHelper
@@ -59,6 +59,29 @@ public class UnusedTest {
   }
 
 
+  @Test
+  public void usedBeforeDeclaration() {
+    helper
+        .addSourceLines(
+            "UsedBeforeDeclaration.java",
+            "package unusedvars;",
+            "public class UsedBeforeDeclaration {",
+            "  public int test() {",
+            "    return used() + usedField;",
+            "  }",
+            "  public void assign() {",
+            "    unusedField = 1;",
+            "  }",
+            "  private int used() {",
+            "    return 1;",
+            "  }",
+            "  private int usedField;",
+            "  // BUG: Diagnostic contains: is never read",
+            "  private int unusedField;",
+            "}")
+        .doTest();
+  }
+
   @Test
   public void unicodeBytes() {
     helper
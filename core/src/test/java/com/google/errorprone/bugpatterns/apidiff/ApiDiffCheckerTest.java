@@ -38,6 +38,7 @@ import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -379,4 +380,54 @@ public class ApiDiffCheckerTest {
     assertThat(getOnlyElement(result.diagnostics()).getMessage(Locale.ENGLISH))
         .contains("lib.A#f() is not available in <anonymous Test$1>");
   }
+
+  @Test
+  public void lazyDiff() {
+    ApiDiff eager =
+        ApiDiff.fromMembers(
+            ImmutableSet.of("lib/A"),
+            ImmutableSetMultimap.of(
+                "lib/B", ClassMemberKey.create("f", "()V"),
+                "lib/B", ClassMemberKey.create("g", "")));
+    AtomicInteger loads = new AtomicInteger();
+    ApiDiff diff =
+        ApiDiff.lazy(
+            () -> {
+              loads.incrementAndGet();
+              return ApiDiff.fromProto(eager.toProto());
+            });
+    assertThat(loads.get()).isEqualTo(0);
+
+    assertThat(diff.isClassUnsupported("lib/A")).isTrue();
+    assertThat(diff.isClassUnsupported("lib/B")).isFalse();
+    assertThat(diff.hasUnsupportedMembers("lib/A")).isFalse();
+    assertThat(diff.isMemberUnsupported("lib/B", "f", "()V")).isTrue();
+    assertThat(diff.isMemberUnsupported("lib/B", "f", "(I)V")).isFalse();
+    assertThat(diff.isMemberUnsupported("lib/B", "g", "(I)V")).isTrue();
+    assertThat(diff.unsupportedMembersByClass()).isEqualTo(eager.unsupportedMembersByClass());
+    assertThat(loads.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void equality() {
+    ApiDiff diff =
+        ApiDiff.fromMembers(
+            ImmutableSet.of("lib/A"),
+            ImmutableSetMultimap.of("lib/B", ClassMemberKey.create("f", "()V")));
+    ApiDiff same =
+        ApiDiff.lazy(
+            () ->
+                ApiDiff.fromMembers(
+                    ImmutableSet.of("lib/A"),
+                    ImmutableSetMultimap.of("lib/B", ClassMemberKey.create("f", "()V"))));
+    ApiDiff different =
+        ApiDiff.fromMembers(
+            ImmutableSet.of("lib/A"),
+            ImmutableSetMultimap.of("lib/B", ClassMemberKey.create("g", "()V")));
+
+    assertThat(same).isEqualTo(diff);
+    assertThat(same.hashCode()).isEqualTo(diff.hashCode());
+    assertThat(ApiDiff.fromProto(diff.toProto())).isEqualTo(diff);
+    assertThat(different).isNotEqualTo(diff);
+  }
 }
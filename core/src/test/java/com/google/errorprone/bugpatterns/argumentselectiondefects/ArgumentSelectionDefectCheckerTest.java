@@ -15,6 +15,10 @@
  */
 package com.google.errorprone.bugpatterns.argumentselectiondefects;
 
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.errorprone.BugPattern;
 import com.google.errorprone.BugPattern.Category;
@@ -26,8 +30,15 @@ import com.google.errorprone.bugpatterns.BugChecker.MethodInvocationTreeMatcher;
 import com.google.errorprone.matchers.Description;
 import com.google.errorprone.util.ASTHelpers;
 import com.sun.source.tree.MethodInvocationTree;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Function;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
@@ -39,6 +50,8 @@ import org.junit.runners.JUnit4;
 @RunWith(JUnit4.class)
 public class ArgumentSelectionDefectCheckerTest {
 
+  @Rule public final TemporaryFolder tempDir = new TemporaryFolder();
+
   /**
    * A {@link BugChecker} which runs the ArgumentSelectionDefectChecker checker using string
    * equality for edit distance
@@ -73,6 +86,95 @@ public class ArgumentSelectionDefectCheckerTest {
         .doTest();
   }
 
+  @Test
+  public void argumentSelectionDefectChecker_reusesFormalParameters_acrossCompilationUnits()
+      throws IOException {
+    Path profile = tempDir.getRoot().toPath().resolve("profile.csv");
+    CompilationTestHelper.newInstance(ArgumentSelectionDefectWithStringEquality.class, getClass())
+        .addSourceLines(
+            "Target.java",
+            "abstract class Target {",
+            "  abstract void target(Object first, Object second);",
+            "  void test(Object first, Object second) {",
+            "     target(first, second);",
+            "  }",
+            "}")
+        .addSourceLines(
+            "Test.java",
+            "class Test {",
+            "  void test(Target t, Object first, Object second) {",
+            "     t.target(first, second);",
+            "  }",
+            "}")
+        .setArgs(ImmutableList.of("-XepProfile:" + profile))
+        .expectNoDiagnostics()
+        .doTest();
+
+    assertThat(
+            Files.readAllLines(tempDir.getRoot().toPath().resolve("profile.csv.caches.csv"), UTF_8))
+        .contains("FormalParameters,1,1");
+  }
+
+  /** A {@link BugChecker} which records the pairs of parameters it computes the distance of */
+  @BugPattern(
+      name = "ArgumentSelectionDefectWithRecordedDistances",
+      category = Category.ONE_OFF,
+      severity = SeverityLevel.ERROR,
+      summary = "Run the ArgumentSelectionDefectChecker checker, recording the pairs it compares")
+  public static class ArgumentSelectionDefectWithRecordedDistances
+      extends ArgumentSelectionDefectChecker {
+
+    static final List<String> pairs = new ArrayList<>();
+
+    public ArgumentSelectionDefectWithRecordedDistances() {
+      super(
+          ArgumentChangeFinder.builder()
+              .setDistanceFunction(
+                  pair -> {
+                    pairs.add(pair.formal().name() + "=" + pair.actual().name());
+                    return buildEqualityFunction().apply(pair);
+                  })
+              .build());
+    }
+  }
+
+  @Test
+  public void argumentSelectionDefectChecker_computesNoDistances_whenNoSwapIsTypeCorrect() {
+    ArgumentSelectionDefectWithRecordedDistances.pairs.clear();
+    CompilationTestHelper.newInstance(
+            ArgumentSelectionDefectWithRecordedDistances.class, getClass())
+        .addSourceLines(
+            "Test.java",
+            "abstract class Test {",
+            "  abstract void target(String first, Integer second);",
+            "  void test(String second, Integer first) {",
+            "     target(second, first);",
+            "  }",
+            "}")
+        .expectNoDiagnostics()
+        .doTest();
+    assertThat(ArgumentSelectionDefectWithRecordedDistances.pairs).isEmpty();
+  }
+
+  @Test
+  public void argumentSelectionDefectChecker_computesDistances_whenSwapIsTypeCorrect() {
+    ArgumentSelectionDefectWithRecordedDistances.pairs.clear();
+    CompilationTestHelper.newInstance(
+            ArgumentSelectionDefectWithRecordedDistances.class, getClass())
+        .addSourceLines(
+            "Test.java",
+            "abstract class Test {",
+            "  abstract void target(String first, Object second);",
+            "  void test(String second, Integer first) {",
+            "     target(second, first);",
+            "  }",
+            "}")
+        .expectNoDiagnostics()
+        .doTest();
+    assertThat(ArgumentSelectionDefectWithRecordedDistances.pairs)
+        .containsExactly("first=second", "second=second", "second=first");
+  }
+
   @Test
   public void argumentSelectionDefectChecker_findsSwap_withSwappedMatchingPairWithMethod() {
     CompilationTestHelper.newInstance(ArgumentSelectionDefectWithStringEquality.class, getClass())
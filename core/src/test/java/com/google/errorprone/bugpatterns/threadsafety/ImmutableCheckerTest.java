@@ -16,14 +16,28 @@
 
 package com.google.errorprone.bugpatterns.threadsafety;
 
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import com.google.common.collect.ImmutableList;
 import com.google.errorprone.CompilationTestHelper;
+import com.google.errorprone.ErrorProneJavaCompiler;
 import com.google.errorprone.annotations.Immutable;
 import com.google.errorprone.annotations.concurrent.LazyInit;
+import com.google.errorprone.scanner.ScannerSupplier;
+import com.google.testing.compile.JavaFileObjects;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import javax.tools.JavaFileObject;
 import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
@@ -31,6 +45,8 @@ import org.junit.runners.JUnit4;
 @RunWith(JUnit4.class)
 public class ImmutableCheckerTest {
 
+  @Rule public final TemporaryFolder tempFolder = new TemporaryFolder();
+
   private final CompilationTestHelper compilationHelper =
       CompilationTestHelper.newInstance(ImmutableChecker.class, getClass());
 
@@ -292,6 +308,256 @@ public class ImmutableCheckerTest {
         .doTest();
   }
 
+  @Test
+  public void sameFieldTypeInManyClasses() {
+    compilationHelper
+        .addSourceLines("Foo.java", "class Foo {}")
+        .addSourceLines(
+            "A.java",
+            "import com.google.errorprone.annotations.Immutable;",
+            "import com.google.common.collect.ImmutableList;",
+            "@Immutable class A {",
+            "  // BUG: Diagnostic contains: 'A' has field 'foos' of type",
+            "  final ImmutableList<Foo> foos = null;",
+            "}")
+        .addSourceLines(
+            "B.java",
+            "import com.google.errorprone.annotations.Immutable;",
+            "import com.google.common.collect.ImmutableList;",
+            "@Immutable class B {",
+            "  // BUG: Diagnostic contains: 'B' has field 'foos' of type",
+            "  final ImmutableList<Foo> foos = null;",
+            "  final ImmutableList<String> strings = null;",
+            "}")
+        .addSourceLines(
+            "C.java",
+            "import com.google.errorprone.annotations.Immutable;",
+            "import com.google.common.collect.ImmutableList;",
+            "@Immutable(containerOf = \"T\") class C<T> {",
+            "  final ImmutableList<T> ts = null;",
+            "  final ImmutableList<String> strings = null;",
+            "  @Immutable class Inner {",
+            "    final ImmutableList<T> ts = null;",
+            "  }",
+            "  @Immutable static class Nested<T> {",
+            "    // BUG: Diagnostic contains: 'T' is a mutable type variable",
+            "    final ImmutableList<T> ts = null;",
+            "  }",
+            "}")
+        .doTest();
+  }
+
+  /**
+   * Compiles {@code sources} to {@code output} with {@link ImmutableChecker}, and returns whether
+   * the compilation succeeded.
+   */
+  private static boolean compileLibrary(
+      Path output, List<String> flags, JavaFileObject... sources) throws IOException {
+    Files.createDirectories(output);
+    List<String> args = new ArrayList<>();
+    args.addAll(
+        Arrays.asList(
+            "-d", output.toString(), "-proc:none", "-cp", System.getProperty("java.class.path")));
+    args.addAll(flags);
+    return new ErrorProneJavaCompiler(
+            ScannerSupplier.fromBugCheckerClasses(ImmutableChecker.class))
+        .getTask(
+            /* out= */ null,
+            /* fileManager= */ null,
+            /* diagnosticListener= */ null,
+            args,
+            /* classes= */ null,
+            Arrays.asList(sources))
+        .call();
+  }
+
+  /** Compiles the classes the summaries in the tests below describe to {@code output}. */
+  private static void compileSummarizedLibrary(Path output) throws IOException {
+    assertThat(
+            compileLibrary(
+                output,
+                ImmutableList.of(),
+                JavaFileObjects.forSourceLines(
+                    "lib.Money", "package lib;", "public class Money {}"),
+                JavaFileObjects.forSourceLines("lib.Box", "package lib;", "public class Box<T> {}"),
+                JavaFileObjects.forSourceLines(
+                    "lib.Handle", "package lib;", "public class Handle {}")))
+        .isTrue();
+  }
+
+  private static void writeSummary(Path classpathEntry, String... lines) throws IOException {
+    Path summary = classpathEntry.resolve(MutabilitySummary.RESOURCE_NAME);
+    Files.createDirectories(summary.getParent());
+    Files.write(summary, Arrays.asList(lines), UTF_8);
+  }
+
+  private static ImmutableList<String> classpathWith(List<String> flags, Path... entries) {
+    StringBuilder classpath = new StringBuilder(System.getProperty("java.class.path"));
+    for (Path entry : entries) {
+      classpath.append(File.pathSeparator).append(entry);
+    }
+    return ImmutableList.<String>builder()
+        .add("-cp", classpath.toString())
+        .addAll(flags)
+        .build();
+  }
+
+  private static final ImmutableList<String> READ_SUMMARIES =
+      ImmutableList.of("-XepOpt:Immutable:ClasspathSummaries=true");
+
+  @Test
+  public void classpathSummary() throws IOException {
+    Path lib = tempFolder.getRoot().toPath().resolve("lib");
+    compileSummarizedLibrary(lib);
+    writeSummary(
+        lib,
+        "# the mutability of the classes in lib", //
+        "immutable lib.Money",
+        "immutable lib.Box T",
+        "mutable lib.Handle");
+    compilationHelper
+        .setArgs(classpathWith(READ_SUMMARIES, lib))
+        .addSourceLines(
+            "Test.java",
+            "import com.google.errorprone.annotations.Immutable;",
+            "import lib.Box;",
+            "import lib.Handle;",
+            "import lib.Money;",
+            "@Immutable class Test {",
+            "  final Money money = null;",
+            "  final Box<String> strings = null;",
+            "  // BUG: Diagnostic contains: 'Box' was instantiated with mutable type for 'T'",
+            "  final Box<Object> objects = null;",
+            "  // BUG: Diagnostic contains: 'Handle' is mutable",
+            "  final Handle handle = null;",
+            "}")
+        .doTest();
+  }
+
+  @Test
+  public void classpathSummary_offByDefault() throws IOException {
+    Path lib = tempFolder.getRoot().toPath().resolve("lib");
+    compileSummarizedLibrary(lib);
+    writeSummary(lib, "immutable lib.Money");
+    compilationHelper
+        .setArgs(classpathWith(ImmutableList.of(), lib))
+        .addSourceLines(
+            "Test.java",
+            "import com.google.errorprone.annotations.Immutable;",
+            "import lib.Money;",
+            "@Immutable class Test {",
+            "  // BUG: Diagnostic contains: the declaration of type 'lib.Money' is not annotated",
+            "  final Money money = null;",
+            "}")
+        .doTest();
+  }
+
+  @Test
+  public void classpathSummary_onlyTrustedForItsOwnClasspathEntry() throws IOException {
+    Path lib = tempFolder.getRoot().toPath().resolve("lib");
+    compileSummarizedLibrary(lib);
+    Path other = tempFolder.getRoot().toPath().resolve("other");
+    writeSummary(other, "immutable lib.Money");
+    compilationHelper
+        .setArgs(classpathWith(READ_SUMMARIES, other, lib))
+        .addSourceLines(
+            "Test.java",
+            "import com.google.errorprone.annotations.Immutable;",
+            "import lib.Money;",
+            "@Immutable class Test {",
+            "  // BUG: Diagnostic contains: the declaration of type 'lib.Money' is not annotated",
+            "  final Money money = null;",
+            "}")
+        .doTest();
+  }
+
+  @Test
+  public void classpathSummary_unknownContainerOf() throws IOException {
+    Path lib = tempFolder.getRoot().toPath().resolve("lib");
+    compileSummarizedLibrary(lib);
+    writeSummary(lib, "immutable lib.Box U");
+    compilationHelper
+        .setArgs(classpathWith(READ_SUMMARIES, lib))
+        .addSourceLines(
+            "Test.java",
+            "import com.google.errorprone.annotations.Immutable;",
+            "import lib.Box;",
+            "@Immutable class Test {",
+            "  // BUG: Diagnostic contains: the declaration of type 'lib.Box<java.lang.String>'",
+            "  final Box<String> strings = null;",
+            "}")
+        .doTest();
+  }
+
+  @Test
+  public void classpathSummary_malformed() throws IOException {
+    Path lib = tempFolder.getRoot().toPath().resolve("lib");
+    compileSummarizedLibrary(lib);
+    writeSummary(lib, "immutable lib.Money", "immutable");
+    compilationHelper
+        .setArgs(classpathWith(READ_SUMMARIES, lib))
+        .addSourceLines(
+            "Test.java",
+            "import com.google.errorprone.annotations.Immutable;",
+            "import lib.Money;",
+            "@Immutable class Test {",
+            "  // BUG: Diagnostic contains: the declaration of type 'lib.Money' is not annotated",
+            "  final Money money = null;",
+            "}")
+        .doTest();
+  }
+
+  @Test
+  public void writesClasspathSummary() throws IOException {
+    Path lib = tempFolder.getRoot().toPath().resolve("lib");
+    assertThat(
+            compileLibrary(
+                lib,
+                ImmutableList.of("-XepOpt:Immutable:WriteClasspathSummary=true"),
+                JavaFileObjects.forSourceLines(
+                    "lib.Money",
+                    "package lib;",
+                    "import com.google.errorprone.annotations.Immutable;",
+                    "@Immutable public class Money {",
+                    "  final long cents = 0;",
+                    "  @Immutable public static class Currency {}",
+                    "}"),
+                JavaFileObjects.forSourceLines(
+                    "lib.Box",
+                    "package lib;",
+                    "import com.google.errorprone.annotations.Immutable;",
+                    "@Immutable(containerOf = \"T\") public class Box<T> {",
+                    "  final T t = null;",
+                    "}"),
+                JavaFileObjects.forSourceLines(
+                    "lib.Handle", "package lib;", "public class Handle {", "  int value;", "}")))
+        .isTrue();
+    MutabilitySummary summary =
+        MutabilitySummary.parse(
+            new String(
+                Files.readAllBytes(lib.resolve(MutabilitySummary.RESOURCE_NAME)), UTF_8));
+    assertThat(summary.immutableClasses().keySet())
+        .containsExactly("lib.Box", "lib.Money", "lib.Money$Currency")
+        .inOrder();
+    assertThat(summary.immutableClasses().get("lib.Box").containerOf()).containsExactly("T");
+    assertThat(summary.mutableClasses()).isEmpty();
+
+    // and downstream compilations read it back
+    compilationHelper
+        .setArgs(classpathWith(READ_SUMMARIES, lib))
+        .addSourceLines(
+            "Test.java",
+            "import com.google.errorprone.annotations.Immutable;",
+            "import lib.Box;",
+            "import lib.Money;",
+            "@Immutable class Test {",
+            "  final Box<Money.Currency> currencies = null;",
+            "  // BUG: Diagnostic contains: 'Box' was instantiated with mutable type for 'T'",
+            "  final Box<Object> objects = null;",
+            "}")
+        .doTest();
+  }
+
   @Test
   public void rawImpliesImmutable() {
     compilationHelper
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.dataflow;
+
+import static com.google.common.collect.Iterables.getOnlyElement;
+import static com.google.errorprone.BugPattern.Category.JDK;
+import static com.google.errorprone.BugPattern.SeverityLevel.ERROR;
+
+import com.google.common.cache.CacheStats;
+import com.google.errorprone.BugPattern;
+import com.google.errorprone.CompilationTestHelper;
+import com.google.errorprone.VisitorState;
+import com.google.errorprone.bugpatterns.BugChecker;
+import com.google.errorprone.bugpatterns.BugChecker.CompilationUnitTreeMatcher;
+import com.google.errorprone.matchers.Description;
+import com.google.errorprone.util.ASTHelpers;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.tools.javac.code.Symbol.VarSymbol;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** {@link DataFlow}Test */
+@RunWith(JUnit4.class)
+public class DataFlowTest {
+
+  @Test
+  public void cachesEveryMethodInTheCompilationUnit() {
+    CompilationTestHelper.newInstance(InterleavedNullness.class, getClass())
+        .addSourceLines(
+            "Test.java",
+            "// BUG: Diagnostic contains: cfg misses: 2, cfg hits: 2, analysis misses: 2",
+            "class Test {",
+            "  void a(Object x) {",
+            "    x.hashCode();",
+            "    x.hashCode();",
+            "  }",
+            "  void b(Object y) {",
+            "    y.hashCode();",
+            "    y.hashCode();",
+            "  }",
+            "}")
+        .doTest();
+  }
+
+  /**
+   * Queries the nullness of every variable use, alternating between the first and the second half
+   * of the compilation unit.
+   */
+  @BugPattern(
+      name = "InterleavedNullness",
+      summary = "Reports dataflow cache statistics.",
+      category = JDK,
+      severity = ERROR)
+  public static class InterleavedNullness extends BugChecker
+      implements CompilationUnitTreeMatcher {
+    @Override
+    public Description matchCompilationUnit(CompilationUnitTree tree, VisitorState state) {
+      List<TreePath> uses = new ArrayList<>();
+      new TreePathScanner<Void, Void>() {
+        @Override
+        public Void visitIdentifier(IdentifierTree node, Void unused) {
+          if (ASTHelpers.getSymbol(node) instanceof VarSymbol) {
+            uses.add(getCurrentPath());
+          }
+          return null;
+        }
+      }.scan(state.getPath(), null);
+      CacheStats cfgBefore = DataFlow.cfgCacheStats();
+      CacheStats analysisBefore = DataFlow.analysisCacheStats();
+      int half = uses.size() / 2;
+      for (int i = 0; i < half; i++) {
+        state.getNullnessAnalysis().getNullness(uses.get(i), state.context);
+        state.getNullnessAnalysis().getNullness(uses.get(half + i), state.context);
+      }
+      CacheStats cfg = DataFlow.cfgCacheStats().minus(cfgBefore);
+      CacheStats analysis = DataFlow.analysisCacheStats().minus(analysisBefore);
+      return buildDescription(getOnlyElement(tree.getTypeDecls()))
+          .setMessage(
+              String.format(
+                  "cfg misses: %d, cfg hits: %d, analysis misses: %d",
+                  cfg.missCount(), cfg.hitCount(), analysis.missCount()))
+          .build();
+    }
+  }
+}
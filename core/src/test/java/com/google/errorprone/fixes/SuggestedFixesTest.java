@@ -940,6 +940,115 @@ public class SuggestedFixesTest {
         .doTest();
   }
 
+  /**
+   * A test bugchecker that deletes any variable whose removal doesn't break the compilation unit.
+   */
+  @BugPattern(
+      name = "CompilesWithFixIncrementallyChecker",
+      category = JDK,
+      summary = "",
+      severity = ERROR,
+      providesFix = REQUIRES_HUMAN_ATTENTION)
+  public static class CompilesWithFixIncrementallyChecker extends BugChecker
+      implements VariableTreeMatcher {
+    @Override
+    public Description matchVariable(VariableTree tree, VisitorState state) {
+      Fix fix = SuggestedFix.delete(tree);
+      return SuggestedFixes.compilesWithFixIncrementally(fix, state)
+          ? describeMatch(tree, fix)
+          : Description.NO_MATCH;
+    }
+  }
+
+  @Test
+  public void compilesWithFixIncrementally() {
+    BugCheckerRefactoringTestHelper.newInstance(
+            new CompilesWithFixIncrementallyChecker(), getClass())
+        .addInputLines(
+            "in/Other.java", //
+            "class Other {",
+            "  static int value() {",
+            "    return 0;",
+            "  }",
+            "}")
+        .expectUnchanged()
+        .addInputLines(
+            "in/Test.java",
+            "class Test {",
+            "  void f() {",
+            "    int x = Other.value();",
+            "    int y = 1;",
+            "    System.err.println(y);",
+            "  }",
+            "}")
+        .addOutputLines(
+            "out/Test.java",
+            "class Test {",
+            "  void f() {",
+            "    int y = 1;",
+            "    System.err.println(y);",
+            "  }",
+            "}")
+        .doTest();
+  }
+
+  /** A test bugchecker that deletes all the local variables of a method that are unused. */
+  @BugPattern(
+      name = "CompilesWithFixesIncrementallyChecker",
+      category = JDK,
+      summary = "",
+      severity = ERROR,
+      providesFix = REQUIRES_HUMAN_ATTENTION)
+  public static class CompilesWithFixesIncrementallyChecker extends BugChecker
+      implements MethodTreeMatcher {
+    @Override
+    public Description matchMethod(MethodTree tree, VisitorState state) {
+      if (tree.getBody() == null) {
+        return NO_MATCH;
+      }
+      ImmutableList<SuggestedFix> fixes =
+          tree.getBody().getStatements().stream()
+              .filter(VariableTree.class::isInstance)
+              .map(SuggestedFix::delete)
+              .collect(ImmutableList.toImmutableList());
+      ImmutableList<Boolean> compiles = SuggestedFixes.compilesWithFixesIncrementally(fixes, state);
+      SuggestedFix.Builder fix = SuggestedFix.builder();
+      for (int i = 0; i < fixes.size(); i++) {
+        if (compiles.get(i)) {
+          fix.merge(fixes.get(i));
+        }
+      }
+      return fix.isEmpty() ? NO_MATCH : describeMatch(tree, fix.build());
+    }
+  }
+
+  @Test
+  public void compilesWithFixesIncrementally() {
+    BugCheckerRefactoringTestHelper.newInstance(
+            new CompilesWithFixesIncrementallyChecker(), getClass())
+        .addInputLines(
+            "in/Test.java",
+            "class Test {",
+            "  void f() {",
+            "    int a = 0;",
+            "    int b = 1;",
+            "    int c = 2;",
+            "    int d = b;",
+            "    System.err.println(d);",
+            "  }",
+            "}")
+        .addOutputLines(
+            "out/Test.java",
+            "class Test {",
+            "  void f() {",
+            "    int b = 1;",
+            "    int d = b;",
+            "    System.err.println(d);",
+            "  }",
+            "}")
+        .doTest();
+  }
+
   /** A test bugchecker that deletes an exception from throws. */
   @BugPattern(
       name = "RemovesExceptionChecker",
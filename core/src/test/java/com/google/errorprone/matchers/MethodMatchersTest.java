@@ -28,13 +28,16 @@ import com.google.errorprone.BugPattern.ProvidesFix;
 import com.google.errorprone.CompilationTestHelper;
 import com.google.errorprone.VisitorState;
 import com.google.errorprone.bugpatterns.BugChecker;
+import com.google.errorprone.bugpatterns.BugChecker.MemberReferenceTreeMatcher;
 import com.google.errorprone.bugpatterns.BugChecker.MethodInvocationTreeMatcher;
 import com.google.errorprone.fixes.SuggestedFix;
 import com.google.errorprone.matchers.method.MethodMatchers;
 import com.google.errorprone.matchers.method.MethodMatchers.MethodNameMatcher;
 import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.MemberReferenceTree;
 import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.NewClassTree;
+import java.util.regex.Pattern;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -212,4 +215,62 @@ public class MethodMatchersTest {
             "}")
         .doTest();
   }
+
+  /** Test BugChecker for a name-indexed anyOf(...) of method matchers. */
+  @BugPattern(name = "FlagAnyOfMethods", summary = "", severity = ERROR)
+  public static class FlagAnyOfMethodsChecker extends BugChecker
+      implements MethodInvocationTreeMatcher, MemberReferenceTreeMatcher {
+    private static final Matcher<ExpressionTree> MATCHER =
+        Matchers.anyOf(
+            instanceMethod().onExactClass("java.lang.String").named("length"),
+            instanceMethod()
+                .onExactClass("java.lang.String")
+                .named("indexOf")
+                .withParameters("java.lang.String"),
+            staticMethod().onClass("java.lang.Integer").withSignature("parseInt(java.lang.String)"),
+            staticMethod().anyClass().withNameMatching(Pattern.compile("valueOf")),
+            constructor().forClass("java.lang.Object"));
+
+    @Override
+    public Description matchMethodInvocation(MethodInvocationTree tree, VisitorState state) {
+      return MATCHER.matches(tree, state) ? describeMatch(tree) : NO_MATCH;
+    }
+
+    @Override
+    public Description matchMemberReference(MemberReferenceTree tree, VisitorState state) {
+      return MATCHER.matches(tree, state) ? describeMatch(tree) : NO_MATCH;
+    }
+  }
+
+  @Test
+  public void anyOfIndex() {
+    CompilationTestHelper.newInstance(FlagAnyOfMethodsChecker.class, getClass())
+        .addSourceLines(
+            "Test.java",
+            "import static java.lang.Integer.parseInt;",
+            "import java.util.function.Function;",
+            "class Test {",
+            "  Test() {",
+            "    // BUG: Diagnostic contains:",
+            "    super();",
+            "  }",
+            "  void f(String s) {",
+            "    // BUG: Diagnostic contains:",
+            "    s.length();",
+            "    // BUG: Diagnostic contains:",
+            "    s.indexOf(\"a\");",
+            "    s.indexOf('a');",
+            "    s.indexOf(\"a\", 1);",
+            "    // BUG: Diagnostic contains:",
+            "    parseInt(s);",
+            "    Integer.parseInt(s, 16);",
+            "    // BUG: Diagnostic contains:",
+            "    String.valueOf(1);",
+            "    // BUG: Diagnostic contains:",
+            "    Function<String, Integer> length = String::length;",
+            "    s.isEmpty();",
+            "  }",
+            "}")
+        .doTest();
+  }
 }
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.refaster;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.fail;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.errorprone.CodeTransformer;
+import com.google.testing.compile.JavaFileObjects;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.Tree;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** {@link RefasterRuleBundle}Test */
+@RunWith(JUnit4.class)
+public class RefasterRuleBundleTest extends CompilerBasedTest {
+
+  @Rule public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private final Map<String, CodeTransformer> rules = new LinkedHashMap<>();
+
+  @Before
+  public void extractRules() {
+    compile(
+        "package foo;",
+        "import com.google.errorprone.refaster.annotation.AfterTemplate;",
+        "import com.google.errorprone.refaster.annotation.BeforeTemplate;",
+        "class Rules {",
+        "  static class StringIsEmpty {",
+        "    @BeforeTemplate boolean isEmptyBefore(String s) {",
+        "      return s.length() == 0;",
+        "    }",
+        "    @AfterTemplate boolean isEmptyAfter(String s) {",
+        "      return s.isEmpty();",
+        "    }",
+        "  }",
+        "  static class StringToString {",
+        "    @BeforeTemplate String toStringBefore(String s) {",
+        "      return s.toString();",
+        "    }",
+        "    @AfterTemplate String toStringAfter(String s) {",
+        "      return s;",
+        "    }",
+        "  }",
+        "  static class NewStringBuilder {",
+        "    @BeforeTemplate StringBuilder newBuilderBefore() {",
+        "      return new StringBuilder(\"\");",
+        "    }",
+        "    @AfterTemplate StringBuilder newBuilderAfter() {",
+        "      return new StringBuilder();",
+        "    }",
+        "  }",
+        "}");
+    for (ClassTree classTree :
+        Iterables.filter(
+            Iterables.getOnlyElement(compilationUnits).getTypeDecls(), ClassTree.class)) {
+      for (Tree member : classTree.getMembers()) {
+        if (member instanceof ClassTree) {
+          rules.put(
+              ((ClassTree) member).getSimpleName().toString(),
+              Iterables.getOnlyElement(
+                  RefasterRuleBuilderScanner.extractRules((ClassTree) member, context)));
+        }
+      }
+    }
+  }
+
+  private static final String INPUT =
+      Joiner.on('\n')
+          .join(
+              "class Test {",
+              "  boolean f(String s) {",
+              "    String t = s.toString();",
+              "    return t.length() == 0;",
+              "  }",
+              "}");
+
+  private static final String OUTPUT =
+      Joiner.on('\n')
+          .join(
+              "class Test {",
+              "  boolean f(String s) {",
+              "    String t = s;",
+              "    return t.isEmpty();",
+              "  }",
+              "}");
+
+  private static void assertTransforms(CodeTransformer transformer, String input, String output)
+      throws IOException {
+    String actual =
+        CodeTransformerTestHelper.create(transformer)
+            .transform(JavaFileObjects.forSourceString("Test", input))
+            .getCharContent(false)
+            .toString();
+    assertThat(CharMatcher.whitespace().collapseFrom(actual, ' '))
+        .isEqualTo(CharMatcher.whitespace().collapseFrom(output, ' '));
+  }
+
+  private static byte[] bundle(CodeTransformer... transformers) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    RefasterRuleBundle.write(Arrays.asList(transformers), out);
+    return out.toByteArray();
+  }
+
+  @Test
+  public void roundTrip() throws IOException {
+    Path file = tempFolder.newFile("rules.analyzer").toPath();
+    Files.write(file, bundle(RefasterRuleIndex.compose(rules.values())));
+    assertThat(RefasterRuleBundle.canLoad(file)).isTrue();
+
+    CodeTransformer transformer = RefasterRuleBundle.load(file);
+    assertThat(transformer).isInstanceOf(RefasterRuleIndex.class);
+    List<String> templateClasses = new ArrayList<>();
+    for (RefasterRule<?, ?> rule : ((RefasterRuleIndex) transformer).rules()) {
+      templateClasses.add(RefasterRule.fromSecondLevel(rule.qualifiedTemplateClass()));
+    }
+    // the rules keep their order, so the same fix wins where fixes overlap
+    assertThat(templateClasses).containsExactlyElementsIn(rules.keySet()).inOrder();
+    assertTransforms(transformer, INPUT, OUTPUT);
+  }
+
+  @Test
+  public void rulesDecodedLazily() throws IOException {
+    byte[] bytes =
+        bundle(
+            rules.get("StringIsEmpty"), rules.get("StringToString"), rules.get("NewStringBuilder"));
+    // corrupt the record of the last rule, but not the table or the other records
+    Arrays.fill(bytes, bytes.length - 16, bytes.length, (byte) 0);
+    Path file = tempFolder.newFile("rules.analyzer").toPath();
+    Files.write(file, bytes);
+
+    CodeTransformer transformer = RefasterRuleBundle.load(file);
+    // the other rules are decoded from their own records
+    assertTransforms(transformer, INPUT, OUTPUT);
+    try {
+      assertTransforms(
+          transformer,
+          "class Test { Object f() { return new StringBuilder(\"\"); } }",
+          "class Test { Object f() { return new StringBuilder(); } }");
+      fail();
+    } catch (RuntimeException expected) {
+      assertThat(expected).hasMessageThat().contains("foo.Rules.NewStringBuilder");
+    }
+  }
+
+  @Test
+  public void directoriesAndArchives() throws IOException {
+    Path directory = tempFolder.newFolder("rules").toPath();
+    // a rule compiled before bundles were introduced
+    try (ObjectOutputStream out =
+        new ObjectOutputStream(Files.newOutputStream(directory.resolve("legacy.analyzer")))) {
+      out.writeObject(rules.get("NewStringBuilder"));
+    }
+    // files that aren't rules are skipped
+    Files.write(directory.resolve("README"), "Refaster rules".getBytes(UTF_8));
+    try (JarOutputStream jar =
+        new JarOutputStream(Files.newOutputStream(directory.resolve("more.jar")))) {
+      jar.putNextEntry(new ZipEntry("toString.analyzer"));
+      jar.write(bundle(rules.get("StringToString")));
+      jar.closeEntry();
+      jar.putNextEntry(new ZipEntry("foo/Rules.class"));
+      jar.write(new byte[] {(byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe});
+      jar.closeEntry();
+    }
+    byte[] stored = bundle(rules.get("StringIsEmpty"));
+    try (ZipOutputStream zip =
+        new ZipOutputStream(Files.newOutputStream(directory.resolve("stored.zip")))) {
+      zip.putNextEntry(new ZipEntry("META-INF/"));
+      zip.closeEntry();
+      ZipEntry entry = new ZipEntry("isEmpty.analyzer");
+      entry.setMethod(ZipEntry.STORED);
+      entry.setSize(stored.length);
+      CRC32 crc = new CRC32();
+      crc.update(stored);
+      entry.setCrc(crc.getValue());
+      zip.putNextEntry(entry);
+      zip.write(stored);
+      zip.closeEntry();
+    }
+    assertThat(RefasterRuleBundle.canLoad(directory)).isTrue();
+
+    CodeTransformer transformer = RefasterRuleBundle.load(directory);
+    assertThat(transformer).isInstanceOf(RefasterRuleIndex.class);
+    assertThat(((RefasterRuleIndex) transformer).size()).isEqualTo(3);
+    assertTransforms(transformer, INPUT, OUTPUT);
+  }
+
+  @Test
+  public void javaSerializedFileIsNotABundle() throws IOException {
+    Path file = tempFolder.newFile("rules.analyzer").toPath();
+    try (OutputStream out = Files.newOutputStream(file);
+        ObjectOutputStream objects = new ObjectOutputStream(out)) {
+      objects.writeObject(rules.get("StringIsEmpty"));
+    }
+    assertThat(RefasterRuleBundle.canLoad(file)).isFalse();
+  }
+
+  @Test
+  public void rejectsOtherVersions() throws IOException {
+    byte[] bytes = bundle(ImmutableList.copyOf(rules.values()).toArray(new CodeTransformer[0]));
+    ByteBuffer.wrap(bytes).putInt(Integer.BYTES, RefasterRuleBundle.VERSION + 1);
+    Path file = tempFolder.newFile("rules.analyzer").toPath();
+    Files.write(file, bytes);
+    try {
+      RefasterRuleBundle.load(file);
+      fail();
+    } catch (IOException expected) {
+      assertThat(expected).hasMessageThat().contains("version " + (RefasterRuleBundle.VERSION + 1));
+    }
+  }
+}
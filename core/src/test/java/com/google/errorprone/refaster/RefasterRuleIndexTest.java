@@ -0,0 +1,302 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.refaster;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableClassToInstanceMap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.errorprone.CodeTransformer;
+import com.google.errorprone.CompositeCodeTransformer;
+import com.google.errorprone.DescriptionListener;
+import com.google.testing.compile.JavaFileObjects;
+import com.sun.source.tree.BinaryTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.ReturnTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreeScanner;
+import com.sun.tools.javac.util.Context;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** {@link RefasterRuleIndex}Test */
+@RunWith(JUnit4.class)
+public class RefasterRuleIndexTest extends CompilerBasedTest {
+
+  private List<RefasterRule<?, ?>> rules;
+  private RefasterRuleIndex index;
+
+  @Before
+  public void extractRules() {
+    compile(
+        "package foo;",
+        "import com.google.errorprone.refaster.Refaster;",
+        "import com.google.errorprone.refaster.annotation.AfterTemplate;",
+        "import com.google.errorprone.refaster.annotation.BeforeTemplate;",
+        "class Rules {",
+        "  static class StringIsEmpty {",
+        "    @BeforeTemplate boolean isEmptyBefore(String s) {",
+        "      return s.length() == 0;",
+        "    }",
+        "    @AfterTemplate boolean isEmptyAfter(String s) {",
+        "      return s.isEmpty();",
+        "    }",
+        "  }",
+        "  static class StringToString {",
+        "    @BeforeTemplate String toStringBefore(String s) {",
+        "      return s.toString();",
+        "    }",
+        "    @AfterTemplate String toStringAfter(String s) {",
+        "      return s;",
+        "    }",
+        "  }",
+        "  static class NewStringBuilder {",
+        "    @BeforeTemplate StringBuilder newBuilderBefore() {",
+        "      return new StringBuilder(\"\");",
+        "    }",
+        "    @AfterTemplate StringBuilder newBuilderAfter() {",
+        "      return new StringBuilder();",
+        "    }",
+        "  }",
+        "  static class AnyOf {",
+        "    @BeforeTemplate boolean anyOfBefore(boolean b) {",
+        "      return Refaster.anyOf(b == true, true == b);",
+        "    }",
+        "    @AfterTemplate boolean anyOfAfter(boolean b) {",
+        "      return b;",
+        "    }",
+        "  }",
+        "  static class PointX {",
+        "    @BeforeTemplate int xBefore(java.awt.Point p) {",
+        "      return p.x;",
+        "    }",
+        "    @AfterTemplate int xAfter(java.awt.Point p) {",
+        "      return (int) p.getX();",
+        "    }",
+        "  }",
+        "}");
+    List<RefasterRule<?, ?>> rules = new ArrayList<>();
+    for (ClassTree classTree :
+        Iterables.filter(
+            Iterables.getOnlyElement(compilationUnits).getTypeDecls(), ClassTree.class)) {
+      for (Tree member : classTree.getMembers()) {
+        if (member instanceof ClassTree) {
+          for (CodeTransformer rule :
+              RefasterRuleBuilderScanner.extractRules((ClassTree) member, context)) {
+            rules.add((RefasterRule<?, ?>) rule);
+          }
+        }
+      }
+    }
+    this.rules = rules;
+    index = RefasterRuleIndex.create(rules);
+  }
+
+  @Test
+  public void candidatesByKindAndName() {
+    compile(
+        "class Test {",
+        "  void f(String s, boolean b) {",
+        "    boolean x = s.length() == 0;",
+        "    String y = s.toString();",
+        "    StringBuilder z = new StringBuilder(\"\");",
+        "    int w = s.hashCode();",
+        "  }",
+        "}");
+    Map<String, List<String>> candidates = new LinkedHashMap<>();
+    new TreeScanner<Void, Void>() {
+      @Override
+      public Void scan(Tree tree, Void unused) {
+        if (tree != null) {
+          List<String> rules = new ArrayList<>();
+          for (RefasterRuleIndex.Candidate candidate : index.candidates(tree)) {
+            rules.add(
+                RefasterRule.fromSecondLevel(
+                    index.rules().get(candidate.ruleIndex()).qualifiedTemplateClass()));
+          }
+          candidates.put(tree.toString(), rules);
+        }
+        return super.scan(tree, null);
+      }
+    }.scan(getMethodDeclaration("f").getBody(), null);
+
+    assertThat(candidates.get("s.length() == 0")).containsExactly("StringIsEmpty", "AnyOf");
+    assertThat(candidates.get("s.toString()")).containsExactly("StringToString", "AnyOf");
+    assertThat(candidates.get("new StringBuilder(\"\")"))
+        .containsExactly("NewStringBuilder", "AnyOf");
+    // Refaster.anyOf can match trees of any kind
+    assertThat(candidates.get("s.length()")).containsExactly("AnyOf");
+    assertThat(candidates.get("s.hashCode()")).containsExactly("AnyOf");
+  }
+
+  @Test
+  public void candidatesForIdentifiers() {
+    compile(
+        "class Test extends java.awt.Point {",
+        "  int f(java.awt.Point p) {",
+        "    return p.x + x;",
+        "  }",
+        "}");
+    ReturnTree returnTree =
+        (ReturnTree) Iterables.getOnlyElement(getMethodDeclaration("f").getBody().getStatements());
+    BinaryTree sum = (BinaryTree) returnTree.getExpression();
+    // a member select template also unifies with identifiers that refer to the member
+    assertThat(templateClasses(index.candidates(sum.getLeftOperand())))
+        .containsExactly("AnyOf", "PointX")
+        .inOrder();
+    assertThat(templateClasses(index.candidates(sum.getRightOperand())))
+        .containsExactly("AnyOf", "PointX")
+        .inOrder();
+  }
+
+  @Test
+  public void reportsMatchesInRuleOrder() {
+    compile(
+        "class Test {",
+        "  boolean f(String s) {",
+        "    return s.toString().length() == 0;",
+        "  }",
+        "}");
+    // StringIsEmpty matches the whole expression, and StringToString the receiver within it
+    assertThat(reportedMatches(RefasterRuleIndex.create(rules)))
+        .containsExactly("StringIsEmpty", "StringToString")
+        .inOrder();
+    assertThat(reportedMatches(RefasterRuleIndex.create(Lists.reverse(rules))))
+        .containsExactly("StringToString", "StringIsEmpty")
+        .inOrder();
+  }
+
+  private List<String> reportedMatches(CodeTransformer transformer) {
+    List<String> templateClasses = new ArrayList<>();
+    transformer.apply(
+        new TreePath(Iterables.getOnlyElement(compilationUnits)),
+        context,
+        description -> templateClasses.add(RefasterRule.fromSecondLevel(description.checkName)));
+    return templateClasses;
+  }
+
+  @Test
+  public void composeKeepsTransformerOrder() {
+    CodeTransformer other =
+        new CodeTransformer() {
+          @Override
+          public void apply(TreePath path, Context context, DescriptionListener listener) {}
+
+          @Override
+          public ImmutableClassToInstanceMap<Annotation> annotations() {
+            return ImmutableClassToInstanceMap.of();
+          }
+        };
+    CodeTransformer composed =
+        RefasterRuleIndex.compose(
+            ImmutableList.of(
+                rules.get(0),
+                CompositeCodeTransformer.compose(ImmutableList.of(rules.get(1), rules.get(2))),
+                other,
+                index));
+    assertThat(composed).isInstanceOf(CompositeCodeTransformer.class);
+    List<CodeTransformer> transformers = ((CompositeCodeTransformer) composed).transformers();
+    assertThat(transformers).hasSize(3);
+    assertThat(((RefasterRuleIndex) transformers.get(0)).rules())
+        .containsExactlyElementsIn(rules.subList(0, 3))
+        .inOrder();
+    assertThat(transformers.get(1)).isSameAs(other);
+    assertThat(((RefasterRuleIndex) transformers.get(2)).rules())
+        .containsExactlyElementsIn(rules)
+        .inOrder();
+  }
+
+  private List<String> templateClasses(List<RefasterRuleIndex.Candidate> candidates) {
+    List<String> templateClasses = new ArrayList<>();
+    for (RefasterRuleIndex.Candidate candidate : candidates) {
+      templateClasses.add(
+          RefasterRule.fromSecondLevel(index.rule(candidate.ruleIndex()).qualifiedTemplateClass()));
+    }
+    return templateClasses;
+  }
+
+  @Test
+  public void appliesEveryRuleInOneTraversal() throws IOException {
+    String output =
+        CodeTransformerTestHelper.create(index)
+            .transform(
+                JavaFileObjects.forSourceLines(
+                    "Test",
+                    "class Test {",
+                    "  boolean f(String s) {",
+                    "    String t = s.toString();",
+                    "    return t.length() == 0;",
+                    "  }",
+                    "}"))
+            .getCharContent(false)
+            .toString();
+    assertThat(CharMatcher.whitespace().collapseFrom(output, ' '))
+        .isEqualTo(
+            CharMatcher.whitespace()
+                .collapseFrom(
+                    Joiner.on('\n')
+                        .join(
+                            "class Test {",
+                            "  boolean f(String s) {",
+                            "    String t = s;",
+                            "    return t.isEmpty();",
+                            "  }",
+                            "}"),
+                    ' '));
+  }
+
+  @Test
+  public void appliesMemberSelectTemplateToIdentifier() throws IOException {
+    String output =
+        CodeTransformerTestHelper.create(index)
+            .transform(
+                JavaFileObjects.forSourceLines(
+                    "Test",
+                    "class Test extends java.awt.Point {",
+                    "  int f() {",
+                    "    return x;",
+                    "  }",
+                    "}"))
+            .getCharContent(false)
+            .toString();
+    assertThat(CharMatcher.whitespace().collapseFrom(output, ' '))
+        .isEqualTo(
+            CharMatcher.whitespace()
+                .collapseFrom(
+                    Joiner.on('\n')
+                        .join(
+                            "class Test extends java.awt.Point {",
+                            "  int f() {",
+                            "    return (int)this.getX();",
+                            "  }",
+                            "}"),
+                    ' '));
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.scanner;
+
+import static com.google.common.collect.Iterables.getOnlyElement;
+import static com.google.errorprone.BugPattern.Category.JDK;
+import static com.google.errorprone.BugPattern.SeverityLevel.ERROR;
+
+import com.google.errorprone.BugPattern;
+import com.google.errorprone.CompilationTestHelper;
+import com.google.errorprone.VisitorState;
+import com.google.errorprone.bugpatterns.BugChecker;
+import com.google.errorprone.bugpatterns.BugChecker.ClassTreeMatcher;
+import com.google.errorprone.bugpatterns.BugChecker.CompilationUnitTraversal;
+import com.google.errorprone.bugpatterns.BugChecker.CompilationUnitTraversalMatcher;
+import com.google.errorprone.bugpatterns.BugChecker.LiteralTreeMatcher;
+import com.google.errorprone.matchers.Description;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.LiteralTree;
+import com.sun.source.tree.Tree;
+import java.util.EnumSet;
+import java.util.Set;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link ErrorProneScanner}. */
+@RunWith(JUnit4.class)
+public class ErrorProneScannerTest {
+  private final CompilationTestHelper compilationHelper =
+      CompilationTestHelper.newInstance(ReportsKind.class, getClass());
+
+  @Test
+  public void dispatchesEveryKindOfTheMatchedTreeType() {
+    compilationHelper
+        .addSourceLines(
+            "Test.java",
+            "// BUG: Diagnostic contains: CLASS",
+            "class Test {",
+            "  // BUG: Diagnostic contains: INTERFACE",
+            "  interface I {}",
+            "  // BUG: Diagnostic contains: ENUM",
+            "  enum E {}",
+            "  // BUG: Diagnostic contains: ANNOTATION_TYPE",
+            "  @interface A {}",
+            "  // BUG: Diagnostic contains: INT_LITERAL",
+            "  int i = 1;",
+            "  // BUG: Diagnostic contains: STRING_LITERAL",
+            "  String s = \"\";",
+            "  @SuppressWarnings(\"ReportsKind\")",
+            "  class Suppressed {",
+            "    boolean b = true;",
+            "  }",
+            "}")
+        .doTest();
+  }
+
+  @Test
+  public void suppressionEndsWithTheAnnotatedDeclaration() {
+    compilationHelper
+        .addSourceLines(
+            "Test.java",
+            "// BUG: Diagnostic contains: CLASS",
+            "class Test {",
+            "  @SuppressWarnings({\"Unrelated\", \"ReportsKind\"})",
+            "  class Suppressed {",
+            "    int i = 1;",
+            "  }",
+            "  // BUG: Diagnostic contains: STRING_LITERAL",
+            "  @SuppressWarnings(\"Unrelated\")",
+            "  // BUG: Diagnostic contains: CLASS",
+            "  class NotSuppressed {",
+            "    // BUG: Diagnostic contains: INT_LITERAL",
+            "    int j = 2;",
+            "  }",
+            "  // BUG: Diagnostic contains: INT_LITERAL",
+            "  int k = 3;",
+            "}")
+        .doTest();
+  }
+
+  @Test
+  public void traversalSeesEveryTreeOfTheRequestedKinds() {
+    CompilationTestHelper.newInstance(CountsIdentifiers.class, getClass())
+        .addSourceLines(
+            "Test.java",
+            "// BUG: Diagnostic contains: identifiers: 4",
+            "class Test {",
+            "  // the generated constructor calls super()",
+            "  int f(int x, int y) {",
+            "    return x + y + x;",
+            "  }",
+            "}")
+        .doTest();
+  }
+
+  @Test
+  public void traversalNotStartedWhenCheckerDeclines() {
+    CompilationTestHelper.newInstance(CountsIdentifiers.class, getClass())
+        .addSourceLines("Test.java", "class Test {}")
+        .doTest();
+  }
+
+  @Test
+  public void traversalExitsTreesAfterTheirChildren() {
+    CompilationTestHelper.newInstance(ReportsBlockNesting.class, getClass())
+        .addSourceLines(
+            "Test.java",
+            "// BUG: Diagnostic contains: nesting: 3",
+            "class Test {",
+            "  void f() {",
+            "    {",
+            "      {}",
+            "    }",
+            "    {}",
+            "  }",
+            "}")
+        .doTest();
+  }
+
+  @BugPattern(
+      name = "ReportsKind",
+      summary = "Reports the kind of every class and literal.",
+      category = JDK,
+      severity = ERROR)
+  public static class ReportsKind extends BugChecker
+      implements ClassTreeMatcher, LiteralTreeMatcher {
+    @Override
+    public Description matchClass(ClassTree tree, VisitorState state) {
+      return buildDescription(tree).setMessage(tree.getKind().toString()).build();
+    }
+
+    @Override
+    public Description matchLiteral(LiteralTree tree, VisitorState state) {
+      return buildDescription(tree).setMessage(tree.getKind().toString()).build();
+    }
+  }
+
+  @BugPattern(
+      name = "CountsIdentifiers",
+      summary = "Counts the identifiers in a compilation unit with methods.",
+      category = JDK,
+      severity = ERROR)
+  public static class CountsIdentifiers extends BugChecker
+      implements CompilationUnitTraversalMatcher {
+    @Override
+    public Set<Tree.Kind> traversalKinds() {
+      return EnumSet.of(Tree.Kind.IDENTIFIER);
+    }
+
+    @Override
+    public CompilationUnitTraversal startTraversal(CompilationUnitTree tree, VisitorState state) {
+      ClassTree classTree = (ClassTree) getOnlyElement(tree.getTypeDecls());
+      if (classTree.getMembers().size() == 1) {
+        // only the implicit constructor
+        return null;
+      }
+      return new CompilationUnitTraversal() {
+        int count = 0;
+
+        @Override
+        public void enter(Tree tree, VisitorState state) {
+          count++;
+        }
+
+        @Override
+        public Description finish(VisitorState state) {
+          return buildDescription(classTree).setMessage("identifiers: " + count).build();
+        }
+      };
+    }
+  }
+
+  @BugPattern(
+      name = "ReportsBlockNesting",
+      summary = "Reports how deeply the blocks in a compilation unit are nested.",
+      category = JDK,
+      severity = ERROR)
+  public static class ReportsBlockNesting extends BugChecker
+      implements CompilationUnitTraversalMatcher {
+    @Override
+    public Set<Tree.Kind> traversalKinds() {
+      return EnumSet.of(Tree.Kind.BLOCK);
+    }
+
+    @Override
+    public Set<Tree.Kind> exitKinds() {
+      return EnumSet.of(Tree.Kind.BLOCK);
+    }
+
+    @Override
+    public CompilationUnitTraversal startTraversal(CompilationUnitTree tree, VisitorState state) {
+      ClassTree classTree = (ClassTree) getOnlyElement(tree.getTypeDecls());
+      return new CompilationUnitTraversal() {
+        int depth = 0;
+        int maxDepth = 0;
+
+        @Override
+        public void enter(Tree tree, VisitorState state) {
+          maxDepth = Math.max(maxDepth, ++depth);
+        }
+
+        @Override
+        public void exit(Tree tree, VisitorState state) {
+          depth--;
+        }
+
+        @Override
+        public Description finish(VisitorState state) {
+          return buildDescription(classTree).setMessage("nesting: " + maxDepth).build();
+        }
+      };
+    }
+  }
+}
@@ -84,6 +84,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import org.junit.After;
@@ -375,6 +376,74 @@ public class ASTHelpersTest extends CompilerBasedAbstractTest {
     assertCompiles(scanner);
   }
 
+  private static final AnnotationName INHERITED_ANNOTATION =
+      AnnotationName.of("com.google.errorprone.util.InheritedAnnotation");
+
+  @Test
+  public void testAnnotationName() {
+    writeFile(
+        "com/google/errorprone/util/InheritedAnnotation.java",
+        "package com.google.errorprone.util;",
+        "import java.lang.annotation.Inherited;",
+        "@Inherited",
+        "public @interface InheritedAnnotation {}");
+    writeFile(
+        "B.java",
+        "import com.google.errorprone.util.InheritedAnnotation;",
+        "@InheritedAnnotation",
+        "public class B {}");
+    writeFile("C.java", "public class C extends B {}");
+    writeFile("D.java", "public class D {}");
+
+    TestScanner scanner =
+        new TestScanner() {
+          @Override
+          public Void visitClass(ClassTree tree, VisitorState state) {
+            if (tree.getSimpleName().contentEquals("C")) {
+              assertThat(ASTHelpers.hasAnnotation(tree, INHERITED_ANNOTATION, state)).isTrue();
+              assertThat(ASTHelpers.hasAnnotation(tree, InheritedAnnotation.class, state)).isTrue();
+            }
+            if (tree.getSimpleName().contentEquals("D")) {
+              assertThat(ASTHelpers.hasAnnotation(tree, INHERITED_ANNOTATION, state)).isFalse();
+              setAssertionsComplete();
+            }
+            return super.visitClass(tree, state);
+          }
+        };
+    tests.add(scanner);
+    assertCompiles(scanner);
+  }
+
+  @Test
+  public void testFindSuperMethodsCached() {
+    writeFile("I.java", "public interface I {", "  void f();", "}");
+    writeFile("B.java", "public class B {", "  public void f() {}", "}");
+    writeFile("C.java", "public class C extends B implements I {", "  public void f() {}", "}");
+
+    TestScanner scanner =
+        new TestScanner() {
+          @Override
+          public Void visitMethod(MethodTree tree, VisitorState state) {
+            MethodSymbol sym = ASTHelpers.getSymbol(tree);
+            if (sym.owner.getSimpleName().contentEquals("C")
+                && sym.getSimpleName().contentEquals("f")) {
+              Set<MethodSymbol> superMethods = ASTHelpers.findSuperMethods(sym, state);
+              assertThat(superMethods)
+                  .containsExactlyElementsIn(ASTHelpers.findSuperMethods(sym, state.getTypes()))
+                  .inOrder();
+              assertThat(superMethods).hasSize(2);
+              assertThat(ASTHelpers.findSuperMethods(sym, state)).isSameAs(superMethods);
+              assertThat(ASTHelpers.findSuperMethod(sym, state).get().owner.getSimpleName())
+                  .isEqualTo(state.getName("B"));
+              setAssertionsComplete();
+            }
+            return super.visitMethod(tree, state);
+          }
+        };
+    tests.add(scanner);
+    assertCompiles(scanner);
+  }
+
   /* Tests for ASTHelpers#getType */
 
   @Test
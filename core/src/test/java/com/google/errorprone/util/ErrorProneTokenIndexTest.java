@@ -0,0 +1,89 @@
+/*
+ * Copyright 2018 The Error Prone Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.errorprone.util;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Joiner;
+import com.google.common.io.ByteStreams;
+import com.google.errorprone.util.ErrorProneTokens.CommentWithTextAndPosition;
+import com.sun.tools.javac.file.JavacFileManager;
+import com.sun.tools.javac.parser.Tokens.Comment;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Log;
+import java.io.PrintWriter;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** {@link ErrorProneTokenIndex}Test */
+@RunWith(JUnit4.class)
+public class ErrorProneTokenIndexTest {
+
+  private static final String SOURCE =
+      Joiner.on('\n')
+          .join(
+              "package p;",
+              "/** Javadoc. */",
+              "class Test<T extends java.util.List<java.util.List<String>>> {",
+              "  // line comment",
+              "  void f(int x) {",
+              "    g(/* x= */ 1, \"a /* not a comment */ b\", /* y= */ x >> 2);",
+              "  }",
+              "  /* trailing */",
+              "}",
+              "// end");
+
+  @Test
+  public void everyRangeMatchesLexingTheSubstring() {
+    Context context = new Context();
+    new JavacFileManager(context, true, UTF_8);
+    // ranges starting inside a string literal are lexed with errors
+    Log.instance(context).setWriters(new PrintWriter(ByteStreams.nullOutputStream()));
+    ErrorProneTokenIndex index = new ErrorProneTokenIndex(SOURCE, context);
+    for (int start = 0; start <= SOURCE.length(); start++) {
+      for (int end = start; end <= SOURCE.length(); end++) {
+        List<ErrorProneToken> expected;
+        try {
+          expected = ErrorProneTokens.getTokens(SOURCE.substring(start, end), context);
+        } catch (IllegalArgumentException e) {
+          // javac can't report errors in some ranges that start inside a string literal
+          continue;
+        }
+        List<ErrorProneToken> actual = index.getTokens(start, end);
+        assertWithMessage("[%s, %s)", start, end)
+            .that(describe(actual))
+            .isEqualTo(describe(expected));
+      }
+    }
+  }
+
+  private static String describe(List<ErrorProneToken> tokens) {
+    StringBuilder sb = new StringBuilder();
+    for (ErrorProneToken token : tokens) {
+      sb.append(token.kind()).append(' ').append(token.pos()).append('-').append(token.endPos());
+      for (Comment comment : token.comments()) {
+        CommentWithTextAndPosition c = (CommentWithTextAndPosition) comment;
+        sb.append(" {").append(c.getText()).append('@').append(c.pos()).append('}');
+      }
+      sb.append('\n');
+    }
+    return sb.toString();
+  }
+}
@@ -15,7 +15,6 @@
 package com.google.errorprone.refaster;
 
 import com.google.errorprone.CodeTransformer;
-import com.google.errorprone.CompositeCodeTransformer;
 import com.sun.source.tree.ClassTree;
 import com.sun.source.util.TaskEvent;
 import com.sun.source.util.TaskEvent.Kind;
@@ -25,15 +24,15 @@ import com.sun.tools.javac.api.JavacTrees;
 import com.sun.tools.javac.main.JavaCompiler;
 import com.sun.tools.javac.util.Context;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
- * TaskListener that receives compilation of a Refaster rule class and outputs a serialized analyzer
- * to the specified path.
+ * TaskListener that receives compilation of a Refaster rule class and outputs a {@link
+ * RefasterRuleBundle} of its rules to the specified path.
  */
 public class RefasterRuleCompilerAnalyzer implements TaskListener {
   private final Context context;
@@ -67,9 +66,8 @@ public class RefasterRuleCompilerAnalyzer implements TaskListener {
     if (rules.isEmpty()) {
       throw new IllegalArgumentException("Did not find any Refaster templates");
     }
-    try (ObjectOutputStream output =
-        new ObjectOutputStream(Files.newOutputStream(destinationPath))) {
-      output.writeObject(CompositeCodeTransformer.compose(rules));
+    try (OutputStream output = Files.newOutputStream(destinationPath)) {
+      RefasterRuleBundle.write(rules, output);
     } catch (IOException e) {
       throw new RuntimeException(e);
     }